@@ -0,0 +1,69 @@
+package org.jeasy.flows.benchmark;
+
+import org.jeasy.flows.flow.Context;
+import org.jeasy.flows.work.AbstractWork;
+import org.jeasy.flows.work.Report;
+import org.jeasy.flows.work.Status;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the {@link AbstractWork#execute} bookkeeping and of the {@link Context}
+ * operations it relies on.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AbstractWorkBenchmark {
+
+    private AbstractWork work;
+    private Context completed;
+
+    @Setup
+    public void setUp() {
+        work = new Works.CpuWork("work", 0);
+        completed = new Context();
+        completed.setStatus(work.getName(), Status.COMPLETED);
+    }
+
+    /**
+     * First execution: status lookup, work, report and status update.
+     */
+    @Benchmark
+    public Report executeFresh() {
+        return work.execute(new Context());
+    }
+
+    /**
+     * Execution of an already completed work: status lookup and cached report.
+     */
+    @Benchmark
+    public Report executeCompleted() {
+        return work.execute(completed);
+    }
+
+    @Benchmark
+    public Object contextSetAndGetValue() {
+        Context context = new Context();
+        context.setValue("amount", 42L);
+        return context.getValue("amount");
+    }
+
+    @Benchmark
+    public Context newContext() {
+        return new Context();
+    }
+}
@@ -0,0 +1,93 @@
+package org.jeasy.flows.benchmark;
+
+import org.jeasy.flows.engine.Engine;
+import org.jeasy.flows.flow.Context;
+import org.jeasy.flows.flow.Flow;
+import org.jeasy.flows.flow.FlowCompiler;
+import org.jeasy.flows.work.NoOpWork;
+import org.jeasy.flows.work.Report;
+import org.jeasy.flows.work.ReportPredicate;
+import org.jeasy.flows.work.Work;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.jeasy.flows.engine.EngineBuilder.aNewEngine;
+import static org.jeasy.flows.flow.ConditionalFlow.Builder.aNewConditionalFlow;
+import static org.jeasy.flows.flow.SequentialFlow.Builder.aNewSequentialFlow;
+
+/**
+ * Runs the same definition walked as a tree and compiled into a {@link FlowCompiler}
+ * program. Shapes are made of no-op works so that the per-step overhead of the
+ * runtime dominates: a sequential tree ({@code width^depth} leaves) and a chain of
+ * {@code depth} nested conditional flows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompiledFlowBenchmark {
+
+    @Param({"sequential", "conditional"})
+    String shape;
+
+    @Param({"4", "8"})
+    int depth;
+
+    private Engine engine;
+    private Flow flow;
+    private Flow program;
+
+    @Setup
+    public void setUp() {
+        engine = aNewEngine().build();
+        flow = "sequential".equals(shape) ? noOpTree("seq", depth, 3) : conditionalChain(depth * 8);
+        program = FlowCompiler.compile(flow);
+    }
+
+    @Benchmark
+    public Report tree() {
+        return engine.run(flow, new Context());
+    }
+
+    @Benchmark
+    public Report compiled() {
+        return engine.run(program, new Context());
+    }
+
+    private static Flow noOpTree(String prefix, int depth, int width) {
+        List<Work> children = new ArrayList<>(width);
+        for (int i = 0; i < width; i++) {
+            children.add(depth <= 1 ? new NoOpWork() : noOpTree(prefix + "-" + i, depth - 1, width));
+        }
+        return aNewSequentialFlow().named(prefix).execute(children).build();
+    }
+
+    private static Flow conditionalChain(int depth) {
+        Work next = new NoOpWork();
+        for (int level = depth; level > 0; level--) {
+            next = aNewConditionalFlow()
+                    .named("cond-" + level)
+                    .execute(new NoOpWork())
+                    .when(ReportPredicate.COMPLETED)
+                    .then(next)
+                    .otherwise(new Works.CpuWork("otherwise-" + level, 0))
+                    .build();
+        }
+        return (Flow) next;
+    }
+}
@@ -0,0 +1,69 @@
+package org.jeasy.flows.benchmark;
+
+import org.jeasy.flows.engine.Engine;
+import org.jeasy.flows.flow.Context;
+import org.jeasy.flows.flow.Flow;
+import org.jeasy.flows.work.Report;
+import org.jeasy.flows.work.ReportPredicate;
+import org.jeasy.flows.work.Work;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.jeasy.flows.engine.EngineBuilder.aNewEngine;
+import static org.jeasy.flows.flow.ConditionalFlow.Builder.aNewConditionalFlow;
+
+/**
+ * Runs a chain of nested conditional flows per operation. Every level executes a
+ * work, evaluates the predicate and descends into the chosen branch, so the cost
+ * grows with the depth while the untaken branches stay idle.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConditionalFlowBenchmark {
+
+    @Param({"1", "8", "32"})
+    int depth;
+
+    @Param({"true", "false"})
+    boolean predicate;
+
+    private Engine engine;
+    private Flow flow;
+
+    @Setup
+    public void setUp() {
+        engine = aNewEngine().build();
+        ReportPredicate condition = predicate ? ReportPredicate.COMPLETED : ReportPredicate.FAILED;
+        Work next = new Works.CpuWork("leaf", 0);
+        for (int level = depth; level > 0; level--) {
+            next = aNewConditionalFlow()
+                    .named("cond-" + level)
+                    .execute(new Works.CpuWork("check-" + level, 0))
+                    .when(condition)
+                    .then(next)
+                    .otherwise(new Works.CpuWork("otherwise-" + level, 0))
+                    .build();
+        }
+        flow = (Flow) next;
+    }
+
+    @Benchmark
+    public Report run() {
+        return engine.run(flow, new Context());
+    }
+}
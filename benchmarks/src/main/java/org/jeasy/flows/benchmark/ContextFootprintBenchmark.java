@@ -0,0 +1,65 @@
+package org.jeasy.flows.benchmark;
+
+import org.jeasy.flows.flow.Context;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates an instance context holding the same named values as all the other
+ * instances of a flow. Run with the GC profiler: the normalized allocation rate is
+ * the heap retained by a parked instance, compared with a map per instance.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContextFootprintBenchmark {
+
+    @Param({"4", "16"})
+    int values;
+
+    private String[] names;
+    private Object value;
+
+    @Setup
+    public void setUp() {
+        names = new String[values];
+        for (int i = 0; i < values; i++) {
+            names[i] = "value-" + i;
+        }
+        value = "shared";
+    }
+
+    @Benchmark
+    public Context context() {
+        Context context = new Context();
+        for (String name : names) {
+            context.setValue(name, value);
+        }
+        return context;
+    }
+
+    @Benchmark
+    public Map<String, Object> map() {
+        Map<String, Object> map = new ConcurrentHashMap<>();
+        for (String name : names) {
+            map.put(name, value);
+        }
+        return map;
+    }
+}
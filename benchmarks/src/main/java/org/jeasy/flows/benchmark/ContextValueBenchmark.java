@@ -0,0 +1,58 @@
+package org.jeasy.flows.benchmark;
+
+import org.jeasy.flows.flow.Context;
+import org.jeasy.flows.flow.ContextKey;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Updates numeric context values the way a scoring loop does: a counter and a running
+ * sum per iteration, by name (boxed values in a map) and through typed keys (primitive
+ * slots).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContextValueBenchmark {
+
+    private static final ContextKey<Long> COUNT = ContextKey.of("benchmark.count", Long.class);
+    private static final ContextKey<Double> SUM = ContextKey.of("benchmark.sum", Double.class);
+
+    @Param({"100"})
+    int iterations;
+
+    @Benchmark
+    public Context byName() {
+        Context context = new Context();
+        for (int i = 0; i < iterations; i++) {
+            Long count = (Long) context.getValue("count");
+            context.setValue("count", count == null ? 1L : count + 1);
+            Double sum = (Double) context.getValue("sum");
+            context.setValue("sum", (sum == null ? 0 : sum) + i * 0.5);
+        }
+        return context;
+    }
+
+    @Benchmark
+    public Context byKey() {
+        Context context = new Context();
+        for (int i = 0; i < iterations; i++) {
+            context.addLong(COUNT, 1);
+            context.setDouble(SUM, context.getDouble(SUM) + i * 0.5);
+        }
+        return context;
+    }
+}
@@ -0,0 +1,79 @@
+package org.jeasy.flows.benchmark;
+
+import org.jeasy.flows.engine.Durability;
+import org.jeasy.flows.engine.WriteAheadLog;
+import org.jeasy.flows.flow.Context;
+import org.jeasy.flows.flow.Instance;
+import org.jeasy.flows.work.Status;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Status changes of concurrent instances journaled in a write-ahead log: with
+ * {@link Durability#GROUP}, the threads share forces, so the throughput of durable
+ * changes grows with the number of threads instead of being one force per change.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+public class JournalBenchmark {
+
+    @Param({"NONE", "ASYNC", "GROUP"})
+    Durability durability;
+
+    private Path directory;
+    private WriteAheadLog log;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("journal-benchmark");
+        log = WriteAheadLog.open(directory.resolve("flows.log"), durability);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        log.close();
+        Files.deleteIfExists(directory.resolve("flows.log"));
+        Files.deleteIfExists(directory);
+    }
+
+    @State(Scope.Thread)
+    public static class RunningInstance {
+
+        Context context;
+
+        @Setup(Level.Trial)
+        public void setUp(JournalBenchmark benchmark) {
+            context = new Context();
+            context.setJournal(benchmark.log.begin(new Instance(UUID.randomUUID().toString(), "flow", context)));
+        }
+    }
+
+    @Benchmark
+    public Context setStatus(RunningInstance instance) {
+        instance.context.setStatus("work", Status.COMPLETED);
+        return instance.context;
+    }
+}
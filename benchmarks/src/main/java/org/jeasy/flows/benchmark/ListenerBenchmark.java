@@ -0,0 +1,67 @@
+package org.jeasy.flows.benchmark;
+
+import org.jeasy.flows.engine.Engine;
+import org.jeasy.flows.engine.ExecutionEvent;
+import org.jeasy.flows.engine.ExecutionListener;
+import org.jeasy.flows.flow.Context;
+import org.jeasy.flows.flow.Flow;
+import org.jeasy.flows.work.Report;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.jeasy.flows.engine.EngineBuilder.aNewEngine;
+import static org.jeasy.flows.flow.SequentialFlow.Builder.aNewSequentialFlow;
+
+/**
+ * Cost of {@link ExecutionListener}s on a sequential flow of 10 empty works run by an
+ * engine: without listeners (which should cost nothing) and with one listener.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ListenerBenchmark {
+
+    private Flow flow;
+    private Engine engine;
+    private Engine listenedEngine;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        flow = aNewSequentialFlow().named("flow")
+                .execute(Works.cpuWorks("work", 10, 0))
+                .build();
+        engine = aNewEngine().build();
+        listenedEngine = aNewEngine()
+                .listener(new ExecutionListener() {
+                    @Override
+                    public void afterWork(ExecutionEvent event) {
+                        blackhole.consume(event.getStatus());
+                    }
+                })
+                .build();
+    }
+
+    @Benchmark
+    public Report withoutListeners() {
+        return engine.run(flow, new Context());
+    }
+
+    @Benchmark
+    public Report withListener() {
+        return listenedEngine.run(flow, new Context());
+    }
+}
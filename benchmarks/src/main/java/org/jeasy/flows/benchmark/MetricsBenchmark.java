@@ -0,0 +1,86 @@
+package org.jeasy.flows.benchmark;
+
+import org.jeasy.flows.flow.Context;
+import org.jeasy.flows.flow.Flow;
+import org.jeasy.flows.metrics.LatencyHistogram;
+import org.jeasy.flows.metrics.WorkMetrics;
+import org.jeasy.flows.work.Executable;
+import org.jeasy.flows.work.Report;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.jeasy.flows.flow.SequentialFlow.Builder.aNewSequentialFlow;
+
+/**
+ * Overhead of {@link WorkMetrics} on a sequential flow of 10 works, compared to the
+ * same flow without a probe, and cost of recording in a {@link LatencyHistogram}, from
+ * one thread and from several threads sharing the metrics.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsBenchmark {
+
+    /**
+     * CPU tokens burnt by each work, 0 for an empty work.
+     */
+    @Param({"0", "100"})
+    private long tokens;
+
+    private Flow flow;
+    private WorkMetrics metrics;
+    private LatencyHistogram histogram;
+
+    @Setup
+    public void setUp() {
+        flow = aNewSequentialFlow().named("flow")
+                .execute(Works.cpuWorks("work", 10, tokens))
+                .build();
+        metrics = new WorkMetrics();
+        histogram = new LatencyHistogram();
+    }
+
+    @Benchmark
+    public Report withoutMetrics() {
+        return ((Executable) flow).execute(new Context());
+    }
+
+    @Benchmark
+    public Report withMetrics() {
+        Context context = new Context();
+        context.setProbe(metrics);
+        return ((Executable) flow).execute(context);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Report withMetricsOnFourThreads() {
+        return withMetrics();
+    }
+
+    @Benchmark
+    public void record() {
+        histogram.record(System.nanoTime() & 0xFFFFF);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void recordOnFourThreads() {
+        record();
+    }
+}
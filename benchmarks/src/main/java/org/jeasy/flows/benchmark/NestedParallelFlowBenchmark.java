@@ -0,0 +1,84 @@
+package org.jeasy.flows.benchmark;
+
+import org.jeasy.flows.engine.Engine;
+import org.jeasy.flows.flow.Context;
+import org.jeasy.flows.flow.Flow;
+import org.jeasy.flows.flow.ParallelPolicy;
+import org.jeasy.flows.work.Report;
+import org.jeasy.flows.work.Work;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import static org.jeasy.flows.engine.EngineBuilder.aNewEngine;
+import static org.jeasy.flows.flow.ParallelFlow.Builder.aNewParallelFlow;
+
+/**
+ * Runs nested parallel flows (a fan-out of fan-outs) on a cached thread pool, where
+ * every waiting branch holds a thread, and on a fixed size work-stealing pool, where
+ * waiting branches run their own subtasks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class NestedParallelFlowBenchmark {
+
+    @Param({"cached", "forkjoin"})
+    String executor;
+
+    @Param({"2", "3"})
+    int depth;
+
+    @Param({"4", "8"})
+    int fanOut;
+
+    private ExecutorService executorService;
+    private Engine engine;
+    private Flow flow;
+
+    @Setup
+    public void setUp() {
+        executorService = "forkjoin".equals(executor)
+                ? new ForkJoinPool(Runtime.getRuntime().availableProcessors())
+                : Executors.newCachedThreadPool();
+        engine = aNewEngine().executor(executorService).build();
+        flow = nested("p", depth);
+    }
+
+    private Flow nested(String prefix, int level) {
+        Work[] works = new Work[fanOut];
+        for (int i = 0; i < fanOut; i++) {
+            works[i] = level <= 1 ? new Works.CpuWork(prefix + "-" + i, 200) : nested(prefix + "-" + i, level - 1);
+        }
+        return aNewParallelFlow().named(prefix).execute(works).policy(ParallelPolicy.AND).build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Benchmark
+    public Report run() {
+        return engine.run(flow, new Context());
+    }
+}
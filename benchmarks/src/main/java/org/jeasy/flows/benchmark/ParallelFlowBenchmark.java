@@ -0,0 +1,102 @@
+package org.jeasy.flows.benchmark;
+
+import org.jeasy.flows.engine.Engine;
+import org.jeasy.flows.flow.Context;
+import org.jeasy.flows.flow.Flow;
+import org.jeasy.flows.flow.ParallelPolicy;
+import org.jeasy.flows.work.Report;
+import org.jeasy.flows.work.Work;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.jeasy.flows.engine.EngineBuilder.aNewEngine;
+import static org.jeasy.flows.flow.ParallelFlow.Builder.aNewParallelFlow;
+
+/**
+ * Runs a parallel flow per operation, for several fan-outs, pool sizes and policies,
+ * with and without retained partial reports.
+ * Branches are either CPU bound or blocked for a millisecond (a downstream call).
+ * Callers run on 4 benchmark threads so that instances compete for the pool.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class ParallelFlowBenchmark {
+
+    @Param({"2", "16", "64"})
+    int fanOut;
+
+    @Param({"4", "16"})
+    int poolSize;
+
+    @Param({"AND", "OR"})
+    ParallelPolicy policy;
+
+    @Param({"cpu", "blocking"})
+    String branch;
+
+    @Param({"true", "false"})
+    boolean retainReports;
+
+    private ExecutorService executorService;
+    private Engine engine;
+    private Flow flow;
+
+    @Setup
+    public void setUp() {
+        executorService = Executors.newFixedThreadPool(poolSize);
+        engine = aNewEngine().build();
+        Work[] works = new Work[fanOut];
+        for (int i = 0; i < fanOut; i++) {
+            works[i] = "blocking".equals(branch)
+                    ? new Works.SleepingWork("branch-" + i, 1)
+                    : new Works.CpuWork("branch-" + i, 100);
+        }
+        flow = aNewParallelFlow()
+                .named("parallel")
+                .execute(works)
+                .with(executorService)
+                .policy(policy)
+                .retainReports(retainReports)
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Benchmark
+    public Report run() {
+        return engine.run(flow, new Context());
+    }
+
+    /**
+     * Run and look at the outcome the way a predicate on the report does.
+     */
+    @Benchmark
+    public Context runAndInspect() {
+        Report report = engine.run(flow, new Context());
+        report.getError();
+        return report.getContext();
+    }
+}
@@ -0,0 +1,70 @@
+package org.jeasy.flows.benchmark;
+
+import org.jeasy.flows.engine.Engine;
+import org.jeasy.flows.flow.Context;
+import org.jeasy.flows.flow.Flow;
+import org.jeasy.flows.work.Report;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.jeasy.flows.engine.EngineBuilder.aNewEngine;
+import static org.jeasy.flows.flow.RepeatFlow.Builder.aNewRepeatFlow;
+
+/**
+ * Runs a repeat flow of a counting work for a given number of iterations per
+ * operation, with the loop driven by a predicate on the context or by
+ * {@code times(n)}, whose count is kept per run so that one flow definition can be
+ * run by every operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RepeatFlowBenchmark {
+
+    @Param({"1", "16", "256"})
+    int iterations;
+
+    private Engine engine;
+    private Flow flow;
+    private Flow timesFlow;
+
+    @Setup
+    public void setUp() {
+        engine = aNewEngine().build();
+        final int times = iterations;
+        flow = aNewRepeatFlow()
+                .named("repeat")
+                .repeat(new Works.CountingWork("count"))
+                .until(report -> (Integer) report.getContext().getValue(Works.CountingWork.COUNTER) < times)
+                .build();
+        timesFlow = aNewRepeatFlow()
+                .named("times")
+                .repeat(new Works.CountingWork("count"))
+                .times(times)
+                .build();
+    }
+
+    @Benchmark
+    public Report run() {
+        return engine.run(flow, new Context());
+    }
+
+    @Benchmark
+    public Report runTimes() {
+        return engine.run(timesFlow, new Context());
+    }
+}
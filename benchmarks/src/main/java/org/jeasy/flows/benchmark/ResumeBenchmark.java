@@ -0,0 +1,119 @@
+package org.jeasy.flows.benchmark;
+
+import org.jeasy.flows.engine.Engine;
+import org.jeasy.flows.flow.Context;
+import org.jeasy.flows.flow.Flow;
+import org.jeasy.flows.flow.ParallelPolicy;
+import org.jeasy.flows.work.HumanWork;
+import org.jeasy.flows.work.Report;
+import org.jeasy.flows.work.Status;
+import org.jeasy.flows.work.Work;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.jeasy.flows.engine.EngineBuilder.aNewEngine;
+import static org.jeasy.flows.flow.ParallelFlow.Builder.aNewParallelFlow;
+import static org.jeasy.flows.flow.SequentialFlow.Builder.aNewSequentialFlow;
+
+/**
+ * Resumes instances parked on a {@link HumanWork}. The approval sits after
+ * {@code size} completed works, either in sequence or as the last branch of a
+ * parallel flow. Each operation restores a parked context from a template
+ * ({@link #park} measures that part alone), approves the human work and runs the
+ * flow again to completion. {@link #resumeParked} resumes a context parked by a run of
+ * the flow, which also holds the resume cursors recorded by that run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResumeBenchmark {
+
+    private static final String APPROVAL = "approval";
+
+    @Param({"16", "256"})
+    int size;
+
+    @Param({"sequential", "parallel"})
+    String shape;
+
+    private ExecutorService executorService;
+    private Engine engine;
+    private Flow flow;
+    private Context template;
+
+    @Setup
+    public void setUp() {
+        executorService = Executors.newFixedThreadPool(4);
+        engine = aNewEngine().build();
+        List<Work> works = new ArrayList<>(Works.cpuWorks("done", size, 0));
+        works.add(new HumanWork(APPROVAL));
+        flow = "parallel".equals(shape)
+                ? aNewParallelFlow().named("root").execute(works.toArray(new Work[0]))
+                        .with(executorService).policy(ParallelPolicy.AND).build()
+                : aNewSequentialFlow().named("root").execute(works).build();
+        template = new Context();
+        Report report = engine.run(flow, template);
+        if (report.getStatus() != Status.WAITING) {
+            throw new IllegalStateException("Expected a parked instance but got " + report.getStatus());
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Benchmark
+    public Context park() {
+        Context context = new Context();
+        for (String name : template.statusNames()) {
+            context.setStatus(name, template.getStatus(name));
+        }
+        return context;
+    }
+
+    @Benchmark
+    public Report resume() {
+        Context context = park();
+        context.setStatus(APPROVAL, Status.COMPLETED);
+        return engine.run(flow, context);
+    }
+
+    @State(Scope.Thread)
+    public static class ParkedInstance {
+
+        Context context;
+
+        @Setup(Level.Invocation)
+        public void park(ResumeBenchmark benchmark) {
+            context = new Context();
+            benchmark.engine.run(benchmark.flow, context);
+        }
+    }
+
+    @Benchmark
+    public Report resumeParked(ParkedInstance instance) {
+        instance.context.setStatus(APPROVAL, Status.COMPLETED);
+        return engine.run(flow, instance.context);
+    }
+}
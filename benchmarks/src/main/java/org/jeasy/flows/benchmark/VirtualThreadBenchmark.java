@@ -0,0 +1,100 @@
+package org.jeasy.flows.benchmark;
+
+import org.jeasy.flows.engine.Engine;
+import org.jeasy.flows.engine.EngineBuilder;
+import org.jeasy.flows.flow.Context;
+import org.jeasy.flows.flow.Flow;
+import org.jeasy.flows.flow.ParallelPolicy;
+import org.jeasy.flows.work.Report;
+import org.jeasy.flows.work.Work;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.TimeUnit;
+
+import static org.jeasy.flows.engine.EngineBuilder.aNewEngine;
+import static org.jeasy.flows.flow.ParallelFlow.Builder.aNewParallelFlow;
+
+/**
+ * Runs a parallel flow of many concurrently blocked branches on the engine default
+ * (cached platform thread pool) and on virtual threads, reporting the peak number of
+ * live platform threads next to the latency. On runtimes older than Java 21 the
+ * virtual mode falls back to platform threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class VirtualThreadBenchmark {
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    @Param({"platform", "virtual"})
+    String threads;
+
+    @Param({"10000"})
+    int branches;
+
+    @Param({"10"})
+    long blockedMillis;
+
+    private Engine engine;
+    private Flow flow;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+
+        public long peakThreads;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            THREADS.resetPeakThreadCount();
+            peakThreads = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        EngineBuilder builder = aNewEngine();
+        engine = "virtual".equals(threads) ? builder.virtualThreads().build() : builder.build();
+        Work[] works = new Work[branches];
+        for (int i = 0; i < branches; i++) {
+            works[i] = new Works.SleepingWork("branch-" + i, blockedMillis);
+        }
+        flow = aNewParallelFlow()
+                .named("fan-out")
+                .execute(works)
+                .policy(ParallelPolicy.AND)
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        // also shuts down the executor of the virtual threads
+        engine.shutdown();
+    }
+
+    @Benchmark
+    public Report run(Footprint footprint) {
+        Report report = engine.run(flow, new Context());
+        footprint.peakThreads = Math.max(footprint.peakThreads, THREADS.getPeakThreadCount());
+        return report;
+    }
+}
@@ -0,0 +1,120 @@
+package org.jeasy.flows.benchmark;
+
+import org.jeasy.flows.flow.Context;
+import org.jeasy.flows.flow.Flow;
+import org.jeasy.flows.work.AbstractWork;
+import org.jeasy.flows.work.DefaultReport;
+import org.jeasy.flows.work.ExecutableWork;
+import org.jeasy.flows.work.Report;
+import org.jeasy.flows.work.Status;
+import org.jeasy.flows.work.Work;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.jeasy.flows.flow.SequentialFlow.Builder.aNewSequentialFlow;
+
+/**
+ * Works and flow shapes shared by the benchmarks.
+ */
+final class Works {
+
+    private Works() {
+    }
+
+    /**
+     * A tracked work burning a configurable amount of CPU tokens.
+     */
+    static class CpuWork extends AbstractWork {
+
+        private final long tokens;
+
+        CpuWork(String name, long tokens) {
+            super(name);
+            this.tokens = tokens;
+        }
+
+        @Override
+        protected Report executeInternal(Context context) {
+            if (tokens > 0) {
+                Blackhole.consumeCPU(tokens);
+            }
+            return new DefaultReport(Status.COMPLETED, context);
+        }
+    }
+
+    /**
+     * An untracked work (no status bookkeeping) incrementing a counter in the context,
+     * used where the same work has to run more than once per instance.
+     */
+    static class CountingWork implements ExecutableWork {
+
+        static final String COUNTER = "counter";
+
+        private final String name;
+
+        CountingWork(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public Report execute(Context context) {
+            Integer counter = (Integer) context.getValue(COUNTER);
+            context.setValue(COUNTER, counter == null ? 1 : counter + 1);
+            return new DefaultReport(Status.COMPLETED, context);
+        }
+    }
+
+    /**
+     * A work blocking its thread for a while, standing for a downstream call.
+     */
+    static class SleepingWork extends AbstractWork {
+
+        private final long millis;
+
+        SleepingWork(String name, long millis) {
+            super(name);
+            this.millis = millis;
+        }
+
+        @Override
+        protected Report executeInternal(Context context) {
+            try {
+                Thread.sleep(millis);
+                return new DefaultReport(Status.COMPLETED, context);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return new DefaultReport(Status.FAILED, context, e);
+            }
+        }
+    }
+
+    static List<Work> cpuWorks(String prefix, int count, long tokens) {
+        List<Work> works = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            works.add(new CpuWork(prefix + "-" + i, tokens));
+        }
+        return works;
+    }
+
+    /**
+     * A balanced tree of sequential flows: every inner node has {@code width}
+     * children and leaves are {@link CpuWork}s, {@code depth} levels down.
+     */
+    static Flow sequentialTree(String prefix, int depth, int width, long tokens) {
+        if (depth <= 1) {
+            return aNewSequentialFlow().named(prefix).execute(cpuWorks(prefix, width, tokens)).build();
+        }
+        List<Work> children = new ArrayList<>(width);
+        for (int i = 0; i < width; i++) {
+            children.add(sequentialTree(prefix + "-" + i, depth - 1, width, tokens));
+        }
+        return aNewSequentialFlow().named(prefix).execute(children).build();
+    }
+}
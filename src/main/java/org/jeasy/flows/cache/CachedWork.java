@@ -0,0 +1,399 @@
+package org.jeasy.flows.cache;
+
+import org.jeasy.flows.flow.Context;
+import org.jeasy.flows.work.AbstractWork;
+import org.jeasy.flows.work.AsyncWork;
+import org.jeasy.flows.work.DefaultReport;
+import org.jeasy.flows.work.Executable;
+import org.jeasy.flows.work.Report;
+import org.jeasy.flows.work.Status;
+import org.jeasy.flows.work.TimeoutReport;
+import org.jeasy.flows.work.Work;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A work whose results are kept in a {@link ResultCache}, for idempotent works such as
+ * lookups: the key of an execution is made of the name of the work and of selected
+ * values of the context, and the result is the values the work writes in the context
+ * (its outputs). On a hit, the cached outputs are written into the context and the
+ * report is {@link Status#COMPLETED} without executing the work; on a miss, the work is
+ * executed and its outputs are cached if it completes.
+ * <p>
+ * The cached work keeps the name of the work it wraps, so it takes its place in flows
+ * and in the statuses of the context.
+ * <p>
+ * In single-flight mode, concurrent executions of a key that is not cached yet share
+ * one execution of the work: the first one executes it, the others wait for it and
+ * receive its outputs, or its failure. Asynchronous executions wait without holding a
+ * thread, they go on when the execution in flight completes, on the executor of their
+ * context (the common pool by default) rather than all on the thread that executed the
+ * work; synchronous ones block,
+ * through {@link java.util.concurrent.ForkJoinPool#managedBlock} on a fork/join pool.
+ * Executions that neither complete nor fail (waiting, cancelled or timed out) are not
+ * shared: their waiters execute the work again, one of them for all the others.
+ */
+public class CachedWork extends AbstractWork {
+
+    private final Work work;
+    private final String[] keyNames;
+    private final String[] outputNames;
+    private final ResultCache cache;
+    private final boolean singleFlight;
+
+    CachedWork(Work work, String[] keyNames, String[] outputNames, ResultCache cache, boolean singleFlight) {
+        super(work.getName());
+        this.work = work;
+        this.keyNames = keyNames;
+        this.outputNames = outputNames;
+        this.cache = cache;
+        this.singleFlight = singleFlight;
+    }
+
+    @Override
+    protected Report executeInternal(Context context) {
+        Key key = keyOf(context);
+        if (hit(key, context)) {
+            return new DefaultReport(Status.COMPLETED, context);
+        }
+        if (!singleFlight) {
+            Report report = ((Executable) work).execute(context);
+            store(key, report, context);
+            return report;
+        }
+        while (true) {
+            CompletableFuture<Shared> flight = new CompletableFuture<>();
+            CompletableFuture<Shared> inFlight = cache.joinFlight(key, flight);
+            if (inFlight == null) {
+                return lead(key, flight, context);
+            }
+            Shared shared;
+            try {
+                // a managed block on fork/join pools
+                shared = inFlight.get();
+            } catch (InterruptedException e) {
+                // cancelled, or stopped by the watchdog
+                Thread.currentThread().interrupt();
+                return new DefaultReport(Status.CANCELLED, context);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Flights are never completed exceptionally", e);
+            }
+            if (shared != null) {
+                return receive(shared, context);
+            }
+        }
+    }
+
+    @Override
+    protected CompletionStage<Report> executeInternalAsync(Context context) {
+        Key key = keyOf(context);
+        if (hit(key, context)) {
+            return CompletableFuture.completedFuture(new DefaultReport(Status.COMPLETED, context));
+        }
+        if (!singleFlight) {
+            return AsyncWork.execute(work, context).thenApply(report -> {
+                store(key, report, context);
+                return report;
+            });
+        }
+        return flyAsync(key, context);
+    }
+
+    private CompletionStage<Report> flyAsync(Key key, Context context) {
+        CompletableFuture<Shared> flight = new CompletableFuture<>();
+        CompletableFuture<Shared> inFlight = cache.joinFlight(key, flight);
+        if (inFlight == null) {
+            return AsyncWork.execute(work, context).whenComplete((report, error) -> {
+                if (error != null) {
+                    land(key, flight, new Shared(null, error));
+                } else {
+                    settle(key, flight, report, context);
+                }
+            });
+        }
+        Executor executor = context.getExecutorService() != null ? context.getExecutorService() : ForkJoinPool.commonPool();
+        return inFlight.thenComposeAsync(shared -> {
+            if (context.isCancelled()) {
+                return CompletableFuture.completedFuture(new DefaultReport(Status.CANCELLED, context));
+            }
+            return shared != null ? CompletableFuture.completedFuture(receive(shared, context)) : flyAsync(key, context);
+        }, executor);
+    }
+
+    /**
+     * Execute the work for the executions of the key waiting on the flight.
+     */
+    private Report lead(Key key, CompletableFuture<Shared> flight, Context context) {
+        Report report;
+        try {
+            report = ((Executable) work).execute(context);
+        } catch (RuntimeException | Error e) {
+            land(key, flight, new Shared(null, e));
+            throw e;
+        }
+        settle(key, flight, report, context);
+        return report;
+    }
+
+    private void settle(Key key, CompletableFuture<Shared> flight, Report report, Context context) {
+        Shared shared;
+        try {
+            shared = share(key, report, context);
+        } catch (RuntimeException | Error e) {
+            land(key, flight, null);
+            throw e;
+        }
+        land(key, flight, shared);
+    }
+
+    /**
+     * Cache the outputs of an execution in flight.
+     *
+     * @return what the waiters of the execution receive, or null if they should execute the work again
+     */
+    private Shared share(Key key, Report report, Context context) {
+        Map<String, Object> outputs = store(key, report, context);
+        if (outputs != null) {
+            return new Shared(outputs, null);
+        }
+        if (report != null && report.getStatus() == Status.FAILED && !(report instanceof TimeoutReport)) {
+            return new Shared(null, report.getError());
+        }
+        return null;
+    }
+
+    private void land(Key key, CompletableFuture<Shared> flight, Shared shared) {
+        if (shared == null) {
+            // unregistered first, so that waiters trying again do not find it anymore
+            cache.leaveFlight(key, flight);
+            flight.complete(null);
+        } else {
+            // completed first, so that executions arriving meanwhile receive the outputs too
+            flight.complete(shared);
+            cache.leaveFlight(key, flight);
+        }
+    }
+
+    private Report receive(Shared shared, Context context) {
+        cache.recordShared();
+        if (shared.outputs == null) {
+            return new DefaultReport(Status.FAILED, context, shared.error);
+        }
+        write(shared.outputs, context);
+        return new DefaultReport(Status.COMPLETED, context);
+    }
+
+    Key keyOf(Context context) {
+        Object[] values = new Object[keyNames.length];
+        for (int index = 0; index < keyNames.length; index++) {
+            values[index] = context.getValue(keyNames[index]);
+        }
+        return new Key(getName(), values);
+    }
+
+    /**
+     * Write the cached outputs of a key into the context.
+     *
+     * @return whether the outputs were cached
+     */
+    boolean hit(Key key, Context context) {
+        Map<String, Object> outputs = cache.get(key);
+        if (outputs == null) {
+            return false;
+        }
+        write(outputs, context);
+        return true;
+    }
+
+    static void write(Map<String, Object> outputs, Context context) {
+        for (Map.Entry<String, Object> output : outputs.entrySet()) {
+            context.setValue(output.getKey(), output.getValue());
+        }
+    }
+
+    /**
+     * Cache the outputs of a completed execution.
+     *
+     * @return the outputs, or null if the execution did not complete
+     */
+    Map<String, Object> store(Key key, Report report, Context context) {
+        if (report == null || report.getStatus() != Status.COMPLETED) {
+            return null;
+        }
+        Map<String, Object> outputs = new HashMap<>(outputNames.length * 2);
+        for (String name : outputNames) {
+            // absent outputs are cached as such, and removed from the context on a hit
+            outputs.put(name, context.getValue(name));
+        }
+        outputs = Collections.unmodifiableMap(outputs);
+        cache.put(key, outputs);
+        return outputs;
+    }
+
+    Work getWork() {
+        return work;
+    }
+
+    public ResultCache getCache() {
+        return cache;
+    }
+
+    public boolean isSingleFlight() {
+        return singleFlight;
+    }
+
+    /**
+     * Result of an execution in flight: its outputs, or its error if it failed.
+     */
+    static final class Shared {
+
+        private final Map<String, Object> outputs;
+        private final Throwable error;
+
+        Shared(Map<String, Object> outputs, Throwable error) {
+            this.outputs = outputs;
+            this.error = error;
+        }
+    }
+
+    /**
+     * Key of the outputs of a work: its name and the values of its key names.
+     */
+    static final class Key {
+
+        private final String work;
+        private final Object[] values;
+        private final int hash;
+
+        Key(String work, Object[] values) {
+            this.work = work;
+            this.values = values;
+            this.hash = 31 * work.hashCode() + Arrays.hashCode(values);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return hash == key.hash && work.equals(key.work) && Arrays.equals(values, key.values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public String toString() {
+            return work + Arrays.toString(values);
+        }
+    }
+
+    public static class Builder {
+
+        private Builder() {
+            // force usage of static method aNewCachedWork
+        }
+
+        public static WorkStep aNewCachedWork() {
+            return new BuildSteps();
+        }
+
+        public interface WorkStep {
+            KeyStep cache(Work work);
+        }
+
+        public interface KeyStep {
+            /**
+             * @param keyNames names of the context values the results of the work depend on
+             * @return the builder instance
+             */
+            OutputStep keyedBy(String... keyNames);
+        }
+
+        public interface OutputStep {
+            /**
+             * @param outputNames names of the context values written by the work
+             * @return the builder instance
+             */
+            CacheStep outputs(String... outputNames);
+        }
+
+        public interface CacheStep {
+            BuildStep in(ResultCache cache);
+        }
+
+        public interface BuildStep {
+            /**
+             * Share the execution of a key among the concurrent executions of the key, see
+             * {@link CachedWork}. With a cache of maximum size 0, executions are shared but
+             * their outputs are not cached.
+             *
+             * @return the builder instance
+             */
+            BuildStep singleFlight();
+
+            CachedWork build();
+        }
+
+        private static class BuildSteps implements WorkStep, KeyStep, OutputStep, CacheStep, BuildStep {
+
+            private Work work;
+            private String[] keyNames;
+            private String[] outputNames;
+            private ResultCache cache;
+            private boolean singleFlight;
+
+            @Override
+            public KeyStep cache(Work work) {
+                if (!(work instanceof Executable)) {
+                    throw new IllegalArgumentException(String.format("Work '%s' is not executable", work.getName()));
+                }
+                this.work = work;
+                return this;
+            }
+
+            @Override
+            public OutputStep keyedBy(String... keyNames) {
+                this.keyNames = keyNames.clone();
+                return this;
+            }
+
+            @Override
+            public CacheStep outputs(String... outputNames) {
+                this.outputNames = outputNames.clone();
+                return this;
+            }
+
+            @Override
+            public BuildStep in(ResultCache cache) {
+                this.cache = cache;
+                return this;
+            }
+
+            @Override
+            public BuildStep singleFlight() {
+                this.singleFlight = true;
+                return this;
+            }
+
+            @Override
+            public CachedWork build() {
+                return new CachedWork(work, keyNames, outputNames, cache, singleFlight);
+            }
+        }
+    }
+}
@@ -0,0 +1,418 @@
+package org.jeasy.flows.cache;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * A bounded, concurrent store of the outputs of {@link CachedWork}s, by key. One cache
+ * can be shared by any number of works and flows: keys include the name of the work.
+ * <p>
+ * The cache is bounded by a total weight, each entry weighing 1 unless a weigher is
+ * given, and entries can expire a fixed time after they were written (expired entries
+ * are dropped when they are read, and by writes, which drop the expired entries at the
+ * head of the queue). A maximum size or weight must be set. Eviction is a
+ * second-chance FIFO (CLOCK): entries are queued in insertion order, and the oldest
+ * entry is evicted unless it was read since the eviction hand last passed it, in which
+ * case it is queued again. Reads are lock-free: a map lookup and, the first time, the
+ * write of a flag. Writes evict on the calling thread.
+ * <p>
+ * The cache also registers the executions in flight of single-flight works (see
+ * {@link CachedWork.Builder.BuildStep#singleFlight()}), so that works sharing a cache
+ * share their executions too.
+ */
+public final class ResultCache {
+
+    private final ConcurrentMap<Object, Entry> entries = new ConcurrentHashMap<>();
+    // every entry written, oldest first, including the ones replaced or removed since
+    private final Queue<Entry> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicLong weight = new AtomicLong();
+    // entries of the queue that are not in the map anymore
+    private final AtomicLong stale = new AtomicLong();
+    private final long maximumWeight;
+    private final ToLongFunction<Map<String, Object>> weigher;
+    private final long expireAfterWriteNanos;
+    private final LongSupplier clock;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder shared = new LongAdder();
+
+    // executions of single-flight works in progress, by key
+    private final ConcurrentMap<Object, CompletableFuture<CachedWork.Shared>> flights = new ConcurrentHashMap<>();
+
+    private ResultCache(long maximumWeight, ToLongFunction<Map<String, Object>> weigher,
+                        long expireAfterWriteNanos, LongSupplier clock) {
+        this.maximumWeight = maximumWeight;
+        this.weigher = weigher;
+        this.expireAfterWriteNanos = expireAfterWriteNanos;
+        this.clock = clock;
+    }
+
+    /**
+     * Get the outputs cached for a key, counting a hit or a miss.
+     *
+     * @return the outputs, or null if absent or expired
+     */
+    public Map<String, Object> get(Object key) {
+        Entry entry = entries.get(key);
+        if (entry != null && isExpired(entry)) {
+            if (remove(entry)) {
+                expirations.increment();
+            }
+            entry = null;
+        }
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        if (!entry.visited) {
+            entry.visited = true;
+        }
+        hits.increment();
+        return entry.outputs;
+    }
+
+    /**
+     * Cache outputs, replacing the ones of the key if any, and evict entries until the
+     * cache is within its maximum weight. Outputs weighing more than the maximum weight
+     * are not cached.
+     *
+     * @param outputs values by name, not modified afterwards
+     */
+    public void put(Object key, Map<String, Object> outputs) {
+        long entryWeight = weigher.applyAsLong(outputs);
+        if (entryWeight < 0) {
+            throw new IllegalArgumentException("Weight must not be negative");
+        }
+        if (entryWeight > maximumWeight) {
+            invalidate(key);
+            return;
+        }
+        long expiresAt = expireAfterWriteNanos > 0 ? clock.getAsLong() + expireAfterWriteNanos : 0;
+        Entry entry = new Entry(key, outputs, entryWeight, expiresAt);
+        Entry previous = entries.put(key, entry);
+        weight.addAndGet(entryWeight);
+        if (previous != null) {
+            weight.addAndGet(-previous.weight);
+            stale.incrementAndGet();
+        }
+        // queued after it is in the map, so that the eviction hand does not take it for a stale one
+        queue.offer(entry);
+        expire();
+        evict();
+    }
+
+    /**
+     * Remove the outputs cached for a key.
+     */
+    public void invalidate(Object key) {
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            remove(entry);
+        }
+    }
+
+    public void invalidateAll() {
+        for (Entry entry : entries.values()) {
+            remove(entry);
+        }
+    }
+
+    /**
+     * @return the number of entries
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return the total weight of the entries
+     */
+    public long weight() {
+        return weight.get();
+    }
+
+    public Stats stats() {
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), expirations.sum(), shared.sum(), entries.size(), weight.get());
+    }
+
+    /**
+     * Register an execution in flight, unless there is one for the key already.
+     *
+     * @return the execution in flight for the key, or null if the given one was registered
+     */
+    CompletableFuture<CachedWork.Shared> joinFlight(Object key, CompletableFuture<CachedWork.Shared> flight) {
+        return flights.putIfAbsent(key, flight);
+    }
+
+    void leaveFlight(Object key, CompletableFuture<CachedWork.Shared> flight) {
+        flights.remove(key, flight);
+    }
+
+    void recordShared() {
+        shared.increment();
+    }
+
+    private boolean isExpired(Entry entry) {
+        return expireAfterWriteNanos > 0 && clock.getAsLong() - entry.expiresAt >= 0;
+    }
+
+    private boolean remove(Entry entry) {
+        if (!entries.remove(entry.key, entry)) {
+            return false;
+        }
+        weight.addAndGet(-entry.weight);
+        stale.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Drop the expired entries at the head of the queue: entries are queued in write
+     * order and live for the same time, so that it is where they expire first.
+     */
+    private void expire() {
+        if (expireAfterWriteNanos == 0) {
+            return;
+        }
+        Entry entry;
+        while ((entry = queue.peek()) != null) {
+            boolean live = entries.get(entry.key) == entry;
+            if (live && !isExpired(entry)) {
+                return;
+            }
+            // polled by another writer in the meantime
+            if (!queue.remove(entry)) {
+                continue;
+            }
+            if (live && remove(entry)) {
+                expirations.increment();
+            }
+            stale.decrementAndGet();
+        }
+    }
+
+    private void evict() {
+        while (weight.get() > maximumWeight) {
+            Entry entry = queue.poll();
+            if (entry == null) {
+                return;
+            }
+            if (entries.get(entry.key) != entry) {
+                stale.decrementAndGet();
+            } else if (entry.visited && !isExpired(entry)) {
+                // second chance
+                entry.visited = false;
+                queue.offer(entry);
+            } else {
+                if (remove(entry)) {
+                    evictions.increment();
+                }
+                stale.decrementAndGet();
+            }
+        }
+        // without evictions, replaced and removed entries are only dropped from the queue here
+        if (stale.get() > entries.size() + 64) {
+            purge();
+        }
+    }
+
+    private void purge() {
+        for (int pending = queue.size(); pending > 0; pending--) {
+            Entry entry = queue.poll();
+            if (entry == null) {
+                return;
+            }
+            if (entries.get(entry.key) == entry) {
+                queue.offer(entry);
+            } else {
+                stale.decrementAndGet();
+            }
+        }
+    }
+
+    private static final class Entry {
+
+        private final Object key;
+        private final Map<String, Object> outputs;
+        private final long weight;
+        // in clock units, 0 if the entry does not expire
+        private final long expiresAt;
+        // read since the eviction hand last passed the entry
+        private volatile boolean visited;
+
+        Entry(Object key, Map<String, Object> outputs, long weight, long expiresAt) {
+            this.key = key;
+            this.outputs = outputs;
+            this.weight = weight;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * Counters of a cache at a point in time.
+     */
+    public static final class Stats {
+
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final long expirations;
+        private final long shared;
+        private final int size;
+        private final long weight;
+
+        Stats(long hits, long misses, long evictions, long expirations, long shared, int size, long weight) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.expirations = expirations;
+            this.shared = shared;
+            this.size = size;
+            this.weight = weight;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        /**
+         * @return the ratio of hits to lookups, 0 if there was no lookup
+         */
+        public double getHitRate() {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0 : (double) hits / lookups;
+        }
+
+        /**
+         * @return the number of entries evicted to stay within the maximum weight
+         */
+        public long getEvictions() {
+            return evictions;
+        }
+
+        /**
+         * @return the number of entries found expired
+         */
+        public long getExpirations() {
+            return expirations;
+        }
+
+        /**
+         * @return the number of executions that received the result of an execution in
+         * flight instead of executing their work
+         */
+        public long getShared() {
+            return shared;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public long getWeight() {
+            return weight;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("ResultCache.Stats {hits=%d, misses=%d, evictions=%d, expirations=%d, shared=%d, size=%d, weight=%d}",
+                    hits, misses, evictions, expirations, shared, size, weight);
+        }
+    }
+
+    public static class Builder {
+
+        // -1 until bounded
+        private long maximumWeight = -1;
+        private ToLongFunction<Map<String, Object>> weigher = outputs -> 1;
+        private long expireAfterWriteNanos;
+        private LongSupplier clock = System::nanoTime;
+
+        private Builder() {
+            // force usage of static method aNewResultCache
+        }
+
+        public static Builder aNewResultCache() {
+            return new Builder();
+        }
+
+        /**
+         * Bound the number of entries.
+         *
+         * @param maximumSize number of entries
+         * @return the builder instance
+         */
+        public Builder maximumSize(long maximumSize) {
+            if (maximumSize < 0) {
+                throw new IllegalArgumentException("Maximum size must not be negative");
+            }
+            this.maximumWeight = maximumSize;
+            this.weigher = outputs -> 1;
+            return this;
+        }
+
+        /**
+         * Bound the total weight of the entries.
+         *
+         * @param maximumWeight total weight
+         * @param weigher       of the outputs of an entry, e.g. an estimate of their size in bytes
+         * @return the builder instance
+         */
+        public Builder maximumWeight(long maximumWeight, ToLongFunction<Map<String, Object>> weigher) {
+            if (maximumWeight < 0) {
+                throw new IllegalArgumentException("Maximum weight must not be negative");
+            }
+            this.maximumWeight = maximumWeight;
+            this.weigher = weigher;
+            return this;
+        }
+
+        /**
+         * Expire entries a fixed time after they were written.
+         *
+         * @param duration time to live of the entries
+         * @param unit     of the duration
+         * @return the builder instance
+         */
+        public Builder expireAfterWrite(long duration, TimeUnit unit) {
+            if (duration <= 0) {
+                throw new IllegalArgumentException("Time to live must be positive");
+            }
+            this.expireAfterWriteNanos = unit.toNanos(duration);
+            return this;
+        }
+
+        /**
+         * @param clock in nanoseconds, for tests
+         */
+        Builder clock(LongSupplier clock) {
+            this.clock = clock;
+            return this;
+        }
+
+        /**
+         * @throws IllegalStateException if neither a maximum size nor a maximum weight was set
+         */
+        public ResultCache build() {
+            if (maximumWeight < 0) {
+                throw new IllegalStateException("Maximum size or weight must be set");
+            }
+            return new ResultCache(maximumWeight, weigher, expireAfterWriteNanos, clock);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package org.jeasy.flows.engine;
+
+/**
+ * When the records of a {@link WriteAheadLog} are forced to the disk.
+ */
+public enum Durability {
+
+    /**
+     * Records are handed to the file system when they are appended and never forced:
+     * they survive a crash of the process, not of the machine.
+     */
+    NONE,
+
+    /**
+     * Records are forced in the background at a fixed interval: a crash of the machine
+     * loses at most the records of the last interval, and writers never wait.
+     */
+    ASYNC,
+
+    /**
+     * A change returns once its record is forced. Writers waiting at the same time share
+     * one force (group commit), so the cost of a force is spread over all the instances
+     * running concurrently.
+     */
+    GROUP
+}
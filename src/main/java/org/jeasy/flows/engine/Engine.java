@@ -25,8 +25,17 @@ package org.jeasy.flows.engine;
 
 import org.jeasy.flows.flow.Context;
 import org.jeasy.flows.flow.Flow;
+import org.jeasy.flows.flow.Instance;
 import org.jeasy.flows.work.Report;
 
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
 /**
  * Interface for a workflow engine.
  *
@@ -36,6 +45,13 @@ public interface Engine {
 
     /**
      * 运行flow，若上次run之后是WAITING结果，则外部修改过context之后可继续执行
+     * <p>
+     * No timer is armed for a bare context: a flow waiting on a deadline (see
+     * {@link Context#awaitTimer}), such as a {@link org.jeasy.flows.work.DelayWork} or the
+     * backoff of a {@link org.jeasy.flows.flow.RetryFlow}, ends {@code WAITING} and only
+     * goes on when run again after the deadline. Run it with {@link #run(Flow, Instance)}
+     * to have the engine resume it (retry flows also back off without an instance when
+     * run with {@link #runAsync(Flow, Context)}).
      *
      * @param flow    工作流定义
      * @param context 实例状态/上下文
@@ -43,4 +59,159 @@ public interface Engine {
      */
     Report run(Flow flow, Context context);
 
+    /**
+     * Run an instance. With an {@link InstanceStore} (see {@link EngineBuilder#instanceStore(InstanceStore)}),
+     * an instance ending {@link org.jeasy.flows.work.Status#WAITING} is parked in the store,
+     * and a parked instance ending otherwise is removed from it. Callers of a parked
+     * instance only need to keep its id to {@link #resume} it later. With a
+     * {@link WriteAheadLog} (see {@link EngineBuilder#journal(WriteAheadLog)}), the changes
+     * of the instance are journaled until it ends otherwise than waiting.
+     * <p>
+     * The default implementation runs the flow with the context of the instance, see
+     * {@link #run(Flow, Context)}.
+     *
+     * @param flow     to run
+     * @param instance to run
+     * @return the flow report
+     * @throws IllegalStateException if the instance is already running, e.g. resumed by a signal or a timer
+     */
+    default Report run(Flow flow, Instance instance) {
+        return run(flow, instance.getContext());
+    }
+
+    /**
+     * Load a parked instance back from the {@link InstanceStore}, let the caller update
+     * its context (e.g. complete the {@link org.jeasy.flows.work.HumanWork} it waits for)
+     * and run it again, see {@link #run(Flow, Instance)}.
+     *
+     * @param flow       of the instance
+     * @param instanceId of the parked instance
+     * @param update     of the context before the run, may be null
+     * @return the flow report
+     * @throws IllegalStateException         if the engine has no instance store, or the instance is already running
+     * @throws IllegalArgumentException      if no instance with this id is parked
+     * @throws UnsupportedOperationException by default
+     */
+    default Report resume(Flow flow, String instanceId, Consumer<Context> update) {
+        throw new UnsupportedOperationException("This engine does not park instances");
+    }
+
+    /**
+     * Deliver a signal to the instances waiting for its correlation key (registered by
+     * works such as {@link org.jeasy.flows.work.HumanWork} when an instance run with
+     * {@link #run(Flow, Instance)} ends waiting). The waiting works are completed, the
+     * payload is set as the value named by the key, and the instances are resumed on the
+     * executor of the engine. Signals delivered to an instance before its resume starts
+     * are applied together, so a burst of signals costs one resume.
+     *
+     * @param correlationKey of the signal
+     * @param payload        of the signal, may be null
+     * @return the number of instances the signal was delivered to
+     * @throws UnsupportedOperationException by default
+     */
+    default int signal(String correlationKey, Object payload) {
+        throw new UnsupportedOperationException("This engine does not resume instances on signals");
+    }
+
+    /**
+     * @param correlationKey of a signal
+     * @return the ids of the instances waiting for the signal, none by default
+     */
+    default Set<String> getWaitingInstances(String correlationKey) {
+        return Collections.emptySet();
+    }
+
+    /**
+     * Launch a new instance of a flow (see {@link #run(Flow, Instance)}) at a fixed rate,
+     * on the executor of the engine. Launches are driven by the timers of the engine,
+     * which also resume instances waiting for a {@link org.jeasy.flows.work.DelayWork};
+     * schedules are not persisted and must be registered again after a restart.
+     *
+     * @param flow         to launch
+     * @param initialDelay before the first launch
+     * @param period       between two launches
+     * @param unit         of the delay and the period
+     * @return the handle to cancel the next launches
+     * @throws UnsupportedOperationException by default
+     */
+    default TimerHandle scheduleRecurring(Flow flow, long initialDelay, long period, TimeUnit unit) {
+        throw new UnsupportedOperationException("This engine has no timers");
+    }
+
+    /**
+     * Run again the instances parked in the {@link InstanceStore} by a previous engine,
+     * e.g. after a restart, so that they arm their timers and register their signals
+     * again. Instances waiting for a {@link org.jeasy.flows.work.DelayWork} whose
+     * deadline passed meanwhile go on right away.
+     *
+     * @param flows of the instances, matched by name with {@link Instance#getFlow()}
+     * @return the number of instances run again
+     * @throws IllegalStateException         if the engine has no instance store
+     * @throws UnsupportedOperationException by default
+     */
+    default int recover(Flow... flows) {
+        throw new UnsupportedOperationException("This engine does not park instances");
+    }
+
+    /**
+     * Run a flow without blocking the caller. Works implementing
+     * {@link org.jeasy.flows.work.AsyncWork} are composed through continuations, other
+     * works run on the thread completing the previous step. Cancelling the returned
+     * future cancels the instance (see {@link Context#cancel()}).
+     * <p>
+     * The default implementation runs the flow with {@link #run(Flow, Context)} on the
+     * common fork-join pool.
+     *
+     * @param flow    to run
+     * @param context instance context
+     * @return a stage completed with the flow report
+     */
+    default CompletionStage<Report> runAsync(Flow flow, Context context) {
+        CompletableFuture<Report> result = CompletableFuture.supplyAsync(() -> run(flow, context));
+        // a caller giving up on the result cancels the instance
+        result.whenComplete((report, error) -> {
+            if (error instanceof CancellationException) {
+                context.cancel();
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Queue a flow for execution by the workers of the engine (see
+     * {@link EngineBuilder#workers(int, int)}). When the queue is full, the configured
+     * {@link OverflowStrategy} applies. Engines without workers run the flow like
+     * {@link #runAsync(Flow, Context)}. Cancelling the returned future cancels the
+     * instance, or drops it if it is still queued.
+     * <p>
+     * The default implementation runs the flow like {@link #runAsync(Flow, Context)}.
+     *
+     * @param flow    to run
+     * @param context instance context
+     * @return a future completed with the flow report
+     */
+    default CompletableFuture<Report> submit(Flow flow, Context context) {
+        return runAsync(flow, context).toCompletableFuture();
+    }
+
+    /**
+     * Get the counters of the submission queue.
+     *
+     * @return a snapshot of the queue counters (all zeros for engines without workers,
+     * as by default)
+     */
+    default QueueStats getQueueStats() {
+        return QueueStats.NONE;
+    }
+
+    /**
+     * Stop accepting submissions and stop the timers. Queued submissions are still run.
+     * An executor created by the engine, such as the one of {@link EngineBuilder#virtualThreads()},
+     * is shut down too.
+     * <p>
+     * The default implementation does nothing.
+     */
+    default void shutdown() {
+    }
+
 }
@@ -23,6 +23,16 @@
  */
 package org.jeasy.flows.engine;
 
+import org.jeasy.flows.work.WorkProbe;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
 /**
  * Main entry point to create {@link Engine} instances.
  *
@@ -30,6 +40,24 @@ package org.jeasy.flows.engine;
  */
 public class EngineBuilder {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(EngineBuilder.class);
+
+    private ExecutorService executorService;
+    private boolean virtualThreads;
+    // parallelism of a work-stealing pool created for the engine, 0 for none
+    private int workStealingParallelism;
+    private int workers;
+    private int queueCapacity;
+    private OverflowStrategy overflowStrategy = OverflowStrategy.REJECT;
+    private long blockTimeoutNanos = Long.MAX_VALUE;
+    private InstanceStore instanceStore;
+    private WriteAheadLog journal;
+    private long timerTickMillis = TimingWheel.DEFAULT_TICK_MILLIS;
+    private WorkProbe probe;
+    private long instanceTimeoutNanos;
+    private boolean compileFlows;
+    private final List<ExecutionListener> listeners = new ArrayList<>();
+
     /**
      * Create a new {@link EngineBuilder}.
      * 
@@ -42,12 +70,219 @@ public class EngineBuilder {
     private EngineBuilder() {
     }
 
+    /**
+     * Run asynchronous submissions, and parallel flows built without an executor
+     * service, on the given executor.
+     *
+     * <strong>It is the responsibility of the caller to manage the lifecycle of the
+     * executor service.</strong>
+     *
+     * @param executorService to use
+     * @return the builder instance
+     */
+    public EngineBuilder executor(ExecutorService executorService) {
+        this.executorService = executorService;
+        this.virtualThreads = false;
+        this.workStealingParallelism = 0;
+        return this;
+    }
+
+    /**
+     * Run asynchronous submissions, and parallel flows built without an executor
+     * service, on a work-stealing {@link ForkJoinPool} of the given parallelism.
+     * Nested parallel flows then fork and join their branches as subtasks. The pool is
+     * created with the engine and shut down with it, see {@link Engine#shutdown()}.
+     *
+     * @param parallelism number of worker threads
+     * @return the builder instance
+     */
+    public EngineBuilder workStealing(int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism must be positive");
+        }
+        this.executorService = null;
+        this.virtualThreads = false;
+        this.workStealingParallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Run asynchronous submissions, and parallel flows built without an executor
+     * service, on virtual threads. Virtual threads require Java 21 or later: on older
+     * runtimes the engine keeps the default platform threads. The executor of the virtual
+     * threads is shut down with the engine, see {@link Engine#shutdown()}.
+     *
+     * @return the builder instance
+     */
+    public EngineBuilder virtualThreads() {
+        this.executorService = null;
+        this.virtualThreads = true;
+        this.workStealingParallelism = 0;
+        return this;
+    }
+
+    /**
+     * Give the engine its own worker threads, fed through a bounded lock-free queue,
+     * to run flows passed to {@link Engine#submit}.
+     *
+     * @param threads       number of worker threads
+     * @param queueCapacity maximum number of queued submissions (rounded up to a power of two)
+     * @return the builder instance
+     */
+    public EngineBuilder workers(int threads, int queueCapacity) {
+        this.workers = threads;
+        this.queueCapacity = queueCapacity;
+        return this;
+    }
+
+    /**
+     * Set what happens to submissions when the queue is full, {@link OverflowStrategy#REJECT}
+     * by default.
+     *
+     * @param overflowStrategy to apply
+     * @return the builder instance
+     */
+    public EngineBuilder overflow(OverflowStrategy overflowStrategy) {
+        this.overflowStrategy = overflowStrategy;
+        return this;
+    }
+
+    /**
+     * Block submitters for at most the given time when the queue is full, then
+     * reject the submission.
+     *
+     * @param timeout maximum time to wait for room in the queue
+     * @param unit    of the timeout
+     * @return the builder instance
+     */
+    public EngineBuilder overflowBlocking(long timeout, TimeUnit unit) {
+        this.overflowStrategy = OverflowStrategy.BLOCK;
+        this.blockTimeoutNanos = unit.toNanos(timeout);
+        return this;
+    }
+
+    /**
+     * Park instances ending {@link org.jeasy.flows.work.Status#WAITING} in a store, see
+     * {@link Engine#run(org.jeasy.flows.flow.Flow, org.jeasy.flows.flow.Instance)}.
+     *
+     * <strong>It is the responsibility of the caller to close the store.</strong>
+     *
+     * @param instanceStore to use, e.g. a {@link MappedInstanceStore}
+     * @return the builder instance
+     */
+    public EngineBuilder instanceStore(InstanceStore instanceStore) {
+        this.instanceStore = instanceStore;
+        return this;
+    }
+
+    /**
+     * Journal the changes of instances in a write-ahead log, so that they can be
+     * replayed after a crash, see {@link Engine#run(org.jeasy.flows.flow.Flow, org.jeasy.flows.flow.Instance)}.
+     *
+     * <strong>It is the responsibility of the caller to close the log.</strong>
+     *
+     * @param journal to use
+     * @return the builder instance
+     */
+    public EngineBuilder journal(WriteAheadLog journal) {
+        this.journal = journal;
+        return this;
+    }
+
+    /**
+     * Set the resolution of the timers of the engine (see {@link org.jeasy.flows.work.DelayWork}
+     * and {@link Engine#scheduleRecurring}), 10 milliseconds by default: timers fire at
+     * most one tick late.
+     *
+     * @param tick  resolution of the timers, at least one millisecond
+     * @param unit  of the tick
+     * @return the builder instance
+     */
+    public EngineBuilder timerTick(long tick, TimeUnit unit) {
+        long millis = unit.toMillis(tick);
+        if (millis < 1) {
+            throw new IllegalArgumentException("Timer tick must be at least one millisecond");
+        }
+        this.timerTickMillis = millis;
+        return this;
+    }
+
+    /**
+     * Instrument the works run by the engine, e.g. with a {@link org.jeasy.flows.metrics.WorkMetrics}.
+     * The probe is set on the contexts that have none when they are run.
+     *
+     * @param probe to use
+     * @return the builder instance
+     */
+    public EngineBuilder probe(WorkProbe probe) {
+        this.probe = probe;
+        return this;
+    }
+
+    /**
+     * Register a listener of the executions of the engine. Listeners are called in the
+     * order they are registered; an engine without listeners does not dispatch anything.
+     *
+     * @param listener to register
+     * @return the builder instance
+     */
+    public EngineBuilder listener(ExecutionListener listener) {
+        this.listeners.add(listener);
+        return this;
+    }
+
+    /**
+     * Give the contexts run by the engine without a deadline of their own a deadline,
+     * see {@link org.jeasy.flows.flow.Context#setTimeout(long, TimeUnit)}: a flow still
+     * running when it passes is stopped and reported with a
+     * {@link org.jeasy.flows.work.TimeoutReport}.
+     *
+     * @param timeout of the instances, from the start of their first run
+     * @param unit    of the timeout
+     * @return the builder instance
+     */
+    public EngineBuilder instanceTimeout(long timeout, TimeUnit unit) {
+        if (timeout <= 0) {
+            throw new IllegalArgumentException("Instance timeout must be positive");
+        }
+        this.instanceTimeoutNanos = unit.toNanos(timeout);
+        return this;
+    }
+
+    /**
+     * Run flows compiled into {@link org.jeasy.flows.flow.Program}s (see
+     * {@link org.jeasy.flows.flow.FlowCompiler}) instead of walking their tree. Each flow
+     * is compiled on its first run and keeps its program (see
+     * {@link org.jeasy.flows.flow.FlowCompiler#compiled}), so its definition must not
+     * change afterwards. Runs with a probe or listeners walk the tree.
+     *
+     * @return the builder instance
+     */
+    public EngineBuilder compileFlows() {
+        this.compileFlows = true;
+        return this;
+    }
+
     /**
      * Create a new {@link Engine}.
      * 
      * @return a new {@link Engine}.
      */
     public Engine build() {
-        return new EngineImpl();
+        ExecutorService executor = this.executorService;
+        boolean ownsExecutor = false;
+        if (workStealingParallelism > 0) {
+            executor = new ForkJoinPool(workStealingParallelism);
+            ownsExecutor = true;
+        } else if (virtualThreads) {
+            if (VirtualThreads.isSupported()) {
+                executor = VirtualThreads.newExecutor();
+                ownsExecutor = true;
+            } else {
+                LOGGER.warn("Virtual threads are not supported on Java {}, using platform threads", System.getProperty("java.version"));
+            }
+        }
+        return new EngineImpl(executor, ownsExecutor, instanceStore, journal, workers, queueCapacity, overflowStrategy, blockTimeoutNanos,
+                timerTickMillis, probe, new ArrayList<>(listeners), instanceTimeoutNanos, compileFlows);
     }
 }
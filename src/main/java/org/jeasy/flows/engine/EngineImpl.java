@@ -25,21 +25,582 @@ package org.jeasy.flows.engine;
 
 import org.jeasy.flows.flow.Context;
 import org.jeasy.flows.flow.Flow;
+import org.jeasy.flows.flow.FlowCompiler;
+import org.jeasy.flows.flow.Instance;
+import org.jeasy.flows.flow.Program;
+import org.jeasy.flows.jfr.FlowEvents;
+import org.jeasy.flows.work.AsyncWork;
 import org.jeasy.flows.work.Executable;
 import org.jeasy.flows.work.Report;
+import org.jeasy.flows.work.Status;
+import org.jeasy.flows.work.TimeoutReport;
+import org.jeasy.flows.work.WorkProbe;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
 
 class EngineImpl implements Engine {
 
     private static final Logger logger = LoggerFactory.getLogger(EngineImpl.class);
 
 
+    private final ExecutorService executorService;
+    private final boolean ownsExecutor;
+    private final WorkerPool workerPool;
+    private final InstanceStore instanceStore;
+    private final WriteAheadLog journal;
+    private final WorkProbe probe;
+    private final Listeners listeners;
+    private final long instanceTimeoutNanos;
+    private final boolean compileFlows;
+    // ids of the instances being run, with the resumptions deferred until the current run ends
+    private final ConcurrentMap<String, Queue<Runnable>> running = new ConcurrentHashMap<>();
+    private final SignalIndex signals = new SignalIndex();
+    private final TimingWheel timers;
+    // timers armed for the waiting instances, by instance id
+    private final ConcurrentMap<String, Armed> armed = new ConcurrentHashMap<>();
+
+    EngineImpl() {
+        this(null);
+    }
+
+    /**
+     * @param executorService for asynchronous submissions and parallel flows without
+     *                        an executor of their own, null to use the defaults
+     */
+    EngineImpl(ExecutorService executorService) {
+        this(executorService, false, null, null, 0, 0, OverflowStrategy.REJECT, Long.MAX_VALUE,
+                TimingWheel.DEFAULT_TICK_MILLIS, null, Collections.emptyList(), 0, false);
+    }
+
+    /**
+     * @param executorService see {@link #EngineImpl(ExecutorService)}
+     * @param ownsExecutor    whether the executor service was created for the engine, and is shut down with it
+     * @param instanceStore   where waiting instances are parked, null for none
+     * @param journal         where changes of instances are logged, null for none
+     * @param workers         number of worker threads running submitted flows, 0 for none
+     * @param timerTickMillis  resolution of the timers, in milliseconds
+     * @param probe            set on the contexts run by the engine, null for none
+     * @param listeners        of the executions of the engine
+     * @param instanceTimeoutNanos deadline of the contexts run without one, 0 for none
+     * @param compileFlows     whether to run flows compiled into {@link Program}s
+     */
+    EngineImpl(ExecutorService executorService, boolean ownsExecutor, InstanceStore instanceStore, WriteAheadLog journal,
+               int workers, int queueCapacity, OverflowStrategy overflowStrategy, long blockTimeoutNanos,
+               long timerTickMillis, WorkProbe probe, List<ExecutionListener> listeners, long instanceTimeoutNanos,
+               boolean compileFlows) {
+        this.executorService = executorService;
+        this.ownsExecutor = ownsExecutor;
+        this.instanceTimeoutNanos = instanceTimeoutNanos;
+        this.compileFlows = compileFlows;
+        this.instanceStore = instanceStore;
+        this.journal = journal;
+        // without listeners, nothing is dispatched
+        this.listeners = listeners.isEmpty() ? null : new Listeners(listeners, probe);
+        this.probe = this.listeners != null ? this.listeners : probe;
+        this.timers = new TimingWheel(timerTickMillis, System::currentTimeMillis, this::dispatch);
+        this.workerPool = workers > 0
+                ? new WorkerPool(workers, queueCapacity, overflowStrategy, blockTimeoutNanos, this::run)
+                : null;
+    }
+
     @Override
     public Report run(Flow flow, Context context) {
-        return ((Executable) flow).execute(context);
+        bind(context);
+        Executable executable = executableOf(flow);
+        if (listeners == null) {
+            return timedOut(context, executable.execute(context));
+        }
+        listeners.flowStarted(flow, context);
+        Report report;
+        try {
+            report = timedOut(context, executable.execute(context));
+        } catch (RuntimeException | Error e) {
+            listeners.flowFinished(flow, context, null, e);
+            throw e;
+        }
+        listeners.flowFinished(flow, context, report, null);
+        return report;
+    }
+
+    @Override
+    public Report run(Flow flow, Instance instance) {
+        if (!tryAcquire(instance.getId())) {
+            throw new IllegalStateException("Instance " + instance.getId() + " is already running");
+        }
+        try {
+            return runInstance(flow, instance);
+        } finally {
+            release(instance.getId());
+        }
+    }
+
+    /**
+     * Run an instance, holding its guard.
+     */
+    private Report runInstance(Flow flow, Instance instance) {
+        Context context = instance.getContext();
+        context.clearAwaitedSignals();
+        context.clearAwaitedTimers();
+        if (journal != null && context.getJournal() == null) {
+            context.setJournal(journal.begin(instance));
+        }
+        if (context.getStatus(flow.getName()) == Status.WAITING) {
+            FlowEvents.instanceResumed(context);
+            if (listeners != null) {
+                listeners.instanceResumed(flow, context);
+            }
+        }
+        Report report = run(flow, context);
+        boolean waiting = report != null && report.getStatus() == Status.WAITING;
+        if (instanceStore != null) {
+            if (waiting) {
+                instanceStore.save(instance);
+            } else {
+                instanceStore.remove(instance.getId());
+            }
+        }
+        if (journal != null && !waiting) {
+            journal.end(instance.getId());
+            context.setJournal(null);
+        }
+        if (waiting) {
+            // parked instances are loaded back from the store when signalled
+            signals.update(instance.getId(), flow, instanceStore == null ? instance : null, context.getAwaitedSignals());
+        } else {
+            signals.remove(instance.getId());
+        }
+        disarm(instance.getId());
+        if (waiting) {
+            arm(flow, instance, context.getAwaitedTimers());
+            FlowEvents.instanceWaiting(context);
+            if (listeners != null) {
+                listeners.instanceWaiting(flow, context, report);
+            }
+        }
+        return report;
+    }
+
+    @Override
+    public Report resume(Flow flow, String instanceId, Consumer<Context> update) {
+        if (instanceStore == null) {
+            throw new IllegalStateException("No instance store configured");
+        }
+        if (!tryAcquire(instanceId)) {
+            throw new IllegalStateException("Instance " + instanceId + " is already running");
+        }
+        try {
+            Instance instance = instanceStore.load(instanceId);
+            if (instance == null) {
+                throw new IllegalArgumentException("No parked instance " + instanceId);
+            }
+            if (update != null) {
+                update.accept(instance.getContext());
+            }
+            return runInstance(flow, instance);
+        } finally {
+            release(instanceId);
+        }
+    }
+
+    @Override
+    public int signal(String correlationKey, Object payload) {
+        return signals.deliver(correlationKey, payload, this::schedule);
+    }
+
+    @Override
+    public Set<String> getWaitingInstances(String correlationKey) {
+        return signals.instancesWaitingFor(correlationKey);
+    }
+
+    @Override
+    public TimerHandle scheduleRecurring(Flow flow, long initialDelay, long period, TimeUnit unit) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("Period must be positive");
+        }
+        Recurring recurring = new Recurring(flow, unit.toMillis(period));
+        recurring.arm(System.currentTimeMillis() + unit.toMillis(initialDelay));
+        return recurring;
+    }
+
+    @Override
+    public int recover(Flow... flows) {
+        if (instanceStore == null) {
+            throw new IllegalStateException("No instance store configured");
+        }
+        int recovered = 0;
+        for (String id : new ArrayList<>(instanceStore.ids())) {
+            if (!tryAcquire(id)) {
+                continue;
+            }
+            try {
+                Instance instance = instanceStore.load(id);
+                Flow flow = instance == null ? null : flowOf(instance, flows);
+                if (flow != null) {
+                    runInstance(flow, instance);
+                    recovered++;
+                }
+            } finally {
+                release(id);
+            }
+        }
+        return recovered;
+    }
+
+    private static Flow flowOf(Instance instance, Flow[] flows) {
+        for (Flow flow : flows) {
+            if (flow.getName().equals(instance.getFlow())) {
+                return flow;
+            }
+        }
+        return null;
     }
 
+    private void schedule(SignalIndex.Waiting waiting) {
+        dispatch(() -> drain(waiting));
+    }
+
+    private void dispatch(Runnable task) {
+        if (executorService != null) {
+            executorService.execute(task);
+        } else {
+            CompletableFuture.runAsync(task);
+        }
+    }
+
+    /**
+     * Arm a timer for each deadline a waiting instance waits for.
+     */
+    private void arm(Flow flow, Instance instance, Map<String, Long> awaitedTimers) {
+        if (awaitedTimers.isEmpty()) {
+            return;
+        }
+        // parked instances are loaded back from the store when their timer fires
+        Armed entry = new Armed(flow, instanceStore == null ? instance : null);
+        armed.put(instance.getId(), entry);
+        for (long deadline : awaitedTimers.values()) {
+            entry.handles.add(timers.schedule(deadline, () -> wake(instance.getId(), entry)));
+        }
+    }
 
+    private void disarm(String instanceId) {
+        Armed entry = armed.remove(instanceId);
+        if (entry != null) {
+            for (TimerHandle handle : entry.handles) {
+                handle.cancel();
+            }
+        }
+    }
+
+    private void wake(String instanceId, Armed entry) {
+        exclusively(instanceId, () -> {
+            try {
+                // the instance ran again since the timer was armed
+                if (armed.get(instanceId) != entry) {
+                    return;
+                }
+                Instance instance = entry.instance != null ? entry.instance : instanceStore.load(instanceId);
+                if (instance != null) {
+                    runInstance(entry.flow, instance);
+                }
+            } catch (RuntimeException e) {
+                logger.error("Unable to resume instance {} on timer", instanceId, e);
+            }
+        });
+    }
+
+    /**
+     * Resume a signalled instance with all the signals queued so far, until no signal
+     * is left in its mailbox.
+     */
+    private void drain(SignalIndex.Waiting waiting) {
+        while (true) {
+            List<SignalIndex.Signal> batch = waiting.drain();
+            if (!batch.isEmpty() && signals.isWaiting(waiting)) {
+                exclusively(waiting.id, () -> {
+                    try {
+                        resume(waiting, batch);
+                    } catch (RuntimeException e) {
+                        logger.error("Unable to resume instance {} on signal", waiting.id, e);
+                    }
+                });
+            }
+            waiting.scheduled.set(false);
+            // a signal queued after the batch was taken found the instance scheduled
+            if (waiting.mailbox.isEmpty() || !waiting.scheduled.compareAndSet(false, true)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Resume a signalled instance, holding its guard.
+     */
+    private void resume(SignalIndex.Waiting waiting, List<SignalIndex.Signal> batch) {
+        Instance instance = waiting.instance != null ? waiting.instance : instanceStore.load(waiting.id);
+        if (instance == null || !signals.isWaiting(waiting)) {
+            return;
+        }
+        Map<String, String> awaitedSignals = waiting.awaitedSignals;
+        boolean signalled = false;
+        for (SignalIndex.Signal signal : batch) {
+            String workName = awaitedSignals.get(signal.key);
+            if (workName != null) {
+                instance.getContext().setStatus(workName, Status.COMPLETED);
+                if (signal.payload != null) {
+                    instance.getContext().setValue(signal.key, signal.payload);
+                }
+                signalled = true;
+            }
+        }
+        if (signalled) {
+            runInstance(waiting.flow, instance);
+        }
+    }
+
+    /**
+     * Take the guard of an instance, so that no other run of it starts.
+     *
+     * @return false if the instance is already running
+     */
+    private boolean tryAcquire(String instanceId) {
+        return running.putIfAbsent(instanceId, new ArrayDeque<>()) == null;
+    }
+
+    /**
+     * Run a task holding the guard of an instance, or, if the instance is running,
+     * queue it to run when the current run ends: no thread waits for the guard.
+     */
+    private void exclusively(String instanceId, Runnable task) {
+        boolean[] queued = new boolean[1];
+        // the queue is only touched under the lock of its entry
+        running.compute(instanceId, (id, deferred) -> {
+            if (deferred == null) {
+                return new ArrayDeque<>();
+            }
+            deferred.add(task);
+            queued[0] = true;
+            return deferred;
+        });
+        if (queued[0]) {
+            return;
+        }
+        try {
+            task.run();
+        } finally {
+            release(instanceId);
+        }
+    }
+
+    /**
+     * Release the guard of an instance, or hand it over to the next task deferred
+     * while it was held.
+     */
+    private void release(String instanceId) {
+        Runnable[] next = new Runnable[1];
+        running.computeIfPresent(instanceId, (id, deferred) -> {
+            next[0] = deferred.poll();
+            return next[0] == null ? null : deferred;
+        });
+        Runnable task = next[0];
+        if (task == null) {
+            return;
+        }
+        try {
+            dispatch(() -> {
+                try {
+                    task.run();
+                } finally {
+                    release(instanceId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            logger.error("Unable to resume instance {}: the executor rejected it", instanceId, e);
+            release(instanceId);
+        }
+    }
+
+    @Override
+    public CompletionStage<Report> runAsync(Flow flow, Context context) {
+        CompletableFuture<Report> result;
+        bind(context);
+        if (listeners != null) {
+            listeners.flowStarted(flow, context);
+        }
+        if (executorService == null) {
+            result = AsyncWork.execute(flow, context).toCompletableFuture();
+        } else {
+            result = CompletableFuture
+                    .supplyAsync(() -> AsyncWork.execute(flow, context), executorService)
+                    .thenCompose(stage -> stage);
+        }
+        result = result.thenApply(report -> timedOut(context, report));
+        if (listeners != null) {
+            result.whenComplete((report, error) -> listeners.flowFinished(flow, context, report, error));
+        }
+        // a caller giving up on the result cancels the instance
+        result.whenComplete((report, error) -> {
+            if (error instanceof CancellationException) {
+                context.cancel();
+            }
+        });
+        return result;
+    }
+
+    @Override
+    public CompletableFuture<Report> submit(Flow flow, Context context) {
+        if (workerPool == null) {
+            return runAsync(flow, context).toCompletableFuture();
+        }
+        return workerPool.submit(flow, context);
+    }
+
+    @Override
+    public QueueStats getQueueStats() {
+        return workerPool == null ? QueueStats.NONE : workerPool.stats();
+    }
+
+    @Override
+    public void shutdown() {
+        if (workerPool != null) {
+            workerPool.shutdown();
+        }
+        timers.stop();
+        if (ownsExecutor) {
+            executorService.shutdown();
+        }
+    }
+
+    /**
+     * @return the program of the flow if flows are compiled, the flow otherwise
+     */
+    private Executable executableOf(Flow flow) {
+        if (!compileFlows || flow instanceof Program) {
+            return (Executable) flow;
+        }
+        return FlowCompiler.compiled(flow);
+    }
+
+    private void bind(Context context) {
+        if (executorService != null && context.getExecutorService() == null) {
+            context.setExecutorService(executorService);
+        }
+        if (probe != null && context.getProbe() == null) {
+            context.setProbe(probe);
+        }
+        if (instanceTimeoutNanos > 0 && context.getDeadline() == 0) {
+            context.setTimeout(instanceTimeoutNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Report a flow that did not complete by the deadline of its context as timed out,
+     * and drop the deadline of a context that is done.
+     */
+    private static Report timedOut(Context context, Report report) {
+        if (context.getDeadline() == 0) {
+            return report;
+        }
+        Status status = report == null ? null : report.getStatus();
+        if (status != Status.WAITING) {
+            boolean expired = context.isExpired();
+            if (expired) {
+                // the works may have timed out before the watchdog expired the context
+                context.cancel();
+            }
+            context.clearTimeout();
+            if (expired && status != Status.COMPLETED && !(report instanceof TimeoutReport)) {
+                return new TimeoutReport(context, "The deadline of the instance passed");
+            }
+        }
+        return report;
+    }
+
+    /**
+     * The timers armed for a waiting instance.
+     */
+    private static final class Armed {
+
+        private final Flow flow;
+        private final Instance instance;
+        private final List<TimerHandle> handles = new ArrayList<>(1);
+
+        Armed(Flow flow, Instance instance) {
+            this.flow = flow;
+            this.instance = instance;
+        }
+    }
+
+    /**
+     * A flow launched at a fixed rate, each launch arming the timer of the next one.
+     */
+    private final class Recurring implements TimerHandle {
+
+        private final Flow flow;
+        private final long periodMillis;
+        private volatile TimerHandle next;
+        private volatile boolean cancelled;
+
+        Recurring(Flow flow, long periodMillis) {
+            this.flow = flow;
+            this.periodMillis = periodMillis;
+        }
+
+        void arm(long deadline) {
+            next = timers.schedule(deadline, () -> launch(deadline));
+            // cancelled while arming
+            if (cancelled) {
+                next.cancel();
+            }
+        }
+
+        private void launch(long deadline) {
+            if (cancelled) {
+                return;
+            }
+            arm(deadline + periodMillis);
+            try {
+                run(flow, new Instance(flow.getName()));
+            } catch (RuntimeException e) {
+                logger.error("Unable to launch flow {}", flow.getName(), e);
+            }
+        }
+
+        @Override
+        public boolean cancel() {
+            if (cancelled) {
+                return false;
+            }
+            cancelled = true;
+            next.cancel();
+            return true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public long getDeadline() {
+            return next.getDeadline();
+        }
+    }
 }
@@ -0,0 +1,93 @@
+package org.jeasy.flows.engine;
+
+import org.jeasy.flows.flow.Context;
+import org.jeasy.flows.flow.Flow;
+import org.jeasy.flows.work.Report;
+import org.jeasy.flows.work.Status;
+import org.jeasy.flows.work.Work;
+
+/**
+ * What an {@link ExecutionListener} is called about. Events are flyweights reused by
+ * each thread for all its callbacks: an event is only valid during the callback it
+ * is passed to, and listeners must copy what they need to keep.
+ */
+public final class ExecutionEvent {
+
+    private Work work;
+    private Context context;
+    private Report report;
+    private Throwable error;
+
+    ExecutionEvent() {
+    }
+
+    ExecutionEvent set(Work work, Context context, Report report, Throwable error) {
+        this.work = work;
+        this.context = context;
+        this.report = report;
+        this.error = error;
+        return this;
+    }
+
+    /**
+     * @return the work or flow the event is about
+     */
+    public Work getWork() {
+        return work;
+    }
+
+    public String getName() {
+        return work.getName();
+    }
+
+    /**
+     * @return whether the event is about a flow
+     */
+    public boolean isFlow() {
+        return work instanceof Flow;
+    }
+
+    public Context getContext() {
+        return context;
+    }
+
+    /**
+     * @return the id of the instance owning the context, or null if none
+     */
+    public String getInstanceId() {
+        return context.getInstanceId();
+    }
+
+    /**
+     * @return the name of the flow of the instance owning the context, or null if none
+     */
+    public String getFlowName() {
+        return context.getFlowName();
+    }
+
+    /**
+     * @return the report of the execution, or null before it or if it failed with an exception
+     */
+    public Report getReport() {
+        return report;
+    }
+
+    /**
+     * @return the status of the report, or null if there is none
+     */
+    public Status getStatus() {
+        return report == null ? null : report.getStatus();
+    }
+
+    /**
+     * @return the exception the execution failed with, or null
+     */
+    public Throwable getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return "ExecutionEvent{name=" + getName() + ", instance=" + getInstanceId() + ", status=" + getStatus() + "}";
+    }
+}
@@ -0,0 +1,52 @@
+package org.jeasy.flows.engine;
+
+/**
+ * Callbacks on the executions of an engine, registered with
+ * {@link EngineBuilder#listener(ExecutionListener)}, e.g. for auditing or tracing.
+ * Works are observed where they execute (see {@link org.jeasy.flows.work.WorkProbe}),
+ * so they keep their names and status tracking; only {@link org.jeasy.flows.work.AbstractWork}s
+ * are observed, and works skipped because they already have a final status are not.
+ * <p>
+ * Callbacks run on the threads running the works, and must be thread-safe and quick.
+ * The {@link ExecutionEvent} they get is reused: it is only valid during the callback.
+ * An exception thrown by a callback is logged and does not affect the execution.
+ */
+public interface ExecutionListener {
+
+    /**
+     * Called before a work or a nested flow executes.
+     */
+    default void beforeWork(ExecutionEvent event) {
+    }
+
+    /**
+     * Called after a work or a nested flow executed, with its report or its exception.
+     */
+    default void afterWork(ExecutionEvent event) {
+    }
+
+    /**
+     * Called when the engine starts running a flow.
+     */
+    default void flowStarted(ExecutionEvent event) {
+    }
+
+    /**
+     * Called when a flow run by the engine ends, with its report or its exception.
+     */
+    default void flowFinished(ExecutionEvent event) {
+    }
+
+    /**
+     * Called when an instance run by the engine ends {@link org.jeasy.flows.work.Status#WAITING}.
+     */
+    default void instanceWaiting(ExecutionEvent event) {
+    }
+
+    /**
+     * Called when the engine runs again an instance that was waiting, e.g. on a signal
+     * or a timer, before its flow starts.
+     */
+    default void instanceResumed(ExecutionEvent event) {
+    }
+}
@@ -0,0 +1,162 @@
+package org.jeasy.flows.engine;
+
+import org.jeasy.flows.flow.Context;
+import org.jeasy.flows.flow.Instance;
+import org.jeasy.flows.work.Status;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+/**
+ * Binary form of an instance: its id and flow name, the statuses of its works and its
+ * values. Strings, longs, integers, doubles and booleans are written as such, other
+ * values with Java serialization. Executors, cancellation and the resume point of a
+ * compiled flow are not part of the saved state: a loaded instance resumes from the root
+ * of its flow, skipping the works already done.
+ */
+final class InstanceCodec {
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte LONG = 2;
+    private static final byte INT = 3;
+    private static final byte DOUBLE = 4;
+    private static final byte BOOLEAN = 5;
+    private static final byte SERIALIZED = 6;
+
+    private InstanceCodec() {
+    }
+
+    /**
+     * @throws IllegalArgumentException if a value of the context is not serializable
+     */
+    static byte[] encode(Instance instance) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        Context context = instance.getContext();
+        writeString(out, instance.getId());
+        writeString(out, instance.getFlow());
+        Set<String> statusNames = context.statusNames();
+        out.writeInt(statusNames.size());
+        for (String name : statusNames) {
+            writeString(out, name);
+            writeString(out, context.getStatus(name).name());
+        }
+        Set<String> valueNames = context.valueKeys();
+        out.writeInt(valueNames.size());
+        for (String name : valueNames) {
+            writeString(out, name);
+            writeValue(out, name, context.getValue(name));
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    static Instance decode(byte[] data) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        String id = readString(in);
+        String flow = readString(in);
+        Context context = new Context();
+        for (int count = in.readInt(); count > 0; count--) {
+            String name = readString(in);
+            context.setStatus(name, Status.valueOf(readString(in)));
+        }
+        for (int count = in.readInt(); count > 0; count--) {
+            String name = readString(in);
+            context.setValue(name, readValue(in));
+        }
+        return new Instance(id, flow, context);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the value is not serializable
+     */
+    static void writeValue(DataOutputStream out, String name, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof String) {
+            out.writeByte(STRING);
+            writeString(out, (String) value);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(INT);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof Serializable) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream objects = new ObjectOutputStream(bytes)) {
+                objects.writeObject(value);
+            }
+            out.writeByte(SERIALIZED);
+            out.writeInt(bytes.size());
+            bytes.writeTo(out);
+        } else {
+            throw new IllegalArgumentException(String.format("Value '%s' of type %s is not serializable",
+                    name, value.getClass().getName()));
+        }
+    }
+
+    static Object readValue(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case NULL:
+                return null;
+            case STRING:
+                return readString(in);
+            case LONG:
+                return in.readLong();
+            case INT:
+                return in.readInt();
+            case DOUBLE:
+                return in.readDouble();
+            case BOOLEAN:
+                return in.readBoolean();
+            case SERIALIZED:
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                try (ObjectInputStream objects = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+                    return objects.readObject();
+                } catch (ClassNotFoundException e) {
+                    throw new IOException("Cannot read value of class " + e.getMessage(), e);
+                }
+            default:
+                throw new IOException("Unknown value type " + type);
+        }
+    }
+
+    // unlike DataOutput#writeUTF, not limited to 64K bytes
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,49 @@
+package org.jeasy.flows.engine;
+
+import org.jeasy.flows.flow.Instance;
+
+import java.io.Closeable;
+import java.util.Set;
+
+/**
+ * Storage of parked instances: instances whose flow ended {@link org.jeasy.flows.work.Status#WAITING}
+ * are saved by the engine (see {@link EngineBuilder#instanceStore(InstanceStore)}) so that
+ * callers only need to keep their id, and are loaded back when they are resumed with
+ * {@link Engine#resume}.
+ */
+public interface InstanceStore extends Closeable {
+
+    /**
+     * Save an instance, replacing the saved state of an instance with the same id.
+     *
+     * @param instance to save
+     */
+    void save(Instance instance);
+
+    /**
+     * Load an instance. The instance stays in the store until it is removed.
+     *
+     * @param id of the instance
+     * @return a new instance with the saved state, or null if there is none
+     */
+    Instance load(String id);
+
+    /**
+     * Remove an instance, if present.
+     *
+     * @param id of the instance
+     */
+    void remove(String id);
+
+    boolean contains(String id);
+
+    /**
+     * @return the ids of the instances in the store, e.g. to recover them after a restart
+     */
+    Set<String> ids();
+
+    /**
+     * @return the number of instances in the store
+     */
+    int size();
+}
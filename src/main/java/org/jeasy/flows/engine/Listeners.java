@@ -0,0 +1,88 @@
+package org.jeasy.flows.engine;
+
+import org.jeasy.flows.flow.Context;
+import org.jeasy.flows.work.Report;
+import org.jeasy.flows.work.Work;
+import org.jeasy.flows.work.WorkProbe;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Dispatch of executions to the {@link ExecutionListener}s of an engine. As a
+ * {@link WorkProbe}, it also forwards executions to the probe of the engine, if any,
+ * so that both can be set on a context. Each thread reuses one {@link ExecutionEvent},
+ * restored after the nested dispatches of listeners running works themselves.
+ */
+final class Listeners implements WorkProbe {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Listeners.class);
+
+    private static final ThreadLocal<ExecutionEvent> EVENTS = ThreadLocal.withInitial(ExecutionEvent::new);
+
+    private final ExecutionListener[] listeners;
+    private final WorkProbe probe;
+
+    /**
+     * @param probe of the engine, null for none
+     */
+    Listeners(List<ExecutionListener> listeners, WorkProbe probe) {
+        this.listeners = listeners.toArray(new ExecutionListener[0]);
+        this.probe = probe;
+    }
+
+    @Override
+    public long before(Work work, Context context) {
+        dispatch(ExecutionListener::beforeWork, work, context, null, null);
+        return probe == null ? 0 : probe.before(work, context);
+    }
+
+    @Override
+    public void after(Work work, Context context, long token, Report report, Throwable error) {
+        if (probe != null) {
+            probe.after(work, context, token, report, error);
+        }
+        dispatch(ExecutionListener::afterWork, work, context, report, error);
+    }
+
+    void flowStarted(Work flow, Context context) {
+        dispatch(ExecutionListener::flowStarted, flow, context, null, null);
+    }
+
+    void flowFinished(Work flow, Context context, Report report, Throwable error) {
+        dispatch(ExecutionListener::flowFinished, flow, context, report, error);
+    }
+
+    void instanceWaiting(Work flow, Context context, Report report) {
+        dispatch(ExecutionListener::instanceWaiting, flow, context, report, null);
+    }
+
+    void instanceResumed(Work flow, Context context) {
+        dispatch(ExecutionListener::instanceResumed, flow, context, null, null);
+    }
+
+    private void dispatch(BiConsumer<ExecutionListener, ExecutionEvent> callback,
+                          Work work, Context context, Report report, Throwable error) {
+        ExecutionEvent event = EVENTS.get();
+        // event of the dispatch this one is nested in, if any
+        Work outerWork = event.getWork();
+        Context outerContext = event.getContext();
+        Report outerReport = event.getReport();
+        Throwable outerError = event.getError();
+        event.set(work, context, report, error);
+        try {
+            for (ExecutionListener listener : listeners) {
+                try {
+                    callback.accept(listener, event);
+                } catch (RuntimeException e) {
+                    LOGGER.warn("Listener {} failed on {}", listener, event, e);
+                }
+            }
+        } finally {
+            // outside of a nested dispatch, do not retain the context until the next event of the thread
+            event.set(outerWork, outerContext, outerReport, outerError);
+        }
+    }
+}
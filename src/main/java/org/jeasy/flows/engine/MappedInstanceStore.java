@@ -0,0 +1,404 @@
+package org.jeasy.flows.engine;
+
+import org.jeasy.flows.flow.Instance;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.CRC32;
+
+/**
+ * An {@link InstanceStore} keeping parked instances off-heap, in memory-mapped segment
+ * files of a directory. The heap only holds an index from instance id to the location
+ * of its last saved state, so millions of waiting instances cost a few dozen bytes of
+ * heap each; an instance is decoded back into the heap when it is loaded.
+ * <p>
+ * Segments are append-only: saving writes a new record, removing writes a tombstone,
+ * and the index is rebuilt by scanning the segments when the store is opened. Records
+ * carry a checksum, so a record torn by a crash ends the scan of its segment. When a
+ * segment is full, a new one is started, and the oldest segments are reclaimed once
+ * their instances are removed (or copied forward, when few of them are left), oldest
+ * first so that a tombstone never outlives the record it deletes.
+ * <p>
+ * Records are in the page cache as soon as they are written and survive a crash of the
+ * process; {@link #flush()} (called by {@link #close()}) also forces them to the disk.
+ * Saves and removes are serialized, loads are lock-free.
+ */
+public final class MappedInstanceStore implements InstanceStore {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 16 << 20;
+
+    private static final String PREFIX = "instances-";
+    private static final String SUFFIX = ".seg";
+
+    // record: payload length, checksum of type and payload, type, payload
+    private static final int HEADER = 9;
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    // a zero length after the last record ends the scan
+    private static final int TERMINATOR = 4;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final ConcurrentMap<String, Location> index = new ConcurrentHashMap<>();
+    // oldest first, the last one is the active one; guarded by this
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    private long nextSegment;
+    private volatile boolean closed;
+
+    private MappedInstanceStore(Path directory, int segmentSize) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Open a store in a directory, with segments of {@link #DEFAULT_SEGMENT_SIZE} bytes.
+     * Instances saved by a previous store of the directory are found again.
+     *
+     * @param directory of the segment files, created if needed
+     * @return the store
+     * @throws IOException if the directory or its segments cannot be read
+     */
+    public static MappedInstanceStore open(Path directory) throws IOException {
+        return open(directory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Open a store in a directory, see {@link #open(Path)}.
+     *
+     * @param directory   of the segment files, created if needed
+     * @param segmentSize size of the segment files, which bounds the size of a saved instance
+     * @return the store
+     * @throws IOException if the directory or its segments cannot be read
+     */
+    public static MappedInstanceStore open(Path directory, int segmentSize) throws IOException {
+        if (segmentSize <= HEADER + TERMINATOR) {
+            throw new IllegalArgumentException("Segment size must be greater than " + (HEADER + TERMINATOR));
+        }
+        Files.createDirectories(directory);
+        MappedInstanceStore store = new MappedInstanceStore(directory, segmentSize);
+        store.recover();
+        return store;
+    }
+
+    @Override
+    public void save(Instance instance) {
+        byte[] payload;
+        try {
+            payload = InstanceCodec.encode(instance);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot encode instance " + instance.getId(), e);
+        }
+        synchronized (this) {
+            checkOpen();
+            Location location = append(PUT, payload);
+            release(index.put(instance.getId(), location));
+            reclaim();
+        }
+    }
+
+    @Override
+    public Instance load(String id) {
+        checkOpen();
+        Location location = index.get(id);
+        if (location == null) {
+            return null;
+        }
+        // records are never overwritten, a duplicate of the mapping can be read concurrently
+        ByteBuffer buffer = location.segment.buffer.duplicate();
+        buffer.position(location.offset + HEADER);
+        byte[] payload = new byte[location.length - HEADER];
+        buffer.get(payload);
+        try {
+            return InstanceCodec.decode(payload);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot decode instance " + id, e);
+        }
+    }
+
+    @Override
+    public synchronized void remove(String id) {
+        checkOpen();
+        Location location = index.remove(id);
+        if (location == null) {
+            return;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(id.length() + 4);
+        try {
+            InstanceCodec.writeString(new DataOutputStream(bytes), id);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        append(DELETE, bytes.toByteArray());
+        release(location);
+        reclaim();
+    }
+
+    @Override
+    public boolean contains(String id) {
+        return index.containsKey(id);
+    }
+
+    @Override
+    public Set<String> ids() {
+        return Collections.unmodifiableSet(index.keySet());
+    }
+
+    @Override
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * @return the number of segment files of the store
+     */
+    public synchronized int segments() {
+        return segments.size();
+    }
+
+    /**
+     * Force the records written so far to the disk.
+     */
+    public synchronized void flush() {
+        checkOpen();
+        for (Segment segment : segments) {
+            segment.buffer.force();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        flush();
+        closed = true;
+        for (Segment segment : segments) {
+            segment.channel.close();
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Instance store " + directory + " is closed");
+        }
+    }
+
+    private Location append(byte type, byte[] payload) {
+        int length = HEADER + payload.length;
+        if (length + TERMINATOR > segmentSize) {
+            throw new IllegalArgumentException(String.format(
+                    "Record of %d bytes does not fit in segments of %d bytes", length, segmentSize));
+        }
+        Segment segment = segments.getLast();
+        if (segment.position + length + TERMINATOR > segment.capacity) {
+            segment = roll();
+        }
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(payload, 0, payload.length);
+        int offset = segment.position;
+        MappedByteBuffer buffer = segment.buffer;
+        buffer.position(offset + 4);
+        buffer.putInt((int) crc.getValue());
+        buffer.put(type);
+        buffer.put(payload);
+        buffer.putInt(0);
+        buffer.putInt(offset, payload.length);
+        segment.position = offset + length;
+        if (type == PUT) {
+            segment.live += length;
+        }
+        return new Location(segment, offset, length);
+    }
+
+    private void release(Location location) {
+        if (location != null) {
+            location.segment.live -= location.length;
+        }
+    }
+
+    private Segment roll() {
+        try {
+            Segment segment = Segment.create(directory.resolve(fileName(nextSegment++)), segmentSize);
+            segments.addLast(segment);
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create segment in " + directory, e);
+        }
+    }
+
+    /**
+     * Delete the oldest segments while they hold no instance, copying forward the few
+     * instances left in a segment that is mostly dead.
+     */
+    private void reclaim() {
+        while (segments.size() > 1) {
+            Segment oldest = segments.getFirst();
+            if (oldest.live > 0) {
+                Segment active = segments.getLast();
+                if (oldest.live * 4L > oldest.position
+                        || active.position + oldest.live + TERMINATOR > active.capacity) {
+                    return;
+                }
+                relocate(oldest);
+            }
+            segments.removeFirst();
+            try {
+                oldest.channel.close();
+                Files.deleteIfExists(oldest.file);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot delete segment " + oldest.file, e);
+            }
+        }
+    }
+
+    private void relocate(Segment from) {
+        ByteBuffer buffer = from.buffer.duplicate();
+        for (Map.Entry<String, Location> entry : index.entrySet()) {
+            Location location = entry.getValue();
+            if (location.segment == from) {
+                byte[] payload = new byte[location.length - HEADER];
+                buffer.position(location.offset + HEADER);
+                buffer.get(payload);
+                release(location);
+                entry.setValue(append(PUT, payload));
+            }
+        }
+    }
+
+    private void recover() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+        Collections.sort(files);
+        for (Path file : files) {
+            Segment segment = Segment.open(file, segmentSize);
+            segments.addLast(segment);
+            scan(segment);
+            nextSegment = segmentNumber(file) + 1;
+        }
+        if (segments.isEmpty() || segments.getLast().position + HEADER + TERMINATOR > segmentSize) {
+            segments.addLast(Segment.create(directory.resolve(fileName(nextSegment++)), segmentSize));
+        }
+        reclaim();
+    }
+
+    private void scan(Segment segment) throws IOException {
+        ByteBuffer buffer = segment.buffer.duplicate();
+        int offset = 0;
+        while (offset + HEADER <= segment.capacity) {
+            int payloadLength = buffer.getInt(offset);
+            if (payloadLength <= 0 || offset + HEADER + payloadLength > segment.capacity) {
+                break;
+            }
+            byte[] payload = new byte[payloadLength];
+            buffer.position(offset + HEADER);
+            buffer.get(payload);
+            byte type = buffer.get(offset + 8);
+            CRC32 crc = new CRC32();
+            crc.update(type);
+            crc.update(payload, 0, payload.length);
+            if ((int) crc.getValue() != buffer.getInt(offset + 4)) {
+                break;
+            }
+            // both kinds of records start with the instance id
+            String id = InstanceCodec.readString(new DataInputStream(new ByteArrayInputStream(payload)));
+            Location location = new Location(segment, offset, HEADER + payloadLength);
+            if (type == PUT) {
+                segment.live += location.length;
+                release(index.put(id, location));
+            } else {
+                release(index.remove(id));
+            }
+            offset += location.length;
+        }
+        segment.position = offset;
+    }
+
+    private static String fileName(long number) {
+        return String.format("%s%019d%s", PREFIX, number, SUFFIX);
+    }
+
+    private static long segmentNumber(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    /**
+     * Where the last saved state of an instance is.
+     */
+    private static final class Location {
+
+        private final Segment segment;
+        private final int offset;
+        private final int length;
+
+        Location(Segment segment, int offset, int length) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    private static final class Segment {
+
+        private final Path file;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private final int capacity;
+        // end of the last record; guarded by the store
+        private int position;
+        // bytes of the records still in the index; guarded by the store
+        private long live;
+
+        private Segment(Path file, FileChannel channel, MappedByteBuffer buffer) {
+            this.file = file;
+            this.channel = channel;
+            this.buffer = buffer;
+            this.capacity = buffer.capacity();
+        }
+
+        static Segment create(Path file, int size) throws IOException {
+            return map(file, size, StandardOpenOption.CREATE_NEW);
+        }
+
+        static Segment open(Path file, int size) throws IOException {
+            // a segment written with another segment size keeps its own size
+            long existing = Files.size(file);
+            return map(file, (int) Math.max(existing, size), StandardOpenOption.CREATE);
+        }
+
+        private static Segment map(Path file, int size, StandardOpenOption option) throws IOException {
+            FileChannel channel = FileChannel.open(file, option, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                return new Segment(file, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+        }
+    }
+}
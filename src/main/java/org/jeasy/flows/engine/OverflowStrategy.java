@@ -0,0 +1,25 @@
+package org.jeasy.flows.engine;
+
+/**
+ * What {@link Engine#submit} does when the submission queue of the engine is full.
+ */
+public enum OverflowStrategy {
+
+    /**
+     * Fail the submission right away: the returned future completes exceptionally with
+     * a {@link java.util.concurrent.RejectedExecutionException}.
+     */
+    REJECT,
+
+    /**
+     * Block the submitting thread until the queue has room, up to the configured
+     * timeout, then reject the submission.
+     */
+    BLOCK,
+
+    /**
+     * Run the flow on the submitting thread, which slows submitters down to the pace
+     * of the engine.
+     */
+    CALLER_RUNS
+}
@@ -0,0 +1,88 @@
+package org.jeasy.flows.engine;
+
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Snapshot of the submission queue counters of an engine.
+ */
+public class QueueStats {
+
+    // the counters of an engine without workers
+    static final QueueStats NONE = new QueueStats(0, 0, 0, 0, 0, 0, 0);
+
+    private final int depth;
+    private final int capacity;
+    private final long submitted;
+    private final long rejected;
+    private final long started;
+    private final long totalWaitNanos;
+    private final long maxWaitNanos;
+
+    QueueStats(int depth, int capacity, long submitted, long rejected, long started, long totalWaitNanos, long maxWaitNanos) {
+        this.depth = depth;
+        this.capacity = capacity;
+        this.submitted = submitted;
+        this.rejected = rejected;
+        this.started = started;
+        this.totalWaitNanos = totalWaitNanos;
+        this.maxWaitNanos = maxWaitNanos;
+    }
+
+    /**
+     * @return number of submissions waiting for a worker
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return number of accepted submissions
+     */
+    public long getSubmitted() {
+        return submitted;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    /**
+     * @return number of submissions taken from the queue by a worker
+     */
+    public long getStarted() {
+        return started;
+    }
+
+    /**
+     * @return total time spent in the queue by submissions taken by a worker
+     */
+    public long getTotalWait(TimeUnit unit) {
+        return unit.convert(totalWaitNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public long getMaxWait(TimeUnit unit) {
+        return unit.convert(maxWaitNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public long getAverageWait(TimeUnit unit) {
+        return started == 0 ? 0 : unit.convert(totalWaitNanos / started, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", QueueStats.class.getSimpleName() + "[", "]")
+                .add("depth=" + depth)
+                .add("capacity=" + capacity)
+                .add("submitted=" + submitted)
+                .add("rejected=" + rejected)
+                .add("started=" + started)
+                .add("averageWaitMicros=" + getAverageWait(TimeUnit.MICROSECONDS))
+                .add("maxWaitMicros=" + getMaxWait(TimeUnit.MICROSECONDS))
+                .toString();
+    }
+}
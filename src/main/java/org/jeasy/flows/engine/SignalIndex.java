@@ -0,0 +1,152 @@
+package org.jeasy.flows.engine;
+
+import org.jeasy.flows.flow.Flow;
+import org.jeasy.flows.flow.Instance;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Index from signal correlation key to the waiting instances registered against it,
+ * with a mailbox per instance. Delivering a signal queues it in the mailbox of each
+ * instance waiting for its key and schedules the instance unless it already is, so a
+ * burst of signals for one instance is handled by one resume.
+ */
+final class SignalIndex {
+
+    private final ConcurrentMap<String, Set<String>> instancesByKey = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Waiting> waiting = new ConcurrentHashMap<>();
+
+    /**
+     * Index an instance that ended waiting under the keys registered in its context,
+     * or drop it from the index if it waits for no signal.
+     *
+     * @param instance to index, or null to keep only its id when it is parked in a store
+     */
+    void update(String id, Flow flow, Instance instance, Map<String, String> awaitedSignals) {
+        if (awaitedSignals.isEmpty()) {
+            remove(id);
+            return;
+        }
+        Waiting entry = waiting.computeIfAbsent(id, Waiting::new);
+        Map<String, String> previous = entry.awaitedSignals;
+        entry.flow = flow;
+        entry.instance = instance;
+        entry.awaitedSignals = awaitedSignals;
+        for (String key : previous.keySet()) {
+            if (!awaitedSignals.containsKey(key)) {
+                unindex(key, id);
+            }
+        }
+        for (String key : awaitedSignals.keySet()) {
+            // atomic with the removal of emptied sets by unindex
+            instancesByKey.compute(key, (k, ids) -> {
+                Set<String> keyIds = ids == null ? ConcurrentHashMap.newKeySet() : ids;
+                keyIds.add(id);
+                return keyIds;
+            });
+        }
+    }
+
+    void remove(String id) {
+        Waiting entry = waiting.remove(id);
+        if (entry != null) {
+            for (String key : entry.awaitedSignals.keySet()) {
+                unindex(key, id);
+            }
+        }
+    }
+
+    /**
+     * Queue a signal for the instances waiting for its key.
+     *
+     * @param scheduler of the instances that were not scheduled yet
+     * @return the number of instances the signal was queued for
+     */
+    int deliver(String key, Object payload, Consumer<Waiting> scheduler) {
+        Set<String> ids = instancesByKey.get(key);
+        if (ids == null) {
+            return 0;
+        }
+        int delivered = 0;
+        for (String id : ids) {
+            Waiting entry = waiting.get(id);
+            if (entry != null) {
+                entry.mailbox.add(new Signal(key, payload));
+                delivered++;
+                if (entry.scheduled.compareAndSet(false, true)) {
+                    scheduler.accept(entry);
+                }
+            }
+        }
+        return delivered;
+    }
+
+    /**
+     * @return the ids of the instances waiting for a key
+     */
+    Set<String> instancesWaitingFor(String key) {
+        Set<String> ids = instancesByKey.get(key);
+        return ids == null ? Collections.emptySet() : Collections.unmodifiableSet(ids);
+    }
+
+    boolean isWaiting(Waiting entry) {
+        return waiting.get(entry.id) == entry;
+    }
+
+    private void unindex(String key, String id) {
+        instancesByKey.computeIfPresent(key, (k, ids) -> {
+            ids.remove(id);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+
+    /**
+     * A waiting instance and its mailbox.
+     */
+    static final class Waiting {
+
+        final String id;
+        final Queue<Signal> mailbox = new ConcurrentLinkedQueue<>();
+        // whether a resume of the instance is scheduled or running
+        final AtomicBoolean scheduled = new AtomicBoolean();
+        volatile Flow flow;
+        volatile Instance instance;
+        volatile Map<String, String> awaitedSignals = Collections.emptyMap();
+
+        Waiting(String id) {
+            this.id = id;
+        }
+
+        /**
+         * @return the signals queued so far
+         */
+        List<Signal> drain() {
+            List<Signal> signals = new ArrayList<>();
+            for (Signal signal = mailbox.poll(); signal != null; signal = mailbox.poll()) {
+                signals.add(signal);
+            }
+            return signals;
+        }
+    }
+
+    static final class Signal {
+
+        final String key;
+        final Object payload;
+
+        Signal(String key, Object payload) {
+            this.key = key;
+            this.payload = payload;
+        }
+    }
+}
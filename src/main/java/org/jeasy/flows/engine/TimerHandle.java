@@ -0,0 +1,21 @@
+package org.jeasy.flows.engine;
+
+/**
+ * A timer scheduled by the engine, see {@link Engine#scheduleRecurring}.
+ */
+public interface TimerHandle {
+
+    /**
+     * Cancel the timer (all the next firings of a recurring timer).
+     *
+     * @return false if the timer was already cancelled or has fired
+     */
+    boolean cancel();
+
+    boolean isCancelled();
+
+    /**
+     * @return the time of the next firing, in milliseconds since the epoch
+     */
+    long getDeadline();
+}
@@ -0,0 +1,345 @@
+package org.jeasy.flows.engine;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+/**
+ * Hierarchical timing wheel: {@value #LEVELS} wheels of {@value #SIZE} buckets, the
+ * buckets of a level spanning {@value #SIZE} times the time of the buckets of the level
+ * below. A timer goes into the bucket of the lowest level whose span covers its delay
+ * and moves down a level each time the wheel above turns, so scheduling and cancelling
+ * a timer are O(1) (buckets are intrusive doubly-linked lists) and a tick only touches
+ * the timers that are due or move down. With the default tick of 10 ms, the wheels
+ * cover about 21 years; longer delays wait in the top level.
+ * <p>
+ * A thread advances the wheels and hands due timers to an executor. It sleeps until the
+ * next tick reaching a bucket that holds timers, or until a timer is scheduled if there
+ * is none, and the wheels jump over the ticks in between. Deadlines are in milliseconds since the epoch, so timers restored after a restart
+ * keep their original deadline.
+ */
+final class TimingWheel {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TimingWheel.class);
+
+    static final long DEFAULT_TICK_MILLIS = 10;
+
+    private static final int BITS = 6;
+    private static final int SIZE = 1 << BITS;
+    private static final int MASK = SIZE - 1;
+    private static final int LEVELS = 6;
+
+    private final long tickMillis;
+    private final long startMillis;
+    private final LongSupplier clock;
+    private final Executor executor;
+    private final boolean driven;
+    // sentinels of the circular bucket lists, by level and index; guarded by this
+    private final Timer[][] wheels = new Timer[LEVELS][SIZE];
+    // guarded by this
+    private long currentTick;
+    private int size;
+    private Thread thread;
+    // tick the thread sleeps until, Long.MAX_VALUE if it waits for a timer to be scheduled
+    private long wakeTick;
+    private volatile boolean stopped;
+
+    /**
+     * @param clock    of the wheel, in milliseconds since the epoch
+     * @param executor running due timers
+     */
+    TimingWheel(long tickMillis, LongSupplier clock, Executor executor) {
+        this(tickMillis, clock, executor, true);
+    }
+
+    /**
+     * @param driven whether a thread of the wheel advances it, otherwise {@link #advanceTo} does
+     */
+    TimingWheel(long tickMillis, LongSupplier clock, Executor executor, boolean driven) {
+        this.tickMillis = tickMillis;
+        this.clock = clock;
+        this.executor = executor;
+        this.driven = driven;
+        this.startMillis = clock.getAsLong();
+        for (Timer[] wheel : wheels) {
+            for (int index = 0; index < SIZE; index++) {
+                Timer sentinel = new Timer(this, 0, null);
+                sentinel.prev = sentinel.next = sentinel;
+                wheel[index] = sentinel;
+            }
+        }
+    }
+
+    /**
+     * Schedule a task, starting the thread of the wheel on first use.
+     *
+     * @param deadline in milliseconds since the epoch
+     * @return the timer, to cancel it
+     */
+    Timer schedule(long deadline, Runnable task) {
+        Timer timer = new Timer(this, deadline, task);
+        boolean due;
+        synchronized (this) {
+            if (stopped) {
+                throw new IllegalStateException("The timing wheel is stopped");
+            }
+            if (driven && thread == null) {
+                thread = new Thread(this::run, "easy-flows-timer");
+                thread.setDaemon(true);
+                thread.start();
+            }
+            due = !insert(timer);
+            if (!due) {
+                size++;
+                if (driven && deadlineTick(timer) < wakeTick) {
+                    wakeTick = 0;
+                    LockSupport.unpark(thread);
+                }
+            }
+        }
+        if (due) {
+            fire(timer);
+        }
+        return timer;
+    }
+
+    /**
+     * @return the number of pending timers
+     */
+    synchronized int size() {
+        return size;
+    }
+
+    void stop() {
+        Thread running;
+        synchronized (this) {
+            stopped = true;
+            running = thread;
+        }
+        if (running != null) {
+            running.interrupt();
+        }
+    }
+
+    /**
+     * Advance the wheels up to the given time and run the timers that are due.
+     *
+     * @return the number of timers that fired
+     */
+    int advanceTo(long now) {
+        List<Timer> due = new ArrayList<>();
+        synchronized (this) {
+            long targetTick = tickOf(now);
+            while (currentTick < targetTick) {
+                long nextTick = nextTick();
+                // no bucket holding timers is reached in between
+                currentTick = nextTick < 0 || nextTick > targetTick ? targetTick : nextTick;
+                cascade();
+                Timer bucket = wheels[0][(int) (currentTick & MASK)];
+                for (Timer timer : detach(bucket)) {
+                    if (!insert(timer)) {
+                        size--;
+                        due.add(timer);
+                    }
+                }
+            }
+        }
+        for (Timer timer : due) {
+            fire(timer);
+        }
+        return due.size();
+    }
+
+    private void run() {
+        while (!stopped) {
+            advanceTo(clock.getAsLong());
+            long nextTick;
+            synchronized (this) {
+                nextTick = nextTick();
+                wakeTick = nextTick < 0 ? Long.MAX_VALUE : nextTick;
+            }
+            if (nextTick < 0) {
+                LockSupport.park(this);
+            } else {
+                long delay = startMillis + nextTick * tickMillis - clock.getAsLong();
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(Math.max(1, delay)));
+            }
+        }
+    }
+
+    /**
+     * @return the first tick after the current one that reaches a bucket holding timers,
+     * cascading or firing them, or -1 if there is no timer
+     */
+    private long nextTick() {
+        if (size == 0) {
+            return -1;
+        }
+        long next = Long.MAX_VALUE;
+        for (int level = 0; level < LEVELS; level++) {
+            int shift = BITS * level;
+            long turn = currentTick >>> shift;
+            if (turn + 1 << shift >= next) {
+                break;
+            }
+            // the buckets of a level are reached when the level turns, within one revolution
+            for (int step = 1; step <= SIZE; step++) {
+                Timer bucket = wheels[level][(int) (turn + step & MASK)];
+                if (bucket.next != bucket) {
+                    next = Math.min(next, turn + step << shift);
+                    break;
+                }
+            }
+        }
+        return next == Long.MAX_VALUE ? -1 : next;
+    }
+
+    private long tickOf(long millis) {
+        return Math.max(0, (millis - startMillis) / tickMillis);
+    }
+
+    /**
+     * Move the timers of the buckets of the upper levels that the current tick enters
+     * down the wheels, from the highest level.
+     */
+    private void cascade() {
+        int level = 0;
+        while (level + 1 < LEVELS && (currentTick & ((1L << BITS * (level + 1)) - 1)) == 0) {
+            level++;
+        }
+        for (; level > 0; level--) {
+            Timer bucket = wheels[level][(int) (currentTick >>> BITS * level & MASK)];
+            for (Timer timer : detach(bucket)) {
+                if (!insert(timer)) {
+                    size--;
+                    fireLater(timer);
+                }
+            }
+        }
+    }
+
+    // timers found due while cascading fire after the current bucket
+    private void fireLater(Timer timer) {
+        Timer bucket = wheels[0][(int) (currentTick & MASK)];
+        link(bucket, timer);
+        size++;
+    }
+
+    /**
+     * Put a timer in the bucket covering its deadline.
+     *
+     * @return false if the timer is due
+     */
+    private boolean insert(Timer timer) {
+        long deadlineTick = deadlineTick(timer);
+        long delay = deadlineTick - currentTick;
+        if (delay <= 0) {
+            return false;
+        }
+        int level = 0;
+        while (level + 1 < LEVELS && delay >= 1L << BITS * (level + 1)) {
+            level++;
+        }
+        long bucketTick = level + 1 == LEVELS && delay >= 1L << BITS * LEVELS
+                ? currentTick + (1L << BITS * LEVELS) - 1 // wait in the top level
+                : deadlineTick;
+        link(wheels[level][(int) (bucketTick >>> BITS * level & MASK)], timer);
+        return true;
+    }
+
+    private long deadlineTick(Timer timer) {
+        return (timer.deadline - startMillis + tickMillis - 1) / tickMillis;
+    }
+
+    private static void link(Timer bucket, Timer timer) {
+        timer.prev = bucket.prev;
+        timer.next = bucket;
+        bucket.prev.next = timer;
+        bucket.prev = timer;
+    }
+
+    private static List<Timer> detach(Timer bucket) {
+        List<Timer> timers = new ArrayList<>();
+        for (Timer timer = bucket.next; timer != bucket; ) {
+            Timer next = timer.next;
+            timer.prev = timer.next = null;
+            timers.add(timer);
+            timer = next;
+        }
+        bucket.prev = bucket.next = bucket;
+        return timers;
+    }
+
+    private void fire(Timer timer) {
+        synchronized (this) {
+            if (timer.state != Timer.PENDING) {
+                return;
+            }
+            timer.state = Timer.FIRED;
+        }
+        try {
+            executor.execute(timer.task);
+        } catch (RuntimeException e) {
+            LOGGER.error("Unable to run timer due at {}", timer.deadline, e);
+        }
+    }
+
+    /**
+     * A timer, linked in the bucket of a wheel while pending.
+     */
+    static final class Timer implements TimerHandle {
+
+        private static final int PENDING = 0;
+        private static final int FIRED = 1;
+        private static final int CANCELLED = 2;
+
+        private final TimingWheel wheel;
+        private final long deadline;
+        private final Runnable task;
+        // guarded by the wheel
+        private Timer prev;
+        private Timer next;
+        private int state;
+
+        Timer(TimingWheel wheel, long deadline, Runnable task) {
+            this.wheel = wheel;
+            this.deadline = deadline;
+            this.task = task;
+        }
+
+        @Override
+        public boolean cancel() {
+            synchronized (wheel) {
+                if (state != PENDING) {
+                    return false;
+                }
+                state = CANCELLED;
+                if (prev != null) {
+                    prev.next = next;
+                    next.prev = prev;
+                    prev = next = null;
+                    wheel.size--;
+                }
+                return true;
+            }
+        }
+
+        @Override
+        public boolean isCancelled() {
+            synchronized (wheel) {
+                return state == CANCELLED;
+            }
+        }
+
+        @Override
+        public long getDeadline() {
+            return deadline;
+        }
+    }
+}
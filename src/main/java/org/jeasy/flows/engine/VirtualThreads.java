@@ -0,0 +1,52 @@
+package org.jeasy.flows.engine;
+
+import org.jeasy.flows.flow.FlowException;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Access to virtual threads (Java 21+) from a Java 8 code base. The executor factory
+ * is looked up reflectively, so the same jar runs on older runtimes where
+ * {@link #isSupported()} simply returns false.
+ */
+final class VirtualThreads {
+
+    private static final Method NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = lookup();
+
+    private VirtualThreads() {
+    }
+
+    static boolean isSupported() {
+        return NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null;
+    }
+
+    /**
+     * Create an executor starting a new virtual thread for each task.
+     *
+     * @return a virtual thread per task executor
+     * @throws FlowException if virtual threads are not supported by the running JVM
+     */
+    static ExecutorService newExecutor() {
+        if (!isSupported()) {
+            throw new FlowException("Virtual threads require Java 21 or later, running on " + System.getProperty("java.version"));
+        }
+        try {
+            return (ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new FlowException("Unable to create a virtual thread executor", e);
+        }
+    }
+
+    private static Method lookup() {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            // a preview API on Java 19/20 throws until preview features are enabled
+            ((ExecutorService) method.invoke(null)).shutdown();
+            return method;
+        } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+            return null;
+        }
+    }
+}
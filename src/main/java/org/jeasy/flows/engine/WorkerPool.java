@@ -0,0 +1,211 @@
+package org.jeasy.flows.engine;
+
+import org.jeasy.flows.flow.Context;
+import org.jeasy.flows.flow.Flow;
+import org.jeasy.flows.jfr.FlowEvents;
+import org.jeasy.flows.work.Report;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiFunction;
+
+/**
+ * Fixed set of worker threads owned by an engine, fed through a bounded
+ * {@link SubmissionQueue}. Idle workers park and are woken up by submitters, submitters
+ * facing a full queue apply the configured {@link OverflowStrategy}.
+ */
+class WorkerPool {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WorkerPool.class);
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long MAX_BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final SubmissionQueue<Submission> queue;
+    private final OverflowStrategy overflowStrategy;
+    private final long blockTimeoutNanos;
+    private final BiFunction<Flow, Context, Report> runner;
+    private final List<Worker> workers;
+    private final Queue<Worker> idleWorkers = new ConcurrentLinkedQueue<>();
+    private volatile boolean shutdown;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder started = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    /**
+     * @param runner runs a flow on the calling thread
+     */
+    WorkerPool(int threads, int queueCapacity, OverflowStrategy overflowStrategy, long blockTimeoutNanos,
+               BiFunction<Flow, Context, Report> runner) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("The number of workers must be positive");
+        }
+        this.queue = new SubmissionQueue<>(queueCapacity);
+        this.overflowStrategy = overflowStrategy;
+        this.blockTimeoutNanos = blockTimeoutNanos;
+        this.runner = runner;
+        this.workers = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            Worker worker = new Worker("easy-flows-worker-" + i);
+            workers.add(worker);
+            worker.thread.start();
+        }
+    }
+
+    CompletableFuture<Report> submit(Flow flow, Context context) {
+        Submission submission = new Submission(flow, context);
+        // a caller giving up on the result cancels the instance
+        submission.result.whenComplete((report, error) -> {
+            if (error instanceof CancellationException) {
+                context.cancel();
+            }
+        });
+        if (shutdown) {
+            return reject(submission, "The engine has been shut down");
+        }
+        if (offer(submission)) {
+            return submission.result;
+        }
+        switch (overflowStrategy) {
+            case CALLER_RUNS:
+                run(submission);
+                return submission.result;
+            case BLOCK:
+                long deadline = System.nanoTime() + blockTimeoutNanos;
+                long backoff = 1_000;
+                while (!offer(submission)) {
+                    if (shutdown) {
+                        return reject(submission, "The engine has been shut down");
+                    }
+                    if (Thread.currentThread().isInterrupted()) {
+                        return reject(submission, "Interrupted while waiting for room in the submission queue");
+                    }
+                    if (System.nanoTime() - deadline > 0) {
+                        return reject(submission, "The submission queue is still full after the block timeout");
+                    }
+                    LockSupport.parkNanos(this, backoff);
+                    backoff = Math.min(backoff << 1, MAX_BACKOFF_NANOS);
+                }
+                return submission.result;
+            case REJECT:
+            default:
+                return reject(submission, "The submission queue is full");
+        }
+    }
+
+    private boolean offer(Submission submission) {
+        submission.enqueuedAt = System.nanoTime();
+        submission.queueWait = FlowEvents.beginQueueWait();
+        if (!queue.offer(submission)) {
+            return false;
+        }
+        submitted.increment();
+        Worker idle = idleWorkers.poll();
+        if (idle != null) {
+            idle.registered.set(false);
+            LockSupport.unpark(idle.thread);
+        }
+        return true;
+    }
+
+    private CompletableFuture<Report> reject(Submission submission, String message) {
+        rejected.increment();
+        submission.result.completeExceptionally(new RejectedExecutionException(message));
+        return submission.result;
+    }
+
+    private void run(Submission submission) {
+        if (submission.result.isDone()) { // cancelled while queued
+            return;
+        }
+        try {
+            submission.result.complete(runner.apply(submission.flow, submission.context));
+        } catch (Throwable e) {
+            LOGGER.error("Unable to run flow '{}'", submission.flow.getName(), e);
+            submission.result.completeExceptionally(e);
+        }
+    }
+
+    QueueStats stats() {
+        return new QueueStats(queue.size(), queue.capacity(), submitted.sum(), rejected.sum(), started.sum(),
+                totalWaitNanos.sum(), maxWaitNanos.get());
+    }
+
+    /**
+     * Stop accepting submissions. Workers finish the queued ones, then stop.
+     */
+    void shutdown() {
+        shutdown = true;
+        for (Worker worker : workers) {
+            LockSupport.unpark(worker.thread);
+        }
+    }
+
+    private static class Submission {
+
+        private final Flow flow;
+        private final Context context;
+        private final CompletableFuture<Report> result = new CompletableFuture<>();
+        private volatile long enqueuedAt;
+        // flight recorder event of the wait in the queue, null if disabled
+        private volatile Object queueWait;
+
+        Submission(Flow flow, Context context) {
+            this.flow = flow;
+            this.context = context;
+        }
+    }
+
+    private class Worker implements Runnable {
+
+        private final Thread thread;
+        private final AtomicBoolean registered = new AtomicBoolean();
+
+        Worker(String name) {
+            this.thread = new Thread(this, name);
+            this.thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                Submission submission = queue.poll();
+                if (submission == null) {
+                    if (shutdown) {
+                        return;
+                    }
+                    // register as idle, then check again so that no wake-up is missed
+                    if (registered.compareAndSet(false, true)) {
+                        idleWorkers.add(this);
+                    }
+                    submission = queue.poll();
+                    if (submission == null) {
+                        LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                        continue;
+                    }
+                }
+                long waited = System.nanoTime() - submission.enqueuedAt;
+                started.increment();
+                totalWaitNanos.add(waited);
+                maxWaitNanos.accumulateAndGet(waited, Math::max);
+                FlowEvents.endQueueWait(submission.queueWait, submission.flow, submission.context);
+                WorkerPool.this.run(submission);
+            }
+        }
+    }
+}
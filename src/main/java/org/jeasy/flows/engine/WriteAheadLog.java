@@ -0,0 +1,617 @@
+package org.jeasy.flows.engine;
+
+import org.jeasy.flows.flow.ContextJournal;
+import org.jeasy.flows.flow.Instance;
+import org.jeasy.flows.work.Status;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.CRC32;
+
+/**
+ * A journal of the changes of running instances, appended to a local file so that
+ * instances can be rebuilt after a crash with {@link #replay()}.
+ * <p>
+ * {@link #begin(Instance)} writes a snapshot of an instance and returns the
+ * {@link ContextJournal} to set on its context, which appends a compact record for
+ * every status and value change; {@link #end(String)} marks the instance finished.
+ * The engine does both for instances run with {@link Engine#run(org.jeasy.flows.flow.Flow, Instance)}
+ * (see {@link EngineBuilder#journal(WriteAheadLog)}). {@link #compact()} rewrites the
+ * file with one snapshot per unfinished instance.
+ * <p>
+ * How long a change waits for its record to reach the disk depends on the
+ * {@link Durability} of the log. With {@link Durability#GROUP}, one writer forces the
+ * file for all the records appended so far while the others wait for it, so concurrent
+ * instances share forces instead of paying one each.
+ * <p>
+ * With {@link Durability#ASYNC}, a failure of a background force is logged and thrown by
+ * the next append or {@link #sync()}, and the log keeps forcing in the background.
+ * <p>
+ * Records carry a checksum: a record torn by a crash ends the replay, and is truncated
+ * when the log is opened again. Values are written like in a {@link MappedInstanceStore},
+ * so they must be serializable.
+ */
+public final class WriteAheadLog implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WriteAheadLog.class);
+
+    public static final long DEFAULT_SYNC_INTERVAL_MILLIS = 10;
+
+    // record: body length, checksum of the body, body starting with the record type
+    private static final int HEADER = 8;
+    private static final int MAX_RECORD = 64 << 20;
+    private static final byte SNAPSHOT = 1;
+    private static final byte STATUS = 2;
+    private static final byte VALUE = 3;
+    private static final byte END = 4;
+
+    private static final Status[] STATUSES = Status.values();
+
+    private final Path file;
+    private final Durability durability;
+    // guarded by this
+    private FileChannel channel;
+    // guarded by this
+    private long compactions;
+    // bytes appended since the log was opened, also counting the ones compacted away
+    private volatile long appended;
+
+    private final Object commitLock = new Object();
+    // guarded by commitLock
+    private long synced;
+    private boolean syncing;
+
+    private final AtomicLong records = new AtomicLong();
+    private final AtomicLong syncs = new AtomicLong();
+    private final Thread syncer;
+    // failure of a background force, not thrown yet
+    private final AtomicReference<RuntimeException> syncFailure = new AtomicReference<>();
+    // writes and forces the file, replaced by tests
+    private volatile ChannelIo io = ChannelIo.DEFAULT;
+    private volatile boolean closed;
+
+    private WriteAheadLog(Path file, Durability durability, FileChannel channel, long syncIntervalNanos) {
+        this.file = file;
+        this.durability = durability;
+        this.channel = channel;
+        if (durability == Durability.ASYNC) {
+            syncer = new Thread(() -> syncPeriodically(syncIntervalNanos), "easy-flows-journal-sync");
+            syncer.setDaemon(true);
+            syncer.start();
+        } else {
+            syncer = null;
+        }
+    }
+
+    /**
+     * Open a log, appending to the records of the file if it exists. With
+     * {@link Durability#ASYNC}, records are forced every {@link #DEFAULT_SYNC_INTERVAL_MILLIS} ms.
+     *
+     * @param file       of the log, created if needed
+     * @param durability of the records
+     * @return the log
+     * @throws IOException if the file cannot be read
+     */
+    public static WriteAheadLog open(Path file, Durability durability) throws IOException {
+        return open(file, durability, DEFAULT_SYNC_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Open a log, see {@link #open(Path, Durability)}.
+     *
+     * @param file         of the log, created if needed
+     * @param durability   of the records
+     * @param syncInterval between background forces with {@link Durability#ASYNC}
+     * @param unit         of the interval
+     * @return the log
+     * @throws IOException if the file cannot be read
+     */
+    public static WriteAheadLog open(Path file, Durability durability, long syncInterval, TimeUnit unit) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            // drop a record torn by a crash, so that new records follow the valid ones
+            long end = scan(channel, null);
+            channel.truncate(end);
+            channel.position(end);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return new WriteAheadLog(file, durability, channel, unit.toNanos(syncInterval));
+    }
+
+    /**
+     * Write a snapshot of an instance and start journaling the changes of its context.
+     *
+     * @param instance to journal
+     * @return the journal to set on the context of the instance
+     * @throws IllegalArgumentException if a value of the instance is not serializable
+     */
+    public ContextJournal begin(Instance instance) {
+        snapshot(instance);
+        return new InstanceJournal(instance.getId());
+    }
+
+    /**
+     * Write a snapshot of an instance: the replay of the records written before it is
+     * skipped, and compaction keeps only the last one.
+     *
+     * @param instance to snapshot
+     */
+    public void snapshot(Instance instance) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try {
+            bytes.write(SNAPSHOT);
+            bytes.write(InstanceCodec.encode(instance));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot encode instance " + instance.getId(), e);
+        }
+        append(bytes);
+    }
+
+    /**
+     * Mark an instance finished: it is no longer replayed.
+     *
+     * @param id of the instance
+     */
+    public void end(String id) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeByte(END);
+            InstanceCodec.writeString(out, id);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        append(bytes);
+    }
+
+    /**
+     * Rebuild the unfinished instances from the records of the log.
+     *
+     * @return the unfinished instances by id, in the order they began
+     */
+    public synchronized Map<String, Instance> replay() {
+        checkOpen();
+        Map<String, Instance> instances = new LinkedHashMap<>();
+        try {
+            long end = channel.position();
+            channel.position(0);
+            try {
+                scan(channel, instances);
+            } finally {
+                channel.position(end);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot replay " + file, e);
+        }
+        return instances;
+    }
+
+    /**
+     * Rewrite the log with one snapshot per unfinished instance. Changes wait for the
+     * end of the compaction.
+     */
+    public synchronized void compact() {
+        checkOpen();
+        Map<String, Instance> instances = replay();
+        Path compacted = file.resolveSibling(file.getFileName() + ".compact");
+        try {
+            try (FileChannel out = FileChannel.open(compacted, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                for (Instance instance : instances.values()) {
+                    ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+                    bytes.write(SNAPSHOT);
+                    bytes.write(InstanceCodec.encode(instance));
+                    ByteBuffer record = frame(bytes);
+                    while (record.hasRemaining()) {
+                        out.write(record);
+                    }
+                }
+                out.force(true);
+            }
+            channel.close();
+            Files.move(compacted, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            channel.position(channel.size());
+            compactions++;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot compact " + file, e);
+        }
+        // the compacted file holds everything appended so far
+        synchronized (commitLock) {
+            synced = appended;
+            commitLock.notifyAll();
+        }
+    }
+
+    /**
+     * Force the records appended so far to the disk, whatever the durability of the log.
+     *
+     * @throws UncheckedIOException if the records cannot be forced, or if a background
+     *                              force failed since the last append or sync
+     */
+    public void sync() {
+        throwSyncFailure();
+        commit(appended);
+    }
+
+    /**
+     * @return the size of the log file in bytes
+     */
+    public synchronized long size() {
+        try {
+            return channel.size();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return the number of records appended since the log was opened
+     */
+    public long getRecordCount() {
+        return records.get();
+    }
+
+    /**
+     * @return the number of forces since the log was opened; with {@link Durability#GROUP},
+     * the difference with {@link #getRecordCount()} is what group commit saved
+     */
+    public long getSyncCount() {
+        return syncs.get();
+    }
+
+    public Durability getDurability() {
+        return durability;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        if (syncer != null) {
+            syncer.interrupt();
+        }
+        if (durability != Durability.NONE) {
+            sync();
+        }
+        synchronized (this) {
+            closed = true;
+            channel.close();
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Journal " + file + " is closed");
+        }
+    }
+
+    private void append(ByteArrayOutputStream body) {
+        throwSyncFailure();
+        ByteBuffer record = frame(body);
+        long position;
+        synchronized (this) {
+            checkOpen();
+            boolean interrupted = Thread.interrupted();
+            try {
+                while (record.hasRemaining()) {
+                    try {
+                        io.write(channel, record);
+                    } catch (ClosedByInterruptException e) {
+                        // an interrupt closes the channel, reopen it for the other instances
+                        interrupted |= Thread.interrupted();
+                        reopen();
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot append to " + file, e);
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            position = appended += record.limit();
+        }
+        records.incrementAndGet();
+        if (durability == Durability.GROUP) {
+            commit(position);
+        }
+    }
+
+    /**
+     * Wait until the records up to a position are forced, forcing them if no other
+     * writer is doing it. A force covers every record appended before it starts.
+     */
+    private void commit(long position) {
+        while (true) {
+            synchronized (commitLock) {
+                boolean interrupted = false;
+                while (synced < position && syncing) {
+                    try {
+                        commitLock.wait();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+                if (synced >= position) {
+                    return;
+                }
+                syncing = true;
+            }
+            long target = -1;
+            try {
+                target = force();
+            } finally {
+                synchronized (commitLock) {
+                    syncing = false;
+                    synced = Math.max(synced, target);
+                    commitLock.notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the position up to which records are forced
+     */
+    private long force() {
+        FileChannel forced;
+        long target;
+        long compaction;
+        synchronized (this) {
+            checkOpen();
+            forced = channel;
+            target = appended;
+            compaction = compactions;
+        }
+        boolean interrupted = Thread.interrupted();
+        try {
+            io.force(forced);
+            syncs.incrementAndGet();
+            return target;
+        } catch (IOException e) {
+            synchronized (this) {
+                if (compactions != compaction && !closed) {
+                    // compacted meanwhile, the compacted file was forced
+                    return target;
+                }
+                if (channel != forced && !closed) {
+                    // reopened by a writer after an interrupt, nothing forced the records yet
+                    return -1;
+                }
+                if (e instanceof ClosedByInterruptException) {
+                    reopen();
+                    return -1;
+                }
+            }
+            throw new UncheckedIOException("Cannot sync " + file, e);
+        } finally {
+            if (interrupted || Thread.interrupted()) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // guarded by this
+    private void reopen() {
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            channel.position(channel.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot reopen " + file, e);
+        }
+    }
+
+    private void syncPeriodically(long intervalNanos) {
+        while (!closed) {
+            LockSupport.parkNanos(intervalNanos);
+            if (!closed && appended > synced()) {
+                try {
+                    commit(appended);
+                } catch (RuntimeException e) {
+                    if (!closed) {
+                        LOGGER.error("Background sync of {} failed, retrying in the next interval", file, e);
+                        syncFailure.compareAndSet(null, e);
+                    }
+                }
+            }
+        }
+    }
+
+    private void throwSyncFailure() {
+        RuntimeException failure = syncFailure.getAndSet(null);
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * @param io of the file, for tests
+     */
+    void ioWith(ChannelIo io) {
+        this.io = io;
+    }
+
+    private long synced() {
+        synchronized (commitLock) {
+            return synced;
+        }
+    }
+
+    /**
+     * The writes and forces of the log file.
+     */
+    interface ChannelIo {
+
+        ChannelIo DEFAULT = new ChannelIo() {
+        };
+
+        default int write(FileChannel channel, ByteBuffer buffer) throws IOException {
+            return channel.write(buffer);
+        }
+
+        default void force(FileChannel channel) throws IOException {
+            channel.force(false);
+        }
+    }
+
+    private static ByteBuffer frame(ByteArrayOutputStream body) {
+        byte[] bytes = body.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+        ByteBuffer record = ByteBuffer.allocate(HEADER + bytes.length);
+        record.putInt(bytes.length).putInt((int) crc.getValue()).put(bytes);
+        record.flip();
+        return record;
+    }
+
+    /**
+     * Read the records of a channel from its position, applying them to the instances
+     * if not null.
+     *
+     * @return the end of the last valid record
+     */
+    private static long scan(FileChannel channel, Map<String, Instance> instances) throws IOException {
+        long start = channel.position();
+        long end = start;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 1 << 16));
+        while (true) {
+            int length;
+            int checksum;
+            byte[] body;
+            try {
+                length = in.readInt();
+                checksum = in.readInt();
+                if (length <= 0 || length > MAX_RECORD) {
+                    break;
+                }
+                body = new byte[length];
+                in.readFully(body);
+            } catch (EOFException e) {
+                break;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(body, 0, body.length);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            if (instances != null) {
+                apply(body, instances);
+            }
+            end += HEADER + length;
+        }
+        return end;
+    }
+
+    private static void apply(byte[] body, Map<String, Instance> instances) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(body, 1, body.length - 1));
+        switch (body[0]) {
+            case SNAPSHOT:
+                byte[] encoded = new byte[body.length - 1];
+                in.readFully(encoded);
+                Instance instance = InstanceCodec.decode(encoded);
+                instances.remove(instance.getId());
+                instances.put(instance.getId(), instance);
+                break;
+            case STATUS: {
+                Instance target = instances.get(InstanceCodec.readString(in));
+                String name = InstanceCodec.readString(in);
+                int status = in.readByte();
+                if (target != null) {
+                    target.getContext().setStatus(name, status == 0 ? null : STATUSES[status - 1]);
+                }
+                break;
+            }
+            case VALUE: {
+                Instance target = instances.get(InstanceCodec.readString(in));
+                String name = InstanceCodec.readString(in);
+                Object value = InstanceCodec.readValue(in);
+                if (target != null) {
+                    target.getContext().setValue(name, value);
+                }
+                break;
+            }
+            case END:
+                instances.remove(InstanceCodec.readString(in));
+                break;
+            default:
+                throw new IOException("Unknown record type " + body[0]);
+        }
+    }
+
+    /**
+     * Appends the changes of the context of one instance.
+     */
+    private final class InstanceJournal implements ContextJournal {
+
+        private final String id;
+
+        InstanceJournal(String id) {
+            this.id = id;
+        }
+
+        @Override
+        public void statusChanged(String name, Status status) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(id.length() + name.length() + 16);
+            DataOutputStream out = new DataOutputStream(bytes);
+            try {
+                out.writeByte(STATUS);
+                InstanceCodec.writeString(out, id);
+                InstanceCodec.writeString(out, name);
+                out.writeByte(status == null ? 0 : status.ordinal() + 1);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            append(bytes);
+        }
+
+        @Override
+        public void valueChanged(String name, Object value) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(id.length() + name.length() + 32);
+            DataOutputStream out = new DataOutputStream(bytes);
+            try {
+                out.writeByte(VALUE);
+                InstanceCodec.writeString(out, id);
+                InstanceCodec.writeString(out, name);
+                InstanceCodec.writeValue(out, name, value);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            append(bytes);
+        }
+    }
+}
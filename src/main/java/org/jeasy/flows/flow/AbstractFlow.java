@@ -24,9 +24,55 @@
 package org.jeasy.flows.flow;
 
 import org.jeasy.flows.work.AbstractWork;
+import org.jeasy.flows.work.Work;
+
+import java.util.List;
 
 abstract class AbstractFlow extends AbstractWork implements Flow {
+
+    // compiled on first use, see FlowCompiler#compiled
+    private volatile Program program;
+
+    // numbering of the works of this flow, see StatusLayout#assign
+    private StatusLayout layout;
+
     public AbstractFlow(String name) {
         super(name);
     }
+
+    StatusLayout getLayout() {
+        return layout;
+    }
+
+    void setLayout(StatusLayout layout) {
+        this.layout = layout;
+    }
+
+    Program getProgram() {
+        return program;
+    }
+
+    void setProgram(Program program) {
+        this.program = program;
+    }
+
+    /**
+     * @return the work units composed by this flow
+     */
+    abstract List<Work> getChildren();
+
+    /**
+     * Clear the statuses of a work and of the works it composes, so that the next
+     * execution runs them again instead of answering their last status.
+     */
+    static void reset(Work work, Context context) {
+        if (work instanceof AbstractWork) {
+            context.setStatus(work, null);
+        }
+        if (work instanceof AbstractFlow) {
+            for (Work child : ((AbstractFlow) work).getChildren()) {
+                reset(child, context);
+            }
+        }
+    }
 }
@@ -0,0 +1,49 @@
+package org.jeasy.flows.flow;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Cooperative cancellation signal of a flow instance. Flows check it between steps
+ * and stop with a {@link org.jeasy.flows.work.Status#CANCELLED} report, parallel flows
+ * also cancel their running branches. Long running works should check
+ * {@link #isCancelled()} (or their thread's interrupt flag) as well.
+ */
+public class CancellationToken {
+
+    private volatile boolean cancelled;
+
+    private final Queue<Runnable> callbacks = new ConcurrentLinkedQueue<>();
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Cancel the instance. Callbacks run on the calling thread, once.
+     */
+    public void cancel() {
+        if (cancelled) {
+            return;
+        }
+        cancelled = true;
+        Runnable callback;
+        while ((callback = callbacks.poll()) != null) {
+            callback.run();
+        }
+    }
+
+    /**
+     * Register a callback to run on cancellation, right away if already cancelled.
+     *
+     * @param callback to run
+     * @return a handle removing the callback once it is not needed anymore
+     */
+    public Runnable onCancel(Runnable callback) {
+        callbacks.add(callback);
+        if (cancelled && callbacks.remove(callback)) {
+            callback.run();
+        }
+        return () -> callbacks.remove(callback);
+    }
+}
@@ -23,6 +23,8 @@
  */
 package org.jeasy.flows.flow;
 
+import org.jeasy.flows.work.AsyncWork;
+import org.jeasy.flows.work.DefaultReport;
 import org.jeasy.flows.work.Executable;
 import org.jeasy.flows.work.NoOpWork;
 import org.jeasy.flows.work.Report;
@@ -30,7 +32,11 @@ import org.jeasy.flows.work.ReportPredicate;
 import org.jeasy.flows.work.Status;
 import org.jeasy.flows.work.Work;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 /**
  * A conditional flow is defined by 4 artifacts:
@@ -56,23 +62,68 @@ public class ConditionalFlow extends AbstractFlow {
         this.nextOnPredicateSuccess = nextOnPredicateSuccess;
         this.nextOnPredicateFailure = nextOnPredicateFailure;
         this.predicate = predicate;
+        StatusLayout.assign(this);
+    }
+
+    @Override
+    List<Work> getChildren() {
+        return Arrays.asList(initialWorkUnit, nextOnPredicateSuccess, nextOnPredicateFailure);
+    }
+
+    Work getInitialWorkUnit() {
+        return initialWorkUnit;
+    }
+
+    Work getNextOnPredicateSuccess() {
+        return nextOnPredicateSuccess;
+    }
+
+    Work getNextOnPredicateFailure() {
+        return nextOnPredicateFailure;
+    }
+
+    ReportPredicate getPredicate() {
+        return predicate;
     }
 
     @Override
     protected Report executeInternal(Context context) {
         Report jobReport = ((Executable) initialWorkUnit).execute(context);
-        if (jobReport != null && jobReport.getStatus() == Status.WAITING) {
-            return jobReport;
+        if (context.isCancelled()) {
+            return new DefaultReport(Status.CANCELLED, context);
         }
+        Work next = nextWorkUnit(jobReport);
+        return next == null ? jobReport : ((Executable) next).execute(context);
+    }
 
-        if (predicate.apply(jobReport)) {
-            jobReport = ((Executable) nextOnPredicateSuccess).execute(context);
-        } else {
-            if (nextOnPredicateFailure != null && !(nextOnPredicateFailure instanceof NoOpWork)) { // else is optional
-                jobReport = ((Executable) nextOnPredicateFailure).execute(context);
+    @Override
+    protected CompletionStage<Report> executeInternalAsync(Context context) {
+        return AsyncWork.execute(initialWorkUnit, context).thenCompose(jobReport -> {
+            if (context.isCancelled()) {
+                return CompletableFuture.completedFuture(new DefaultReport(Status.CANCELLED, context));
             }
+            Work next = nextWorkUnit(jobReport);
+            return next == null ? CompletableFuture.completedFuture(jobReport) : AsyncWork.execute(next, context);
+        });
+    }
+
+    /**
+     * Choose the work to execute after the initial work unit.
+     *
+     * @return the next work unit, or null if the flow ends with the initial report
+     */
+    private Work nextWorkUnit(Report jobReport) {
+        if (jobReport != null && (jobReport.getStatus() == Status.WAITING || jobReport.getStatus() == Status.CANCELLED)) {
+            return null;
+        }
+
+        if (predicate.apply(jobReport)) {
+            return nextOnPredicateSuccess;
+        }
+        if (nextOnPredicateFailure != null && !(nextOnPredicateFailure instanceof NoOpWork)) { // else is optional
+            return nextOnPredicateFailure;
         }
-        return jobReport;
+        return null;
     }
 
     public static class Builder {
@@ -24,55 +24,780 @@
 package org.jeasy.flows.flow;
 
 import org.jeasy.flows.work.Status;
+import org.jeasy.flows.work.Watchdog;
+import org.jeasy.flows.work.Work;
+import org.jeasy.flows.work.WorkProbe;
 
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.StringJoiner;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Work execution context. This can be used to pass initial parameters to the
  * workflow and share data between work units.
  *
  * <strong>Work context instances are thread-safe.</strong>
+ * <p>
+ * Statuses of works are kept in a packed table laid out by the {@link StatusLayout}
+ * of the first flow run with the context. Statuses of names outside of that layout
+ * are kept in a map created on first use. Values set by name are laid out by a
+ * {@link Shape} shared with the other contexts holding the same names, so a context
+ * only holds an array of values.
+ * <p>
+ * Values can be accessed by name or through typed {@link ContextKey}s, which are
+ * faster and store numbers and flags without boxing. Both views share the values of
+ * names having a key.
+ * <p>
+ * Changes of statuses and values are reported to the {@link ContextJournal} of the
+ * context, if any.
  *
  * @author Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
  */
 public class Context {
 
-    private final Map<String, Object> values = new ConcurrentHashMap<>();
+    private final ValueTable table = new ValueTable();
 
-    private final Map<String, Status> states = new ConcurrentHashMap<>();
+    // values of names without a key
+    private final ShapedValues values = new ShapedValues();
 
+    private volatile StatusTable statusTable;
+
+    private volatile Map<String, Status> states;
+
+    private volatile ExecutorService executorService;
+
+    private volatile CancellationToken cancellationToken;
+
+    // in System.nanoTime() units, 0 for none
+    private volatile long deadline;
+
+    // guarded by this
+    private ScheduledFuture<?> expiry;
+
+    private volatile Program.ResumePoint resumePoint;
+
+    private volatile ContextJournal journal;
+
+    private volatile WorkProbe probe;
+
+    // correlation keys of the signals waited for, and the works waiting for them
+    private volatile Map<String, String> awaitedSignals;
+
+    // names of the works waiting for a timer, and their deadlines
+    private volatile Map<String, Long> awaitedTimers;
+
+    // of the instance owning this context, if any
+    private volatile String instanceId;
+    private volatile String flowName;
+
+    /**
+     * Set a value, or remove it if the value is null. A value that is not of the type of
+     * the {@link ContextKey} of the name, if any, is kept by name like the values of
+     * names without a key: it is seen by {@link #getValue(String)} but not through the key.
+     */
     public void setValue(String key, Object value) {
-        values.put(key, value);
+        putValue(key, value);
+        ContextJournal journal = this.journal;
+        if (journal != null) {
+            journal.valueChanged(key, value);
+        }
+    }
+
+    private void putValue(String key, Object value) {
+        ContextKey<?> contextKey = ContextKey.lookup(key);
+        if (contextKey == null) {
+            values.put(key, value);
+        } else if (value == null || contextKey.accepts(value)) {
+            setKeyValue(contextKey, value);
+            if (value != null && values.get(key) != null) {
+                // a value of another type set by name before
+                values.remove(key);
+            }
+        } else {
+            clearSlot(contextKey);
+            values.put(key, value);
+        }
     }
 
     public Object getValue(String key) {
+        ContextKey<?> contextKey = ContextKey.lookup(key);
+        if (contextKey != null) {
+            Object value = get(contextKey);
+            if (value != null) {
+                return value;
+            }
+        }
         return values.get(key);
     }
 
     public Set<String> valueKeys() {
-        return values.keySet();
+        Set<String> keys = new HashSet<>();
+        for (int id : table.longIds()) {
+            keys.add(ContextKey.primitiveKey(id).getName());
+        }
+        for (int id : table.objectIds()) {
+            keys.add(ContextKey.objectKey(id).getName());
+        }
+        keys.addAll(values.names());
+        return keys;
+    }
+
+    /**
+     * Get a value, boxing it if its key is a primitive one.
+     *
+     * @return the value, or null if absent
+     */
+    public <T> T get(ContextKey<T> key) {
+        if (key.isNamed()) {
+            Object value = getValue(key.getName());
+            return key.accepts(value) ? key.getType().cast(value) : null;
+        }
+        int id = key.getId();
+        switch (key.getKind()) {
+            case OBJECT:
+                Object value = table.getObject(id);
+                return value != null ? key.getType().cast(value) : key.getType().cast(legacyValue(key));
+            default:
+                if (!table.hasLong(id) && legacyValue(key) == null) {
+                    return null;
+                }
+                long bits = table.getLong(id);
+                switch (key.getKind()) {
+                    case INT:
+                        return key.getType().cast((int) bits);
+                    case DOUBLE:
+                        return key.getType().cast(Double.longBitsToDouble(bits));
+                    case BOOLEAN:
+                        return key.getType().cast(bits != 0);
+                    default:
+                        return key.getType().cast(bits);
+                }
+        }
+    }
+
+    /**
+     * Set a value, or remove it if the value is null.
+     */
+    public <T> void set(ContextKey<T> key, T value) {
+        setKeyValue(key, value);
+        ContextJournal journal = this.journal;
+        if (journal != null) {
+            journal.valueChanged(key.getName(), value);
+        }
+    }
+
+    public boolean contains(ContextKey<?> key) {
+        return get(key) != null;
+    }
+
+    /**
+     * @return the value of the key, or 0 if absent
+     */
+    public long getLong(ContextKey<Long> key) {
+        if (key.isNamed()) {
+            Long value = get(key);
+            return value == null ? 0 : value;
+        }
+        return present(key) ? table.getLong(key.getId()) : 0;
+    }
+
+    public void setLong(ContextKey<Long> key, long value) {
+        if (key.isNamed()) {
+            set(key, value);
+            return;
+        }
+        table.setLong(key.getId(), value);
+        ContextJournal journal = this.journal;
+        if (journal != null) {
+            journal.valueChanged(key.getName(), value);
+        }
+    }
+
+    /**
+     * Atomically add to the value of the key (absent values count as 0).
+     *
+     * @return the updated value
+     */
+    public long addLong(ContextKey<Long> key, long delta) {
+        long value;
+        if (key.isNamed()) {
+            // values by name are written under the lock of the values
+            synchronized (values) {
+                value = getLong(key) + delta;
+                putValue(key.getName(), value);
+            }
+        } else {
+            present(key);
+            value = table.addLong(key.getId(), delta);
+        }
+        ContextJournal journal = this.journal;
+        if (journal != null) {
+            journal.valueChanged(key.getName(), value);
+        }
+        return value;
+    }
+
+    /**
+     * @return the value of the key, or 0 if absent
+     */
+    public int getInt(ContextKey<Integer> key) {
+        if (key.isNamed()) {
+            Integer value = get(key);
+            return value == null ? 0 : value;
+        }
+        return present(key) ? (int) table.getLong(key.getId()) : 0;
+    }
+
+    public void setInt(ContextKey<Integer> key, int value) {
+        if (key.isNamed()) {
+            set(key, value);
+            return;
+        }
+        table.setLong(key.getId(), value);
+        ContextJournal journal = this.journal;
+        if (journal != null) {
+            journal.valueChanged(key.getName(), value);
+        }
+    }
+
+    /**
+     * @return the value of the key, or 0 if absent
+     */
+    public double getDouble(ContextKey<Double> key) {
+        if (key.isNamed()) {
+            Double value = get(key);
+            return value == null ? 0 : value;
+        }
+        return present(key) ? Double.longBitsToDouble(table.getLong(key.getId())) : 0;
+    }
+
+    public void setDouble(ContextKey<Double> key, double value) {
+        if (key.isNamed()) {
+            set(key, value);
+            return;
+        }
+        table.setLong(key.getId(), Double.doubleToRawLongBits(value));
+        ContextJournal journal = this.journal;
+        if (journal != null) {
+            journal.valueChanged(key.getName(), value);
+        }
+    }
+
+    /**
+     * @return the value of the key, or false if absent
+     */
+    public boolean getBoolean(ContextKey<Boolean> key) {
+        if (key.isNamed()) {
+            return Boolean.TRUE.equals(get(key));
+        }
+        return present(key) && table.getLong(key.getId()) != 0;
+    }
+
+    public void setBoolean(ContextKey<Boolean> key, boolean value) {
+        if (key.isNamed()) {
+            set(key, value);
+            return;
+        }
+        table.setLong(key.getId(), value ? 1 : 0);
+        ContextJournal journal = this.journal;
+        if (journal != null) {
+            journal.valueChanged(key.getName(), value);
+        }
+    }
+
+    private boolean present(ContextKey<?> key) {
+        return table.hasLong(key.getId()) || legacyValue(key) != null;
+    }
+
+    private void setKeyValue(ContextKey<?> key, Object value) {
+        if (key.isNamed()) {
+            putValue(key.getName(), value == null ? null : key.cast(value));
+            return;
+        }
+        int id = key.getId();
+        if (value == null) {
+            clearSlot(key);
+            values.remove(key.getName());
+            return;
+        }
+        Object typed = key.cast(value);
+        switch (key.getKind()) {
+            case LONG:
+                table.setLong(id, (Long) typed);
+                break;
+            case INT:
+                table.setLong(id, (Integer) typed);
+                break;
+            case DOUBLE:
+                table.setLong(id, Double.doubleToRawLongBits((Double) typed));
+                break;
+            case BOOLEAN:
+                table.setLong(id, (Boolean) typed ? 1 : 0);
+                break;
+            default:
+                table.setObject(id, typed);
+        }
+    }
+
+    private void clearSlot(ContextKey<?> key) {
+        if (key.getKind().isPrimitive()) {
+            table.removeLong(key.getId());
+        } else {
+            table.setObject(key.getId(), null);
+        }
+    }
+
+    /**
+     * Move a value set by name before the key of the name was created into its slot,
+     * unless it is of another type.
+     *
+     * @return the value, or null if there is none of the type of the key
+     */
+    private Object legacyValue(ContextKey<?> key) {
+        Object named = values.get(key.getName());
+        if (named == null || !key.accepts(named)) {
+            return null;
+        }
+        Object value = values.remove(key.getName());
+        if (value != null && !key.accepts(value)) {
+            // replaced by a value of another type meanwhile
+            values.put(key.getName(), value);
+            return null;
+        }
+        if (value != null) {
+            setKeyValue(key, value);
+        }
+        return value;
     }
 
     public Status getStatus(String name) {
-        return states.get(name);
+        StatusTable table = statusTable;
+        if (table != null) {
+            StatusLayout.Slot slot = table.getLayout().slotOf(name);
+            if (slot != null) {
+                return table.get(slot.getIndex());
+            }
+        }
+        Map<String, Status> map = states;
+        return map == null ? null : map.get(name);
     }
 
+    /**
+     * Set the status of a work, or clear it if the status is null.
+     */
     public void setStatus(String name, Status status) {
-        states.put(name, status);
+        putStatus(name, status);
+        ContextJournal journal = this.journal;
+        if (journal != null) {
+            journal.statusChanged(name, status);
+        }
+    }
+
+    private void putStatus(String name, Status status) {
+        StatusTable table = statusTable;
+        if (table == null) {
+            synchronized (this) {
+                table = statusTable;
+                if (table == null) {
+                    putState(name, status);
+                    return;
+                }
+            }
+        }
+        StatusLayout.Slot slot = table.getLayout().slotOf(name);
+        if (slot != null) {
+            table.set(slot.getIndex(), status);
+        } else {
+            putState(name, status);
+        }
+    }
+
+    /**
+     * Get the status of a work through the slot of its name in the layout the context
+     * is bound to. The first flow run with the context binds it to the layout of the
+     * flow; works outside of that layout are looked up by name.
+     */
+    public Status getStatus(Work work) {
+        StatusLayout.Slot slot = slotOf(work);
+        return slot == null ? getStatus(work.getName()) : getStatus(slot);
+    }
+
+    /**
+     * Set the status of a work, see {@link #getStatus(Work)}.
+     */
+    public void setStatus(Work work, Status status) {
+        StatusLayout.Slot slot = slotOf(work);
+        if (slot == null) {
+            setStatus(work.getName(), status);
+        } else {
+            setStatus(slot, status);
+        }
+    }
+
+    /**
+     * @return the slot of a work in the layout the context is bound to, or null if the
+     * context is not bound yet and the work is not a flow, or the layout has no slot for it
+     */
+    StatusLayout.Slot slotOf(Work work) {
+        StatusTable table = statusTable;
+        if (table == null) {
+            StatusLayout layout = work instanceof AbstractFlow ? ((AbstractFlow) work).getLayout() : null;
+            if (layout == null) {
+                return null;
+            }
+            table = tableFor(layout);
+        }
+        return table.getLayout().slotOf(work.getName());
+    }
+
+    /**
+     * Get the status of a work by slot. The first call binds the context to the layout
+     * of the slot; slots of other layouts are resolved by name.
+     */
+    public Status getStatus(StatusLayout.Slot slot) {
+        StatusTable table = tableFor(slot.getLayout());
+        return table.getLayout() == slot.getLayout() ? table.get(slot.getIndex()) : getStatus(slot.getName());
+    }
+
+    /**
+     * Set the status of a work by slot, see {@link #getStatus(StatusLayout.Slot)}.
+     */
+    public void setStatus(StatusLayout.Slot slot, Status status) {
+        StatusTable table = tableFor(slot.getLayout());
+        if (table.getLayout() == slot.getLayout()) {
+            table.set(slot.getIndex(), status);
+        } else {
+            putStatus(slot.getName(), status);
+        }
+        ContextJournal journal = this.journal;
+        if (journal != null) {
+            journal.statusChanged(slot.getName(), status);
+        }
+    }
+
+    /**
+     * Get the resume cursor of a flow: where its last run stopped waiting (e.g. the
+     * index of the waiting child of a sequential flow), so that resuming it descends
+     * straight to the waiting works instead of walking the completed ones.
+     *
+     * @return the cursor, or 0 if none was recorded for the slot
+     */
+    int getCursor(StatusLayout.Slot slot) {
+        StatusTable table = statusTable;
+        return table != null && table.getLayout() == slot.getLayout() ? table.getCursor(slot.getIndex()) : 0;
+    }
+
+    /**
+     * Record the resume cursor of a flow, see {@link #getCursor(StatusLayout.Slot)}.
+     * Cursors are only recorded in the layout the context is bound to.
+     */
+    void setCursor(StatusLayout.Slot slot, int cursor) {
+        StatusTable table = tableFor(slot.getLayout());
+        if (table.getLayout() == slot.getLayout()) {
+            table.setCursor(slot.getIndex(), cursor);
+        }
     }
 
     public Set<String> statusNames() {
-        return states.keySet();
+        Set<String> names = new HashSet<>();
+        StatusTable table = statusTable;
+        if (table != null) {
+            for (String name : table.getLayout().names()) {
+                if (table.get(table.getLayout().slotOf(name).getIndex()) != null) {
+                    names.add(name);
+                }
+            }
+        }
+        Map<String, Status> map = states;
+        if (map != null) {
+            names.addAll(map.keySet());
+        }
+        return names;
+    }
+
+    private StatusTable tableFor(StatusLayout layout) {
+        StatusTable table = statusTable;
+        if (table != null) {
+            return table;
+        }
+        synchronized (this) {
+            if (statusTable == null) {
+                table = new StatusTable(layout);
+                // move statuses set by name before the first run
+                Map<String, Status> map = states;
+                if (map != null) {
+                    for (String name : layout.names()) {
+                        Status status = map.remove(name);
+                        if (status != null) {
+                            table.set(layout.slotOf(name).getIndex(), status);
+                        }
+                    }
+                }
+                statusTable = table;
+                // lay out values in the shape tree of the flow from now on
+                values.rebase(layout.getShapes());
+            }
+            return statusTable;
+        }
+    }
+
+    private void putState(String name, Status status) {
+        Map<String, Status> map = states;
+        if (map == null) {
+            synchronized (this) {
+                map = states;
+                if (map == null) {
+                    states = map = new ConcurrentHashMap<>();
+                }
+            }
+        }
+        if (status == null) {
+            map.remove(name);
+        } else {
+            map.put(name, status);
+        }
+    }
+
+    /**
+     * Get the executor used by parallel flows that were built without one.
+     *
+     * @return the executor set by the engine running this context, or null
+     */
+    public ExecutorService getExecutorService() {
+        return executorService;
+    }
+
+    public void setExecutorService(ExecutorService executorService) {
+        this.executorService = executorService;
+    }
+
+    /**
+     * Get the cancellation token of this instance, created on first use.
+     *
+     * @return the cancellation token
+     */
+    public CancellationToken getCancellationToken() {
+        CancellationToken token = cancellationToken;
+        if (token == null) {
+            synchronized (this) {
+                token = cancellationToken;
+                if (token == null) {
+                    cancellationToken = token = new CancellationToken();
+                }
+            }
+        }
+        return token;
+    }
+
+    /**
+     * Request the cancellation of the flow running with this context.
+     */
+    public void cancel() {
+        getCancellationToken().cancel();
+    }
+
+    public boolean isCancelled() {
+        CancellationToken token = cancellationToken;
+        return token != null && token.isCancelled();
+    }
+
+    /**
+     * Give the flow running with this context a deadline: when it passes, the context is
+     * cancelled, so flows stop between steps and parallel flows cancel their branches,
+     * and the works still running are interrupted and fail with a
+     * {@link org.jeasy.flows.work.TimeoutReport}. The deadline is not saved with the
+     * instance: it spans the waits of an instance held in memory, not those of an
+     * instance parked in a store.
+     *
+     * @param timeout from now, replacing any previous deadline
+     */
+    public void setTimeout(long timeout, TimeUnit unit) {
+        if (timeout <= 0) {
+            throw new IllegalArgumentException("Timeout must be positive");
+        }
+        long at = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (this) {
+            if (expiry != null) {
+                expiry.cancel(false);
+            }
+            // 0 means no deadline
+            deadline = at == 0 ? 1 : at;
+            expiry = Watchdog.schedule(at, this::cancel);
+        }
+    }
+
+    /**
+     * Remove the deadline of this context, see {@link #setTimeout(long, TimeUnit)}.
+     */
+    public void clearTimeout() {
+        synchronized (this) {
+            if (expiry != null) {
+                expiry.cancel(false);
+                expiry = null;
+            }
+            deadline = 0;
+        }
+    }
+
+    /**
+     * @return the deadline in {@link System#nanoTime()} units, 0 if none
+     */
+    public long getDeadline() {
+        return deadline;
+    }
+
+    /**
+     * @return whether this context has a deadline and it passed
+     */
+    public boolean isExpired() {
+        long at = deadline;
+        return at != 0 && System.nanoTime() - at >= 0;
+    }
+
+    /**
+     * Register that a work waits for the signal of a correlation key, done by waiting
+     * works such as {@link org.jeasy.flows.work.HumanWork}. The engine indexes the keys
+     * of an instance that ends waiting, and delivering a signal with one of them
+     * completes the work and resumes the instance.
+     *
+     * @param correlationKey of the signal
+     * @param workName       of the waiting work
+     */
+    public void awaitSignal(String correlationKey, String workName) {
+        synchronized (this) {
+            Map<String, String> map = awaitedSignals == null ? new HashMap<>() : new HashMap<>(awaitedSignals);
+            map.put(correlationKey, workName);
+            awaitedSignals = Collections.unmodifiableMap(map);
+        }
+    }
+
+    /**
+     * @return the names of the works waiting for a signal, by correlation key
+     */
+    public Map<String, String> getAwaitedSignals() {
+        Map<String, String> map = awaitedSignals;
+        return map == null ? Collections.emptyMap() : map;
+    }
+
+    /**
+     * Forget the signals waited for, done before running the context again: works
+     * still waiting register their keys again.
+     */
+    public void clearAwaitedSignals() {
+        awaitedSignals = null;
+    }
+
+    /**
+     * Register that a work waits until a deadline, done by waiting works such as
+     * {@link org.jeasy.flows.work.DelayWork}. The engine arms a timer for each deadline
+     * of an instance that ends waiting, and the timer resumes the instance.
+     *
+     * @param workName of the waiting work
+     * @param deadline in milliseconds since the epoch
+     */
+    public void awaitTimer(String workName, long deadline) {
+        synchronized (this) {
+            Map<String, Long> map = awaitedTimers == null ? new HashMap<>() : new HashMap<>(awaitedTimers);
+            map.put(workName, deadline);
+            awaitedTimers = Collections.unmodifiableMap(map);
+        }
+    }
+
+    /**
+     * @return the deadlines of the works waiting for a timer, by work name
+     */
+    public Map<String, Long> getAwaitedTimers() {
+        Map<String, Long> map = awaitedTimers;
+        return map == null ? Collections.emptyMap() : map;
+    }
+
+    /**
+     * Forget the timers waited for, see {@link #clearAwaitedSignals()}.
+     */
+    public void clearAwaitedTimers() {
+        awaitedTimers = null;
+    }
+
+    /**
+     * @return the id of the {@link Instance} owning this context, or null if none
+     */
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    /**
+     * @return the name of the flow of the {@link Instance} owning this context, or null if none
+     */
+    public String getFlowName() {
+        return flowName;
+    }
+
+    void bindInstance(String instanceId, String flowName) {
+        this.instanceId = instanceId;
+        this.flowName = flowName;
+    }
+
+    public WorkProbe getProbe() {
+        return probe;
+    }
+
+    /**
+     * Instrument the works executed with this context, see {@link WorkProbe}.
+     *
+     * @param probe to call around executions, null for none
+     */
+    public void setProbe(WorkProbe probe) {
+        this.probe = probe;
+    }
+
+    public ContextJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * Report the changes of this context to a journal, or stop reporting them if null.
+     */
+    public void setJournal(ContextJournal journal) {
+        this.journal = journal;
+    }
+
+    Program.ResumePoint getResumePoint() {
+        return resumePoint;
+    }
+
+    void setResumePoint(Program.ResumePoint resumePoint) {
+        this.resumePoint = resumePoint;
+    }
+
+    private Map<String, Object> valueMap(Set<String> keys) {
+        Map<String, Object> map = new TreeMap<>();
+        for (String key : keys) {
+            map.put(key, getValue(key));
+        }
+        return map;
+    }
+
+    private Map<String, Status> statusMap() {
+        Map<String, Status> map = new TreeMap<>();
+        for (String name : statusNames()) {
+            map.put(name, getStatus(name));
+        }
+        return map;
     }
 
     @Override
     public String toString() {
         return new StringJoiner(", ", Context.class.getSimpleName() + "[", "]")
-                .add("values=" + values)
-                .add("states=" + states)
+                .add("values=" + valueMap(valueKeys()))
+                .add("states=" + statusMap())
                 .toString();
     }
 }
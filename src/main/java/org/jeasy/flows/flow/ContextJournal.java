@@ -0,0 +1,24 @@
+package org.jeasy.flows.flow;
+
+import org.jeasy.flows.work.Status;
+
+/**
+ * Receives the changes made to a {@link Context}, e.g. to make them durable (see
+ * {@code org.jeasy.flows.engine.WriteAheadLog}). Changes are reported after they are
+ * applied, on the thread making them, so implementations must be thread-safe; an
+ * exception thrown by a journal propagates to the caller of the change.
+ */
+public interface ContextJournal {
+
+    /**
+     * @param name   of the work
+     * @param status new status, null if it was cleared
+     */
+    void statusChanged(String name, Status status);
+
+    /**
+     * @param name  of the value
+     * @param value new value, null if it was removed
+     */
+    void valueChanged(String name, Object value);
+}
@@ -0,0 +1,196 @@
+package org.jeasy.flows.flow;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A typed handle on a value of a {@link Context}. Keys are interned by name: the key
+ * of a name is created once and shared, and reading or writing a value through it
+ * neither hashes the name nor casts the value. {@code Long}, {@code Integer},
+ * {@code Double} and {@code Boolean} keys are stored in primitive slots, so
+ * {@link Context#setLong(ContextKey, long)} and the other primitive accessors do not box.
+ * <p>
+ * The string-based API of the context goes through the key of a name when one
+ * exists, so both APIs see the same values (a value of another type set by name is kept
+ * by name, out of the reach of the key):
+ *
+ * <pre>
+ * static final ContextKey&lt;Long&gt; SCORE = ContextKey.of("score", Long.class);
+ *
+ * context.setLong(SCORE, 42);
+ * context.getValue("score"); // 42L
+ * </pre>
+ *
+ * Keys are meant to be constants: they are never released, and each one takes a slot
+ * in the contexts that use it, so there are at most {@link #MAX_KEYS} keys of each kind
+ * (primitive or not). Past that number, and for a name that already has a key of
+ * another type, {@link #of(String, Class)} returns a key that keeps its values by name:
+ * it behaves like the others, without the packed storage.
+ *
+ * @param <T> type of the value
+ */
+public final class ContextKey<T> {
+
+    enum Kind {
+        LONG, INT, DOUBLE, BOOLEAN, OBJECT;
+
+        boolean isPrimitive() {
+            return this != OBJECT;
+        }
+    }
+
+    public static final int MAX_KEYS = 1024;
+
+    // id of the keys keeping their values by name
+    private static final int NAMED = -1;
+
+    private static final ConcurrentMap<String, ContextKey<?>> KEYS = new ConcurrentHashMap<>();
+    // keys by kind (primitive or object) and id
+    private static final List<ContextKey<?>> PRIMITIVE_KEYS = new ArrayList<>();
+    private static final List<ContextKey<?>> OBJECT_KEYS = new ArrayList<>();
+
+    private final String name;
+    private final Class<T> type;
+    private final Kind kind;
+    private final int id;
+
+    private ContextKey(String name, Class<T> type, Kind kind, int id) {
+        this.name = name;
+        this.type = type;
+        this.kind = kind;
+        this.id = id;
+    }
+
+    /**
+     * Get the key of a name, creating it on first use.
+     *
+     * @param name of the value
+     * @param type of the value
+     * @param <T>  type of the value
+     * @return the key of the name, or a key keeping its values by name if the key of the
+     * name has another type or if there are already {@link #MAX_KEYS} keys of the kind of
+     * the type
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> ContextKey<T> of(String name, Class<T> type) {
+        type = (Class<T>) boxed(type);
+        ContextKey<?> key = KEYS.get(name);
+        if (key == null) {
+            synchronized (KEYS) {
+                key = KEYS.get(name);
+                if (key == null) {
+                    Kind kind = kindOf(type);
+                    List<ContextKey<?>> keys = kind.isPrimitive() ? PRIMITIVE_KEYS : OBJECT_KEYS;
+                    if (keys.size() >= MAX_KEYS) {
+                        return new ContextKey<>(name, type, kind, NAMED);
+                    }
+                    key = new ContextKey<>(name, type, kind, keys.size());
+                    keys.add(key);
+                    KEYS.put(name, key);
+                }
+            }
+        }
+        if (key.type != type) {
+            return new ContextKey<>(name, type, kindOf(type), NAMED);
+        }
+        return (ContextKey<T>) key;
+    }
+
+    /**
+     * @return the key of a name, or null if none was created
+     */
+    static ContextKey<?> lookup(String name) {
+        return KEYS.get(name);
+    }
+
+    static ContextKey<?> primitiveKey(int id) {
+        synchronized (KEYS) {
+            return PRIMITIVE_KEYS.get(id);
+        }
+    }
+
+    static ContextKey<?> objectKey(int id) {
+        synchronized (KEYS) {
+            return OBJECT_KEYS.get(id);
+        }
+    }
+
+    private static Class<?> boxed(Class<?> type) {
+        if (type == long.class) {
+            return Long.class;
+        }
+        if (type == int.class) {
+            return Integer.class;
+        }
+        if (type == double.class) {
+            return Double.class;
+        }
+        if (type == boolean.class) {
+            return Boolean.class;
+        }
+        return type;
+    }
+
+    private static Kind kindOf(Class<?> type) {
+        if (type == Long.class) {
+            return Kind.LONG;
+        }
+        if (type == Integer.class) {
+            return Kind.INT;
+        }
+        if (type == Double.class) {
+            return Kind.DOUBLE;
+        }
+        if (type == Boolean.class) {
+            return Kind.BOOLEAN;
+        }
+        return Kind.OBJECT;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Class<T> getType() {
+        return type;
+    }
+
+    Kind getKind() {
+        return kind;
+    }
+
+    int getId() {
+        return id;
+    }
+
+    /**
+     * @return true if the values of this key are kept by name instead of in a slot
+     */
+    boolean isNamed() {
+        return id == NAMED;
+    }
+
+    boolean accepts(Object value) {
+        return type.isInstance(value);
+    }
+
+    /**
+     * Convert a value to the type of this key.
+     *
+     * @throws IllegalArgumentException if the value is not of the type of this key
+     */
+    T cast(Object value) {
+        if (!type.isInstance(value)) {
+            throw new IllegalArgumentException(String.format("Value of context key '%s' must be of type %s, got %s",
+                    name, type.getName(), value.getClass().getName()));
+        }
+        return type.cast(value);
+    }
+
+    @Override
+    public String toString() {
+        return "ContextKey[" + name + ": " + type.getSimpleName() + "]";
+    }
+}
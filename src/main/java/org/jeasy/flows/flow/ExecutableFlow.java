@@ -3,7 +3,6 @@ package org.jeasy.flows.flow;
 import org.jeasy.flows.work.Executable;
 
 /**
- * @author Alex.Sun
  * @created 2022-04-05 10:36
  */
 public interface ExecutableFlow extends Flow, Executable {
@@ -0,0 +1,226 @@
+package org.jeasy.flows.flow;
+
+import org.jeasy.flows.work.AbstractWork;
+import org.jeasy.flows.work.Executable;
+import org.jeasy.flows.work.NoOpWork;
+import org.jeasy.flows.work.ReportPredicate;
+import org.jeasy.flows.work.Status;
+import org.jeasy.flows.work.Work;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.jeasy.flows.flow.Program.BRANCH;
+import static org.jeasy.flows.flow.Program.BREAK;
+import static org.jeasy.flows.flow.Program.CALL;
+import static org.jeasy.flows.flow.Program.CANCEL_CHECK;
+import static org.jeasy.flows.flow.Program.CLEAR;
+import static org.jeasy.flows.flow.Program.COMPLETE;
+import static org.jeasy.flows.flow.Program.ENTER;
+import static org.jeasy.flows.flow.Program.EXIT;
+import static org.jeasy.flows.flow.Program.JUMP;
+import static org.jeasy.flows.flow.Program.LOOP;
+import static org.jeasy.flows.flow.Program.WIDTH;
+
+/**
+ * Compiles a flow definition into a flat {@link Program}.
+ * <p>
+ * Sequential, conditional and repeat flows (and no-op works) are unrolled into
+ * instructions with jump targets, so running them needs neither recursion nor a report
+ * per step, and built-in status predicates become tests on the status. Any other work
+ * (parallel flows, custom flows and works, and works with a timeout of their own, which
+ * the {@link org.jeasy.flows.work.Watchdog} enforces around their execution) is called as is.
+ * <p>
+ * An engine built with {@link org.jeasy.flows.engine.EngineBuilder#compileFlows()}
+ * compiles the flows it runs.
+ */
+public final class FlowCompiler {
+
+    private int[] code = new int[64];
+    private int size;
+    private final List<Object> constants = new ArrayList<>();
+    // layout of the compiled flow, giving the slots of the works it composes
+    private final StatusLayout layout;
+
+    private FlowCompiler(StatusLayout layout) {
+        this.layout = layout;
+    }
+
+    /**
+     * Compile a flow. The flow definition must not change afterwards.
+     *
+     * @param flow to compile
+     * @return the compiled program, which can be run in place of the flow
+     */
+    public static Program compile(Flow flow) {
+        if (!(flow instanceof Executable)) {
+            throw new IllegalArgumentException(String.format("Flow '%s' is not executable", flow.getName()));
+        }
+        FlowCompiler compiler = new FlowCompiler(flow instanceof AbstractFlow ? ((AbstractFlow) flow).getLayout() : null);
+        compiler.emit(flow);
+        return new Program(flow, Arrays.copyOf(compiler.code, compiler.size), compiler.constants.toArray());
+    }
+
+    /**
+     * Get the program of a flow, compiling it on first use. The program of a built-in
+     * flow is kept by the flow, so that it lives as long as the flow and no longer; other
+     * flows are compiled on each call.
+     *
+     * @param flow to compile
+     * @return the compiled program, which can be run in place of the flow
+     */
+    public static Program compiled(Flow flow) {
+        if (!(flow instanceof AbstractFlow)) {
+            return compile(flow);
+        }
+        AbstractFlow abstractFlow = (AbstractFlow) flow;
+        Program program = abstractFlow.getProgram();
+        if (program == null) {
+            // compiling twice on a race gives the same program
+            program = compile(flow);
+            abstractFlow.setProgram(program);
+        }
+        return program;
+    }
+
+    private void emit(Work work) {
+        Class<?> type = work.getClass();
+        if (work instanceof AbstractWork && ((AbstractWork) work).getTimeoutNanos() > 0) {
+            instruction(CALL, constant(work), 0, 0);
+        } else if (type == SequentialFlow.class) {
+            emitSequential((SequentialFlow) work);
+        } else if (type == ConditionalFlow.class) {
+            emitConditional((ConditionalFlow) work);
+        } else if (type == RepeatFlow.class) {
+            emitRepeat((RepeatFlow) work);
+        } else if (type == NoOpWork.class) {
+            NoOpWork noOpWork = (NoOpWork) work;
+            int enter = emitEnter(noOpWork);
+            instruction(COMPLETE, 0, 0, 0);
+            emitExit(enter, noOpWork);
+        } else {
+            instruction(CALL, constant(work), 0, 0);
+        }
+    }
+
+    private void emitSequential(SequentialFlow flow) {
+        int enter = emitEnter(flow);
+        List<Work> workUnits = flow.getWorkUnits();
+        List<Integer> exits = new ArrayList<>();
+        if (workUnits.isEmpty()) {
+            instruction(CLEAR, 0, 0, 0);
+        }
+        for (int index = 0; index < workUnits.size(); index++) {
+            exits.add(instruction(CANCEL_CHECK, 0, 0, 0));
+            emit(workUnits.get(index));
+            if (index < workUnits.size() - 1) {
+                exits.add(instruction(BREAK, 0, 0, 0));
+            }
+        }
+        int exit = emitExit(enter, flow);
+        for (int pc : exits) {
+            patch(pc, 1, exit);
+        }
+    }
+
+    private void emitConditional(ConditionalFlow flow) {
+        int enter = emitEnter(flow);
+        emit(flow.getInitialWorkUnit());
+        int cancelCheck = instruction(CANCEL_CHECK, 0, 0, 0);
+        int branch = instruction(BRANCH, constant(condition(flow.getPredicate())), 0, 0);
+        emit(flow.getNextOnPredicateSuccess());
+        Work otherwise = flow.getNextOnPredicateFailure();
+        int jump = -1;
+        if (otherwise != null && !(otherwise instanceof NoOpWork)) { // else is optional
+            jump = instruction(JUMP, 0, 0, 0);
+            patch(branch, 2, size);
+            emit(otherwise);
+        }
+        int exit = emitExit(enter, flow);
+        patch(cancelCheck, 1, exit);
+        patch(branch, 3, exit);
+        if (jump < 0) {
+            patch(branch, 2, exit);
+        } else {
+            patch(jump, 1, exit);
+        }
+    }
+
+    private void emitRepeat(RepeatFlow flow) {
+        int enter = emitEnter(flow);
+        int loop = instruction(CANCEL_CHECK, 0, 0, 0);
+        emit(flow.getWork());
+        instruction(LOOP, constant(condition(flow.getPredicate())), loop, constant(flow));
+        int exit = emitExit(enter, flow);
+        patch(loop, 1, exit);
+    }
+
+    /**
+     * Replace built-in status predicates by tests on the status alone.
+     */
+    private static Object condition(ReportPredicate predicate) {
+        if (predicate == ReportPredicate.ALWAYS_TRUE) {
+            return new Program.StatusTest(predicate, Status.values());
+        }
+        if (predicate == ReportPredicate.ALWAYS_FALSE) {
+            return new Program.StatusTest(predicate);
+        }
+        if (predicate == ReportPredicate.COMPLETED) {
+            return new Program.StatusTest(predicate, Status.COMPLETED);
+        }
+        if (predicate == ReportPredicate.FAILED) {
+            return new Program.StatusTest(predicate, Status.FAILED);
+        }
+        if (predicate == ReportPredicate.WAITING) {
+            return new Program.StatusTest(predicate, Status.WAITING);
+        }
+        if (predicate == ReportPredicate.CANCELLED) {
+            return new Program.StatusTest(predicate, Status.CANCELLED);
+        }
+        return predicate;
+    }
+
+    private int emitEnter(AbstractWork work) {
+        return instruction(ENTER, constant(slotOf(work)), 0, 0);
+    }
+
+    /**
+     * Emit the exit of a node and point its enter instruction to it.
+     *
+     * @return the address of the exit instruction
+     */
+    private int emitExit(int enter, AbstractWork work) {
+        int exit = instruction(EXIT, constant(slotOf(work)), 0, 0);
+        patch(enter, 2, exit);
+        return exit;
+    }
+
+    private StatusLayout.Slot slotOf(Work work) {
+        return layout.slotOf(work.getName());
+    }
+
+    /**
+     * @return the address of the new instruction
+     */
+    private int instruction(int opcode, int a, int b, int c) {
+        if (size + WIDTH > code.length) {
+            code = Arrays.copyOf(code, code.length * 2);
+        }
+        int pc = size;
+        code[size++] = opcode;
+        code[size++] = a;
+        code[size++] = b;
+        code[size++] = c;
+        return pc;
+    }
+
+    private void patch(int pc, int operand, int value) {
+        code[pc + operand] = value;
+    }
+
+    private int constant(Object value) {
+        constants.add(value);
+        return constants.size() - 1;
+    }
+}
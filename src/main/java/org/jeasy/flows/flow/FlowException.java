@@ -1,7 +1,6 @@
 package org.jeasy.flows.flow;
 
 /**
- * @author Alex.Sun
  * @created 2022-04-04 20:50
  */
 public class FlowException extends RuntimeException {
@@ -0,0 +1,170 @@
+package org.jeasy.flows.flow;
+
+import org.jeasy.flows.work.Executable;
+import org.jeasy.flows.work.Report;
+import org.jeasy.flows.work.TimeoutReport;
+import org.jeasy.flows.work.Work;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+
+/**
+ * Parallel execution of work units on a {@link ForkJoinPool}. When called from a worker
+ * of the pool (a branch of an enclosing parallel flow), work units are forked as
+ * subtasks and the calling worker runs those nobody has stolen instead of parking, so
+ * nested parallel flows scale on a fixed number of threads. Reports are still consumed
+ * in completion order; remaining waits go through {@link ForkJoinPool#managedBlock} so
+ * that the pool can compensate for the blocked worker.
+ */
+class ForkJoinBranches {
+
+    private final List<BranchTask> tasks;
+    private final BlockingQueue<BranchTask> completed = new LinkedBlockingQueue<>();
+    private final Context context;
+    private final boolean forked;
+
+    ForkJoinBranches(ForkJoinPool pool, List<Work> workUnits, Context context) {
+        this.context = context;
+        this.tasks = new ArrayList<>(workUnits.size());
+        this.forked = ForkJoinTask.getPool() == pool;
+        for (Work work : workUnits) {
+            BranchTask task = new BranchTask(work);
+            tasks.add(task);
+            if (forked) {
+                task.fork();
+            } else {
+                pool.execute(task);
+            }
+        }
+    }
+
+    /**
+     * @param consumer of reports in completion order, returning true to stop waiting
+     */
+    void join(Predicate<Report> consumer) {
+        Runnable registration = context.getCancellationToken().onCancel(this::cancel);
+        try {
+            int next = tasks.size() - 1; // the most recently forked task is on top of the local queue
+            for (int remaining = tasks.size(); remaining > 0; remaining--) {
+                BranchTask done = completed.poll();
+                while (done == null && forked && next >= 0) {
+                    BranchTask own = tasks.get(next--);
+                    if (own.tryUnfork()) {
+                        own.quietlyInvoke();
+                    }
+                    done = completed.poll();
+                }
+                if (done == null) {
+                    done = awaitCompletion();
+                }
+                if (consumer.test(reportOf(done))) {
+                    return;
+                }
+            }
+        } finally {
+            registration.run();
+            cancel();
+        }
+    }
+
+    private BranchTask awaitCompletion() {
+        BranchTask[] done = new BranchTask[1];
+        try {
+            ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+                @Override
+                public boolean block() throws InterruptedException {
+                    if (done[0] == null) {
+                        done[0] = completed.take();
+                    }
+                    return true;
+                }
+
+                @Override
+                public boolean isReleasable() {
+                    return done[0] != null || (done[0] = completed.poll()) != null;
+                }
+            });
+        } catch (InterruptedException e) {
+            throw new RuntimeException("The parallel flow was interrupted while executing work units", e);
+        }
+        return done[0];
+    }
+
+    private Report reportOf(BranchTask task) {
+        if (task.isCancelled()) {
+            return TimeoutReport.ofCancelled(context);
+        }
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            String message = String.format("The parallel flow was interrupted while waiting for the result of work unit '%s'", task.work.getName());
+            throw new RuntimeException(message, e);
+        } catch (ExecutionException e) {
+            String message = String.format("Unable to execute work unit '%s'", task.work.getName());
+            throw new RuntimeException(message, e);
+        }
+    }
+
+    private void cancel() {
+        for (BranchTask task : tasks) {
+            // cancelling a fork-join task does not interrupt it if it is running
+            if (task.cancel(true)) {
+                task.interrupt();
+                task.signal();
+            }
+        }
+    }
+
+    private class BranchTask extends RecursiveTask<Report> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Work work;
+        private final AtomicBoolean signalled = new AtomicBoolean();
+        // thread computing the task, guarded by this
+        private Thread runner;
+
+        BranchTask(Work work) {
+            this.work = work;
+        }
+
+        @Override
+        protected Report compute() {
+            synchronized (this) {
+                runner = Thread.currentThread();
+            }
+            try {
+                return ((Executable) work).execute(context);
+            } finally {
+                synchronized (this) {
+                    runner = null;
+                }
+                // an interrupt for this task must not reach the next task of the worker
+                if (isCancelled()) {
+                    Thread.interrupted();
+                }
+                signal();
+            }
+        }
+
+        synchronized void interrupt() {
+            if (runner != null) {
+                runner.interrupt();
+            }
+        }
+
+        void signal() {
+            if (signalled.compareAndSet(false, true)) {
+                completed.add(this);
+            }
+        }
+    }
+}
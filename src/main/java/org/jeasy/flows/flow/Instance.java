@@ -5,21 +5,29 @@ import org.apache.commons.lang3.StringUtils;
 import java.util.UUID;
 
 /**
- * @author Alex.Sun
  * @created 2022-04-04 20:54
  */
 public class Instance {
     private final String id;
     private final String flow;
-    private final Context context = new Context();
+    private final Context context;
 
     public Instance(String flow) {
         this(UUID.randomUUID().toString(), flow);
     }
 
     public Instance(String id, String flow) {
+        this(id, flow, new Context());
+    }
+
+    /**
+     * Create an instance with an existing context, e.g. one loaded from an instance store.
+     */
+    public Instance(String id, String flow, Context context) {
         this.id = StringUtils.isEmpty(id) ? UUID.randomUUID().toString() : id;
         this.flow = flow;
+        this.context = context;
+        context.bindInstance(this.id, flow);
     }
 
     public String getId() {
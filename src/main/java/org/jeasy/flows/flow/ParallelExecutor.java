@@ -23,58 +23,238 @@
  */
 package org.jeasy.flows.flow;
 
+import org.jeasy.flows.jfr.FlowEvents;
+import org.jeasy.flows.work.AbstractWork;
+import org.jeasy.flows.work.AsyncWork;
+import org.jeasy.flows.work.DefaultReport;
 import org.jeasy.flows.work.Executable;
-import org.jeasy.flows.work.Work;
 import org.jeasy.flows.work.Report;
+import org.jeasy.flows.work.Status;
+import org.jeasy.flows.work.TimeoutReport;
+import org.jeasy.flows.work.Work;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CompletionService;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.Future;
+import java.util.function.Predicate;
 
 class ParallelExecutor {
 
+    static final ExecutorService DEFAULT = Executors.newCachedThreadPool();
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> DEFAULT.shutdown()));
+    }
+
     private final ExecutorService workExecutor;
 
+    /**
+     * @param workExecutor to run work units on, or null to use the executor of the
+     *                     context (set by the engine) and the default one otherwise
+     */
     ParallelExecutor(ExecutorService workExecutor) {
         this.workExecutor = workExecutor;
     }
 
+    private ExecutorService executorFor(Context context) {
+        if (workExecutor != null) {
+            return workExecutor;
+        }
+        ExecutorService executorService = context.getExecutorService();
+        return executorService != null ? executorService : DEFAULT;
+    }
+
+    /**
+     * Execute work units in parallel and wait for all of them.
+     *
+     * @return reports in completion order
+     */
     List<Report> executeInParallel(List<Work> workUnits, Context context) {
-        // prepare tasks for parallel submission
-        List<Callable<Report>> tasks = new ArrayList<>(workUnits.size());
-        workUnits.forEach(work -> tasks.add(() -> ((Executable)work).execute(context)));
+        List<Report> reports = new ArrayList<>(workUnits.size());
+        executeInParallel(workUnits, context, report -> {
+            reports.add(report);
+            return false;
+        });
+        return reports;
+    }
 
-        // submit work units and wait for results
-        List<Future<Report>> futures;
+    /**
+     * Execute work units in parallel and add their reports to the parallel report in
+     * completion order, returning as soon as the parallel report is decided. Work units
+     * still running at that point are cancelled (their threads are interrupted).
+     */
+    void executeInParallel(List<Work> workUnits, Context context, ParallelReport parallelReport) {
+        executeInParallel(workUnits, context, report -> {
+            parallelReport.add(report);
+            return parallelReport.isDecided();
+        });
+    }
+
+    /**
+     * @param consumer of reports in completion order, returning true to stop waiting
+     */
+    private void executeInParallel(List<Work> workUnits, Context context, Predicate<Report> consumer) {
+        workUnits = pendingWorkUnits(workUnits, context, consumer);
+        if (workUnits.isEmpty()) {
+            return;
+        }
+        ExecutorService executorService = executorFor(context);
+        if (executorService instanceof ForkJoinPool) {
+            new ForkJoinBranches((ForkJoinPool) executorService, workUnits, context).join(consumer);
+            return;
+        }
+
+        // submit work units
+        CompletionService<Report> completionService = new ExecutorCompletionService<>(executorService);
+        List<Future<Report>> futures = new ArrayList<>(workUnits.size());
+        for (Work work : workUnits) {
+            Object submit = FlowEvents.beginBranchSubmit();
+            futures.add(completionService.submit(() -> {
+                FlowEvents.endBranchSubmit(submit, work, context);
+                return ((Executable) work).execute(context);
+            }));
+        }
+        Runnable registration = context.getCancellationToken().onCancel(() -> cancel(futures));
+
+        // gather reports as they complete
         try {
-            futures = this.workExecutor.invokeAll(tasks);
-        } catch (InterruptedException e) {
-            throw new RuntimeException("The parallel flow was interrupted while executing work units", e);
+            for (int remaining = futures.size(); remaining > 0; remaining--) {
+                Future<Report> future;
+                try {
+                    future = completionService.take();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException("The parallel flow was interrupted while executing work units", e);
+                }
+                Report report;
+                try {
+                    report = future.isCancelled() ? TimeoutReport.ofCancelled(context) : future.get();
+                } catch (InterruptedException e) {
+                    String message = String.format("The parallel flow was interrupted while waiting for the result of work unit '%s'", workOf(future, futures, workUnits).getName());
+                    throw new RuntimeException(message, e);
+                } catch (ExecutionException e) {
+                    String message = String.format("Unable to execute work unit '%s'", workOf(future, futures, workUnits).getName());
+                    throw new RuntimeException(message, e);
+                }
+                if (consumer.test(report)) {
+                    return;
+                }
+            }
+        } finally {
+            registration.run();
+            cancel(futures);
         }
-        Map<Work, Future<Report>> workToReportFuturesMap = new HashMap<>();
+    }
+
+    /**
+     * Answer the work units done in a previous run (those with a final status in the
+     * context, e.g. the completed branches of a resumed flow) on the calling thread
+     * instead of submitting them just to get their cached report back.
+     *
+     * @param consumer of the reports of the done work units, returning true to stop
+     * @return the work units still to run, empty if the consumer stopped
+     */
+    private static List<Work> pendingWorkUnits(List<Work> workUnits, Context context, Predicate<Report> consumer) {
+        List<Work> pending = null;
         for (int index = 0; index < workUnits.size(); index++) {
-            workToReportFuturesMap.put(workUnits.get(index), futures.get(index));
+            Work work = workUnits.get(index);
+            Status status = finalStatus(work, context);
+            if (status == null) {
+                if (pending != null) {
+                    pending.add(work);
+                }
+                continue;
+            }
+            if (pending == null) {
+                pending = new ArrayList<>(workUnits.subList(0, index));
+            }
+            if (consumer.test(new DefaultReport(status, context))) {
+                return new ArrayList<>();
+            }
+        }
+        return pending == null ? workUnits : pending;
+    }
+
+    private static Status finalStatus(Work work, Context context) {
+        if (!(work instanceof AbstractWork)) {
+            return null;
         }
+        Status status = context.getStatus(work);
+        return status == Status.WAITING ? null : status;
+    }
+
+    private static void cancel(List<? extends Future<?>> futures) {
+        for (Future<?> future : futures) {
+            future.cancel(true);
+        }
+    }
 
-        // gather reports
-        List<Report> reports = new ArrayList<>();
-        for (Map.Entry<Work, Future<Report>> entry : workToReportFuturesMap.entrySet()) {
-            try {
-                reports.add(entry.getValue().get());
-            } catch (InterruptedException e) {
-                String message = String.format("The parallel flow was interrupted while waiting for the result of work unit '%s'", entry.getKey().getName());
-                throw new RuntimeException(message, e);
-            } catch (ExecutionException e) {
-                String message = String.format("Unable to execute work unit '%s'", entry.getKey().getName());
-                throw new RuntimeException(message, e);
+    private static Work workOf(Future<Report> future, List<Future<Report>> futures, List<Work> workUnits) {
+        for (int index = 0; index < futures.size(); index++) {
+            if (futures.get(index) == future) {
+                return workUnits.get(index);
             }
         }
+        throw new IllegalArgumentException("Unknown future");
+    }
 
-        return reports;
+    /**
+     * Start work units on the executor and return a stage completed with the parallel
+     * report as soon as it is decided (or all work units are done). No thread waits for
+     * the branches: each one only holds a thread while it is actually running. Work units
+     * not started yet when the report is decided are not started at all.
+     */
+    CompletableFuture<ParallelReport> executeInParallelAsync(List<Work> workUnits, Context context, ParallelReport parallelReport) {
+        CompletableFuture<ParallelReport> result = new CompletableFuture<>();
+        workUnits = pendingWorkUnits(workUnits, context, report -> {
+            parallelReport.add(report);
+            return parallelReport.isDecided();
+        });
+        if (workUnits.isEmpty()) {
+            result.complete(parallelReport);
+            return result;
+        }
+        ExecutorService executorService = executorFor(context);
+        // cancelling a supplier that has not run yet prevents it from running
+        List<CompletableFuture<CompletionStage<Report>>> futures = new ArrayList<>(workUnits.size());
+        int[] remaining = {workUnits.size()};
+        for (Work work : workUnits) {
+            Object submit = FlowEvents.beginBranchSubmit();
+            CompletableFuture<CompletionStage<Report>> started = CompletableFuture.supplyAsync(() -> {
+                FlowEvents.endBranchSubmit(submit, work, context);
+                return AsyncWork.execute(work, context);
+            }, executorService);
+            futures.add(started);
+            started.thenCompose(stage -> stage).whenComplete((report, error) -> {
+                synchronized (parallelReport) {
+                    if (result.isDone()) {
+                        return;
+                    }
+                    if (error instanceof CancellationException || error != null && error.getCause() instanceof CancellationException) {
+                        report = TimeoutReport.ofCancelled(context);
+                    } else if (error != null) {
+                        result.completeExceptionally(error);
+                        return;
+                    }
+                    parallelReport.add(report);
+                    if (parallelReport.isDecided() || --remaining[0] == 0) {
+                        result.complete(parallelReport);
+                    }
+                }
+            });
+        }
+        Runnable registration = context.getCancellationToken().onCancel(() -> cancel(futures));
+        result.whenComplete((report, error) -> {
+            registration.run();
+            cancel(futures);
+        });
+        return result;
     }
 }
@@ -23,6 +23,7 @@
  */
 package org.jeasy.flows.flow;
 
+import org.jeasy.flows.jfr.FlowEvents;
 import org.jeasy.flows.work.Report;
 import org.jeasy.flows.work.Status;
 import org.jeasy.flows.work.Work;
@@ -31,8 +32,8 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 /**
  * A parallel flow executes a set of work units in parallel. A {@link ParallelFlow}
@@ -40,7 +41,11 @@ import java.util.concurrent.Executors;
  * threads.
  *
  * <strong>It is the responsibility of the caller to manage the lifecycle of the
- * executor service.</strong>
+ * executor service.</strong> Flows built without an executor service use the one of
+ * the engine running them (see {@link org.jeasy.flows.engine.EngineBuilder}), or a
+ * shared cached thread pool if the engine has none. With a {@link java.util.concurrent.ForkJoinPool},
+ * nested parallel flows fork and join their branches as subtasks instead of blocking
+ * pool threads, which lets deeply nested fan-outs run on a fixed number of threads.
  * <p>
  * The status of a parallel flow execution is defined as:
  *
@@ -49,6 +54,11 @@ import java.util.concurrent.Executors;
  *     <li>{@link Status#FAILED}: If one of the work units has failed</li>
  * </ul>
  *
+ * with {@link ParallelPolicy#AND}, while with {@link ParallelPolicy#OR} the flow is
+ * completed as soon as one work unit has completed. Reports are consumed in completion
+ * order and the flow returns as soon as its status is decided, without waiting for the
+ * remaining work units.
+ *
  * @author Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
  */
 public class ParallelFlow extends AbstractFlow {
@@ -56,22 +66,51 @@ public class ParallelFlow extends AbstractFlow {
     private final List<Work> workUnits = new ArrayList<>();
     private final ParallelExecutor workExecutor;
     private final ParallelPolicy parallelPolicy;
+    private final boolean retainReports;
 
     ParallelFlow(String name, List<Work> workUnits, ParallelExecutor parallelExecutor, ParallelPolicy parallelPolicy) {
+        this(name, workUnits, parallelExecutor, parallelPolicy, true);
+    }
+
+    ParallelFlow(String name, List<Work> workUnits, ParallelExecutor parallelExecutor, ParallelPolicy parallelPolicy,
+                 boolean retainReports) {
         super(name);
         this.workUnits.addAll(workUnits);
         this.workExecutor = parallelExecutor;
         this.parallelPolicy = parallelPolicy;
+        this.retainReports = retainReports;
+        StatusLayout.assign(this);
+    }
+
+    @Override
+    List<Work> getChildren() {
+        return workUnits;
     }
 
     @Override
     protected Report executeInternal(Context context) {
-        ParallelReport parallelReport = new ParallelReport(parallelPolicy);
-        List<Report> reports = workExecutor.executeInParallel(workUnits, context);
-        parallelReport.addAll(reports);
+        ParallelReport parallelReport = new ParallelReport(parallelPolicy, retainReports);
+        Object join = FlowEvents.beginParallelJoin();
+        try {
+            workExecutor.executeInParallel(workUnits, context, parallelReport);
+        } finally {
+            FlowEvents.endParallelJoin(join, this, context, workUnits.size(), parallelReport.getStatus());
+        }
         return parallelReport;
     }
 
+    @Override
+    protected CompletionStage<Report> executeInternalAsync(Context context) {
+        Object join = FlowEvents.beginParallelJoin();
+        CompletionStage<ParallelReport> stage =
+                workExecutor.executeInParallelAsync(workUnits, context, new ParallelReport(parallelPolicy, retainReports));
+        if (join != null) {
+            stage = stage.whenComplete((parallelReport, error) -> FlowEvents.endParallelJoin(join, this, context,
+                    workUnits.size(), parallelReport == null ? null : parallelReport.getStatus()));
+        }
+        return stage.thenApply(parallelReport -> parallelReport);
+    }
+
     public static class Builder {
 
         private Builder() {
@@ -90,7 +129,7 @@ public class ParallelFlow extends AbstractFlow {
             WithStep execute(Work... workUnits);
         }
 
-        public interface WithStep {
+        public interface WithStep extends PolicyStep {
             /**
              * A {@link ParallelFlow} requires an {@link ExecutorService} to
              * execute work units in parallel using multiple threads.
@@ -109,20 +148,27 @@ public class ParallelFlow extends AbstractFlow {
         }
 
         public interface BuildStep {
+            /**
+             * Whether the report of the flow keeps the report of every work unit (the
+             * default). Without them, the report only keeps running aggregates (status
+             * counters, first error, context), so its size does not depend on the number
+             * of work units, which matters for wide fan-outs.
+             *
+             * @param retainReports false to only keep aggregates
+             * @return the builder instance
+             */
+            BuildStep retainReports(boolean retainReports);
+
             ParallelFlow build();
         }
 
         private static class BuildSteps implements NameStep, ExecuteStep, WithStep, BuildStep, PolicyStep {
 
-            static final ExecutorService DEFAULT = Executors.newCachedThreadPool();
-            static {
-                Runtime.getRuntime().addShutdownHook(new Thread(() -> DEFAULT.shutdown()));
-            }
-
             private String name;
             private final List<Work> works;
-            private ExecutorService executorService = DEFAULT;
+            private ExecutorService executorService;
             private ParallelPolicy policy = ParallelPolicy.AND;
+            private boolean retainReports = true;
 
             public BuildSteps() {
                 this.name = UUID.randomUUID().toString();
@@ -153,11 +199,17 @@ public class ParallelFlow extends AbstractFlow {
                 return this;
             }
 
+            @Override
+            public BuildStep retainReports(boolean retainReports) {
+                this.retainReports = retainReports;
+                return this;
+            }
+
             @Override
             public ParallelFlow build() {
                 return new ParallelFlow(
                         this.name, this.works,
-                        new ParallelExecutor(this.executorService), this.policy);
+                        new ParallelExecutor(this.executorService), this.policy, this.retainReports);
             }
         }
 
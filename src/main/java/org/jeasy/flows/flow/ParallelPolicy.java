@@ -1,7 +1,6 @@
 package org.jeasy.flows.flow;
 
 /**
- * @author Alex.Sun
  * @created 2022-04-04 18:22
  */
 public enum ParallelPolicy {
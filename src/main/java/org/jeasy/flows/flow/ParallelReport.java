@@ -27,10 +27,16 @@ import org.jeasy.flows.work.Report;
 import org.jeasy.flows.work.Status;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
  * Aggregate report of the partial reports of work units executed in a parallel flow.
+ * <p>
+ * The status and the first error are kept as running aggregates updated as partial
+ * reports are added. A report that does not retain partial reports (see
+ * {@link #ParallelReport(ParallelPolicy, boolean)}) uses memory independent of the
+ * number of work units.
  *
  * @author Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
  */
@@ -38,6 +44,15 @@ public class ParallelReport implements Report {
 
     private final List<Report> reports;
     private final ParallelPolicy policy;
+    private final boolean retainReports;
+
+    // running outcome, updated as partial reports are added
+    private int completed, waiting, failed, cancelled;
+    private Throwable firstError;
+
+    // without retained reports: the context shared by partial reports, or the merge of distinct ones
+    private Context sharedContext;
+    private Context mergedContext;
 
     /**
      * Create a new {@link ParallelReport}.
@@ -58,23 +73,112 @@ public class ParallelReport implements Report {
     public ParallelReport(List<Report> reports, ParallelPolicy parallelPolicy) {
         this.reports = reports;
         this.policy = parallelPolicy;
+        this.retainReports = true;
+        for (Report report : reports) {
+            count(report);
+        }
+    }
+
+    /**
+     * Create a new {@link ParallelReport}.
+     *
+     * @param parallelPolicy
+     * @param retainReports  false to only keep the aggregates of partial reports: then
+     *                       {@link #getReports()} is empty and {@link #getContext()}
+     *                       returns the context shared by partial reports (or a merge
+     *                       of their contexts if they differ)
+     */
+    public ParallelReport(ParallelPolicy parallelPolicy, boolean retainReports) {
+        this.reports = retainReports ? new ArrayList<>() : Collections.emptyList();
+        this.policy = parallelPolicy;
+        this.retainReports = retainReports;
     }
 
     /**
      * Get partial reports.
      *
-     * @return partial reports
+     * @return partial reports, empty if they are not retained
      */
     public List<Report> getReports() {
         return reports;
     }
 
     void add(Report report) {
-        reports.add(report);
+        if (retainReports) {
+            reports.add(report);
+        } else if (report != null) {
+            aggregate(report.getContext());
+        }
+        count(report);
+    }
+
+    /**
+     * Merge contexts as they come, only copying when partial contexts differ.
+     */
+    private void aggregate(Context context) {
+        if (context == null || context == sharedContext) {
+            return;
+        }
+        if (sharedContext == null) {
+            sharedContext = context;
+            return;
+        }
+        if (mergedContext == null) {
+            mergedContext = new Context();
+            merge(sharedContext, mergedContext);
+        }
+        merge(context, mergedContext);
+    }
+
+    private static void merge(Context partialContext, Context context) {
+        for (String key : partialContext.valueKeys()) {
+            context.setValue(key, partialContext.getValue(key));
+        }
+        for (String name : partialContext.statusNames()) {
+            context.setStatus(name, partialContext.getStatus(name));
+        }
     }
 
     void addAll(List<Report> reports) {
-        this.reports.addAll(reports);
+        for (Report report : reports) {
+            add(report);
+        }
+    }
+
+    private void count(Report report) {
+        if (report == null) {
+            return;
+        }
+        switch (report.getStatus()) {
+            case COMPLETED:
+                completed++;
+                break;
+            case WAITING:
+                waiting++;
+                break;
+            case FAILED:
+                failed++;
+                break;
+            case CANCELLED:
+                cancelled++;
+                break;
+        }
+        if (firstError == null) {
+            firstError = report.getError();
+        }
+    }
+
+    /**
+     * Tell whether the status of the parallel flow is known regardless of the reports
+     * still to come: with {@link ParallelPolicy#OR} as soon as one work unit has
+     * completed, with {@link ParallelPolicy#AND} as soon as one has failed or has been
+     * cancelled. A waiting work unit does not decide an AND: the others go on, so that
+     * the flow is resumed with all the work units that could run done.
+     *
+     * @return true if further partial reports cannot change the status
+     */
+    boolean isDecided() {
+        return policy == ParallelPolicy.OR ? completed > 0 : failed > 0 || cancelled > 0;
     }
 
     /**
@@ -87,34 +191,31 @@ public class ParallelReport implements Report {
      *     <li>{@link Status#FAILED}: If one of the work units has failed</li>
      * </ul>
      *
+     * With {@link ParallelPolicy#AND}, the status does not depend on the order of the
+     * partial reports: failed comes first, then cancelled, then waiting.
+     *
      * @return workflow status
      */
     @Override
     public Status getStatus() {
         switch (policy) {
             case OR:
-                Report waiting = null, failed = null;
-                for (Report report : reports) {
-                    if (report.getStatus() == Status.COMPLETED) {
-                        return report.getStatus();
-                    } else if (report.getStatus() == Status.WAITING) {
-                        waiting = report;
-                    } else if (report.getStatus() == Status.FAILED) {
-                        failed = report;
-                    }
+                if (completed > 0) {
+                    return Status.COMPLETED;
+                }
+                if (waiting > 0) {
+                    return Status.WAITING;
                 }
-                return waiting != null ? waiting.getStatus() : (failed != null ? failed.getStatus() : Status.COMPLETED);
+                return failed > 0 ? Status.FAILED : (cancelled > 0 ? Status.CANCELLED : Status.COMPLETED);
             case AND:
             default:
-                Report completed = null;
-                for (Report report : reports) {
-                    if (report.getStatus() == Status.FAILED || report.getStatus() == Status.WAITING) {
-                        return report.getStatus();
-                    } else {
-                        completed = report;
-                    }
+                if (failed > 0) {
+                    return Status.FAILED;
                 }
-                return completed != null ? completed.getStatus() : Status.COMPLETED;
+                if (cancelled > 0) {
+                    return Status.CANCELLED;
+                }
+                return waiting > 0 ? Status.WAITING : Status.COMPLETED;
         }
     }
 
@@ -125,13 +226,7 @@ public class ParallelReport implements Report {
      */
     @Override
     public Throwable getError() {
-        for (Report report : reports) {
-            Throwable error = report.getError();
-            if (error != null) {
-                return error;
-            }
-        }
-        return null;
+        return firstError;
     }
 
     /**
@@ -143,15 +238,15 @@ public class ParallelReport implements Report {
      */
     @Override
     public Context getContext() {
+        if (!retainReports) {
+            if (mergedContext != null) {
+                return mergedContext;
+            }
+            return sharedContext != null ? sharedContext : new Context();
+        }
         Context context = new Context();
         for (Report report : reports) {
-            Context partialContext = report.getContext();
-            for (String key : partialContext.valueKeys()) {
-                context.setValue(key, partialContext.getValue(key));
-            }
-            for (String name : partialContext.statusNames()) {
-                context.setStatus(name, partialContext.getStatus(name));
-            }
+            merge(report.getContext(), context);
         }
         return context;
     }
@@ -0,0 +1,338 @@
+package org.jeasy.flows.flow;
+
+import org.jeasy.flows.jfr.FlowEvents;
+import org.jeasy.flows.work.AbstractWork;
+import org.jeasy.flows.work.DefaultReport;
+import org.jeasy.flows.work.Executable;
+import org.jeasy.flows.work.Report;
+import org.jeasy.flows.work.ReportPredicate;
+import org.jeasy.flows.work.Status;
+import org.jeasy.flows.work.Work;
+
+import java.util.Arrays;
+
+import static org.jeasy.flows.work.Status.CANCELLED;
+import static org.jeasy.flows.work.Status.COMPLETED;
+import static org.jeasy.flows.work.Status.FAILED;
+import static org.jeasy.flows.work.Status.WAITING;
+
+/**
+ * A flow compiled by {@link FlowCompiler} into a flat array of instructions, run by a
+ * loop instead of walking the flow tree. A program behaves like the flow it was
+ * compiled from (same reports, same statuses recorded in the context) and can be used
+ * wherever a flow is expected.
+ * <p>
+ * Instructions only carry jump targets, and the state of a run is a program counter
+ * and the report of the last step, so no call stack grows with the depth of the flow.
+ * Reports of inlined steps are only created when a custom predicate or the caller needs
+ * them. When a run ends {@link Status#WAITING}, the address of the waiting step is kept
+ * in the context and the next run with that context resumes there directly.
+ * <p>
+ * Inlined steps are not instrumented, so a context with a {@link org.jeasy.flows.work.WorkProbe}
+ * (e.g. an engine with listeners), or a run while JFR records work executions, runs the
+ * flow tree instead: probes, listeners and events see the same executions either way.
+ * <p>
+ * Programs are immutable and can be shared between threads.
+ */
+public final class Program implements Flow, Executable {
+
+    // every instruction is an opcode followed by 3 operands
+    static final int WIDTH = 4;
+
+    /** Skip the node if it has a final status in the context: slot, exit address */
+    static final int ENTER = 0;
+    /** Record the status of the current report for the node: slot */
+    static final int EXIT = 1;
+    /** Execute a work and make its report the current one: work */
+    static final int CALL = 2;
+    /** Make the current report completed */
+    static final int COMPLETE = 3;
+    /** Make the current report null */
+    static final int CLEAR = 4;
+    /** Jump with a cancelled report if the context is cancelled: target */
+    static final int CANCEL_CHECK = 5;
+    /** Jump if the current report is failed, waiting or cancelled: target */
+    static final int BREAK = 6;
+    /** Jump to the else branch unless the predicate holds: predicate, else, exit */
+    static final int BRANCH = 7;
+    /** Jump unconditionally: target */
+    static final int JUMP = 8;
+    /** Jump back to a new iteration if the predicate holds: predicate, loop start, repeat flow */
+    static final int LOOP = 9;
+
+    private final Flow flow;
+    private final int[] code;
+    private final Object[] constants;
+
+    Program(Flow flow, int[] code, Object[] constants) {
+        this.flow = flow;
+        this.code = code;
+        this.constants = constants;
+    }
+
+    @Override
+    public String getName() {
+        return flow.getName();
+    }
+
+    /**
+     * @return the flow this program was compiled from
+     */
+    public Flow getFlow() {
+        return flow;
+    }
+
+    /**
+     * @return the number of instructions of this program
+     */
+    public int size() {
+        return code.length / WIDTH;
+    }
+
+    @Override
+    public Report execute(Context context) {
+        if (context.getProbe() != null || FlowEvents.isWorkEnabled()) {
+            context.setResumePoint(null);
+            return ((Executable) flow).execute(context);
+        }
+        // the current report is held as a status, materialized into a report on demand
+        Status status = null;
+        Report report = null;
+        int waitingPc = -1;
+        // iterations of the counted loops by constant, -1 until read from the context
+        int[] iterations = null;
+        int pc = resumePc(context);
+        while (pc < code.length) {
+            switch (code[pc]) {
+                case ENTER:
+                    Status last = context.getStatus((StatusLayout.Slot) constants[code[pc + 1]]);
+                    if (last != null && last != WAITING) {
+                        status = last;
+                        report = null;
+                        pc = code[pc + 2] + WIDTH;
+                        continue;
+                    }
+                    if (context.isCancelled()) {
+                        status = CANCELLED;
+                        report = null;
+                        pc = code[pc + 2];
+                        continue;
+                    }
+                    break;
+                case EXIT:
+                    if (status != null || report != null) {
+                        context.setStatus((StatusLayout.Slot) constants[code[pc + 1]], status);
+                    }
+                    break;
+                case CALL:
+                    report = ((Executable) constants[code[pc + 1]]).execute(context);
+                    status = report == null ? null : report.getStatus();
+                    if (status == WAITING) {
+                        waitingPc = pc;
+                    }
+                    break;
+                case COMPLETE:
+                    status = COMPLETED;
+                    report = null;
+                    break;
+                case CLEAR:
+                    status = null;
+                    report = null;
+                    break;
+                case CANCEL_CHECK:
+                    if (context.isCancelled()) {
+                        status = CANCELLED;
+                        report = null;
+                        pc = code[pc + 1];
+                        continue;
+                    }
+                    break;
+                case BREAK:
+                    if (status == FAILED || status == WAITING || status == CANCELLED) {
+                        pc = code[pc + 1];
+                        continue;
+                    }
+                    break;
+                case BRANCH:
+                    if (status == WAITING || status == CANCELLED) {
+                        pc = code[pc + 3];
+                        continue;
+                    }
+                    Object condition = constants[code[pc + 1]];
+                    if (!(status != null && condition instanceof StatusTest
+                            ? ((StatusTest) condition).test(status)
+                            : predicate(condition).apply(report = report(report, status, context)))) {
+                        pc = code[pc + 2];
+                        continue;
+                    }
+                    break;
+                case JUMP:
+                    pc = code[pc + 1];
+                    continue;
+                case LOOP:
+                    if (status != WAITING && status != CANCELLED) {
+                        RepeatFlow loop = (RepeatFlow) constants[code[pc + 3]];
+                        if (loop.isCounted()) {
+                            if (iterations == null) {
+                                iterations = new int[constants.length];
+                                Arrays.fill(iterations, -1);
+                            }
+                            int index = code[pc + 3];
+                            if (iterations[index] < 0) {
+                                // iterations done before the one a resumed instance was waiting in
+                                iterations[index] = loop.iterations(context);
+                            }
+                            if (loop.shouldRepeat(null, ++iterations[index])) {
+                                AbstractFlow.reset(loop.getWork(), context);
+                                pc = code[pc + 2];
+                                continue;
+                            }
+                            // a nested loop entered again starts over
+                            iterations[index] = 0;
+                            loop.clearIterations(context);
+                            break;
+                        }
+                        Object repeat = constants[code[pc + 1]];
+                        if (status != null && repeat instanceof StatusTest
+                                ? ((StatusTest) repeat).test(status)
+                                : predicate(repeat).apply(report = report(report, status, context))) {
+                            AbstractFlow.reset(loop.getWork(), context);
+                            pc = code[pc + 2];
+                            continue;
+                        }
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown opcode " + code[pc] + " at " + pc);
+            }
+            pc += WIDTH;
+        }
+        if (status == WAITING && iterations != null) {
+            park(iterations, context);
+        }
+        context.setResumePoint(status == WAITING && waitingPc >= 0 ? new ResumePoint(this, waitingPc) : null);
+        return report(report, status, context);
+    }
+
+    /**
+     * Keep the iterations done by the loops a waiting run stopped in, like
+     * {@link RepeatFlow} does: only when the instance ends waiting.
+     */
+    private void park(int[] iterations, Context context) {
+        for (int index = 0; index < iterations.length; index++) {
+            if (iterations[index] > 0) {
+                ((RepeatFlow) constants[index]).setIterations(context, iterations[index]);
+            }
+        }
+    }
+
+    /**
+     * Find where to start: the waiting step of the last run with this context if the
+     * flow is still waiting, the beginning otherwise.
+     */
+    private int resumePc(Context context) {
+        ResumePoint resumePoint = context.getResumePoint();
+        if (resumePoint == null || resumePoint.program != this || context.isCancelled()) {
+            return 0;
+        }
+        if (flow instanceof AbstractWork && context.getStatus(flow.getName()) != WAITING) {
+            return 0;
+        }
+        return resumePoint.pc;
+    }
+
+    private static ReportPredicate predicate(Object condition) {
+        return condition instanceof StatusTest ? ((StatusTest) condition).predicate : (ReportPredicate) condition;
+    }
+
+    private static Report report(Report report, Status status, Context context) {
+        return report != null || status == null ? report : new DefaultReport(status, context);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("Program '").append(getName()).append("'\n");
+        for (int pc = 0; pc < code.length; pc += WIDTH) {
+            builder.append(String.format("%5d %-12s", pc, mnemonic(code[pc])));
+            switch (code[pc]) {
+                case ENTER:
+                    builder.append(((StatusLayout.Slot) constants[code[pc + 1]]).getName()).append(" -> ").append(code[pc + 2]);
+                    break;
+                case EXIT:
+                    builder.append(((StatusLayout.Slot) constants[code[pc + 1]]).getName());
+                    break;
+                case CALL:
+                    builder.append(((Work) constants[code[pc + 1]]).getName());
+                    break;
+                case CANCEL_CHECK:
+                case BREAK:
+                case JUMP:
+                    builder.append("-> ").append(code[pc + 1]);
+                    break;
+                case BRANCH:
+                    builder.append("else -> ").append(code[pc + 2]).append(", exit -> ").append(code[pc + 3]);
+                    break;
+                case LOOP:
+                    builder.append("-> ").append(code[pc + 2]);
+                    break;
+                default:
+                    break;
+            }
+            builder.append('\n');
+        }
+        return builder.toString();
+    }
+
+    private static String mnemonic(int opcode) {
+        switch (opcode) {
+            case ENTER: return "ENTER";
+            case EXIT: return "EXIT";
+            case CALL: return "CALL";
+            case COMPLETE: return "COMPLETE";
+            case CLEAR: return "CLEAR";
+            case CANCEL_CHECK: return "CANCEL_CHECK";
+            case BREAK: return "BREAK";
+            case BRANCH: return "BRANCH";
+            case JUMP: return "JUMP";
+            case LOOP: return "LOOP";
+            default: return "?";
+        }
+    }
+
+    /**
+     * A built-in predicate only looking at the status of a report, evaluated without
+     * creating the report (see {@link FlowCompiler}).
+     */
+    static final class StatusTest {
+
+        private final ReportPredicate predicate;
+        private final int statuses;
+
+        StatusTest(ReportPredicate predicate, Status... statuses) {
+            this.predicate = predicate;
+            int mask = 0;
+            for (Status status : statuses) {
+                mask |= 1 << status.ordinal();
+            }
+            this.statuses = mask;
+        }
+
+        boolean test(Status status) {
+            return (statuses & 1 << status.ordinal()) != 0;
+        }
+    }
+
+    /**
+     * Where a program left off when its last run with a context ended waiting.
+     */
+    static final class ResumePoint {
+
+        private final Program program;
+        private final int pc;
+
+        ResumePoint(Program program, int pc) {
+            this.program = program;
+            this.pc = pc;
+        }
+    }
+}
@@ -23,6 +23,8 @@
  */
 package org.jeasy.flows.flow;
 
+import org.jeasy.flows.work.AsyncWork;
+import org.jeasy.flows.work.DefaultReport;
 import org.jeasy.flows.work.Executable;
 import org.jeasy.flows.work.NoOpWork;
 import org.jeasy.flows.work.Report;
@@ -30,10 +32,21 @@ import org.jeasy.flows.work.ReportPredicate;
 import org.jeasy.flows.work.Status;
 import org.jeasy.flows.work.Work;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 /**
  * A repeat flow executes a work repeatedly until its report satisfies a given predicate.
+ * <p>
+ * Each iteration runs the work again: the statuses recorded by the previous iteration
+ * are cleared first. The iteration count is state of the instance, not of the flow
+ * definition, so a flow can be run by many instances at once: a {@code times(n)} flow
+ * counts the iterations of each run on its own. The count only lives in the context
+ * (under {@link #getIterationsKey()}) while an iteration is waiting, so that a resumed
+ * instance goes on with the right count, and is removed when the loop ends.
  *
  * @author Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
  */
@@ -41,23 +54,150 @@ public class RepeatFlow extends AbstractFlow {
 
     private final Work work;
     private final ReportPredicate predicate;
+    // iterations of a run, for count-based predicates
+    private final int times;
+    private final String iterationsKey;
 
     RepeatFlow(String name, Work work, ReportPredicate predicate) {
         super(name);
         this.work = work;
         this.predicate = predicate;
+        this.times = predicate instanceof ReportPredicate.TimesPredicate
+                ? ((ReportPredicate.TimesPredicate) predicate).getTimes()
+                : -1;
+        this.iterationsKey = name + ".iterations";
+        StatusLayout.assign(this);
+    }
+
+    @Override
+    List<Work> getChildren() {
+        return Collections.singletonList(work);
+    }
+
+    Work getWork() {
+        return work;
+    }
+
+    ReportPredicate getPredicate() {
+        return predicate;
+    }
+
+    /**
+     * @return the name of the context value holding the number of iterations done while an iteration is waiting
+     */
+    public String getIterationsKey() {
+        return iterationsKey;
     }
 
     @Override
     protected Report executeInternal(Context context) {
+        // iterations done before the one a resumed instance is waiting in
+        int iterations = iterations(context);
         Report report;
-        do {
-            report = ((Executable)work).execute(context);
-            if (report != null && report.getStatus() == Status.WAITING) break;
-        } while (predicate.apply(report));
+        while (true) {
+            if (context.isCancelled()) {
+                return new DefaultReport(Status.CANCELLED, context);
+            }
+            report = ((Executable) work).execute(context);
+            if (isWaiting(report)) {
+                return park(report, iterations, context);
+            }
+            iterations++;
+            if (!shouldRepeat(report, iterations)) {
+                break;
+            }
+            reset(work, context);
+        }
+        clearIterations(context);
         return report;
     }
 
+    @Override
+    protected CompletionStage<Report> executeInternalAsync(Context context) {
+        return executeAsyncFrom(iterations(context), context);
+    }
+
+    private CompletionStage<Report> executeAsyncFrom(int done, Context context) {
+        int iterations = done;
+        while (true) {
+            if (context.isCancelled()) {
+                return CompletableFuture.completedFuture(new DefaultReport(Status.CANCELLED, context));
+            }
+            CompletableFuture<Report> stage = AsyncWork.execute(work, context).toCompletableFuture();
+            if (!stage.isDone() || stage.isCompletedExceptionally()) {
+                int before = iterations;
+                return stage.thenCompose(report -> {
+                    if (isWaiting(report)) {
+                        return CompletableFuture.completedFuture(park(report, before, context));
+                    }
+                    if (shouldRepeat(report, before + 1)) {
+                        reset(work, context);
+                        return executeAsyncFrom(before + 1, context);
+                    }
+                    clearIterations(context);
+                    return CompletableFuture.completedFuture(report);
+                });
+            }
+            Report report = stage.join();
+            if (isWaiting(report)) {
+                return CompletableFuture.completedFuture(park(report, iterations, context));
+            }
+            iterations++;
+            if (!shouldRepeat(report, iterations)) {
+                clearIterations(context);
+                return stage;
+            }
+            reset(work, context);
+        }
+    }
+
+    private static boolean isWaiting(Report report) {
+        return report != null && report.getStatus() == Status.WAITING;
+    }
+
+    /**
+     * Keep the number of iterations done in the context of an instance that ends
+     * waiting (cancelled runs are not resumed).
+     */
+    private Report park(Report report, int iterations, Context context) {
+        if (iterations > 0) {
+            setIterations(context, iterations);
+        }
+        return report;
+    }
+
+    int iterations(Context context) {
+        Object iterations = context.getValue(iterationsKey);
+        return iterations instanceof Integer ? (Integer) iterations : 0;
+    }
+
+    void setIterations(Context context, int iterations) {
+        context.setValue(iterationsKey, iterations);
+    }
+
+    void clearIterations(Context context) {
+        if (context.getValue(iterationsKey) != null) {
+            context.setValue(iterationsKey, null);
+        }
+    }
+
+    /**
+     * @return whether counting iterations decides when the loop ends
+     */
+    boolean isCounted() {
+        return times >= 0;
+    }
+
+    /**
+     * @param iterations done so far, the one of the report included
+     */
+    boolean shouldRepeat(Report report, int iterations) {
+        if (report != null && report.getStatus() == Status.CANCELLED) {
+            return false;
+        }
+        return isCounted() ? iterations < times : predicate.apply(report);
+    }
+
     public static class Builder {
 
         private Builder() {
@@ -0,0 +1,372 @@
+package org.jeasy.flows.flow;
+
+import org.jeasy.flows.work.AsyncWork;
+import org.jeasy.flows.work.DefaultReport;
+import org.jeasy.flows.work.Executable;
+import org.jeasy.flows.work.Report;
+import org.jeasy.flows.work.ReportPredicate;
+import org.jeasy.flows.work.Status;
+import org.jeasy.flows.work.Work;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A retry flow executes a work again while its report satisfies a retry predicate
+ * (failed reports by default), up to a maximum number of attempts, waiting between
+ * attempts with an exponential backoff and jitter: the n-th retry waits
+ * {@code initialDelay * multiplier^(n-1)}, capped at the maximum delay, minus a random
+ * fraction (up to the jitter) of it. The report of the last attempt is the report of
+ * the flow.
+ * <p>
+ * No thread waits for a retry. A synchronous execution reports {@link Status#WAITING}
+ * while backing off and registers the time of the next attempt in the context (see
+ * {@link Context#awaitTimer}), so that an engine running the instance resumes it then,
+ * like a {@link org.jeasy.flows.work.DelayWork}. The number of attempts and the time
+ * of the next one are values of the context, so they are parked and journaled with
+ * the instance. An asynchronous execution schedules the next attempt on a timer thread
+ * shared by all retry flows, which hands it over to the executor of the context.
+ * <p>
+ * Engines only arm timers for instances: run synchronously with
+ * {@code Engine.run(Flow, Context)}, a failed attempt leaves the flow waiting, and the
+ * next attempt only runs if the flow is run again after its time. Synchronous retries
+ * need {@code Engine.run(Flow, Instance)}, otherwise run the flow with
+ * {@code Engine.runAsync}.
+ */
+public class RetryFlow extends AbstractFlow {
+
+    private final Work work;
+    private final int maxAttempts;
+    private final long initialDelayMillis;
+    private final double multiplier;
+    private final long maxDelayMillis;
+    private final double jitter;
+    private final ReportPredicate retryOn;
+    private final String attemptsKey;
+    private final String retryAtKey;
+
+    RetryFlow(String name, Work work, int maxAttempts, long initialDelayMillis, double multiplier,
+              long maxDelayMillis, double jitter, ReportPredicate retryOn) {
+        super(name);
+        this.work = work;
+        this.maxAttempts = maxAttempts;
+        this.initialDelayMillis = initialDelayMillis;
+        this.multiplier = multiplier;
+        this.maxDelayMillis = maxDelayMillis;
+        this.jitter = jitter;
+        this.retryOn = retryOn;
+        this.attemptsKey = name + ".attempts";
+        this.retryAtKey = name + ".retryAt";
+        StatusLayout.assign(this);
+    }
+
+    @Override
+    List<Work> getChildren() {
+        return Collections.singletonList(work);
+    }
+
+    @Override
+    protected Report executeInternal(Context context) {
+        Object retryAt = context.getValue(retryAtKey);
+        if (retryAt instanceof Long) {
+            if (System.currentTimeMillis() < (Long) retryAt) {
+                context.awaitTimer(getName(), (Long) retryAt);
+                return new DefaultReport(Status.WAITING, context);
+            }
+            context.setValue(retryAtKey, null);
+        }
+        prepareAttempt(context);
+        Report report = ((Executable) work).execute(context);
+        long delay = nextDelay(report, context);
+        if (delay < 0) {
+            return report;
+        }
+        long at = System.currentTimeMillis() + delay;
+        context.setValue(retryAtKey, at);
+        context.awaitTimer(getName(), at);
+        return new DefaultReport(Status.WAITING, context);
+    }
+
+    @Override
+    protected CompletionStage<Report> executeInternalAsync(Context context) {
+        if (context.isCancelled()) {
+            return CompletableFuture.completedFuture(new DefaultReport(Status.CANCELLED, context));
+        }
+        // a retry scheduled by a synchronous execution of the instance
+        Object retryAt = context.getValue(retryAtKey);
+        if (retryAt instanceof Long) {
+            context.setValue(retryAtKey, null);
+            long delay = (Long) retryAt - System.currentTimeMillis();
+            if (delay > 0) {
+                return retryLater(delay, context);
+            }
+        }
+        prepareAttempt(context);
+        return AsyncWork.execute(work, context).thenCompose(report -> {
+            long delay = nextDelay(report, context);
+            return delay < 0 ? CompletableFuture.completedFuture(report) : retryLater(delay, context);
+        });
+    }
+
+    /**
+     * Run the next attempt after a delay, on the executor of the context.
+     */
+    private CompletionStage<Report> retryLater(long delayMillis, Context context) {
+        CompletableFuture<Report> result = new CompletableFuture<>();
+        Executor executor = context.getExecutorService() != null ? context.getExecutorService() : ForkJoinPool.commonPool();
+        Backoff.SCHEDULER.schedule(() -> {
+            try {
+                executor.execute(() -> executeInternalAsync(context).whenComplete((report, error) -> {
+                    if (error != null) {
+                        result.completeExceptionally(error);
+                    } else {
+                        result.complete(report);
+                    }
+                }));
+            } catch (RejectedExecutionException e) {
+                result.completeExceptionally(e);
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+        return result;
+    }
+
+    /**
+     * Clear the statuses left by the previous attempt, unless the work is waiting in
+     * the current one.
+     */
+    private void prepareAttempt(Context context) {
+        if (attempts(context) > 0 && context.getStatus(work) != Status.WAITING) {
+            reset(work, context);
+        }
+    }
+
+    /**
+     * Count the attempt that produced a report and decide whether to retry.
+     *
+     * @return the delay before the next attempt in milliseconds, or -1 if the report is final
+     */
+    private long nextDelay(Report report, Context context) {
+        Status status = report == null ? null : report.getStatus();
+        if (status == Status.WAITING) {
+            // the attempt goes on when the work is resumed
+            return -1;
+        }
+        int attempts = attempts(context) + 1;
+        if (report == null || status == Status.CANCELLED || attempts >= maxAttempts || context.isCancelled() || !retryOn.apply(report)) {
+            context.setValue(attemptsKey, null);
+            return -1;
+        }
+        context.setValue(attemptsKey, attempts);
+        return delay(attempts);
+    }
+
+    private int attempts(Context context) {
+        Object attempts = context.getValue(attemptsKey);
+        return attempts instanceof Integer ? (Integer) attempts : 0;
+    }
+
+    /**
+     * @param retry number of the retry, from 1
+     * @return the backoff before the retry, in milliseconds
+     */
+    long delay(int retry) {
+        double backoff = Math.min(initialDelayMillis * Math.pow(multiplier, retry - 1), maxDelayMillis);
+        double jittered = backoff - backoff * jitter * ThreadLocalRandom.current().nextDouble();
+        return Math.max(0, Math.round(jittered));
+    }
+
+    Work getWork() {
+        return work;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * @return the name of the context value holding the number of failed attempts so far
+     */
+    public String getAttemptsKey() {
+        return attemptsKey;
+    }
+
+    /**
+     * @return the name of the context value holding the time of the next attempt, in
+     * milliseconds since the epoch, while the flow is backing off
+     */
+    public String getRetryAtKey() {
+        return retryAtKey;
+    }
+
+    /**
+     * Timer thread of the asynchronous retries, started on first use.
+     */
+    private static final class Backoff {
+
+        private static final ScheduledThreadPoolExecutor SCHEDULER = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "easy-flows-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static class Builder {
+
+        private Builder() {
+            // force usage of static method aNewRetryFlow
+        }
+
+        /**
+         * Start building a retry flow. Synchronous runs retry through the timers of the
+         * engine, so run the flow as an instance or asynchronously (see {@link RetryFlow}).
+         */
+        public static NameStep aNewRetryFlow() {
+            return new BuildSteps();
+        }
+
+        public interface NameStep extends RetryStep {
+            RetryStep named(String name);
+        }
+
+        public interface RetryStep {
+            AttemptsStep retry(Work work);
+        }
+
+        public interface AttemptsStep {
+            /**
+             * @param maxAttempts number of executions of the work, the first one included
+             * @return the builder instance
+             */
+            BuildStep attempts(int maxAttempts);
+        }
+
+        public interface BuildStep {
+            /**
+             * @param initialDelay before the first retry, 100 milliseconds by default
+             * @param unit         of the delay
+             * @return the builder instance
+             */
+            BuildStep backoff(long initialDelay, TimeUnit unit);
+
+            /**
+             * @param multiplier of the delay from one retry to the next, 2 by default
+             * @return the builder instance
+             */
+            BuildStep multiplier(double multiplier);
+
+            /**
+             * @param maxDelay cap of the delay between two attempts, 30 seconds by default
+             * @param unit     of the delay
+             * @return the builder instance
+             */
+            BuildStep maxDelay(long maxDelay, TimeUnit unit);
+
+            /**
+             * @param jitter fraction of each delay randomly taken off it, between 0 and 1, 0.5 by default
+             * @return the builder instance
+             */
+            BuildStep jitter(double jitter);
+
+            /**
+             * @param retryOn reports to retry, {@link ReportPredicate#FAILED} by default
+             * @return the builder instance
+             */
+            BuildStep retryOn(ReportPredicate retryOn);
+
+            RetryFlow build();
+        }
+
+        private static class BuildSteps implements NameStep, RetryStep, AttemptsStep, BuildStep {
+
+            private String name;
+            private Work work;
+            private int maxAttempts;
+            private long initialDelayMillis = 100;
+            private double multiplier = 2;
+            private long maxDelayMillis = TimeUnit.SECONDS.toMillis(30);
+            private double jitter = 0.5;
+            private ReportPredicate retryOn = ReportPredicate.FAILED;
+
+            BuildSteps() {
+                this.name = UUID.randomUUID().toString();
+            }
+
+            @Override
+            public RetryStep named(String name) {
+                this.name = name;
+                return this;
+            }
+
+            @Override
+            public AttemptsStep retry(Work work) {
+                this.work = work;
+                return this;
+            }
+
+            @Override
+            public BuildStep attempts(int maxAttempts) {
+                if (maxAttempts < 1) {
+                    throw new IllegalArgumentException("Max attempts must be at least 1");
+                }
+                this.maxAttempts = maxAttempts;
+                return this;
+            }
+
+            @Override
+            public BuildStep backoff(long initialDelay, TimeUnit unit) {
+                if (initialDelay < 0) {
+                    throw new IllegalArgumentException("Initial delay must not be negative");
+                }
+                this.initialDelayMillis = unit.toMillis(initialDelay);
+                return this;
+            }
+
+            @Override
+            public BuildStep multiplier(double multiplier) {
+                if (multiplier < 1) {
+                    throw new IllegalArgumentException("Multiplier must be at least 1");
+                }
+                this.multiplier = multiplier;
+                return this;
+            }
+
+            @Override
+            public BuildStep maxDelay(long maxDelay, TimeUnit unit) {
+                if (maxDelay < 0) {
+                    throw new IllegalArgumentException("Max delay must not be negative");
+                }
+                this.maxDelayMillis = unit.toMillis(maxDelay);
+                return this;
+            }
+
+            @Override
+            public BuildStep jitter(double jitter) {
+                if (jitter < 0 || jitter > 1) {
+                    throw new IllegalArgumentException("Jitter must be between 0 and 1");
+                }
+                this.jitter = jitter;
+                return this;
+            }
+
+            @Override
+            public BuildStep retryOn(ReportPredicate retryOn) {
+                this.retryOn = retryOn;
+                return this;
+            }
+
+            @Override
+            public RetryFlow build() {
+                return new RetryFlow(name, work, maxAttempts, initialDelayMillis, multiplier, maxDelayMillis, jitter, retryOn);
+            }
+        }
+    }
+}
@@ -23,6 +23,8 @@
  */
 package org.jeasy.flows.flow;
 
+import org.jeasy.flows.work.AsyncWork;
+import org.jeasy.flows.work.DefaultReport;
 import org.jeasy.flows.work.Executable;
 import org.jeasy.flows.work.Report;
 import org.jeasy.flows.work.Work;
@@ -32,14 +34,18 @@ import org.slf4j.LoggerFactory;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
+import static org.jeasy.flows.work.Status.CANCELLED;
 import static org.jeasy.flows.work.Status.FAILED;
 import static org.jeasy.flows.work.Status.WAITING;
 
 /**
  * A sequential flow executes a set of work units in sequence.
  * <p>
- * If a unit of work fails, next work units in the pipeline will be skipped.
+ * If a unit of work fails, is waiting or is cancelled, next work units in the pipeline
+ * will be skipped. A cancelled context stops the flow before its next work unit.
  *
  * @author Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
  */
@@ -52,18 +58,94 @@ public class SequentialFlow extends AbstractFlow {
     SequentialFlow(String name, List<Work> workUnits) {
         super(name);
         this.workUnits.addAll(workUnits);
+        StatusLayout.assign(this);
+    }
+
+    List<Work> getWorkUnits() {
+        return workUnits;
+    }
+
+    @Override
+    List<Work> getChildren() {
+        return workUnits;
     }
 
     @Override
     protected Report executeInternal(Context context) {
         Report report = null;
-        for (Work work : workUnits) {
-            report = ((Executable) work).execute(context);
-            if (report != null && (report.getStatus() == FAILED || report.getStatus() == WAITING)) break;
+        for (int index = resumeIndex(context); index < workUnits.size(); index++) {
+            if (context.isCancelled()) {
+                return new DefaultReport(CANCELLED, context);
+            }
+            report = ((Executable) workUnits.get(index)).execute(context);
+            if (isBreaking(report)) {
+                return park(report, index, context);
+            }
+        }
+        return report;
+    }
+
+    @Override
+    protected CompletionStage<Report> executeInternalAsync(Context context) {
+        return executeAsyncFrom(resumeIndex(context), context);
+    }
+
+    /**
+     * Work units before the one this flow was waiting on are done, so a resumed flow
+     * starts from the waiting one; other runs start from the first work unit.
+     */
+    private int resumeIndex(Context context) {
+        StatusLayout.Slot slot = context.slotOf(this);
+        if (slot == null || context.getStatus(slot) != WAITING) {
+            return 0;
+        }
+        return Math.min(context.getCursor(slot), workUnits.size());
+    }
+
+    /**
+     * Record the index of the waiting work unit as the resume cursor of this flow.
+     */
+    private Report park(Report report, int index, Context context) {
+        StatusLayout.Slot slot = context.slotOf(this);
+        if (slot != null && report.getStatus() == WAITING) {
+            context.setCursor(slot, index);
         }
         return report;
     }
 
+    /**
+     * Run work units from the given index on, continuing on the current thread as long
+     * as stages are already completed and chaining a continuation on the first one that
+     * is not (this keeps long sequences of synchronous works off the stack).
+     */
+    private CompletionStage<Report> executeAsyncFrom(int index, Context context) {
+        Report report = null;
+        while (index < workUnits.size()) {
+            if (context.isCancelled()) {
+                return CompletableFuture.completedFuture(new DefaultReport(CANCELLED, context));
+            }
+            int current = index++;
+            CompletableFuture<Report> stage = AsyncWork.execute(workUnits.get(current), context).toCompletableFuture();
+            if (!stage.isDone() || stage.isCompletedExceptionally()) {
+                int next = index;
+                return stage.thenCompose(nextReport -> isBreaking(nextReport)
+                        ? CompletableFuture.completedFuture(park(nextReport, current, context))
+                        : next == workUnits.size()
+                        ? CompletableFuture.completedFuture(nextReport)
+                        : executeAsyncFrom(next, context));
+            }
+            report = stage.join();
+            if (isBreaking(report)) {
+                return CompletableFuture.completedFuture(park(report, current, context));
+            }
+        }
+        return CompletableFuture.completedFuture(report);
+    }
+
+    private static boolean isBreaking(Report report) {
+        return report != null && (report.getStatus() == FAILED || report.getStatus() == WAITING || report.getStatus() == CANCELLED);
+    }
+
     public static class Builder {
 
         private Builder() {
@@ -0,0 +1,108 @@
+package org.jeasy.flows.flow;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The layout of the values of a context: which name is stored at which offset. Shapes
+ * are immutable and shared by all contexts that got the same names in the same order,
+ * like hidden classes of JavaScript engines: adding a name moves a context from a shape
+ * to its (cached) transition, so contexts of the same flow end up sharing one chain of
+ * shapes and only hold an array of values each.
+ * <p>
+ * Each flow has a tree of shapes of its own, rooted in its {@link StatusLayout}: a
+ * context moves to the tree of the flow it runs when it is bound to its layout (see
+ * {@link ShapedValues#rebase(Shape)}), so the names of a flow do not compete with the
+ * names of other flows. Contexts that do not run a flow share the {@link #ROOT} tree.
+ * <p>
+ * To keep a shape tree bounded when names are generated (e.g. per item), a shape has
+ * at most {@link #MAX_TRANSITIONS} transitions and {@link #MAX_SIZE} names, and a tree
+ * has at most {@link #MAX_SHAPES} shapes; past these limits, contexts keep their values
+ * in a map of their own.
+ */
+final class Shape {
+
+    static final int MAX_SIZE = 64;
+    static final int MAX_TRANSITIONS = 16;
+    static final int MAX_SHAPES = 10_000;
+
+    static final Shape ROOT = root();
+
+    private final Map<String, Integer> offsets;
+    private final ConcurrentMap<String, Shape> transitions = new ConcurrentHashMap<>();
+    // number of shapes of the tree
+    private final AtomicInteger count;
+
+    private Shape(Map<String, Integer> offsets, AtomicInteger count) {
+        this.offsets = offsets;
+        this.count = count;
+    }
+
+    /**
+     * @return the empty shape of a new tree
+     */
+    static Shape root() {
+        return new Shape(Collections.emptyMap(), new AtomicInteger(1));
+    }
+
+    /**
+     * @return the offset of the name, or -1 if it is not part of this shape
+     */
+    int offsetOf(String name) {
+        Integer offset = offsets.get(name);
+        return offset == null ? -1 : offset;
+    }
+
+    int size() {
+        return offsets.size();
+    }
+
+    Set<String> names() {
+        return offsets.keySet();
+    }
+
+    /**
+     * @return the names of this shape, by offset
+     */
+    String[] orderedNames() {
+        String[] names = new String[offsets.size()];
+        for (Map.Entry<String, Integer> offset : offsets.entrySet()) {
+            names[offset.getValue()] = offset.getKey();
+        }
+        return names;
+    }
+
+    /**
+     * Get the shape with one more name, stored at offset {@link #size()}.
+     *
+     * @return the next shape, or null if a limit is reached
+     */
+    Shape with(String name) {
+        Shape next = transitions.get(name);
+        if (next != null) {
+            return next;
+        }
+        if (size() >= MAX_SIZE || transitions.size() >= MAX_TRANSITIONS) {
+            return null;
+        }
+        synchronized (transitions) {
+            next = transitions.get(name);
+            if (next == null) {
+                if (transitions.size() >= MAX_TRANSITIONS || count.get() >= MAX_SHAPES) {
+                    return null;
+                }
+                count.incrementAndGet();
+                Map<String, Integer> nextOffsets = new HashMap<>(offsets);
+                nextOffsets.put(name, offsets.size());
+                next = new Shape(Collections.unmodifiableMap(nextOffsets), count);
+                transitions.put(name, next);
+            }
+            return next;
+        }
+    }
+}
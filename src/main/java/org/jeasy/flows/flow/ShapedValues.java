@@ -0,0 +1,158 @@
+package org.jeasy.flows.flow;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Values of a context by name, laid out by a shared {@link Shape}: the context only
+ * holds an array of values. Reads are lock-free; writes are serialized per context.
+ * Contexts whose names exceed the limits of shapes switch to a map of their own.
+ */
+final class ShapedValues {
+
+    private static final AtomicReferenceArray<Object> NO_SLOTS = new AtomicReferenceArray<>(0);
+    private static final int MIN_CAPACITY = 4;
+
+    // the slots are published before the shape, so a reader seeing a shape sees slots large enough for it
+    private volatile AtomicReferenceArray<Object> slots = NO_SLOTS;
+    private volatile Shape shape = Shape.ROOT;
+    private volatile Map<String, Object> dictionary;
+    // root of the shape tree of the values; guarded by this
+    private Shape root = Shape.ROOT;
+
+    Object get(String name) {
+        Map<String, Object> map = dictionary;
+        if (map != null) {
+            return map.get(name);
+        }
+        Shape current = shape;
+        int offset = current.offsetOf(name);
+        return offset < 0 ? null : slots.get(offset);
+    }
+
+    /**
+     * Set a value, or remove it if the value is null.
+     */
+    synchronized void put(String name, Object value) {
+        Map<String, Object> map = dictionary;
+        if (map == null) {
+            int offset = shape.offsetOf(name);
+            if (offset >= 0) {
+                slots.set(offset, value);
+                return;
+            }
+            if (value == null) {
+                return;
+            }
+            Shape next = shape.with(name);
+            if (next != null) {
+                AtomicReferenceArray<Object> current = slots;
+                if (next.size() > current.length()) {
+                    current = copy(current, Math.max(MIN_CAPACITY, current.length() * 2));
+                }
+                current.set(next.size() - 1, value);
+                slots = current;
+                shape = next;
+                return;
+            }
+            map = toDictionary();
+        }
+        if (value == null) {
+            map.remove(name);
+        } else {
+            map.put(name, value);
+        }
+    }
+
+    /**
+     * Move the values to another shape tree, typically the one of the flow the context
+     * runs. Values laid out by a shape keep their offsets, so lock-free readers racing
+     * with the move read the same slots; values kept in a map move back to slots. Values
+     * that do not fit in the tree stay where they are.
+     */
+    synchronized void rebase(Shape root) {
+        if (this.root == root) {
+            return;
+        }
+        this.root = root;
+        Map<String, Object> map = dictionary;
+        String[] names = map == null ? shape.orderedNames() : map.keySet().toArray(new String[0]);
+        Shape next = root;
+        for (int index = 0; index < names.length && next != null; index++) {
+            next = next.with(names[index]);
+        }
+        if (next == null) {
+            return;
+        }
+        if (map != null) {
+            AtomicReferenceArray<Object> moved = new AtomicReferenceArray<>(Math.max(MIN_CAPACITY, names.length));
+            for (int index = 0; index < names.length; index++) {
+                moved.set(index, map.get(names[index]));
+            }
+            slots = moved;
+            shape = next;
+            // readers that still see the map read consistent values
+            dictionary = null;
+            return;
+        }
+        shape = next;
+    }
+
+    /**
+     * @return the removed value, or null if there was none
+     */
+    synchronized Object remove(String name) {
+        Object value = get(name);
+        if (value != null) {
+            put(name, null);
+        }
+        return value;
+    }
+
+    Set<String> names() {
+        Map<String, Object> map = dictionary;
+        if (map != null) {
+            return new HashSet<>(map.keySet());
+        }
+        Shape current = shape;
+        AtomicReferenceArray<Object> values = slots;
+        Set<String> names = new HashSet<>();
+        for (String name : current.names()) {
+            if (values.get(current.offsetOf(name)) != null) {
+                names.add(name);
+            }
+        }
+        return names;
+    }
+
+    /**
+     * @return the shape of these values, or null if they are kept in a map
+     */
+    Shape getShape() {
+        return dictionary == null ? shape : null;
+    }
+
+    private Map<String, Object> toDictionary() {
+        Map<String, Object> map = new ConcurrentHashMap<>();
+        for (String name : shape.names()) {
+            Object value = slots.get(shape.offsetOf(name));
+            if (value != null) {
+                map.put(name, value);
+            }
+        }
+        // readers that missed the switch still see consistent slots and shape
+        dictionary = map;
+        return map;
+    }
+
+    private static AtomicReferenceArray<Object> copy(AtomicReferenceArray<Object> slots, int capacity) {
+        AtomicReferenceArray<Object> copy = new AtomicReferenceArray<>(capacity);
+        for (int index = 0; index < slots.length(); index++) {
+            copy.set(index, slots.get(index));
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,109 @@
+package org.jeasy.flows.flow;
+
+import org.jeasy.flows.work.AbstractWork;
+import org.jeasy.flows.work.Work;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Dense numbering of the work names of a flow definition, assigned when the flow is
+ * built. A {@link Context} running the flow keeps the statuses of its works in a packed
+ * table indexed by these numbers instead of a map keyed by name.
+ * <p>
+ * Works sharing a name share a slot, like they share a status in the name-based API.
+ * The layout belongs to the flow it was built for: works and sub-flows are left
+ * untouched, so adding them to other flows does not change the layout of this one. A
+ * context finds the slot of a work by its name in the layout it is bound to (see
+ * {@link Context#getStatus(Work)}).
+ */
+public final class StatusLayout {
+
+    private final Map<String, Slot> slots;
+    // root of the shapes of the values of the contexts running the flow
+    private final Shape shapes = Shape.root();
+
+    private StatusLayout(Map<String, Slot> slots) {
+        this.slots = slots;
+    }
+
+    /**
+     * Number the works of a flow tree in pre-order and give the layout to the root of
+     * the tree. Called by flows when they are built.
+     */
+    static void assign(AbstractFlow root) {
+        Map<String, Slot> slots = new HashMap<>();
+        StatusLayout layout = new StatusLayout(Collections.unmodifiableMap(slots));
+        Map<Work, Boolean> visited = new IdentityHashMap<>();
+        Deque<Work> pending = new ArrayDeque<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            Work work = pending.pop();
+            if (work == null || visited.put(work, Boolean.TRUE) != null) {
+                continue;
+            }
+            if (work instanceof AbstractWork) {
+                slots.computeIfAbsent(work.getName(), name -> new Slot(layout, slots.size(), name));
+            }
+            if (work instanceof AbstractFlow) {
+                Work[] children = ((AbstractFlow) work).getChildren().toArray(new Work[0]);
+                for (int index = children.length - 1; index >= 0; index--) {
+                    pending.push(children[index]);
+                }
+            }
+        }
+        root.setLayout(layout);
+    }
+
+    /**
+     * @return the number of slots of this layout
+     */
+    public int size() {
+        return slots.size();
+    }
+
+    Shape getShapes() {
+        return shapes;
+    }
+
+    Slot slotOf(String name) {
+        return slots.get(name);
+    }
+
+    Set<String> names() {
+        return slots.keySet();
+    }
+
+    /**
+     * The slot of a work name in a layout.
+     */
+    public static final class Slot {
+
+        private final StatusLayout layout;
+        private final int index;
+        private final String name;
+
+        private Slot(StatusLayout layout, int index, String name) {
+            this.layout = layout;
+            this.index = index;
+            this.name = name;
+        }
+
+        StatusLayout getLayout() {
+            return layout;
+        }
+
+        int getIndex() {
+            return index;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package org.jeasy.flows.flow;
+
+import org.jeasy.flows.work.Status;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Statuses of the works of an instance, packed in 4 bits per slot of a
+ * {@link StatusLayout} (0 for no status, the ordinal of the status plus one otherwise).
+ * Updates are lock-free (compare-and-set on the word holding the slot).
+ * <p>
+ * The table also holds the resume cursors of flows, created on first use: the index of
+ * the child a sequential flow was waiting on, see {@link Context#getCursor}.
+ */
+final class StatusTable {
+
+    private static final int BITS = 4;
+    private static final int SLOTS_PER_WORD = Long.SIZE / BITS;
+    private static final long MASK = (1L << BITS) - 1;
+    private static final Status[] STATUSES = Status.values();
+
+    static {
+        if (STATUSES.length >= MASK) {
+            throw new IllegalStateException("Too many statuses to fit in " + BITS + " bits");
+        }
+    }
+
+    private final StatusLayout layout;
+    private final AtomicLongArray words;
+    private volatile AtomicIntegerArray cursors;
+
+    StatusTable(StatusLayout layout) {
+        this.layout = layout;
+        this.words = new AtomicLongArray((layout.size() + SLOTS_PER_WORD - 1) / SLOTS_PER_WORD);
+    }
+
+    StatusLayout getLayout() {
+        return layout;
+    }
+
+    Status get(int slot) {
+        int code = (int) (words.get(slot / SLOTS_PER_WORD) >>> shift(slot) & MASK);
+        return code == 0 ? null : STATUSES[code - 1];
+    }
+
+    void set(int slot, Status status) {
+        int word = slot / SLOTS_PER_WORD;
+        int shift = shift(slot);
+        long code = status == null ? 0 : status.ordinal() + 1;
+        long current;
+        long next;
+        do {
+            current = words.get(word);
+            next = current & ~(MASK << shift) | code << shift;
+        } while (current != next && !words.compareAndSet(word, current, next));
+    }
+
+    int getCursor(int slot) {
+        AtomicIntegerArray array = cursors;
+        return array == null ? 0 : array.get(slot);
+    }
+
+    void setCursor(int slot, int cursor) {
+        AtomicIntegerArray array = cursors;
+        if (array == null) {
+            if (cursor == 0) {
+                return;
+            }
+            synchronized (this) {
+                array = cursors;
+                if (array == null) {
+                    cursors = array = new AtomicIntegerArray(layout.size());
+                }
+            }
+        }
+        array.set(slot, cursor);
+    }
+
+    private static int shift(int slot) {
+        return (slot % SLOTS_PER_WORD) * BITS;
+    }
+}
@@ -0,0 +1,163 @@
+package org.jeasy.flows.flow;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Values of a context stored by {@link ContextKey} id, in pages of 16 slots allocated
+ * on first write: primitive values as raw long bits with a presence mask, other values
+ * as references. Pages never move once installed, so lock-free updates of a slot are
+ * never lost when more pages are added; only installing a page takes the lock.
+ */
+final class ValueTable {
+
+    private static final int PAGE_BITS = 4;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int SLOT_MASK = PAGE_SIZE - 1;
+    // index of the presence mask in a primitive page
+    private static final int PRESENT = PAGE_SIZE;
+
+    private static final AtomicLongArray[] NO_LONG_PAGES = new AtomicLongArray[0];
+    private static final AtomicReferenceArray<?>[] NO_OBJECT_PAGES = new AtomicReferenceArray<?>[0];
+
+    private volatile AtomicLongArray[] longPages = NO_LONG_PAGES;
+    private volatile AtomicReferenceArray<?>[] objectPages = NO_OBJECT_PAGES;
+
+    boolean hasLong(int id) {
+        AtomicLongArray page = longPage(id, false);
+        return page != null && (page.get(PRESENT) & 1L << (id & SLOT_MASK)) != 0;
+    }
+
+    /**
+     * @return the raw bits of a primitive value, 0 if absent
+     */
+    long getLong(int id) {
+        AtomicLongArray page = longPage(id, false);
+        return page == null ? 0 : page.get(id & SLOT_MASK);
+    }
+
+    void setLong(int id, long bits) {
+        AtomicLongArray page = longPage(id, true);
+        page.set(id & SLOT_MASK, bits);
+        markPresent(page, id);
+    }
+
+    long addLong(int id, long delta) {
+        AtomicLongArray page = longPage(id, true);
+        long value = page.addAndGet(id & SLOT_MASK, delta);
+        markPresent(page, id);
+        return value;
+    }
+
+    void removeLong(int id) {
+        AtomicLongArray page = longPage(id, false);
+        if (page == null) {
+            return;
+        }
+        long bit = 1L << (id & SLOT_MASK);
+        long mask;
+        do {
+            mask = page.get(PRESENT);
+        } while ((mask & bit) != 0 && !page.compareAndSet(PRESENT, mask, mask & ~bit));
+        page.set(id & SLOT_MASK, 0);
+    }
+
+    Object getObject(int id) {
+        AtomicReferenceArray<?> page = objectPage(id, false);
+        return page == null ? null : page.get(id & SLOT_MASK);
+    }
+
+    @SuppressWarnings("unchecked")
+    void setObject(int id, Object value) {
+        AtomicReferenceArray<Object> page = (AtomicReferenceArray<Object>) objectPage(id, value != null);
+        if (page != null) {
+            page.set(id & SLOT_MASK, value);
+        }
+    }
+
+    /**
+     * @return the ids of the primitive values present, in increasing order
+     */
+    int[] longIds() {
+        AtomicLongArray[] pages = longPages;
+        int[] ids = new int[pages.length * PAGE_SIZE];
+        int count = 0;
+        for (int p = 0; p < pages.length; p++) {
+            long mask = pages[p] == null ? 0 : pages[p].get(PRESENT);
+            for (int slot = 0; slot < PAGE_SIZE; slot++) {
+                if ((mask & 1L << slot) != 0) {
+                    ids[count++] = p << PAGE_BITS | slot;
+                }
+            }
+        }
+        return Arrays.copyOf(ids, count);
+    }
+
+    /**
+     * @return the ids of the other values present, in increasing order
+     */
+    int[] objectIds() {
+        AtomicReferenceArray<?>[] pages = objectPages;
+        int[] ids = new int[pages.length * PAGE_SIZE];
+        int count = 0;
+        for (int p = 0; p < pages.length; p++) {
+            for (int slot = 0; pages[p] != null && slot < PAGE_SIZE; slot++) {
+                if (pages[p].get(slot) != null) {
+                    ids[count++] = p << PAGE_BITS | slot;
+                }
+            }
+        }
+        return Arrays.copyOf(ids, count);
+    }
+
+    private static void markPresent(AtomicLongArray page, int id) {
+        long bit = 1L << (id & SLOT_MASK);
+        long mask;
+        do {
+            mask = page.get(PRESENT);
+        } while ((mask & bit) == 0 && !page.compareAndSet(PRESENT, mask, mask | bit));
+    }
+
+    private AtomicLongArray longPage(int id, boolean create) {
+        AtomicLongArray[] pages = longPages;
+        int index = id >>> PAGE_BITS;
+        if (index < pages.length && pages[index] != null || !create) {
+            return index < pages.length ? pages[index] : null;
+        }
+        synchronized (this) {
+            pages = longPages;
+            if (index >= pages.length) {
+                pages = Arrays.copyOf(pages, Math.max(index + 1, pages.length * 2));
+            } else if (pages[index] == null) {
+                pages = pages.clone();
+            } else {
+                return pages[index];
+            }
+            pages[index] = new AtomicLongArray(PAGE_SIZE + 1);
+            longPages = pages;
+            return pages[index];
+        }
+    }
+
+    private AtomicReferenceArray<?> objectPage(int id, boolean create) {
+        AtomicReferenceArray<?>[] pages = objectPages;
+        int index = id >>> PAGE_BITS;
+        if (index < pages.length && pages[index] != null || !create) {
+            return index < pages.length ? pages[index] : null;
+        }
+        synchronized (this) {
+            pages = objectPages;
+            if (index >= pages.length) {
+                pages = Arrays.copyOf(pages, Math.max(index + 1, pages.length * 2));
+            } else if (pages[index] == null) {
+                pages = pages.clone();
+            } else {
+                return pages[index];
+            }
+            pages[index] = new AtomicReferenceArray<>(PAGE_SIZE);
+            objectPages = pages;
+            return pages[index];
+        }
+    }
+}
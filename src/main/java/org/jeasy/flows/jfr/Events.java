@@ -0,0 +1,84 @@
+package org.jeasy.flows.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * The JFR event types of easy-flows, see {@link FlowEvents}.
+ */
+final class Events {
+
+    private Events() {
+    }
+
+    @Category("Easy Flows")
+    @StackTrace(false)
+    abstract static class FlowEvent extends Event {
+
+        @Label("Flow")
+        @Description("Name of the flow of the instance")
+        String flowName;
+
+        @Label("Work")
+        @Description("Name of the work or flow")
+        String workName;
+
+        @Label("Instance")
+        @Description("Id of the instance")
+        String instanceId;
+    }
+
+    @Name("org.jeasy.flows.WorkExecution")
+    @Label("Work Execution")
+    @Threshold("1 ms")
+    static final class WorkExecution extends FlowEvent {
+
+        @Label("Status")
+        String status;
+    }
+
+    @Name("org.jeasy.flows.BranchSubmit")
+    @Label("Parallel Branch Submit")
+    @Description("Wait of a parallel branch from its submission to the executor until it starts")
+    @Threshold("1 ms")
+    static final class BranchSubmit extends FlowEvent {
+    }
+
+    @Name("org.jeasy.flows.ParallelJoin")
+    @Label("Parallel Join")
+    @Description("Wait of a parallel flow for its branches")
+    @Threshold("1 ms")
+    static final class ParallelJoin extends FlowEvent {
+
+        @Label("Branches")
+        int branches;
+
+        @Label("Status")
+        String status;
+    }
+
+    @Name("org.jeasy.flows.QueueWait")
+    @Label("Queue Wait")
+    @Description("Wait of a submitted flow in the queue of the workers of an engine")
+    @Threshold("1 ms")
+    static final class QueueWait extends FlowEvent {
+    }
+
+    @Name("org.jeasy.flows.InstanceWaiting")
+    @Label("Instance Waiting")
+    static final class InstanceWaiting extends FlowEvent {
+
+        @Label("Status")
+        String status;
+    }
+
+    @Name("org.jeasy.flows.InstanceResumed")
+    @Label("Instance Resumed")
+    static final class InstanceResumed extends FlowEvent {
+    }
+}
@@ -0,0 +1,104 @@
+package org.jeasy.flows.jfr;
+
+import org.jeasy.flows.flow.Context;
+import org.jeasy.flows.work.Status;
+import org.jeasy.flows.work.Work;
+
+/**
+ * Emission of the JDK Flight Recorder events of easy-flows, called from the execution
+ * paths of works, parallel flows and engines:
+ * <ul>
+ *     <li>{@code org.jeasy.flows.WorkExecution}: execution of a work or flow</li>
+ *     <li>{@code org.jeasy.flows.BranchSubmit}: wait of a parallel branch from its
+ *     submission to the executor until it starts</li>
+ *     <li>{@code org.jeasy.flows.ParallelJoin}: wait of a parallel flow for its branches</li>
+ *     <li>{@code org.jeasy.flows.QueueWait}: wait of a flow submitted to the workers of an
+ *     engine in their queue</li>
+ *     <li>{@code org.jeasy.flows.InstanceWaiting} and {@code org.jeasy.flows.InstanceResumed}:
+ *     instances ending waiting and run again</li>
+ * </ul>
+ * Events carry the flow name and the id of the instance owning the context (if any),
+ * the name of the work and its status when known, and are enabled, disabled and thresholded with
+ * the standard JFR settings (duration events have a default threshold of 1 ms). When
+ * an event is disabled, or on runtimes without JFR, emitting it costs a check of a flag
+ * and allocates nothing.
+ * <p>
+ * The {@code begin} methods return an opaque handle to pass to the matching {@code end}
+ * method, or null if the event is disabled.
+ */
+public final class FlowEvents {
+
+    private static final boolean AVAILABLE = isAvailable();
+
+    private FlowEvents() {
+    }
+
+    public static Object beginWork() {
+        return AVAILABLE ? Recorder.beginWork() : null;
+    }
+
+    /**
+     * @return whether executions of works are recorded
+     */
+    public static boolean isWorkEnabled() {
+        return AVAILABLE && Recorder.isWorkEnabled();
+    }
+
+    public static void endWork(Object handle, Work work, Context context, Status status) {
+        if (handle != null) {
+            Recorder.endWork(handle, work, context, status);
+        }
+    }
+
+    public static Object beginBranchSubmit() {
+        return AVAILABLE ? Recorder.beginBranchSubmit() : null;
+    }
+
+    public static void endBranchSubmit(Object handle, Work branch, Context context) {
+        if (handle != null) {
+            Recorder.endBranchSubmit(handle, branch, context);
+        }
+    }
+
+    public static Object beginParallelJoin() {
+        return AVAILABLE ? Recorder.beginParallelJoin() : null;
+    }
+
+    public static void endParallelJoin(Object handle, Work flow, Context context, int branches, Status status) {
+        if (handle != null) {
+            Recorder.endParallelJoin(handle, flow, context, branches, status);
+        }
+    }
+
+    public static Object beginQueueWait() {
+        return AVAILABLE ? Recorder.beginQueueWait() : null;
+    }
+
+    public static void endQueueWait(Object handle, Work flow, Context context) {
+        if (handle != null) {
+            Recorder.endQueueWait(handle, flow, context);
+        }
+    }
+
+    public static void instanceWaiting(Context context) {
+        if (AVAILABLE) {
+            Recorder.instanceWaiting(context);
+        }
+    }
+
+    public static void instanceResumed(Context context) {
+        if (AVAILABLE) {
+            Recorder.instanceResumed(context);
+        }
+    }
+
+    private static boolean isAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            // initializes the event types, which fails if JFR is disabled in the runtime
+            return Recorder.WORK != null;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package org.jeasy.flows.jfr;
+
+import jdk.jfr.EventType;
+import org.jeasy.flows.flow.Context;
+import org.jeasy.flows.work.Status;
+import org.jeasy.flows.work.Work;
+
+/**
+ * The part of {@link FlowEvents} linked to the {@code jdk.jfr} module, only loaded
+ * when it is available. Events are only allocated when their type is enabled.
+ */
+final class Recorder {
+
+    static final EventType WORK = EventType.getEventType(Events.WorkExecution.class);
+    private static final EventType BRANCH_SUBMIT = EventType.getEventType(Events.BranchSubmit.class);
+    private static final EventType PARALLEL_JOIN = EventType.getEventType(Events.ParallelJoin.class);
+    private static final EventType QUEUE_WAIT = EventType.getEventType(Events.QueueWait.class);
+    private static final EventType INSTANCE_WAITING = EventType.getEventType(Events.InstanceWaiting.class);
+    private static final EventType INSTANCE_RESUMED = EventType.getEventType(Events.InstanceResumed.class);
+
+    private Recorder() {
+    }
+
+    static boolean isWorkEnabled() {
+        return WORK.isEnabled();
+    }
+
+    static Object beginWork() {
+        if (!WORK.isEnabled()) {
+            return null;
+        }
+        Events.WorkExecution event = new Events.WorkExecution();
+        event.begin();
+        return event;
+    }
+
+    static void endWork(Object handle, Work work, Context context, Status status) {
+        Events.WorkExecution event = (Events.WorkExecution) handle;
+        event.end();
+        if (event.shouldCommit()) {
+            describe(event, work, context);
+            event.status = status == null ? null : status.name();
+            event.commit();
+        }
+    }
+
+    static Object beginBranchSubmit() {
+        if (!BRANCH_SUBMIT.isEnabled()) {
+            return null;
+        }
+        Events.BranchSubmit event = new Events.BranchSubmit();
+        event.begin();
+        return event;
+    }
+
+    static void endBranchSubmit(Object handle, Work branch, Context context) {
+        Events.BranchSubmit event = (Events.BranchSubmit) handle;
+        event.end();
+        if (event.shouldCommit()) {
+            describe(event, branch, context);
+            event.commit();
+        }
+    }
+
+    static Object beginParallelJoin() {
+        if (!PARALLEL_JOIN.isEnabled()) {
+            return null;
+        }
+        Events.ParallelJoin event = new Events.ParallelJoin();
+        event.begin();
+        return event;
+    }
+
+    static void endParallelJoin(Object handle, Work flow, Context context, int branches, Status status) {
+        Events.ParallelJoin event = (Events.ParallelJoin) handle;
+        event.end();
+        if (event.shouldCommit()) {
+            describe(event, flow, context);
+            event.branches = branches;
+            event.status = status == null ? null : status.name();
+            event.commit();
+        }
+    }
+
+    static Object beginQueueWait() {
+        if (!QUEUE_WAIT.isEnabled()) {
+            return null;
+        }
+        Events.QueueWait event = new Events.QueueWait();
+        event.begin();
+        return event;
+    }
+
+    static void endQueueWait(Object handle, Work flow, Context context) {
+        Events.QueueWait event = (Events.QueueWait) handle;
+        event.end();
+        if (event.shouldCommit()) {
+            describe(event, flow, context);
+            event.commit();
+        }
+    }
+
+    static void instanceWaiting(Context context) {
+        if (INSTANCE_WAITING.isEnabled()) {
+            Events.InstanceWaiting event = new Events.InstanceWaiting();
+            describe(event, null, context);
+            event.status = Status.WAITING.name();
+            event.commit();
+        }
+    }
+
+    static void instanceResumed(Context context) {
+        if (INSTANCE_RESUMED.isEnabled()) {
+            Events.InstanceResumed event = new Events.InstanceResumed();
+            describe(event, null, context);
+            event.commit();
+        }
+    }
+
+    private static void describe(Events.FlowEvent event, Work work, Context context) {
+        event.flowName = context.getFlowName();
+        event.workName = work == null ? null : work.getName();
+        event.instanceId = context.getInstanceId();
+    }
+}
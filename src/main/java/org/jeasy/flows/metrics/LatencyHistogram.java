@@ -0,0 +1,210 @@
+package org.jeasy.flows.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of latencies in nanoseconds, laid out like an HdrHistogram: values are
+ * counted in {@value #HALF} linear sub-buckets per power of two, so any value is known
+ * within 1/32 (about 3%) of itself, from one nanosecond up to about
+ * 73 minutes (longer values are counted in the last bucket). Recording is lock-free
+ * (one increment of the counter of the bucket) and allocation-free, and histograms are
+ * read through immutable {@link Snapshot}s taken while recording goes on.
+ * <p>
+ * Like the cells of a {@link LongAdder}, the counters are striped on contention: a
+ * histogram starts with one array of counters, and adds arrays, up to the number of
+ * processors, when threads recording at the same time collide. Threads then count in
+ * the array of their stripe, so that they do not write to the same cache lines.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int HALF_BITS = SUB_BUCKET_BITS - 1;
+    private static final int HALF = 1 << HALF_BITS;
+    private static final long SUB_BUCKET_MASK = SUB_BUCKETS - 1;
+    // number of leading zeros of the values of the first bucket, minus one
+    private static final int LEADING_ZEROS_BASE = 64 - HALF_BITS - 1;
+
+    static final long HIGHEST_TRACKABLE = (1L << 42) - 1;
+    private static final int LENGTH = indexOf(HIGHEST_TRACKABLE) + 1;
+
+    // the number of processors, rounded up to a power of two
+    private static final int MAX_STRIPES = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1);
+
+    // counters by stripe, a power of two of them
+    private volatile AtomicLongArray[] stripes = {new AtomicLongArray(LENGTH)};
+    private final LongAdder total = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * @param nanos latency to record, negative values count as zero
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        int index = indexOf(Math.min(value, HIGHEST_TRACKABLE));
+        AtomicLongArray[] current = stripes;
+        AtomicLongArray counts = current[stripeOf(Thread.currentThread(), current.length)];
+        long count = counts.get(index);
+        if (!counts.compareAndSet(index, count, count + 1)) {
+            counts.incrementAndGet(index);
+            stripe(current);
+        }
+        total.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * Take a snapshot of the histogram. Values recorded concurrently may be partly
+     * reflected (e.g. in the counts but not in the total yet).
+     *
+     * @return the snapshot
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[LENGTH];
+        long count = 0;
+        for (AtomicLongArray counts : stripes) {
+            for (int index = 0; index < LENGTH; index++) {
+                long counted = counts.get(index);
+                copy[index] += counted;
+                count += counted;
+            }
+        }
+        return new Snapshot(copy, count, total.sum(), max.get());
+    }
+
+    /**
+     * Double the stripes after a collision, unless another thread did it already.
+     */
+    private synchronized void stripe(AtomicLongArray[] collided) {
+        if (stripes != collided || collided.length >= MAX_STRIPES) {
+            return;
+        }
+        AtomicLongArray[] doubled = new AtomicLongArray[collided.length << 1];
+        System.arraycopy(collided, 0, doubled, 0, collided.length);
+        for (int stripe = collided.length; stripe < doubled.length; stripe++) {
+            doubled[stripe] = new AtomicLongArray(LENGTH);
+        }
+        stripes = doubled;
+    }
+
+    private static int stripeOf(Thread thread, int length) {
+        long id = thread.getId() * 0x9E3779B97F4A7C15L;
+        return (int) (id >>> 32) & (length - 1);
+    }
+
+    static int indexOf(long value) {
+        int bucket = LEADING_ZEROS_BASE - Long.numberOfLeadingZeros(value | SUB_BUCKET_MASK);
+        int subBucket = (int) (value >>> bucket);
+        return ((bucket + 1) << HALF_BITS) + subBucket - HALF;
+    }
+
+    static long lowestValueAt(int index) {
+        int bucket = (index >> HALF_BITS) - 1;
+        int subBucket = (index & (HALF - 1)) + HALF;
+        if (bucket < 0) {
+            subBucket -= HALF;
+            bucket = 0;
+        }
+        return (long) subBucket << bucket;
+    }
+
+    static long highestValueAt(int index) {
+        int bucket = Math.max(0, (index >> HALF_BITS) - 1);
+        return lowestValueAt(index) + (1L << bucket) - 1;
+    }
+
+    /**
+     * An immutable view of a histogram.
+     */
+    public static final class Snapshot {
+
+        static final Snapshot EMPTY = new Snapshot(new long[LENGTH], 0, 0, 0);
+
+        private final long[] counts;
+        private final long count;
+        private final long totalNanos;
+        private final long maxNanos;
+
+        Snapshot(long[] counts, long count, long totalNanos, long maxNanos) {
+            this.counts = counts;
+            this.count = count;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return the sum of the recorded latencies
+         */
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        /**
+         * @return the highest recorded latency, exact, or 0 if none
+         */
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        public double getMeanNanos() {
+            return count == 0 ? 0 : (double) totalNanos / count;
+        }
+
+        /**
+         * @param percentile between 0 and 100
+         * @return the latency at or below which the given percentage of the recorded
+         * latencies fall, within the precision of the histogram, or 0 if none
+         */
+        public long getValueAtPercentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(Math.min(100, percentile) / 100 * count));
+            long seen = 0;
+            for (int index = 0; index < counts.length; index++) {
+                seen += counts[index];
+                if (seen >= rank) {
+                    return Math.min(highestValueAt(index), maxNanos);
+                }
+            }
+            return maxNanos;
+        }
+
+        /**
+         * @return the number of recorded latencies at or below the given one, within the
+         * precision of the histogram
+         */
+        public long getCountAtOrBelow(long nanos) {
+            if (nanos < 0) {
+                return 0;
+            }
+            int last = indexOf(Math.min(nanos, HIGHEST_TRACKABLE));
+            long below = 0;
+            for (int index = 0; index <= last; index++) {
+                below += counts[index];
+            }
+            return nanos >= HIGHEST_TRACKABLE ? count : below;
+        }
+
+        /**
+         * Get the latencies recorded since a previous snapshot of the same histogram,
+         * e.g. to report them periodically.
+         *
+         * @param previous snapshot
+         * @return the difference of the snapshots; its maximum is the one of this snapshot
+         */
+        public Snapshot minus(Snapshot previous) {
+            long[] difference = new long[counts.length];
+            for (int index = 0; index < counts.length; index++) {
+                difference[index] = counts[index] - previous.counts[index];
+            }
+            return new Snapshot(difference, count - previous.count, totalNanos - previous.totalNanos, maxNanos);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package org.jeasy.flows.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.jeasy.flows.work.Status;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves {@link WorkMetrics} in the OpenMetrics text format, on the {@code /metrics}
+ * path of an HTTP server of the JDK ({@code com.sun.net.httpserver}), for Prometheus
+ * and compatible scrapers. Metrics are rendered from a snapshot on each scrape:
+ * <ul>
+ *     <li>{@code easyflows_work_calls_total}: executions, by work</li>
+ *     <li>{@code easyflows_work_status_total}: executions, by work and reported status</li>
+ *     <li>{@code easyflows_work_errors_total}: executions ended with an exception, by work</li>
+ *     <li>{@code easyflows_work_duration_seconds}: histogram of the latencies, by work</li>
+ * </ul>
+ * Series are labelled with the name of the work and its kind ({@code flow} or {@code work}).
+ */
+public final class OpenMetricsExporter implements Closeable {
+
+    public static final String CONTENT_TYPE = "application/openmetrics-text; version=1.0.0; charset=utf-8";
+
+    // upper bounds of the exported latency buckets, in seconds
+    private static final double[] BOUNDS = {
+            0.000001, 0.00001, 0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025,
+            0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60
+    };
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    private OpenMetricsExporter(HttpServer server, ExecutorService executor) {
+        this.server = server;
+        this.executor = executor;
+    }
+
+    /**
+     * Start serving metrics on a single daemon thread.
+     *
+     * @param metrics to serve
+     * @param address to listen on, with port 0 for an ephemeral port
+     * @return the started exporter
+     * @throws IOException if the server cannot listen on the address
+     */
+    public static OpenMetricsExporter start(WorkMetrics metrics, InetSocketAddress address) throws IOException {
+        HttpServer server = HttpServer.create(address, 0);
+        ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "easy-flows-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/metrics", exchange -> serve(metrics, exchange));
+        server.start();
+        return new OpenMetricsExporter(server, executor);
+    }
+
+    /**
+     * @return the address the exporter listens on
+     */
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdown();
+    }
+
+    /**
+     * Render metrics in the OpenMetrics text format.
+     *
+     * @param stats by work name, see {@link WorkMetrics#snapshot()}
+     * @return the exposition, ended by {@code # EOF}
+     */
+    public static String format(Map<String, WorkStats> stats) {
+        StringBuilder out = new StringBuilder(256 + stats.size() * 2048);
+        out.append("# TYPE easyflows_work_calls counter\n");
+        out.append("# HELP easyflows_work_calls Executions of works.\n");
+        for (WorkStats work : stats.values()) {
+            sample(out, "easyflows_work_calls_total", work, null, null, work.getCalls());
+        }
+        out.append("# TYPE easyflows_work_status counter\n");
+        out.append("# HELP easyflows_work_status Executions of works by reported status.\n");
+        for (WorkStats work : stats.values()) {
+            for (Status status : Status.values()) {
+                sample(out, "easyflows_work_status_total", work, "status", status.name(), work.getCount(status));
+            }
+        }
+        out.append("# TYPE easyflows_work_errors counter\n");
+        out.append("# HELP easyflows_work_errors Executions of works ended with an exception.\n");
+        for (WorkStats work : stats.values()) {
+            sample(out, "easyflows_work_errors_total", work, null, null, work.getErrors());
+        }
+        out.append("# TYPE easyflows_work_duration_seconds histogram\n");
+        out.append("# UNIT easyflows_work_duration_seconds seconds\n");
+        out.append("# HELP easyflows_work_duration_seconds Latencies of works.\n");
+        for (WorkStats work : stats.values()) {
+            LatencyHistogram.Snapshot latency = work.getLatency();
+            for (double bound : BOUNDS) {
+                long count = latency.getCountAtOrBelow(Math.round(bound * 1e9));
+                sample(out, "easyflows_work_duration_seconds_bucket", work, "le", Double.toString(bound), count);
+            }
+            sample(out, "easyflows_work_duration_seconds_bucket", work, "le", "+Inf", latency.getCount());
+            sample(out, "easyflows_work_duration_seconds_count", work, null, null, latency.getCount());
+            labels(out.append("easyflows_work_duration_seconds_sum"), work, null, null)
+                    .append(' ').append(latency.getTotalNanos() / 1e9).append('\n');
+        }
+        return out.append("# EOF\n").toString();
+    }
+
+    private static void serve(WorkMetrics metrics, HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = format(metrics.snapshot()).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void sample(StringBuilder out, String metric, WorkStats work, String label, String value, long count) {
+        labels(out.append(metric), work, label, value).append(' ').append(count).append('\n');
+    }
+
+    private static StringBuilder labels(StringBuilder out, WorkStats work, String label, String value) {
+        out.append("{work=\"");
+        escape(out, work.getName());
+        out.append("\",kind=\"").append(work.isFlow() ? "flow" : "work").append('"');
+        if (label != null) {
+            out.append(',').append(label).append("=\"").append(value).append('"');
+        }
+        return out.append('}');
+    }
+
+    private static void escape(StringBuilder out, String value) {
+        for (int index = 0; index < value.length(); index++) {
+            char c = value.charAt(index);
+            if (c == '\\' || c == '"') {
+                out.append('\\').append(c);
+            } else if (c == '\n') {
+                out.append("\\n");
+            } else {
+                out.append(c);
+            }
+        }
+    }
+}
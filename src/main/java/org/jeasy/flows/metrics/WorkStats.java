@@ -0,0 +1,88 @@
+package org.jeasy.flows.metrics;
+
+import org.jeasy.flows.work.Status;
+
+import java.util.Arrays;
+
+/**
+ * An immutable snapshot of the metrics of a work (or flow), see {@link WorkMetrics#snapshot()}.
+ */
+public final class WorkStats {
+
+    private final String name;
+    private final boolean flow;
+    private final long[] statuses;
+    private final long errors;
+    private final LatencyHistogram.Snapshot latency;
+
+    WorkStats(String name, boolean flow, long[] statuses, long errors, LatencyHistogram.Snapshot latency) {
+        this.name = name;
+        this.flow = flow;
+        this.statuses = statuses;
+        this.errors = errors;
+        this.latency = latency;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return whether the work is a flow
+     */
+    public boolean isFlow() {
+        return flow;
+    }
+
+    /**
+     * @return the number of executions, ended with a report or an exception
+     */
+    public long getCalls() {
+        return Arrays.stream(statuses).sum() + errors;
+    }
+
+    /**
+     * @return the number of executions reporting the given status
+     */
+    public long getCount(Status status) {
+        return statuses[status.ordinal()];
+    }
+
+    /**
+     * @return the number of executions ended with an exception
+     */
+    public long getErrors() {
+        return errors;
+    }
+
+    /**
+     * @return the latencies of the executions
+     */
+    public LatencyHistogram.Snapshot getLatency() {
+        return latency;
+    }
+
+    /**
+     * Get the executions since a previous snapshot of the same work.
+     *
+     * @param previous snapshot, may be null
+     * @return the difference of the snapshots
+     */
+    public WorkStats minus(WorkStats previous) {
+        if (previous == null) {
+            return this;
+        }
+        long[] difference = new long[statuses.length];
+        for (int index = 0; index < statuses.length; index++) {
+            difference[index] = statuses[index] - previous.statuses[index];
+        }
+        return new WorkStats(name, flow, difference, errors - previous.errors, latency.minus(previous.latency));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("WorkStats{name=%s, calls=%d, errors=%d, p50=%dns, p99=%dns, max=%dns}",
+                name, getCalls(), errors, latency.getValueAtPercentile(50), latency.getValueAtPercentile(99),
+                latency.getMaxNanos());
+    }
+}
@@ -0,0 +1,30 @@
+package org.jeasy.flows.work;
+
+import org.jeasy.flows.flow.Context;
+import org.jeasy.flows.flow.FlowException;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Base class of works implemented in a non-blocking way, for instance on top of an
+ * asynchronous client. When executed synchronously, the caller waits for the stage.
+ */
+public abstract class AbstractAsyncWork extends AbstractWork {
+
+    public AbstractAsyncWork(String name) {
+        super(name);
+    }
+
+    @Override
+    protected Report executeInternal(Context context) {
+        try {
+            return executeInternalAsync(context).toCompletableFuture().join();
+        } catch (CompletionException e) {
+            throw new FlowException(String.format("Unable to execute work unit '%s'", getName()), e.getCause());
+        }
+    }
+
+    @Override
+    protected abstract CompletionStage<Report> executeInternalAsync(Context context);
+}
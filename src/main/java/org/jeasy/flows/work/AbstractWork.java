@@ -1,15 +1,23 @@
 package org.jeasy.flows.work;
 
 import org.jeasy.flows.flow.Context;
+import org.jeasy.flows.flow.Flow;
+import org.jeasy.flows.jfr.FlowEvents;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
- * @author Alex.Sun
  * @created 2022-04-04 16:50
  */
-public abstract class AbstractWork implements ExecutableWork {
+public abstract class AbstractWork implements ExecutableWork, AsyncWork {
 
     private final String name;
 
+    private volatile long timeoutNanos;
+
     public AbstractWork(String name) {
         this.name = name;
     }
@@ -18,19 +26,179 @@ public abstract class AbstractWork implements ExecutableWork {
         return name;
     }
 
+    /**
+     * Bound the executions of this work: an execution still running after the timeout
+     * is interrupted by the {@link Watchdog} and fails with a {@link TimeoutReport}.
+     * Works that are not flows are also bounded by the deadline of their context, see
+     * {@link Context#setTimeout(long, TimeUnit)}.
+     *
+     * @param timeout of each execution, 0 for none
+     */
+    public void setTimeout(long timeout, TimeUnit unit) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("Timeout must not be negative");
+        }
+        this.timeoutNanos = unit.toNanos(timeout);
+    }
+
+    /**
+     * @return the timeout of the executions of this work in nanoseconds, 0 if none
+     */
+    public long getTimeoutNanos() {
+        return timeoutNanos;
+    }
+
     @Override
     public final Report execute(Context context) {
-        Status last = context.getStatus(getName());
+        Status last = context.getStatus(this);
         if (last != null && last != Status.WAITING) {
             return new DefaultReport(last, context);
         }
 
-        Report report = executeInternal(context);
+        WorkProbe probe = context.getProbe();
+        Object event = FlowEvents.beginWork();
+        Report report;
+        if (probe == null && event == null) {
+            report = executeUnlessCancelled(context);
+        } else {
+            long token = probe == null ? 0 : probe.before(this, context);
+            try {
+                report = executeUnlessCancelled(context);
+            } catch (RuntimeException | Error e) {
+                if (probe != null) {
+                    probe.after(this, context, token, null, e);
+                }
+                FlowEvents.endWork(event, this, context, null);
+                throw e;
+            }
+            if (probe != null) {
+                probe.after(this, context, token, report, null);
+            }
+            FlowEvents.endWork(event, this, context, report == null ? null : report.getStatus());
+        }
         if (report != null) {
-            context.setStatus(getName(), report.getStatus());
+            context.setStatus(this, report.getStatus());
+        }
+        return report;
+    }
+
+    @Override
+    public final CompletionStage<Report> executeAsync(Context context) {
+        Status last = context.getStatus(this);
+        if (last != null && last != Status.WAITING) {
+            return CompletableFuture.completedFuture(new DefaultReport(last, context));
+        }
+
+        WorkProbe probe = context.getProbe();
+        Object event = FlowEvents.beginWork();
+        long token = probe == null ? 0 : probe.before(this, context);
+        CompletionStage<Report> stage = context.isCancelled()
+                ? CompletableFuture.completedFuture(new DefaultReport(Status.CANCELLED, context))
+                : executeInternalAsyncWithin(context);
+        if (probe != null || event != null) {
+            stage = stage.whenComplete((report, error) -> {
+                if (probe != null) {
+                    probe.after(this, context, token, report, error);
+                }
+                FlowEvents.endWork(event, this, context, report == null ? null : report.getStatus());
+            });
+        }
+        return stage.thenApply(report -> {
+            if (report != null) {
+                context.setStatus(this, report.getStatus());
+            }
+            return report;
+        });
+    }
+
+    private Report executeUnlessCancelled(Context context) {
+        if (context.isCancelled()) {
+            return new DefaultReport(Status.CANCELLED, context);
+        }
+        long deadline = deadline(context);
+        if (deadline == 0) {
+            return executeInternal(context);
+        }
+        if (System.nanoTime() - deadline >= 0) {
+            return timeoutReport(context);
+        }
+        Watchdog.Watch watch = Watchdog.watch(deadline);
+        Report report;
+        RuntimeException failure = null;
+        try {
+            report = executeInternal(context);
+        } catch (RuntimeException e) {
+            report = null;
+            failure = e;
+        } finally {
+            // also clears the interrupt of the watchdog
+            if (watch.stop()) {
+                report = timeoutReport(context);
+                failure = null;
+            }
+        }
+        if (failure != null) {
+            throw failure;
         }
         return report;
     }
 
+    /**
+     * Run {@link #executeInternalAsync(Context)}, completing with a timeout report at
+     * the deadline. Asynchronous executions are not interrupted: their late result is
+     * ignored.
+     */
+    private CompletionStage<Report> executeInternalAsyncWithin(Context context) {
+        long deadline = deadline(context);
+        if (deadline == 0) {
+            return executeInternalAsync(context);
+        }
+        CompletableFuture<Report> result = new CompletableFuture<>();
+        ScheduledFuture<?> expiry = Watchdog.schedule(deadline, () -> result.complete(timeoutReport(context)));
+        executeInternalAsync(context).whenComplete((report, error) -> {
+            expiry.cancel(false);
+            if (error != null) {
+                result.completeExceptionally(error);
+            } else {
+                result.complete(report);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * @return the deadline of an execution starting now in {@link System#nanoTime()} units, 0 if none
+     */
+    private long deadline(Context context) {
+        long timeout = timeoutNanos;
+        long own = timeout == 0 ? 0 : System.nanoTime() + timeout;
+        // flows only stop between steps, at the deadline of the context they are cancelled
+        long inherited = this instanceof Flow ? 0 : context.getDeadline();
+        if (own == 0 || inherited != 0 && inherited - own < 0) {
+            return inherited;
+        }
+        return own;
+    }
+
+    private TimeoutReport timeoutReport(Context context) {
+        return context.isExpired()
+                ? new TimeoutReport(context, String.format("Work '%s' outlived the deadline of its instance", name))
+                : new TimeoutReport(context, String.format("Work '%s' timed out after %d ms", name, TimeUnit.NANOSECONDS.toMillis(timeoutNanos)));
+    }
+
     protected abstract Report executeInternal(Context context);
+
+    /**
+     * Non-blocking variant of {@link #executeInternal(Context)}. Defaults to running
+     * {@link #executeInternal(Context)} on the calling thread.
+     */
+    protected CompletionStage<Report> executeInternalAsync(Context context) {
+        try {
+            return CompletableFuture.completedFuture(executeInternal(context));
+        } catch (Throwable e) {
+            CompletableFuture<Report> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+    }
 }
@@ -0,0 +1,45 @@
+package org.jeasy.flows.work;
+
+import org.jeasy.flows.flow.Context;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * A unit of work that does not block its caller: the report is delivered through a
+ * {@link CompletionStage} once the work is done. All flows are asynchronous works, so
+ * a flow composed of asynchronous works never parks a thread while waiting for them.
+ */
+public interface AsyncWork extends Work {
+
+    /**
+     * Start the unit of work and return a stage completed with its report. Like
+     * {@link Executable#execute(Context)}, failures should be reported as a
+     * {@link Status#FAILED} report rather than as an exceptionally completed stage.
+     *
+     * @param context context in which this unit of work is being executed
+     * @return a stage completed with the execution report
+     */
+    CompletionStage<Report> executeAsync(Context context);
+
+    /**
+     * Execute any work asynchronously: {@link AsyncWork}s are started as such, other
+     * {@link Executable} works are executed on the calling thread.
+     *
+     * @param work    to execute
+     * @param context context in which the work is being executed
+     * @return a stage completed with the execution report
+     */
+    static CompletionStage<Report> execute(Work work, Context context) {
+        if (work instanceof AsyncWork) {
+            return ((AsyncWork) work).executeAsync(context);
+        }
+        try {
+            return CompletableFuture.completedFuture(((Executable) work).execute(context));
+        } catch (Throwable e) {
+            CompletableFuture<Report> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package org.jeasy.flows.work;
+
+import org.jeasy.flows.flow.Context;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A work waiting for a delay: the first run records its deadline in the context and
+ * reports {@link Status#WAITING}, and runs after the deadline report {@link Status#COMPLETED}.
+ * <p>
+ * While waiting, the work registers its deadline in the context, so that an engine
+ * running the instance arms a timer resuming it at the deadline (see
+ * {@code Engine#run(Flow, Instance)}). The deadline is a value of the context, so it
+ * is parked and journaled with the instance and survives a restart.
+ */
+public class DelayWork extends AbstractWork {
+
+    private final long delayMillis;
+    private final String deadlineKey;
+
+    public DelayWork(String name, long delay, TimeUnit unit) {
+        super(name);
+        if (delay < 0) {
+            throw new IllegalArgumentException("Delay must not be negative");
+        }
+        this.delayMillis = unit.toMillis(delay);
+        this.deadlineKey = name + ".deadline";
+    }
+
+    @Override
+    protected Report executeInternal(Context context) {
+        long now = System.currentTimeMillis();
+        Object value = context.getValue(deadlineKey);
+        long deadline;
+        if (value instanceof Long) {
+            deadline = (Long) value;
+        } else {
+            deadline = now + delayMillis;
+            context.setValue(deadlineKey, deadline);
+        }
+        if (now >= deadline) {
+            context.setValue(deadlineKey, null);
+            return new DefaultReport(Status.COMPLETED, context);
+        }
+        context.awaitTimer(getName(), deadline);
+        return new DefaultReport(Status.WAITING, context);
+    }
+
+    /**
+     * @return the name of the context value holding the deadline of the work
+     */
+    public String getDeadlineKey() {
+        return deadlineKey;
+    }
+}
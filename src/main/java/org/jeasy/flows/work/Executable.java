@@ -3,7 +3,6 @@ package org.jeasy.flows.work;
 import org.jeasy.flows.flow.Context;
 
 /**
- * @author Alex.Sun
  * @created 2022-04-04 20:29
  */
 public interface Executable {
@@ -1,7 +1,6 @@
 package org.jeasy.flows.work;
 
 /**
- * @author Alex.Sun
  * @created 2022-04-04 20:39
  */
 public interface ExecutableWork extends Work, Executable {
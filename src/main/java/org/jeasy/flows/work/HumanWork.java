@@ -2,17 +2,51 @@ package org.jeasy.flows.work;
 
 import org.jeasy.flows.flow.Context;
 
+import java.util.function.Function;
+
 /**
- * @author Alex.Sun
+ * A work waiting for a human: it reports {@link Status#WAITING} until its status is set
+ * to {@link Status#COMPLETED} (or another final status) and the flow is run again.
+ * <p>
+ * A human work built with a correlation key registers the key in the context while
+ * waiting, so that the engine can resume the instance when a signal with that key is
+ * delivered (see {@code Engine#signal}), instead of callers finding and editing the
+ * context themselves.
+ *
  * @created 2022-04-04 17:50
  */
 public class HumanWork extends AbstractWork {
+
+    private final Function<Context, String> correlationKey;
+
     public HumanWork(String name) {
+        this(name, (Function<Context, String>) null);
+    }
+
+    /**
+     * @param correlationKey of the signal completing this work
+     */
+    public HumanWork(String name, String correlationKey) {
+        this(name, context -> correlationKey);
+    }
+
+    /**
+     * @param correlationKey of the signal completing this work, computed from the context
+     *                       of the instance (e.g. from an order id)
+     */
+    public HumanWork(String name, Function<Context, String> correlationKey) {
         super(name);
+        this.correlationKey = correlationKey;
     }
 
     @Override
     protected Report executeInternal(Context context) {
+        if (correlationKey != null) {
+            String key = correlationKey.apply(context);
+            if (key != null) {
+                context.awaitSignal(key, getName());
+            }
+        }
         return new DefaultReport(Status.WAITING, context);
     }
 }
@@ -46,9 +46,15 @@ public interface ReportPredicate {
     ReportPredicate COMPLETED = report -> report.getStatus().equals(Status.COMPLETED);
     ReportPredicate FAILED = report -> report.getStatus().equals(Status.FAILED);
     ReportPredicate WAITING = report -> report.getStatus().equals(Status.WAITING);
+    ReportPredicate CANCELLED = report -> report.getStatus().equals(Status.CANCELLED);
 
     /**
      * A predicate that returns true after a given number of times.
+     * <p>
+     * A {@link org.jeasy.flows.flow.RepeatFlow} does not call it: it counts the
+     * iterations of each run in the context of the run and only reads the number of
+     * times, so one flow definition can be run by many instances at once. Applied
+     * directly, the predicate counts its calls across all callers.
      *
      * @author Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
      */
@@ -67,6 +73,10 @@ public interface ReportPredicate {
             return counter.incrementAndGet() != times;
         }
 
+        public int getTimes() {
+            return times;
+        }
+
         public static TimesPredicate times(int times) {
             return new TimesPredicate(times);
         }
@@ -43,5 +43,10 @@ public enum Status {
     /**
      * 等待外部/人工处理
      */
-    WAITING
+    WAITING,
+
+    /**
+     * The unit of work has been cancelled before it could finish
+     */
+    CANCELLED
 }
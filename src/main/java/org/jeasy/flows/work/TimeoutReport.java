@@ -0,0 +1,30 @@
+package org.jeasy.flows.work;
+
+import org.jeasy.flows.flow.Context;
+
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Report of a work failed by the {@link Watchdog} because it outlived its timeout (see
+ * {@link AbstractWork#setTimeout}) or the deadline of its instance (see
+ * {@link Context#setTimeout}). Its status is {@link Status#FAILED}, so that flows and
+ * policies handle it like any failure, and its error is a {@link TimeoutException}.
+ */
+public class TimeoutReport extends DefaultReport {
+
+    public TimeoutReport(Context context, String message) {
+        super(Status.FAILED, context, new TimeoutException(message));
+    }
+
+    /**
+     * Get the report of a work cancelled with its context, e.g. a branch of a parallel
+     * flow whose future was cancelled.
+     *
+     * @return a timeout report if the deadline of the context passed, a {@link Status#CANCELLED} report otherwise
+     */
+    public static Report ofCancelled(Context context) {
+        return context.isExpired()
+                ? new TimeoutReport(context, "The deadline of the instance passed")
+                : new DefaultReport(Status.CANCELLED, context);
+    }
+}
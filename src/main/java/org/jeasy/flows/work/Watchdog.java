@@ -0,0 +1,96 @@
+package org.jeasy.flows.work;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Enforcement of timeouts and deadlines: a daemon thread interrupting the threads of
+ * the executions that outlive their deadline (see {@link AbstractWork#setTimeout}), and
+ * expiring the contexts whose deadline passes (see
+ * {@link org.jeasy.flows.flow.Context#setTimeout}). Works blocked in interruptible calls
+ * are released right away; other works are reported as timed out when they return.
+ */
+public final class Watchdog {
+
+    private static final ScheduledThreadPoolExecutor SCHEDULER = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "easy-flows-watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        // most watches are stopped before their deadline
+        SCHEDULER.setRemoveOnCancelPolicy(true);
+    }
+
+    private Watchdog() {
+    }
+
+    /**
+     * Watch the current thread: it is interrupted if the watch is not stopped by the deadline.
+     *
+     * @param deadline in {@link System#nanoTime()} units
+     * @return the watch, to stop once the watched execution is done
+     */
+    public static Watch watch(long deadline) {
+        Watch watch = new Watch(Thread.currentThread());
+        watch.expiry = SCHEDULER.schedule(watch::expire, deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        return watch;
+    }
+
+    /**
+     * Run an action at a deadline.
+     *
+     * @param deadline in {@link System#nanoTime()} units
+     * @return the future to cancel the action
+     */
+    public static ScheduledFuture<?> schedule(long deadline, Runnable action) {
+        return SCHEDULER.schedule(action, deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * The watch of an execution by a thread.
+     */
+    public static final class Watch {
+
+        private static final int RUNNING = 0;
+        private static final int STOPPED = 1;
+        private static final int EXPIRED = 2;
+
+        private final Thread thread;
+        private volatile ScheduledFuture<?> expiry;
+        // guarded by this
+        private int state;
+
+        private Watch(Thread thread) {
+            this.thread = thread;
+        }
+
+        private synchronized void expire() {
+            if (state == RUNNING) {
+                state = EXPIRED;
+                thread.interrupt();
+            }
+        }
+
+        /**
+         * Stop watching, done by the watched thread. If the watch expired, the interrupt
+         * of the thread by the watchdog is cleared, so that it does not leak to the next
+         * task of the thread.
+         *
+         * @return whether the deadline passed before the watch was stopped
+         */
+        public boolean stop() {
+            synchronized (this) {
+                if (state == RUNNING) {
+                    state = STOPPED;
+                    expiry.cancel(false);
+                    return false;
+                }
+            }
+            Thread.interrupted();
+            return true;
+        }
+    }
+}
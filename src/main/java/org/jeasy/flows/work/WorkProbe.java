@@ -0,0 +1,30 @@
+package org.jeasy.flows.work;
+
+import org.jeasy.flows.flow.Context;
+
+/**
+ * Instrumentation of the executions of {@link AbstractWork}s (works and flows), set on
+ * a context with {@link Context#setProbe(WorkProbe)} or by an engine built with one.
+ * Only executions are observed: works skipped because they already have a final
+ * status in the context are not. Contexts without a probe pay a single null check.
+ * <p>
+ * Probes are called from the threads running the works and must be thread-safe.
+ */
+public interface WorkProbe {
+
+    /**
+     * Called before a work executes.
+     *
+     * @return a token handed back to {@link #after}, e.g. a start time
+     */
+    long before(Work work, Context context);
+
+    /**
+     * Called after a work executed, or failed with an exception.
+     *
+     * @param token  returned by {@link #before}
+     * @param report of the work, null if it failed with an exception
+     * @param error  thrown by the work, null if it returned
+     */
+    void after(Work work, Context context, long token, Report report, Throwable error);
+}
@@ -0,0 +1,272 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.flows.cache;
+
+import org.jeasy.flows.flow.Context;
+import org.jeasy.flows.work.AbstractWork;
+import org.jeasy.flows.work.DefaultReport;
+import org.jeasy.flows.work.Report;
+import org.jeasy.flows.work.Status;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.jeasy.flows.cache.CachedWork.Builder.aNewCachedWork;
+import static org.jeasy.flows.flow.SequentialFlow.Builder.aNewSequentialFlow;
+
+public class CachedWorkTest {
+
+    private final ResultCache cache = ResultCache.Builder.aNewResultCache().maximumSize(100).build();
+
+    @Test
+    public void hitWritesTheCachedOutputsWithoutExecutingTheWork() {
+        // given
+        RateWork work = new RateWork("rate");
+        CachedWork cached = aNewCachedWork().cache(work).keyedBy("currency").outputs("rate").in(cache).build();
+        Context first = context("EUR");
+        Context second = context("EUR");
+
+        // when
+        Report miss = cached.execute(first);
+        Report hit = cached.execute(second);
+
+        // then
+        assertThat(miss.getStatus()).isEqualTo(Status.COMPLETED);
+        assertThat(hit.getStatus()).isEqualTo(Status.COMPLETED);
+        assertThat(work.calls).isEqualTo(1);
+        assertThat(second.getValue("rate")).isEqualTo("EUR-rate");
+        assertThat(second.getStatus("rate")).isEqualTo(Status.COMPLETED);
+        assertThat(cache.stats().getHits()).isEqualTo(1);
+        assertThat(cache.stats().getMisses()).isEqualTo(1);
+    }
+
+    @Test
+    public void keyIsMadeOfTheSelectedValuesAndFailuresAreNotCached() {
+        // given
+        RateWork work = new RateWork("rate");
+        CachedWork cached = aNewCachedWork().cache(work).keyedBy("currency").outputs("rate").in(cache).build();
+
+        // when
+        cached.execute(context("EUR"));
+        cached.execute(context("USD"));
+        Report failed = cached.execute(context(null));
+        cached.execute(context(null));
+
+        // then
+        assertThat(failed.getStatus()).isEqualTo(Status.FAILED);
+        assertThat(work.calls).isEqualTo(4);
+        assertThat(cache.size()).isEqualTo(2);
+    }
+
+    @Test
+    public void cacheIsSharedAcrossFlowsAndAsyncExecutions() {
+        // given
+        RateWork work = new RateWork("rate");
+        CachedWork cached = aNewCachedWork().cache(work).keyedBy("currency").outputs("rate").in(cache).build();
+        CachedWork sameWorkElsewhere = aNewCachedWork().cache(new RateWork("rate")).keyedBy("currency").outputs("rate").in(cache).build();
+        Context first = context("EUR");
+        Context second = context("EUR");
+
+        // when
+        Report report = aNewSequentialFlow().execute(cached).build().executeAsync(first).toCompletableFuture().join();
+        aNewSequentialFlow().execute(sameWorkElsewhere).build().execute(second);
+
+        // then
+        assertThat(report.getStatus()).isEqualTo(Status.COMPLETED);
+        assertThat(work.calls).isEqualTo(1);
+        assertThat(((RateWork) sameWorkElsewhere.getWork()).calls).isZero();
+        assertThat(second.getValue("rate")).isEqualTo("EUR-rate");
+    }
+
+    @Test
+    public void asyncExecutionsOfAKeyInFlightWaitWithoutAThreadAndReceiveItsOutputs() throws Exception {
+        // given
+        BlockingWork work = new BlockingWork("rate");
+        CachedWork cached = aNewCachedWork().cache(work).keyedBy("currency").outputs("rate").in(cache).singleFlight().build();
+        CompletableFuture<Report> leader = CompletableFuture.supplyAsync(() -> cached.executeAsync(context("EUR")).toCompletableFuture().join());
+        assertThat(work.started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // when
+        List<Context> contexts = new ArrayList<>();
+        List<CompletableFuture<Report>> waiters = new ArrayList<>();
+        for (int index = 0; index < 10; index++) {
+            Context context = context("EUR");
+            contexts.add(context);
+            waiters.add(cached.executeAsync(context).toCompletableFuture());
+        }
+
+        // then
+        assertThat(waiters).noneMatch(CompletableFuture::isDone);
+        work.release.countDown();
+        assertThat(leader.get(5, TimeUnit.SECONDS).getStatus()).isEqualTo(Status.COMPLETED);
+        for (int index = 0; index < waiters.size(); index++) {
+            assertThat(waiters.get(index).get(5, TimeUnit.SECONDS).getStatus()).isEqualTo(Status.COMPLETED);
+            assertThat(contexts.get(index).getValue("rate")).isEqualTo("EUR-rate");
+        }
+        assertThat(work.calls).isEqualTo(1);
+        assertThat(cache.stats().getShared()).isEqualTo(10);
+    }
+
+    @Test
+    public void asyncWaitersGoOnConcurrentlyOnTheExecutorOfTheirContext() throws Exception {
+        // given
+        int waiterCount = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(waiterCount);
+        BlockingWork work = new BlockingWork("rate");
+        CachedWork cached = aNewCachedWork().cache(work).keyedBy("currency").outputs("rate").in(cache).singleFlight().build();
+        Thread[] leaderThread = new Thread[1];
+        CompletableFuture<Report> leader = CompletableFuture.supplyAsync(() -> {
+            leaderThread[0] = Thread.currentThread();
+            return cached.executeAsync(context("EUR")).toCompletableFuture().join();
+        });
+        assertThat(work.started.await(5, TimeUnit.SECONDS)).isTrue();
+        CountDownLatch together = new CountDownLatch(waiterCount);
+        List<CompletableFuture<Thread>> waiters = new ArrayList<>();
+        try {
+            for (int index = 0; index < waiterCount; index++) {
+                Context context = context("EUR");
+                context.setExecutorService(executor);
+                waiters.add(cached.executeAsync(context).toCompletableFuture().thenApply(report -> {
+                    // serialized continuations would never all get here
+                    together.countDown();
+                    try {
+                        together.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return Thread.currentThread();
+                }));
+            }
+
+            // when
+            work.release.countDown();
+            leader.get(5, TimeUnit.SECONDS);
+
+            // then
+            Set<Thread> threads = new HashSet<>();
+            for (CompletableFuture<Thread> waiter : waiters) {
+                threads.add(waiter.get(10, TimeUnit.SECONDS));
+            }
+            assertThat(together.getCount()).isZero();
+            assertThat(threads).hasSize(waiterCount).doesNotContain(leaderThread[0]);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void synchronousExecutionsOfAKeyInFlightShareItsFailureWithoutCaching() throws Exception {
+        // given
+        ResultCache uncached = ResultCache.Builder.aNewResultCache().maximumSize(0).build();
+        BlockingWork work = new BlockingWork("rate");
+        CachedWork cached = aNewCachedWork().cache(work).keyedBy("currency").outputs("rate").in(uncached).singleFlight().build();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Report> leader = executor.submit(() -> cached.execute(context(null)));
+            assertThat(work.started.await(5, TimeUnit.SECONDS)).isTrue();
+            Thread[] waiterThread = new Thread[1];
+            Future<Report> waiter = executor.submit(() -> {
+                waiterThread[0] = Thread.currentThread();
+                return cached.execute(context(null));
+            });
+
+            // when
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while ((waiterThread[0] == null || waiterThread[0].getState() != Thread.State.WAITING) && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            work.release.countDown();
+
+            // then
+            Report failed = leader.get(5, TimeUnit.SECONDS);
+            Report shared = waiter.get(5, TimeUnit.SECONDS);
+            assertThat(failed.getStatus()).isEqualTo(Status.FAILED);
+            assertThat(shared.getStatus()).isEqualTo(Status.FAILED);
+            assertThat(shared.getError()).isSameAs(failed.getError());
+            assertThat(work.calls).isEqualTo(1);
+            assertThat(uncached.size()).isZero();
+            assertThat(uncached.stats().getShared()).isEqualTo(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Context context(String currency) {
+        Context context = new Context();
+        context.setValue("currency", currency);
+        return context;
+    }
+
+    static class BlockingWork extends RateWork {
+
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        BlockingWork(String name) {
+            super(name);
+        }
+
+        @Override
+        protected Report executeInternal(Context context) {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return new DefaultReport(Status.CANCELLED, context);
+            }
+            return super.executeInternal(context);
+        }
+    }
+
+    static class RateWork extends AbstractWork {
+
+        volatile int calls;
+
+        RateWork(String name) {
+            super(name);
+        }
+
+        @Override
+        protected Report executeInternal(Context context) {
+            calls++;
+            Object currency = context.getValue("currency");
+            if (currency == null) {
+                return new DefaultReport(Status.FAILED, context, new IllegalArgumentException("No currency"));
+            }
+            context.setValue("rate", currency + "-rate");
+            return new DefaultReport(Status.COMPLETED, context);
+        }
+    }
+}
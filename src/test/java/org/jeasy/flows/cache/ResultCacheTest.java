@@ -0,0 +1,162 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.flows.cache;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class ResultCacheTest {
+
+    @Test
+    public void entriesReadSinceTheHandPassedGetASecondChance() {
+        // given
+        ResultCache cache = ResultCache.Builder.aNewResultCache().maximumSize(2).build();
+        cache.put("a", outputs(1));
+        cache.put("b", outputs(2));
+        cache.get("a");
+
+        // when
+        cache.put("c", outputs(3));
+
+        // then
+        assertThat(cache.get("a")).isEqualTo(outputs(1));
+        assertThat(cache.get("b")).isNull();
+        assertThat(cache.get("c")).isEqualTo(outputs(3));
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.stats().getEvictions()).isEqualTo(1);
+    }
+
+    @Test
+    public void totalWeightStaysWithinTheMaximumWeight() {
+        // given
+        ResultCache cache = ResultCache.Builder.aNewResultCache()
+                .maximumWeight(10, outputs -> (Integer) outputs.get("value"))
+                .build();
+
+        // when
+        for (int i = 1; i <= 5; i++) {
+            cache.put("key" + i, outputs(i));
+        }
+        cache.put("too-heavy", outputs(11));
+        cache.put("key5", outputs(2));
+
+        // then
+        assertThat(cache.weight()).isLessThanOrEqualTo(10);
+        assertThat(cache.get("too-heavy")).isNull();
+        assertThat(cache.get("key5")).isEqualTo(outputs(2));
+    }
+
+    @Test
+    public void entriesExpireAfterTheirTimeToLive() {
+        // given
+        AtomicLong now = new AtomicLong();
+        ResultCache cache = ResultCache.Builder.aNewResultCache()
+                .maximumSize(100)
+                .expireAfterWrite(1, TimeUnit.SECONDS)
+                .clock(now::get)
+                .build();
+        cache.put("a", outputs(1));
+
+        // when
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(999));
+        Map<String, Object> beforeExpiry = cache.get("a");
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+        Map<String, Object> afterExpiry = cache.get("a");
+
+        // then
+        assertThat(beforeExpiry).isEqualTo(outputs(1));
+        assertThat(afterExpiry).isNull();
+        assertThat(cache.size()).isZero();
+        ResultCache.Stats stats = cache.stats();
+        assertThat(stats.getHits()).isEqualTo(1);
+        assertThat(stats.getMisses()).isEqualTo(1);
+        assertThat(stats.getExpirations()).isEqualTo(1);
+        assertThat(stats.getHitRate()).isEqualTo(0.5);
+    }
+
+    @Test
+    public void expiredEntriesThatAreNeverReadAreDroppedByWrites() {
+        // given
+        AtomicLong now = new AtomicLong();
+        ResultCache cache = ResultCache.Builder.aNewResultCache()
+                .maximumSize(1000)
+                .expireAfterWrite(1, TimeUnit.SECONDS)
+                .clock(now::get)
+                .build();
+        for (int i = 0; i < 10; i++) {
+            cache.put("key" + i, outputs(i));
+        }
+
+        // when
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        cache.put("fresh", outputs(10));
+
+        // then
+        assertThat(cache.size()).isEqualTo(1);
+        assertThat(cache.weight()).isEqualTo(1);
+        assertThat(cache.stats().getExpirations()).isEqualTo(10);
+        assertThat(cache.stats().getEvictions()).isZero();
+    }
+
+    @Test
+    public void cacheWithoutMaximumSizeOrWeightIsRejected() {
+        // given
+        ResultCache.Builder builder = ResultCache.Builder.aNewResultCache().expireAfterWrite(1, TimeUnit.SECONDS);
+
+        // when
+        Throwable thrown = catchThrowable(builder::build);
+
+        // then
+        assertThat(thrown).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void weightFollowsReplacedAndInvalidatedEntries() {
+        // given
+        ResultCache cache = ResultCache.Builder.aNewResultCache().maximumSize(1000).build();
+
+        // when
+        for (int i = 0; i < 100_000; i++) {
+            cache.put("key" + (i % 10), outputs(i));
+            if (i % 3 == 0) {
+                cache.invalidate("key" + (i % 10));
+            }
+        }
+
+        // then
+        assertThat(cache.size()).isLessThanOrEqualTo(10);
+        assertThat(cache.weight()).isEqualTo(cache.size());
+    }
+
+    private static Map<String, Object> outputs(int value) {
+        return Collections.singletonMap("value", value);
+    }
+}
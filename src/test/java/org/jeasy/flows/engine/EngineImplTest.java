@@ -27,27 +27,55 @@ import org.jeasy.flows.flow.ConditionalFlow;
 import org.jeasy.flows.flow.Context;
 import org.jeasy.flows.flow.ExecutableFlow;
 import org.jeasy.flows.flow.Flow;
+import org.jeasy.flows.flow.Instance;
 import org.jeasy.flows.flow.ParallelFlow;
 import org.jeasy.flows.flow.ParallelPolicy;
 import org.jeasy.flows.flow.RepeatFlow;
 import org.jeasy.flows.flow.SequentialFlow;
+import org.jeasy.flows.work.AbstractWork;
 import org.jeasy.flows.work.DefaultReport;
+import org.jeasy.flows.work.DelayWork;
 import org.jeasy.flows.work.Executable;
 import org.jeasy.flows.work.ExecutableWork;
+import org.jeasy.flows.work.HumanWork;
 import org.jeasy.flows.work.Report;
 import org.jeasy.flows.work.Status;
+import org.jeasy.flows.work.TimeoutReport;
 import org.jeasy.flows.work.Work;
+import org.junit.Assume;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.Mockito;
 
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.jeasy.flows.engine.EngineBuilder.aNewEngine;
 import static org.jeasy.flows.flow.ConditionalFlow.Builder.aNewConditionalFlow;
 import static org.jeasy.flows.flow.ParallelFlow.Builder.aNewParallelFlow;
 import static org.jeasy.flows.flow.RepeatFlow.Builder.aNewRepeatFlow;
+import static org.jeasy.flows.flow.RetryFlow.Builder.aNewRetryFlow;
 import static org.jeasy.flows.flow.SequentialFlow.Builder.aNewSequentialFlow;
 import static org.jeasy.flows.work.ReportPredicate.COMPLETED;
 
@@ -55,6 +83,9 @@ public class EngineImplTest {
 
     private final Engine engine = new EngineImpl();
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     @Test
     public void run() {
         // given
@@ -68,6 +99,146 @@ public class EngineImplTest {
         Mockito.verify(flow).execute(context);
     }
 
+    @Test
+    public void parallelFlowWithoutExecutorRunsOnEngineExecutor() {
+        // given
+        ExecutorService executorService = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "engine-worker"));
+        ThreadNameWork work = new ThreadNameWork();
+        Flow flow = aNewParallelFlow()
+                .execute(work)
+                .policy(ParallelPolicy.AND)
+                .build();
+        Engine engine = aNewEngine().executor(executorService).build();
+
+        // when
+        Report report = engine.run(flow, new Context());
+        executorService.shutdown();
+
+        // then
+        assertThat(report.getStatus()).isEqualTo(Status.COMPLETED);
+        assertThat(work.threadName).isEqualTo("engine-worker");
+    }
+
+    @Test
+    public void runWithVirtualThreadsWhenAvailable() throws Exception {
+        // given
+        Assume.assumeTrue("virtual threads need Java 21", VirtualThreads.isSupported());
+        ThreadNameWork work = new ThreadNameWork();
+        Flow flow = aNewParallelFlow()
+                .execute(work)
+                .policy(ParallelPolicy.AND)
+                .build();
+        Engine engine = aNewEngine().virtualThreads().build();
+
+        try {
+            // when
+            Report report = engine.runAsync(flow, new Context()).toCompletableFuture().join();
+
+            // then
+            assertThat(report.getStatus()).isEqualTo(Status.COMPLETED);
+            assertThat(Thread.class.getMethod("isVirtual").invoke(work.thread)).isEqualTo(true);
+        } finally {
+            engine.shutdown();
+        }
+    }
+
+    @Test
+    public void executorCreatedForTheEngineIsShutDownWithItButNotTheOneOfTheCaller() {
+        // given
+        ExecutorService created = Executors.newSingleThreadExecutor();
+        ExecutorService given = Executors.newSingleThreadExecutor();
+        Engine owning = new EngineImpl(created, true, null, null, 0, 0, OverflowStrategy.REJECT, Long.MAX_VALUE,
+                TimingWheel.DEFAULT_TICK_MILLIS, null, Collections.emptyList(), 0, false);
+        Engine borrowing = aNewEngine().executor(given).build();
+        Engine workStealing = aNewEngine().workStealing(2).build();
+        Context context = new Context();
+        workStealing.run(aNewSequentialFlow().execute(new CountingWork("work")).build(), context);
+        ExecutorService pool = context.getExecutorService();
+
+        // when
+        owning.shutdown();
+        borrowing.shutdown();
+        workStealing.shutdown();
+
+        // then
+        try {
+            assertThat(created.isShutdown()).isTrue();
+            assertThat(pool).isInstanceOf(ForkJoinPool.class);
+            assertThat(pool.isShutdown()).isTrue();
+            assertThat(given.isShutdown()).isFalse();
+        } finally {
+            given.shutdown();
+        }
+    }
+
+    @Test
+    public void submitRunsFlowsOnEngineWorkers() {
+        // given
+        ThreadNameWork work = new ThreadNameWork();
+        Flow flow = aNewSequentialFlow().execute(work).build();
+        Engine engine = aNewEngine().workers(2, 16).build();
+
+        // when
+        Report report = engine.submit(flow, new Context()).join();
+        engine.shutdown();
+
+        // then
+        assertThat(report.getStatus()).isEqualTo(Status.COMPLETED);
+        assertThat(work.threadName).startsWith("easy-flows-worker-");
+        assertThat(engine.getQueueStats().getSubmitted()).isEqualTo(1);
+        assertThat(engine.getQueueStats().getStarted()).isEqualTo(1);
+    }
+
+    @Test
+    public void submitRejectsWhenQueueIsFull() throws InterruptedException {
+        // given
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Flow blocking = aNewSequentialFlow().execute(new LatchWork(started, release)).build();
+        Engine engine = aNewEngine().workers(1, 2).overflow(OverflowStrategy.REJECT).build();
+
+        // when
+        CompletableFuture<Report> running = engine.submit(blocking, new Context());
+        started.await();
+        CompletableFuture<Report> queued = engine.submit(aNewSequentialFlow().execute(new ThreadNameWork()).build(), new Context());
+        engine.submit(aNewSequentialFlow().execute(new ThreadNameWork()).build(), new Context());
+        CompletableFuture<Report> rejected = engine.submit(aNewSequentialFlow().execute(new ThreadNameWork()).build(), new Context());
+
+        // then
+        assertThat(rejected).isCompletedExceptionally();
+        assertThatThrownBy(rejected::join).hasCauseInstanceOf(RejectedExecutionException.class);
+        assertThat(engine.getQueueStats().getDepth()).isEqualTo(2);
+        assertThat(engine.getQueueStats().getRejected()).isEqualTo(1);
+        release.countDown();
+        assertThat(running.join().getStatus()).isEqualTo(Status.COMPLETED);
+        queued.join();
+        engine.shutdown();
+    }
+
+    @Test
+    public void submitRunsOnCallerWhenQueueIsFull() throws InterruptedException {
+        // given
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Flow blocking = aNewSequentialFlow().execute(new LatchWork(started, release)).build();
+        Engine engine = aNewEngine().workers(1, 2).overflow(OverflowStrategy.CALLER_RUNS).build();
+        ThreadNameWork work = new ThreadNameWork();
+
+        // when
+        CompletableFuture<Report> running = engine.submit(blocking, new Context());
+        started.await();
+        engine.submit(aNewSequentialFlow().execute(new ThreadNameWork()).build(), new Context());
+        engine.submit(aNewSequentialFlow().execute(new ThreadNameWork()).build(), new Context());
+        Report report = engine.submit(aNewSequentialFlow().execute(work).build(), new Context()).join();
+
+        // then
+        assertThat(report.getStatus()).isEqualTo(Status.COMPLETED);
+        assertThat(work.threadName).isEqualTo(Thread.currentThread().getName());
+        release.countDown();
+        running.join();
+        engine.shutdown();
+    }
+
     /**
      * The following tests are not really unit tests, but serve as examples of how to create a workflow and execute it
      */
@@ -174,6 +345,600 @@ public class EngineImplTest {
         assertThat(report.getStatus()).isEqualTo(Status.COMPLETED);
     }
 
+    @Test
+    public void waitingInstancesAreParkedAndLoadedBackOnResume() throws IOException {
+        // given
+        CountingWork before = new CountingWork("before");
+        CountingWork after = new CountingWork("after");
+        Flow flow = aNewSequentialFlow().named("approval")
+                .execute(before)
+                .then(new HumanWork("approve"))
+                .then(after)
+                .build();
+        try (MappedInstanceStore store = MappedInstanceStore.open(folder.getRoot().toPath())) {
+            Engine engine = aNewEngine().instanceStore(store).build();
+            Instance instance = new Instance("order-1", "approval");
+            instance.getContext().setValue("amount", 42);
+
+            // when
+            Report waiting = engine.run(flow, instance);
+            boolean parked = store.contains("order-1");
+            Report report = engine.resume(flow, "order-1", context -> {
+                assertThat(context).isNotSameAs(instance.getContext());
+                context.setStatus("approve", Status.COMPLETED);
+            });
+
+            // then
+            assertThat(waiting.getStatus()).isEqualTo(Status.WAITING);
+            assertThat(parked).isTrue();
+            assertThat(report.getStatus()).isEqualTo(Status.COMPLETED);
+            assertThat(report.getContext().getValue("amount")).isEqualTo(42);
+            assertThat(before.calls).isEqualTo(1);
+            assertThat(after.calls).isEqualTo(1);
+            assertThat(store.contains("order-1")).isFalse();
+        }
+    }
+
+    @Test
+    public void waitingBranchOfAnAndFlowDoesNotCancelItsSiblings() throws IOException {
+        // given
+        SleepingWork slow = new SleepingWork("slow", 200);
+        CountingWork after = new CountingWork("after");
+        Flow flow = aNewSequentialFlow().named("approval")
+                .execute(aNewParallelFlow().named("checks")
+                        .execute(new HumanWork("approve"), slow)
+                        .policy(ParallelPolicy.AND)
+                        .build())
+                .then(after)
+                .build();
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+        try (MappedInstanceStore store = MappedInstanceStore.open(folder.getRoot().toPath())) {
+            Engine engine = aNewEngine().executor(executorService).instanceStore(store).build();
+            Instance instance = new Instance("order-1", "approval");
+
+            // when
+            Report waiting = engine.run(flow, instance);
+            Report report = engine.resume(flow, "order-1", context -> {
+                assertThat(context.getStatus("slow")).isEqualTo(Status.COMPLETED);
+                context.setStatus("approve", Status.COMPLETED);
+            });
+
+            // then
+            assertThat(waiting.getStatus()).isEqualTo(Status.WAITING);
+            assertThat(slow.interrupted).isFalse();
+            assertThat(report.getStatus()).isEqualTo(Status.COMPLETED);
+            assertThat(after.calls).isEqualTo(1);
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    @Test
+    public void compiledFlowsAreParkedAndResumedLikeTheirTree() throws IOException {
+        // given
+        CountingWork before = new CountingWork("before");
+        CountingWork after = new CountingWork("after");
+        Flow flow = aNewSequentialFlow().named("approval")
+                .execute(before)
+                .then(new HumanWork("approve"))
+                .then(after)
+                .build();
+        try (MappedInstanceStore store = MappedInstanceStore.open(folder.getRoot().toPath())) {
+            Engine engine = aNewEngine().instanceStore(store).compileFlows().build();
+
+            // when
+            Report waiting = engine.run(flow, new Instance("order-1", "approval"));
+            Report report = engine.resume(flow, "order-1", context -> context.setStatus("approve", Status.COMPLETED));
+
+            // then
+            assertThat(waiting.getStatus()).isEqualTo(Status.WAITING);
+            assertThat(report.getStatus()).isEqualTo(Status.COMPLETED);
+            assertThat(report.getContext().getStatus("approval")).isEqualTo(Status.COMPLETED);
+            assertThat(before.calls).isEqualTo(1);
+            assertThat(after.calls).isEqualTo(1);
+        }
+    }
+
+    @Test
+    public void compiledFlowsAreNotRetainedByTheEngine() throws InterruptedException {
+        // given
+        Engine engine = aNewEngine().compileFlows().build();
+        Flow flow = aNewSequentialFlow().named("request").execute(new CountingWork("work")).build();
+        engine.run(flow, new Context());
+        WeakReference<Flow> reference = new WeakReference<>(flow);
+
+        // when
+        flow = null;
+        for (int i = 0; i < 50 && reference.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+
+        // then
+        assertThat(reference.get()).isNull();
+    }
+
+    @Test
+    public void resumeRequiresAParkedInstance() throws IOException {
+        // given
+        Flow flow = aNewSequentialFlow().execute(new HumanWork("approve")).build();
+        try (MappedInstanceStore store = MappedInstanceStore.open(folder.getRoot().toPath())) {
+            Engine engine = aNewEngine().instanceStore(store).build();
+
+            // when / then
+            assertThatThrownBy(() -> engine.resume(flow, "unknown", null))
+                    .isInstanceOf(IllegalArgumentException.class);
+            assertThatThrownBy(() -> this.engine.resume(flow, "unknown", null))
+                    .isInstanceOf(IllegalStateException.class);
+        }
+    }
+
+    @Test
+    public void signalResumesTheInstancesWaitingForItsKey() throws InterruptedException {
+        // given
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        CountingWork after = new CountingWork("after");
+        Flow flow = aNewSequentialFlow().named("approval")
+                .execute(new HumanWork("approve", context -> "order-" + context.getValue("order")))
+                .then(after)
+                .build();
+        Engine engine = aNewEngine().executor(executorService).build();
+        Instance instance = new Instance("instance-1", "approval");
+        instance.getContext().setValue("order", 1);
+        engine.run(flow, instance);
+        Set<String> waiting = new HashSet<>(engine.getWaitingInstances("order-1"));
+
+        // when
+        int delivered = engine.signal("order-1", "approved by bob");
+        int unknown = engine.signal("order-2", null);
+        executorService.shutdown();
+        executorService.awaitTermination(5, TimeUnit.SECONDS);
+
+        // then
+        assertThat(waiting).containsExactly("instance-1");
+        assertThat(delivered).isEqualTo(1);
+        assertThat(unknown).isZero();
+        assertThat(instance.getContext().getStatus("approval")).isEqualTo(Status.COMPLETED);
+        assertThat(instance.getContext().getValue("order-1")).isEqualTo("approved by bob");
+        assertThat(after.calls).isEqualTo(1);
+        assertThat(engine.getWaitingInstances("order-1")).isEmpty();
+    }
+
+    @Test
+    public void signalForAnInstanceRunByACallerIsDeferredWithoutHoldingAThread() throws Exception {
+        // given
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        BlockingWork ship = new BlockingWork("ship");
+        Flow flow = aNewSequentialFlow().named("approval")
+                .execute(new HumanWork("approve", "order-1"))
+                .then(ship)
+                .build();
+        Engine engine = aNewEngine().executor(executorService).build();
+        Instance instance = new Instance("instance-1", "approval");
+        engine.run(flow, instance);
+        instance.getContext().setStatus("approve", Status.COMPLETED);
+        CompletableFuture<Report> caller = CompletableFuture.supplyAsync(() -> engine.run(flow, instance));
+        assertThat(ship.started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // when
+        int delivered = engine.signal("order-1", "approved by bob");
+        Future<?> probe = executorService.submit(() -> { });
+
+        // then
+        probe.get(5, TimeUnit.SECONDS);
+        assertThat(delivered).isEqualTo(1);
+        assertThatThrownBy(() -> engine.run(flow, instance)).isInstanceOf(IllegalStateException.class);
+        ship.release.countDown();
+        assertThat(caller.get(5, TimeUnit.SECONDS).getStatus()).isEqualTo(Status.COMPLETED);
+        executorService.shutdown();
+        assertThat(executorService.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(ship.calls).isEqualTo(1);
+        assertThat(engine.getWaitingInstances("order-1")).isEmpty();
+    }
+
+    @Test
+    public void burstOfSignalsIsCoalescedIntoOneResume() throws InterruptedException {
+        // given
+        ThreadPoolExecutor executorService = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+        CountDownLatch busy = new CountDownLatch(1);
+        executorService.execute(() -> {
+            try {
+                busy.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        CountingWork after = new CountingWork("after");
+        Flow flow = aNewSequentialFlow()
+                .execute(new HumanWork("approve", "order-1"))
+                .then(after)
+                .build();
+        Engine engine = aNewEngine().executor(executorService).build();
+        Instance instance = new Instance("instance-1", "approval");
+        engine.run(flow, instance);
+
+        // when
+        for (int i = 0; i < 100; i++) {
+            engine.signal("order-1", i);
+        }
+        int scheduled = executorService.getQueue().size();
+        busy.countDown();
+        executorService.shutdown();
+        executorService.awaitTermination(5, TimeUnit.SECONDS);
+
+        // then
+        assertThat(scheduled).isEqualTo(1);
+        assertThat(after.calls).isEqualTo(1);
+        assertThat(instance.getContext().getValue("order-1")).isEqualTo(99);
+    }
+
+    @Test
+    public void signalLoadsParkedInstancesFromTheStore() throws Exception {
+        // given
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        Flow flow = aNewSequentialFlow()
+                .execute(new HumanWork("approve", "order-1"))
+                .then(new HumanWork("ship", "shipment-1"))
+                .build();
+        try (MappedInstanceStore store = MappedInstanceStore.open(folder.getRoot().toPath())) {
+            Engine engine = aNewEngine().executor(executorService).instanceStore(store).build();
+            engine.run(flow, new Instance("instance-1", "approval"));
+
+            // when
+            engine.signal("order-1", null);
+            executorService.submit(() -> { }).get(5, TimeUnit.SECONDS);
+            Set<String> shipping = new HashSet<>(engine.getWaitingInstances("shipment-1"));
+            boolean parked = store.contains("instance-1");
+            engine.signal("shipment-1", null);
+            executorService.shutdown();
+            executorService.awaitTermination(5, TimeUnit.SECONDS);
+
+            // then
+            assertThat(shipping).containsExactly("instance-1");
+            assertThat(parked).isTrue();
+            assertThat(engine.getWaitingInstances("order-1")).isEmpty();
+            assertThat(engine.getWaitingInstances("shipment-1")).isEmpty();
+            assertThat(store.contains("instance-1")).isFalse();
+        }
+    }
+
+    @Test
+    public void delayWorkResumesTheInstanceWhenItsTimerFires() throws InterruptedException {
+        // given
+        CountDownLatch done = new CountDownLatch(1);
+        Flow flow = aNewSequentialFlow()
+                .execute(new DelayWork("cool-down", 50, TimeUnit.MILLISECONDS))
+                .then(new LatchWork(done, new CountDownLatch(0)))
+                .build();
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        Engine engine = aNewEngine().executor(executorService).timerTick(1, TimeUnit.MILLISECONDS).build();
+        Instance instance = new Instance("instance-1", "cool-down");
+        long start = System.currentTimeMillis();
+
+        // when
+        Report report = engine.run(flow, instance);
+        boolean resumed = done.await(5, TimeUnit.SECONDS);
+        long elapsed = System.currentTimeMillis() - start;
+        engine.shutdown();
+        // the resume goes on after the latch, until the instance ends
+        executorService.shutdown();
+        executorService.awaitTermination(5, TimeUnit.SECONDS);
+
+        // then
+        assertThat(report.getStatus()).isEqualTo(Status.WAITING);
+        assertThat(resumed).isTrue();
+        assertThat(elapsed).isGreaterThanOrEqualTo(50);
+        assertThat(instance.getContext().getValue("cool-down.deadline")).isNull();
+    }
+
+    @Test
+    public void retryFlowIsResumedByTheEngineTimersBetweenAttempts() throws InterruptedException {
+        // given
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        Work flaky = new AbstractWork("flaky") {
+            @Override
+            protected Report executeInternal(Context context) {
+                return new DefaultReport(calls.incrementAndGet() < 3 ? Status.FAILED : Status.COMPLETED, context);
+            }
+        };
+        Flow flow = aNewSequentialFlow()
+                .execute(aNewRetryFlow().retry(flaky).attempts(3).backoff(20, TimeUnit.MILLISECONDS).jitter(0).build())
+                .then(new LatchWork(done, new CountDownLatch(0)))
+                .build();
+        Engine engine = aNewEngine().timerTick(1, TimeUnit.MILLISECONDS).build();
+
+        // when
+        Report report = engine.run(flow, new Instance("instance-1", "retry"));
+        boolean completed = done.await(5, TimeUnit.SECONDS);
+        engine.shutdown();
+
+        // then
+        assertThat(report.getStatus()).isEqualTo(Status.WAITING);
+        assertThat(completed).isTrue();
+        assertThat(calls.get()).isEqualTo(3);
+    }
+
+    @Test
+    public void recoverArmsTheTimersOfInstancesParkedBeforeARestart() throws Exception {
+        // given
+        CountDownLatch done = new CountDownLatch(1);
+        Flow flow = aNewSequentialFlow().named("reminder")
+                .execute(new DelayWork("wait", 100, TimeUnit.MILLISECONDS))
+                .then(new LatchWork(done, new CountDownLatch(0)))
+                .build();
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try (MappedInstanceStore store = MappedInstanceStore.open(folder.getRoot().toPath())) {
+            Engine before = aNewEngine().instanceStore(store).build();
+            before.run(flow, new Instance("instance-1", "reminder"));
+            before.shutdown();
+            Engine after = aNewEngine().executor(executorService).instanceStore(store)
+                    .timerTick(1, TimeUnit.MILLISECONDS).build();
+
+            // when
+            int recovered = after.recover(flow);
+            boolean resumed = done.await(5, TimeUnit.SECONDS);
+            after.shutdown();
+            // the resume removes the instance from the store after the latch, before the store closes
+            executorService.shutdown();
+            executorService.awaitTermination(5, TimeUnit.SECONDS);
+
+            // then
+            assertThat(recovered).isEqualTo(1);
+            assertThat(resumed).isTrue();
+            assertThat(store.contains("instance-1")).isFalse();
+        }
+    }
+
+    @Test
+    public void scheduleRecurringLaunchesTheFlowUntilCancelled() throws InterruptedException {
+        // given
+        CountDownLatch launched = new CountDownLatch(3);
+        Flow flow = aNewSequentialFlow().named("report")
+                .execute(new LatchWork(launched, new CountDownLatch(0)))
+                .build();
+        Engine engine = aNewEngine().timerTick(1, TimeUnit.MILLISECONDS).build();
+
+        // when
+        TimerHandle handle = engine.scheduleRecurring(flow, 0, 10, TimeUnit.MILLISECONDS);
+        boolean repeated = launched.await(5, TimeUnit.SECONDS);
+        boolean cancelled = handle.cancel();
+        engine.shutdown();
+
+        // then
+        assertThat(repeated).isTrue();
+        assertThat(cancelled).isTrue();
+        assertThat(handle.isCancelled()).isTrue();
+    }
+
+    @Test
+    public void listenerRunningAFlowKeepsItsEvent() {
+        // given
+        List<String> events = new ArrayList<>();
+        AtomicReference<Engine> engine = new AtomicReference<>();
+        Flow audit = aNewSequentialFlow().named("audit").execute(new CountingWork("log")).build();
+        ExecutionListener listener = new ExecutionListener() {
+            @Override
+            public void flowStarted(ExecutionEvent event) {
+                if (event.getName().equals("order")) {
+                    engine.get().run(audit, new Context());
+                    events.add("started " + event);
+                }
+            }
+        };
+        engine.set(aNewEngine().listener(listener).build());
+        Flow flow = aNewSequentialFlow().named("order").execute(new CountingWork("check")).build();
+
+        // when
+        Report report = engine.get().run(flow, new Instance("instance-1", "order"));
+
+        // then
+        assertThat(report.getStatus()).isEqualTo(Status.COMPLETED);
+        assertThat(events).containsExactly("started ExecutionEvent{name=order, instance=instance-1, status=null}");
+    }
+
+    @Test
+    public void listenersAreCalledAroundWorksFlowsAndWaits() {
+        // given
+        List<String> events = new ArrayList<>();
+        ExecutionListener listener = new ExecutionListener() {
+            @Override
+            public void beforeWork(ExecutionEvent event) {
+                events.add("before " + event.getName());
+            }
+
+            @Override
+            public void afterWork(ExecutionEvent event) {
+                events.add("after " + event.getName() + " " + event.getStatus());
+            }
+
+            @Override
+            public void flowStarted(ExecutionEvent event) {
+                events.add("started " + event.getName() + " " + event.getInstanceId());
+            }
+
+            @Override
+            public void flowFinished(ExecutionEvent event) {
+                events.add("finished " + event.getName() + " " + event.getStatus());
+            }
+
+            @Override
+            public void instanceWaiting(ExecutionEvent event) {
+                events.add("waiting " + event.getInstanceId());
+            }
+
+            @Override
+            public void instanceResumed(ExecutionEvent event) {
+                events.add("resumed " + event.getInstanceId());
+            }
+        };
+        ExecutionListener failing = new ExecutionListener() {
+            @Override
+            public void beforeWork(ExecutionEvent event) {
+                throw new IllegalStateException("listener failure");
+            }
+        };
+        Engine engine = aNewEngine().listener(failing).listener(listener).build();
+        Flow flow = aNewSequentialFlow().named("approval")
+                .execute(new CountingWork("check"))
+                .then(new HumanWork("approve"))
+                .build();
+        Instance instance = new Instance("instance-1", "approval");
+
+        // when
+        engine.run(flow, instance);
+        instance.getContext().setStatus("approve", Status.COMPLETED);
+        Report report = engine.run(flow, instance);
+
+        // then
+        assertThat(report.getStatus()).isEqualTo(Status.COMPLETED);
+        assertThat(events).containsExactly(
+                "started approval instance-1",
+                "before approval",
+                "before check",
+                "after check COMPLETED",
+                "before approve",
+                "after approve WAITING",
+                "after approval WAITING",
+                "finished approval WAITING",
+                "waiting instance-1",
+                "resumed instance-1",
+                "started approval instance-1",
+                "before approval",
+                "after approval COMPLETED",
+                "finished approval COMPLETED");
+    }
+
+    @Test
+    public void workOutlivingItsTimeoutIsInterruptedAndFailsWithATimeoutReport() {
+        // given
+        SleepingWork hung = new SleepingWork("hung", 10_000);
+        hung.setTimeout(50, TimeUnit.MILLISECONDS);
+        CountingWork next = new CountingWork("next");
+        Flow flow = aNewSequentialFlow().execute(hung).then(next).build();
+
+        // when
+        long start = System.nanoTime();
+        Report report = engine.run(flow, new Context());
+
+        // then
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(5_000);
+        assertThat(report).isInstanceOf(TimeoutReport.class);
+        assertThat(report.getStatus()).isEqualTo(Status.FAILED);
+        assertThat(report.getError()).isInstanceOf(TimeoutException.class).hasMessageContaining("'hung'");
+        assertThat(hung.interrupted).isTrue();
+        assertThat(next.calls).isZero();
+        assertThat(Thread.currentThread().isInterrupted()).isFalse();
+    }
+
+    @Test
+    public void instanceDeadlineStopsNestedAndParallelWorks() {
+        // given
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+        Engine engine = aNewEngine().executor(executorService).instanceTimeout(100, TimeUnit.MILLISECONDS).build();
+        SleepingWork left = new SleepingWork("left", 10_000);
+        SleepingWork right = new SleepingWork("right", 10_000);
+        CountingWork after = new CountingWork("after");
+        Flow flow = aNewSequentialFlow()
+                .execute(aNewParallelFlow().execute(left, right).policy(ParallelPolicy.AND).build())
+                .then(after)
+                .build();
+        Context context = new Context();
+
+        // when
+        long start = System.nanoTime();
+        Report report = engine.run(flow, context);
+
+        // then
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(5_000);
+        assertThat(report).isInstanceOf(TimeoutReport.class);
+        assertThat(report.getStatus()).isEqualTo(Status.FAILED);
+        assertThat(after.calls).isZero();
+        assertThat(context.isCancelled()).isTrue();
+        assertThat(context.getDeadline()).isZero();
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void instanceCompletingBeforeItsDeadlineIsNotTimedOut() {
+        // given
+        Engine engine = aNewEngine().instanceTimeout(1, TimeUnit.MINUTES).build();
+        SleepingWork work = new SleepingWork("short", 1);
+        work.setTimeout(1, TimeUnit.MINUTES);
+        Context context = new Context();
+
+        // when
+        Report report = engine.run(aNewSequentialFlow().execute(work).build(), context);
+
+        // then
+        assertThat(report.getStatus()).isEqualTo(Status.COMPLETED);
+        assertThat(work.interrupted).isFalse();
+        assertThat(context.isCancelled()).isFalse();
+        assertThat(context.getDeadline()).isZero();
+    }
+
+    static class SleepingWork extends AbstractWork {
+
+        private final long millis;
+        private volatile boolean interrupted;
+
+        SleepingWork(String name, long millis) {
+            super(name);
+            this.millis = millis;
+        }
+
+        @Override
+        protected Report executeInternal(Context context) {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                interrupted = true;
+                Thread.currentThread().interrupt();
+                return new DefaultReport(Status.FAILED, context, e);
+            }
+            return new DefaultReport(Status.COMPLETED, context);
+        }
+    }
+
+    static class BlockingWork extends AbstractWork {
+
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private volatile int calls;
+
+        BlockingWork(String name) {
+            super(name);
+        }
+
+        @Override
+        protected Report executeInternal(Context context) {
+            calls++;
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return new DefaultReport(Status.CANCELLED, context);
+            }
+            return new DefaultReport(Status.COMPLETED, context);
+        }
+    }
+
+    static class CountingWork extends AbstractWork {
+
+        private int calls;
+
+        CountingWork(String name) {
+            super(name);
+        }
+
+        @Override
+        protected Report executeInternal(Context context) {
+            calls++;
+            return new DefaultReport(Status.COMPLETED, context);
+        }
+    }
+
     static class PrintMessageWork implements ExecutableWork {
 
         private final String message;
@@ -248,4 +1013,45 @@ public class EngineImplTest {
             return new DefaultReport(Status.COMPLETED, context);
         }
     }
+
+    static class ThreadNameWork implements Work, Executable {
+
+        private volatile String threadName;
+        private volatile Thread thread;
+
+        @Override
+        public String getName() {
+            return "record thread name";
+        }
+
+        @Override
+        public Report execute(Context context) {
+            thread = Thread.currentThread();
+            threadName = thread.getName();
+            return new DefaultReport(Status.COMPLETED, context);
+        }
+    }
+
+    static class LatchWork implements Work, Executable {
+
+        private final CountDownLatch started;
+        private final CountDownLatch release;
+
+        LatchWork(CountDownLatch started, CountDownLatch release) {
+            this.started = started;
+            this.release = release;
+        }
+
+        @Override
+        public Report execute(Context context) {
+            started.countDown();
+            try {
+                release.await();
+                return new DefaultReport(Status.COMPLETED, context);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return new DefaultReport(Status.FAILED, context, e);
+            }
+        }
+    }
 }
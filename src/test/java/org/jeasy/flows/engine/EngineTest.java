@@ -0,0 +1,157 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.flows.engine;
+
+import org.jeasy.flows.flow.Context;
+import org.jeasy.flows.flow.Flow;
+import org.jeasy.flows.flow.Instance;
+import org.jeasy.flows.work.DefaultReport;
+import org.jeasy.flows.work.Report;
+import org.jeasy.flows.work.Status;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class EngineTest {
+
+    private final Flow flow = Mockito.mock(Flow.class);
+
+    @Test
+    public void runAsyncRunsTheFlowWithoutBlockingTheCaller() throws Exception {
+        // given
+        CountDownLatch release = new CountDownLatch(1);
+        Engine engine = new LatchedEngine(release);
+
+        // when
+        CompletableFuture<Report> result = engine.runAsync(flow, new Context()).toCompletableFuture();
+        boolean doneBeforeRelease = result.isDone();
+        release.countDown();
+
+        // then
+        assertThat(doneBeforeRelease).isFalse();
+        assertThat(result.get(5, TimeUnit.SECONDS).getStatus()).isEqualTo(Status.COMPLETED);
+    }
+
+    @Test
+    public void cancellingTheResultOfRunAsyncCancelsTheInstance() {
+        // given
+        CountDownLatch release = new CountDownLatch(1);
+        Engine engine = new LatchedEngine(release);
+        Context context = new Context();
+
+        // when
+        engine.runAsync(flow, context).toCompletableFuture().cancel(false);
+        release.countDown();
+
+        // then
+        assertThat(context.isCancelled()).isTrue();
+    }
+
+    @Test
+    public void submitRunsTheFlowLikeRunAsyncWithoutAQueue() throws Exception {
+        // given
+        CountDownLatch release = new CountDownLatch(1);
+        Engine engine = new LatchedEngine(release);
+
+        // when
+        CompletableFuture<Report> result = engine.submit(flow, new Context());
+        release.countDown();
+        engine.shutdown();
+
+        // then
+        assertThat(result.get(5, TimeUnit.SECONDS).getStatus()).isEqualTo(Status.COMPLETED);
+        assertThat(engine.getQueueStats().getSubmitted()).isZero();
+        assertThat(engine.getQueueStats().getCapacity()).isZero();
+    }
+
+    @Test
+    public void instancesAreRunWithTheirContextAndCannotBeResumed() {
+        // given
+        Engine engine = new LatchedEngine(new CountDownLatch(0));
+        Instance instance = new Instance("instance", "flow", new Context());
+
+        // when
+        Report report = engine.run(flow, instance);
+        Throwable thrown = catchThrowable(() -> engine.resume(flow, "instance", null));
+
+        // then
+        assertThat(report.getContext()).isSameAs(instance.getContext());
+        assertThat(thrown).isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    @Test
+    public void noInstanceWaitsForSignals() {
+        // given
+        Engine engine = new LatchedEngine(new CountDownLatch(0));
+
+        // when
+        Throwable thrown = catchThrowable(() -> engine.signal("approval", "yes"));
+
+        // then
+        assertThat(engine.getWaitingInstances("approval")).isEmpty();
+        assertThat(thrown).isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    @Test
+    public void timersAndRecoveryAreNotSupported() {
+        // given
+        Engine engine = new LatchedEngine(new CountDownLatch(0));
+
+        // when
+        Throwable scheduled = catchThrowable(() -> engine.scheduleRecurring(flow, 1, 1, TimeUnit.SECONDS));
+        Throwable recovered = catchThrowable(() -> engine.recover(flow));
+
+        // then
+        assertThat(scheduled).isInstanceOf(UnsupportedOperationException.class);
+        assertThat(recovered).isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    /**
+     * An engine implementing only {@link Engine#run(Flow, Context)}, which runs flows once a latch is released.
+     */
+    private static class LatchedEngine implements Engine {
+
+        private final CountDownLatch release;
+
+        LatchedEngine(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public Report run(Flow flow, Context context) {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new DefaultReport(Status.COMPLETED, context);
+        }
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.flows.engine;
+
+import org.jeasy.flows.flow.Context;
+import org.jeasy.flows.flow.ContextKey;
+import org.jeasy.flows.flow.Instance;
+import org.jeasy.flows.work.Status;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class MappedInstanceStoreTest {
+
+    private static final ContextKey<Long> SCORE = ContextKey.of("mappedStoreScore", Long.class);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void loadReturnsSavedState() throws IOException {
+        // given
+        Instance instance = new Instance("order-1", "approval");
+        Context context = instance.getContext();
+        context.setStatus("check", Status.COMPLETED);
+        context.setStatus("approve", Status.WAITING);
+        context.setValue("customer", "alice");
+        context.setValue("amount", 42);
+        context.setValue("rate", 0.5d);
+        context.setValue("urgent", true);
+        context.setValue("items", new ArrayList<>(Arrays.asList("a", "b")));
+        context.setLong(SCORE, 7);
+
+        // when
+        Instance loaded;
+        try (MappedInstanceStore store = MappedInstanceStore.open(folder.getRoot().toPath())) {
+            store.save(instance);
+            loaded = store.load("order-1");
+        }
+
+        // then
+        assertThat(loaded.getId()).isEqualTo("order-1");
+        assertThat(loaded.getFlow()).isEqualTo("approval");
+        Context restored = loaded.getContext();
+        assertThat(restored.getStatus("check")).isEqualTo(Status.COMPLETED);
+        assertThat(restored.getStatus("approve")).isEqualTo(Status.WAITING);
+        assertThat(restored.getValue("customer")).isEqualTo("alice");
+        assertThat(restored.getValue("amount")).isEqualTo(42);
+        assertThat(restored.getValue("rate")).isEqualTo(0.5d);
+        assertThat(restored.getValue("urgent")).isEqualTo(true);
+        assertThat(restored.getValue("items")).isEqualTo(Arrays.asList("a", "b"));
+        assertThat(restored.getLong(SCORE)).isEqualTo(7);
+    }
+
+    @Test
+    public void reopenedStoreFindsSavedInstancesButNotRemovedOnes() throws IOException {
+        // given
+        Path directory = folder.getRoot().toPath();
+        try (MappedInstanceStore store = MappedInstanceStore.open(directory)) {
+            store.save(instance("kept", "v1"));
+            store.save(instance("removed", "v1"));
+            store.save(instance("kept", "v2"));
+            store.remove("removed");
+        }
+
+        // when
+        try (MappedInstanceStore store = MappedInstanceStore.open(directory)) {
+
+            // then
+            assertThat(store.size()).isEqualTo(1);
+            assertThat(store.contains("removed")).isFalse();
+            assertThat(store.load("removed")).isNull();
+            assertThat(store.load("kept").getContext().getValue("version")).isEqualTo("v2");
+        }
+    }
+
+    @Test
+    public void segmentsOfRemovedInstancesAreReclaimed() throws IOException {
+        // given
+        Path directory = folder.getRoot().toPath();
+        MappedInstanceStore store = MappedInstanceStore.open(directory, 1024);
+        for (int i = 0; i < 100; i++) {
+            store.save(instance("instance-" + i, "v1"));
+        }
+        int segments = store.segments();
+
+        // when
+        for (int i = 0; i < 100; i++) {
+            store.remove("instance-" + i);
+        }
+        store.save(instance("last", "v1"));
+        store.close();
+
+        // then
+        assertThat(segments).isGreaterThan(5);
+        assertThat(store.segments()).isLessThanOrEqualTo(2);
+        assertThat(segmentFiles(directory)).hasSize(store.segments());
+    }
+
+    @Test
+    public void longLivedInstancesAreCopiedForward() throws IOException {
+        // given
+        Path directory = folder.getRoot().toPath();
+        MappedInstanceStore store = MappedInstanceStore.open(directory, 1024);
+        store.save(instance("parked", "v1"));
+
+        // when
+        for (int i = 0; i < 100; i++) {
+            store.save(instance("short-" + i, "v1"));
+            store.remove("short-" + i);
+        }
+        store.close();
+
+        // then
+        assertThat(store.segments()).isLessThanOrEqualTo(2);
+        try (MappedInstanceStore reopened = MappedInstanceStore.open(directory, 1024)) {
+            assertThat(reopened.size()).isEqualTo(1);
+            assertThat(reopened.load("parked").getContext().getValue("version")).isEqualTo("v1");
+        }
+    }
+
+    @Test
+    public void tornRecordEndsRecovery() throws IOException {
+        // given
+        Path directory = folder.getRoot().toPath();
+        try (MappedInstanceStore store = MappedInstanceStore.open(directory)) {
+            store.save(instance("first", "v1"));
+            store.save(instance("second", "v1"));
+        }
+        Path segment = segmentFiles(directory).get(0);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // records start with the length of their payload, after a header of 9 bytes
+            int second = 9 + readInt(channel, 0);
+            int end = second + 9 + readInt(channel, second);
+            channel.write(ByteBuffer.wrap(new byte[]{(byte) 0xFF}), end - 1);
+        }
+
+        // when
+        try (MappedInstanceStore store = MappedInstanceStore.open(directory)) {
+
+            // then
+            assertThat(store.contains("first")).isTrue();
+            assertThat(store.contains("second")).isFalse();
+        }
+    }
+
+    @Test
+    public void nonSerializableValuesAreRejected() throws IOException {
+        // given
+        Instance instance = new Instance("invalid", "approval");
+        instance.getContext().setValue("lock", new Object());
+
+        try (MappedInstanceStore store = MappedInstanceStore.open(folder.getRoot().toPath())) {
+            // when / then
+            assertThatThrownBy(() -> store.save(instance))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessageContaining("lock");
+            assertThat(store.contains("invalid")).isFalse();
+        }
+    }
+
+    private static Instance instance(String id, String version) {
+        Instance instance = new Instance(id, "approval");
+        instance.getContext().setStatus("approve", Status.WAITING);
+        instance.getContext().setValue("version", version);
+        return instance;
+    }
+
+    private static int readInt(FileChannel channel, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4);
+        channel.read(buffer, position);
+        buffer.flip();
+        return buffer.getInt();
+    }
+
+    private static List<Path> segmentFiles(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().collect(Collectors.toList());
+        }
+    }
+}
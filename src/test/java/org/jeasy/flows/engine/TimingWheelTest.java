@@ -0,0 +1,204 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.flows.engine;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TimingWheelTest {
+
+    private static final long START = 1_000_000;
+    private static final long TICK = 10;
+
+    private final AtomicLong clock = new AtomicLong(START);
+    private final List<Long> fired = new ArrayList<>();
+    private final TimingWheel wheel = new TimingWheel(TICK, clock::get, Runnable::run, false);
+
+    @Test
+    public void timersFireOnceTheirDeadlineIsReached() {
+        // given
+        wheel.schedule(START + 55, () -> fired.add(55L));
+        wheel.schedule(START + 20, () -> fired.add(20L));
+
+        // when
+        int early = wheel.advanceTo(START + 19);
+        int first = wheel.advanceTo(START + 50);
+        int second = wheel.advanceTo(START + 60);
+
+        // then
+        assertThat(early).isZero();
+        assertThat(first).isEqualTo(1);
+        assertThat(second).isEqualTo(1);
+        assertThat(fired).containsExactly(20L, 55L);
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    public void cancelledTimersDoNotFire() {
+        // given
+        TimerHandle handle = wheel.schedule(START + 100, () -> fired.add(100L));
+
+        // when
+        boolean cancelled = handle.cancel();
+        boolean cancelledAgain = handle.cancel();
+        wheel.advanceTo(START + 1000);
+
+        // then
+        assertThat(cancelled).isTrue();
+        assertThat(cancelledAgain).isFalse();
+        assertThat(handle.isCancelled()).isTrue();
+        assertThat(fired).isEmpty();
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    public void farTimersCascadeDownTheWheels() {
+        // given
+        long far = START + TICK * (64 * 64 * 64 + 7);
+        long farther = START + TICK * (64L * 64 * 64 * 64 + 64 * 3 + 1);
+        wheel.schedule(farther, () -> fired.add(farther));
+        wheel.schedule(far, () -> fired.add(far));
+
+        // when
+        wheel.advanceTo(far - 1);
+        List<Long> beforeFar = new ArrayList<>(fired);
+        wheel.advanceTo(far);
+        wheel.advanceTo(farther - 1);
+        List<Long> beforeFarther = new ArrayList<>(fired);
+        wheel.advanceTo(farther);
+
+        // then
+        assertThat(beforeFar).isEmpty();
+        assertThat(beforeFarther).containsExactly(far);
+        assertThat(fired).containsExactly(far, farther);
+    }
+
+    @Test
+    public void overdueTimersFireRightAway() {
+        // when
+        wheel.schedule(START - 1, () -> fired.add(-1L));
+
+        // then
+        assertThat(fired).containsExactly(-1L);
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    public void holdsAMillionTimers() {
+        // given
+        AtomicInteger count = new AtomicInteger();
+        Random random = new Random(42);
+        List<TimerHandle> handles = new ArrayList<>();
+        for (int i = 0; i < 1_000_000; i++) {
+            handles.add(wheel.schedule(START + 1 + random.nextInt(600_000), count::incrementAndGet));
+        }
+        int pending = wheel.size();
+
+        // when
+        for (int i = 0; i < handles.size(); i += 2) {
+            handles.get(i).cancel();
+        }
+        int fired = wheel.advanceTo(START + 600_000);
+
+        // then
+        assertThat(pending).isEqualTo(1_000_000);
+        assertThat(fired).isEqualTo(500_000);
+        assertThat(count.get()).isEqualTo(500_000);
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    public void timersSpreadOverYearsFireAtTheFirstAdvancePastTheirDeadline() {
+        // given
+        long tenYears = TimeUnit.DAYS.toMillis(3650);
+        Random random = new Random(42);
+        List<long[]> late = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            long deadline = START + 1 + (long) (random.nextDouble() * tenYears);
+            wheel.schedule(deadline, () -> late.add(new long[]{deadline, clock.get()}));
+        }
+        List<Long> advances = new ArrayList<>();
+
+        // when
+        while (clock.get() < START + tenYears) {
+            advances.add(clock.addAndGet(1 + (long) (random.nextDouble() * tenYears / 500)));
+            wheel.advanceTo(clock.get());
+        }
+
+        // then
+        assertThat(late).hasSize(1000);
+        for (long[] timer : late) {
+            long deadline = timer[0];
+            long firedAt = timer[1];
+            long firstAdvancePastDeadline = advances.stream()
+                    .filter(now -> now >= deadline + TICK).findFirst().orElse(Long.MAX_VALUE);
+            assertThat(firedAt).isGreaterThanOrEqualTo(deadline).isLessThanOrEqualTo(firstAdvancePastDeadline);
+        }
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    public void idleThreadWaitsUntilATimerIsScheduled() throws Exception {
+        // given
+        TimingWheel driven = new TimingWheel(TICK, System::currentTimeMillis, Runnable::run);
+        CountDownLatch first = new CountDownLatch(1);
+        CountDownLatch second = new CountDownLatch(1);
+        driven.schedule(System.currentTimeMillis() + 20, first::countDown);
+        assertThat(first.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // when
+        awaitThreadParkedWithoutTimeoutOn(driven);
+        driven.schedule(System.currentTimeMillis() + 20, second::countDown);
+
+        // then
+        try {
+            assertThat(second.await(5, TimeUnit.SECONDS)).isTrue();
+        } finally {
+            driven.stop();
+        }
+    }
+
+    private static void awaitThreadParkedWithoutTimeoutOn(Object blocker) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (System.nanoTime() < deadline) {
+            for (Thread thread : Thread.getAllStackTraces().keySet()) {
+                if (LockSupport.getBlocker(thread) == blocker && thread.getState() == Thread.State.WAITING) {
+                    return;
+                }
+            }
+            Thread.sleep(1);
+        }
+        throw new AssertionError("No thread parked on " + blocker);
+    }
+}
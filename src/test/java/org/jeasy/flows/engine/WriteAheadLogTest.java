@@ -0,0 +1,321 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.flows.engine;
+
+import org.jeasy.flows.flow.Context;
+import org.jeasy.flows.flow.ContextKey;
+import org.jeasy.flows.flow.Flow;
+import org.jeasy.flows.flow.Instance;
+import org.jeasy.flows.work.HumanWork;
+import org.jeasy.flows.work.Report;
+import org.jeasy.flows.work.Status;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.jeasy.flows.engine.EngineBuilder.aNewEngine;
+import static org.jeasy.flows.flow.SequentialFlow.Builder.aNewSequentialFlow;
+
+public class WriteAheadLogTest {
+
+    private static final ContextKey<Long> COUNTER = ContextKey.of("journalCounter", Long.class);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void replayRebuildsJournaledChanges() throws IOException {
+        // given
+        Path file = folder.getRoot().toPath().resolve("flows.log");
+        try (WriteAheadLog log = WriteAheadLog.open(file, Durability.NONE)) {
+            Instance instance = new Instance("order-1", "approval");
+            instance.getContext().setValue("customer", "alice");
+            Context context = instance.getContext();
+            context.setJournal(log.begin(instance));
+            context.setStatus("check", Status.COMPLETED);
+            context.setStatus("approve", Status.WAITING);
+            context.setValue("amount", 42);
+            context.setValue("customer", null);
+            context.addLong(COUNTER, 2);
+            context.addLong(COUNTER, 3);
+        }
+
+        // when
+        Map<String, Instance> instances;
+        try (WriteAheadLog log = WriteAheadLog.open(file, Durability.NONE)) {
+            instances = log.replay();
+        }
+
+        // then
+        assertThat(instances).containsOnlyKeys("order-1");
+        Instance instance = instances.get("order-1");
+        assertThat(instance.getFlow()).isEqualTo("approval");
+        assertThat(instance.getContext().getStatus("check")).isEqualTo(Status.COMPLETED);
+        assertThat(instance.getContext().getStatus("approve")).isEqualTo(Status.WAITING);
+        assertThat(instance.getContext().getValue("amount")).isEqualTo(42);
+        assertThat(instance.getContext().getValue("customer")).isNull();
+        assertThat(instance.getContext().getLong(COUNTER)).isEqualTo(5);
+    }
+
+    @Test
+    public void endedInstancesAreNotReplayed() throws IOException {
+        // given
+        Path file = folder.getRoot().toPath().resolve("flows.log");
+        try (WriteAheadLog log = WriteAheadLog.open(file, Durability.GROUP)) {
+            Context done = new Context();
+            done.setJournal(log.begin(new Instance("done", "approval", done)));
+            done.setStatus("approve", Status.COMPLETED);
+            log.end("done");
+            log.begin(new Instance("running", "approval"));
+
+            // when
+            Map<String, Instance> instances = log.replay();
+
+            // then
+            assertThat(instances).containsOnlyKeys("running");
+        }
+    }
+
+    @Test
+    public void groupCommitSharesForcesBetweenConcurrentWriters() throws Exception {
+        // given
+        Path file = folder.getRoot().toPath().resolve("flows.log");
+        try (WriteAheadLog log = WriteAheadLog.open(file, Durability.GROUP)) {
+            List<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                Context context = new Context();
+                context.setJournal(log.begin(new Instance("instance-" + t, "flow", context)));
+                threads.add(new Thread(() -> {
+                    for (int i = 0; i < 50; i++) {
+                        context.setStatus("work-" + i, Status.COMPLETED);
+                    }
+                }));
+            }
+
+            // when
+            threads.forEach(Thread::start);
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            // then
+            assertThat(log.getRecordCount()).isEqualTo(8 + 8 * 50);
+            assertThat(log.getSyncCount()).isLessThan(log.getRecordCount());
+            assertThat(log.replay().get("instance-7").getContext().statusNames()).hasSize(50);
+        }
+    }
+
+    @Test
+    public void failedBackgroundSyncIsThrownByTheNextAppendAndSyncingGoesOn() throws Exception {
+        // given
+        Path file = folder.getRoot().toPath().resolve("flows.log");
+        try (WriteAheadLog log = WriteAheadLog.open(file, Durability.ASYNC, 1, TimeUnit.MILLISECONDS)) {
+            AtomicInteger attempts = new AtomicInteger();
+            log.ioWith(new WriteAheadLog.ChannelIo() {
+                @Override
+                public void force(FileChannel channel) throws IOException {
+                    if (attempts.incrementAndGet() == 1) {
+                        throw new IOException("disk full");
+                    }
+                    channel.force(false);
+                }
+            });
+            log.snapshot(new Instance("first", "flow", new Context()));
+            // the failure is stored before the syncer tries again
+            awaitUntil(() -> attempts.get() >= 2);
+
+            // when
+            Throwable thrown = catchThrowable(() -> log.snapshot(new Instance("second", "flow", new Context())));
+            log.snapshot(new Instance("third", "flow", new Context()));
+            awaitUntil(() -> log.getSyncCount() >= 2);
+
+            // then
+            assertThat(thrown).isInstanceOf(UncheckedIOException.class).hasRootCauseMessage("disk full");
+            assertThat(log.replay()).containsOnlyKeys("first", "third");
+        }
+    }
+
+    @Test
+    public void groupWritersWaitForAForceOnTheChannelReopenedAfterAnInterrupt() throws Exception {
+        // given
+        Path file = folder.getRoot().toPath().resolve("flows.log");
+        try (WriteAheadLog log = WriteAheadLog.open(file, Durability.GROUP)) {
+            CountDownLatch forcing = new CountDownLatch(1);
+            CountDownLatch reopened = new CountDownLatch(1);
+            AtomicInteger forces = new AtomicInteger();
+            AtomicInteger interruptedWrites = new AtomicInteger();
+            log.ioWith(new WriteAheadLog.ChannelIo() {
+                @Override
+                public int write(FileChannel channel, ByteBuffer buffer) throws IOException {
+                    if ("interrupted".equals(Thread.currentThread().getName())) {
+                        if (interruptedWrites.getAndIncrement() == 0) {
+                            // closes the channel like an interrupt in the middle of the write
+                            Thread.currentThread().interrupt();
+                        } else {
+                            reopened.countDown();
+                        }
+                    }
+                    return channel.write(buffer);
+                }
+
+                @Override
+                public void force(FileChannel channel) throws IOException {
+                    if (forcing.getCount() > 0) {
+                        forcing.countDown();
+                        await(reopened);
+                    }
+                    channel.force(false);
+                    forces.incrementAndGet();
+                }
+            });
+            AtomicInteger forcesWhenForcingWriterReturned = new AtomicInteger(-1);
+            Thread forcingWriter = new Thread(() -> {
+                log.snapshot(new Instance("forcing", "flow", new Context()));
+                forcesWhenForcingWriterReturned.set(forces.get());
+            });
+            Thread interruptedWriter = new Thread(() -> log.snapshot(new Instance("interrupted", "flow", new Context())), "interrupted");
+
+            // when
+            forcingWriter.start();
+            await(forcing);
+            interruptedWriter.start();
+            forcingWriter.join(5000);
+            interruptedWriter.join(5000);
+
+            // then
+            assertThat(forcesWhenForcingWriterReturned.get()).isPositive();
+            assertThat(log.replay()).containsOnlyKeys("forcing", "interrupted");
+        }
+    }
+
+    @Test
+    public void compactionKeepsOneSnapshotPerUnfinishedInstance() throws IOException {
+        // given
+        Path file = folder.getRoot().toPath().resolve("flows.log");
+        try (WriteAheadLog log = WriteAheadLog.open(file, Durability.NONE)) {
+            for (int i = 0; i < 100; i++) {
+                Context context = new Context();
+                context.setJournal(log.begin(new Instance("instance-" + i, "flow", context)));
+                for (int step = 0; step < 10; step++) {
+                    context.setValue("step", step);
+                }
+                if (i > 0) {
+                    log.end("instance-" + i);
+                }
+            }
+            long size = log.size();
+
+            // when
+            log.compact();
+            Context context = new Context();
+            context.setJournal(log.begin(new Instance("after", "flow", context)));
+            context.setValue("step", 1);
+
+            // then
+            assertThat(log.size()).isLessThan(size / 10);
+            Map<String, Instance> instances = log.replay();
+            assertThat(instances).containsOnlyKeys("instance-0", "after");
+            assertThat(instances.get("instance-0").getContext().getValue("step")).isEqualTo(9);
+        }
+    }
+
+    @Test
+    public void tornRecordIsTruncatedOnOpen() throws IOException {
+        // given
+        Path file = folder.getRoot().toPath().resolve("flows.log");
+        try (WriteAheadLog log = WriteAheadLog.open(file, Durability.NONE)) {
+            log.begin(new Instance("first", "flow"));
+        }
+        // a record cut short by a crash
+        Files.write(file, new byte[]{0, 0, 0, 100, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        // when
+        try (WriteAheadLog log = WriteAheadLog.open(file, Durability.NONE)) {
+            log.begin(new Instance("second", "flow"));
+
+            // then
+            assertThat(log.replay()).containsOnlyKeys("first", "second");
+        }
+    }
+
+    @Test
+    public void engineJournalsInstancesUntilTheyEnd() throws IOException {
+        // given
+        Path file = folder.getRoot().toPath().resolve("flows.log");
+        Flow flow = aNewSequentialFlow().named("approval")
+                .execute(new HumanWork("approve"))
+                .build();
+        try (WriteAheadLog log = WriteAheadLog.open(file, Durability.ASYNC)) {
+            Engine engine = aNewEngine().journal(log).build();
+            Instance waiting = new Instance("waiting", "approval");
+            Instance done = new Instance("done", "approval");
+            done.getContext().setStatus("approve", Status.COMPLETED);
+
+            // when
+            Report waitingReport = engine.run(flow, waiting);
+            Report doneReport = engine.run(flow, done);
+
+            // then
+            assertThat(waitingReport.getStatus()).isEqualTo(Status.WAITING);
+            assertThat(doneReport.getStatus()).isEqualTo(Status.COMPLETED);
+            assertThat(done.getContext().getJournal()).isNull();
+            Map<String, Instance> instances = log.replay();
+            assertThat(instances).containsOnlyKeys("waiting");
+            assertThat(instances.get("waiting").getContext().getStatus("approval")).isEqualTo(Status.WAITING);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void awaitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertThat(condition.getAsBoolean()).isTrue();
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.flows.flow;
+
+import org.jeasy.flows.work.AbstractAsyncWork;
+import org.jeasy.flows.work.DefaultReport;
+import org.jeasy.flows.work.Report;
+import org.jeasy.flows.work.ReportPredicate;
+import org.jeasy.flows.work.Status;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.jeasy.flows.flow.ConditionalFlow.Builder.aNewConditionalFlow;
+import static org.jeasy.flows.flow.ParallelFlow.Builder.aNewParallelFlow;
+import static org.jeasy.flows.flow.RepeatFlow.Builder.aNewRepeatFlow;
+import static org.jeasy.flows.flow.SequentialFlow.Builder.aNewSequentialFlow;
+
+public class AsyncFlowTest {
+
+    private final ExecutorService executorService = Executors.newFixedThreadPool(2);
+
+    @After
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void sequentialFlowContinuesWhenPendingWorkCompletes() {
+        // given
+        PendingWork work1 = new PendingWork("work1");
+        PendingWork work2 = new PendingWork("work2");
+        SequentialFlow flow = aNewSequentialFlow().execute(work1).then(work2).build();
+        Context context = new Context();
+
+        // when
+        CompletableFuture<Report> report = flow.executeAsync(context).toCompletableFuture();
+
+        // then
+        assertThat(report).isNotDone();
+        assertThat(work2.calls.get()).isZero();
+        work1.complete(Status.COMPLETED);
+        assertThat(work2.calls.get()).isEqualTo(1);
+        work2.complete(Status.COMPLETED);
+        assertThat(report.join().getStatus()).isEqualTo(Status.COMPLETED);
+        assertThat(context.getStatus(flow.getName())).isEqualTo(Status.COMPLETED);
+    }
+
+    @Test
+    public void sequentialFlowStopsOnFailure() {
+        // given
+        PendingWork work1 = new PendingWork("work1");
+        PendingWork work2 = new PendingWork("work2");
+        SequentialFlow flow = aNewSequentialFlow().execute(work1).then(work2).build();
+
+        // when
+        CompletableFuture<Report> report = flow.executeAsync(new Context()).toCompletableFuture();
+        work1.complete(Status.FAILED);
+
+        // then
+        assertThat(report.join().getStatus()).isEqualTo(Status.FAILED);
+        assertThat(work2.calls.get()).isZero();
+    }
+
+    @Test
+    public void conditionalFlowChoosesBranchOnCompletion() {
+        // given
+        PendingWork check = new PendingWork("check");
+        PendingWork onSuccess = new PendingWork("onSuccess");
+        PendingWork onFailure = new PendingWork("onFailure");
+        ConditionalFlow flow = aNewConditionalFlow()
+                .execute(check)
+                .when(ReportPredicate.COMPLETED)
+                .then(onSuccess)
+                .otherwise(onFailure)
+                .build();
+
+        // when
+        CompletableFuture<Report> report = flow.executeAsync(new Context()).toCompletableFuture();
+        check.complete(Status.FAILED);
+        onFailure.complete(Status.COMPLETED);
+
+        // then
+        assertThat(report.join().getStatus()).isEqualTo(Status.COMPLETED);
+        assertThat(onSuccess.calls.get()).isZero();
+    }
+
+    @Test
+    public void repeatFlowRepeatsAsynchronously() {
+        // given
+        PendingWork work = new PendingWork("work");
+        AtomicInteger iterations = new AtomicInteger();
+        RepeatFlow flow = aNewRepeatFlow()
+                .repeat(work)
+                .until(report -> iterations.incrementAndGet() < 3)
+                .build();
+
+        // when
+        CompletableFuture<Report> report = flow.executeAsync(new Context()).toCompletableFuture();
+        work.complete(Status.COMPLETED);
+
+        // then
+        assertThat(report.join().getStatus()).isEqualTo(Status.COMPLETED);
+        assertThat(iterations.get()).isEqualTo(3);
+    }
+
+    @Test
+    public void parallelFlowJoinsWithoutBlocking() {
+        // given
+        PendingWork work1 = new PendingWork("work1");
+        PendingWork work2 = new PendingWork("work2");
+        ParallelFlow flow = aNewParallelFlow()
+                .execute(work1, work2)
+                .with(executorService)
+                .policy(ParallelPolicy.AND)
+                .build();
+
+        // when
+        CompletableFuture<Report> report = flow.executeAsync(new Context()).toCompletableFuture();
+        work1.complete(Status.COMPLETED);
+        work2.complete(Status.COMPLETED);
+
+        // then
+        assertThat(report.join().getStatus()).isEqualTo(Status.COMPLETED);
+        assertThat(((ParallelReport) report.join()).getReports()).hasSize(2);
+    }
+
+    static class PendingWork extends AbstractAsyncWork {
+
+        private final CompletableFuture<Status> result = new CompletableFuture<>();
+        private final AtomicInteger calls = new AtomicInteger();
+
+        PendingWork(String name) {
+            super(name);
+        }
+
+        @Override
+        protected CompletionStage<Report> executeInternalAsync(Context context) {
+            calls.incrementAndGet();
+            return result.thenApply(status -> new DefaultReport(status, context));
+        }
+
+        void complete(Status status) {
+            result.complete(status);
+        }
+    }
+}
@@ -0,0 +1,292 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.flows.flow;
+
+import org.jeasy.flows.work.HumanWork;
+import org.jeasy.flows.work.NoOpWork;
+import org.jeasy.flows.work.Report;
+import org.jeasy.flows.work.Status;
+import org.jeasy.flows.work.Work;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.jeasy.flows.flow.SequentialFlow.Builder.aNewSequentialFlow;
+
+public class ContextTest {
+
+    @Test
+    public void statusesWrittenBySlotAreVisibleByName() {
+        // given
+        NoOpWork work = new NoOpWork();
+        SequentialFlow flow = aNewSequentialFlow().named("flow").execute(work).build();
+        Context context = new Context();
+
+        // when
+        flow.execute(context);
+
+        // then
+        assertThat(context.slotOf(work).getLayout()).isSameAs(flow.getLayout());
+        assertThat(context.getStatus(work.getName())).isEqualTo(Status.COMPLETED);
+        assertThat(context.getStatus("flow")).isEqualTo(Status.COMPLETED);
+        assertThat(context.statusNames()).containsExactlyInAnyOrder("flow", work.getName());
+    }
+
+    @Test
+    public void statusesSetByNameBeforeTheFirstRunAreKept() {
+        // given
+        SequentialFlow flow = aNewSequentialFlow().named("flow")
+                .execute(new HumanWork("approval"))
+                .then(new NoOpWork())
+                .build();
+        Context context = new Context();
+        context.setStatus("approval", Status.COMPLETED);
+        context.setStatus("unknown", Status.FAILED);
+
+        // when
+        Report report = flow.execute(context);
+
+        // then
+        assertThat(report.getStatus()).isEqualTo(Status.COMPLETED);
+        assertThat(context.getStatus("approval")).isEqualTo(Status.COMPLETED);
+        assertThat(context.getStatus("unknown")).isEqualTo(Status.FAILED);
+    }
+
+    @Test
+    public void workOfAnotherLayoutUsesItsName() {
+        // given
+        HumanWork approval = new HumanWork("approval");
+        SequentialFlow first = aNewSequentialFlow().named("first").execute(approval).build();
+        SequentialFlow second = aNewSequentialFlow().named("second").execute(approval).build();
+        Context context = new Context();
+
+        // when
+        second.execute(context);
+        context.setStatus("approval", Status.COMPLETED);
+        Report report = first.execute(context);
+
+        // then
+        assertThat(context.slotOf(approval).getLayout()).isSameAs(second.getLayout());
+        assertThat(report.getStatus()).isEqualTo(Status.COMPLETED);
+        assertThat(context.getStatus("first")).isEqualTo(Status.COMPLETED);
+    }
+
+    @Test
+    public void buildingAnotherFlowLeavesTheLayoutOfASharedSubFlow() {
+        // given
+        SequentialFlow review = aNewSequentialFlow().named("review")
+                .execute(new NoOpWork())
+                .then(new HumanWork("approval"))
+                .build();
+        SequentialFlow first = aNewSequentialFlow().named("first").execute(review).build();
+        Context context = new Context();
+        first.execute(context);
+
+        // when
+        SequentialFlow second = aNewSequentialFlow().named("second").execute(new NoOpWork()).then(review).build();
+
+        // then
+        StatusLayout.Slot slot = context.slotOf(review);
+        assertThat(slot.getLayout()).isSameAs(first.getLayout()).isNotSameAs(second.getLayout());
+        assertThat(context.getStatus(review)).isEqualTo(Status.WAITING);
+        assertThat(context.getCursor(slot)).isEqualTo(1);
+    }
+
+    @Test
+    public void concurrentUpdatesOfSlotsSharingAWordAreNotLost() throws InterruptedException {
+        // given
+        List<Work> works = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            works.add(new NoOpWork());
+        }
+        SequentialFlow flow = aNewSequentialFlow().execute(works).build();
+        Context context = new Context();
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        CountDownLatch done = new CountDownLatch(works.size());
+
+        // when
+        for (Work work : works) {
+            executorService.execute(() -> {
+                context.setStatus(flow.getLayout().slotOf(work.getName()), Status.FAILED);
+                done.countDown();
+            });
+        }
+
+        // then
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        executorService.shutdown();
+        for (Work work : works) {
+            assertThat(context.getStatus(work.getName())).isEqualTo(Status.FAILED);
+        }
+        assertThat(context.getStatus(flow.getName())).isNull();
+    }
+
+    @Test
+    public void typedValuesAreVisibleByName() {
+        // given
+        ContextKey<Long> score = ContextKey.of("ContextTest.score", Long.class);
+        ContextKey<Double> ratio = ContextKey.of("ContextTest.ratio", double.class);
+        ContextKey<String> label = ContextKey.of("ContextTest.label", String.class);
+        Context context = new Context();
+
+        // when
+        context.setLong(score, 40);
+        context.addLong(score, 2);
+        context.setDouble(ratio, 0.5);
+        context.set(label, "high");
+
+        // then
+        assertThat(context.getLong(score)).isEqualTo(42);
+        assertThat(context.getValue("ContextTest.score")).isEqualTo(42L);
+        assertThat(context.getValue("ContextTest.ratio")).isEqualTo(0.5);
+        assertThat(context.getValue("ContextTest.label")).isEqualTo("high");
+        assertThat(context.valueKeys()).contains("ContextTest.score", "ContextTest.ratio", "ContextTest.label");
+    }
+
+    @Test
+    public void valuesSetByNameAreVisibleThroughKeys() {
+        // given
+        Context context = new Context();
+        context.setValue("ContextTest.early", 7);
+        ContextKey<Integer> early = ContextKey.of("ContextTest.early", Integer.class);
+        ContextKey<Boolean> flag = ContextKey.of("ContextTest.flag", Boolean.class);
+
+        // when
+        context.setValue("ContextTest.flag", true);
+
+        // then
+        assertThat(context.getInt(early)).isEqualTo(7);
+        assertThat(context.getBoolean(flag)).isTrue();
+        assertThat(context.valueKeys()).contains("ContextTest.early", "ContextTest.flag");
+    }
+
+    @Test
+    public void absentAndRemovedValues() {
+        // given
+        ContextKey<Long> counter = ContextKey.of("ContextTest.counter", Long.class);
+        Context context = new Context();
+
+        // when
+        context.setLong(counter, 1);
+        context.setValue("ContextTest.counter", null);
+
+        // then
+        assertThat(context.contains(counter)).isFalse();
+        assertThat(context.getLong(counter)).isZero();
+        assertThat(context.getValue("ContextTest.counter")).isNull();
+        assertThat(context.get(counter)).isNull();
+    }
+
+    @Test
+    public void keysAreInternedByNameAndType() {
+        // given
+        ContextKey<Long> key = ContextKey.of("ContextTest.interned", Long.class);
+
+        // when
+        ContextKey<Long> same = ContextKey.of("ContextTest.interned", long.class);
+
+        // then
+        assertThat(same).isSameAs(key);
+        assertThat(ContextKey.of("ContextTest.interned", String.class)).isNotSameAs(key);
+    }
+
+    @Test
+    public void keyOfAnotherTypeThanTheKeyOfItsNameKeepsItsValuesByName() {
+        // given
+        ContextKey<Integer> amount = ContextKey.of("ContextTest.amount", Integer.class);
+        ContextKey<Long> other = ContextKey.of("ContextTest.amount", Long.class);
+        Context context = new Context();
+        context.setInt(amount, 3);
+
+        // when
+        context.addLong(other, 2);
+        context.addLong(other, 5);
+
+        // then
+        assertThat(other.getType()).isEqualTo(Long.class);
+        assertThat(context.getLong(other)).isEqualTo(7);
+        assertThat(context.getValue("ContextTest.amount")).isEqualTo(7L);
+        assertThat(context.get(amount)).isNull();
+
+        // when
+        context.setInt(amount, 4);
+
+        // then
+        assertThat(context.get(other)).isNull();
+        assertThat(context.getValue("ContextTest.amount")).isEqualTo(4);
+    }
+
+    @Test
+    public void valueOfAnotherTypeThanTheKeyOfItsNameIsKeptByName() {
+        // given
+        ContextKey<Long> key = ContextKey.of("ContextTest.loose", Long.class);
+        Context context = new Context();
+        context.setLong(key, 42);
+
+        // when
+        context.setValue("ContextTest.loose", "text");
+
+        // then
+        assertThat(context.getValue("ContextTest.loose")).isEqualTo("text");
+        assertThat(context.get(key)).isNull();
+        assertThat(context.valueKeys()).containsOnlyOnce("ContextTest.loose");
+
+        // when
+        context.setValue("ContextTest.loose", 7L);
+
+        // then
+        assertThat(context.getLong(key)).isEqualTo(7);
+        assertThat(context.getValue("ContextTest.loose")).isEqualTo(7L);
+    }
+
+    @Test
+    public void concurrentAdditionsAreNotLost() throws InterruptedException {
+        // given
+        ContextKey<Long> total = ContextKey.of("ContextTest.total", Long.class);
+        Context context = new Context();
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        CountDownLatch done = new CountDownLatch(4);
+
+        // when
+        for (int i = 0; i < 4; i++) {
+            executorService.execute(() -> {
+                for (int j = 0; j < 1000; j++) {
+                    context.addLong(total, 1);
+                }
+                done.countDown();
+            });
+        }
+
+        // then
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        executorService.shutdown();
+        assertThat(context.getLong(total)).isEqualTo(4000);
+    }
+}
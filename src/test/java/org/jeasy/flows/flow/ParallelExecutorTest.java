@@ -24,6 +24,7 @@
 package org.jeasy.flows.flow;
 
 import org.assertj.core.api.Assertions;
+import org.jeasy.flows.work.AbstractWork;
 import org.jeasy.flows.work.DefaultReport;
 import org.jeasy.flows.work.Executable;
 import org.jeasy.flows.work.Work;
@@ -34,8 +35,13 @@ import org.mockito.Mockito;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class ParallelExecutorTest {
 
@@ -46,7 +52,7 @@ public class ParallelExecutorTest {
         ExecutorService executorService = Executors.newFixedThreadPool(2);
         HelloWorldWork work1 = new HelloWorldWork("work1", Status.COMPLETED);
         HelloWorldWork work2 = new HelloWorldWork("work2", Status.FAILED);
-        Context context = Mockito.mock(Context.class);
+        Context context = new Context();
         ParallelExecutor parallelExecutor = new ParallelExecutor(executorService);
 
         // when
@@ -59,6 +65,190 @@ public class ParallelExecutorTest {
         Assertions.assertThat(work2.isExecuted()).isTrue();
     }
 
+    @Test
+    public void testExecuteReturnsAsSoonAsDecided() throws InterruptedException {
+
+        // given
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+        CountDownLatch latch = new CountDownLatch(1);
+        BlockedWork work2 = new BlockedWork("work2", latch);
+        // completes once work2 is blocked, so that deciding interrupts it rather than skipping it
+        BlockedWork work1 = new BlockedWork("work1", work2.started);
+        Context context = new Context();
+        ParallelExecutor parallelExecutor = new ParallelExecutor(executorService);
+        ParallelReport parallelReport = new ParallelReport(ParallelPolicy.OR);
+
+        // when
+        parallelExecutor.executeInParallel(Arrays.asList(work2, work1), context, parallelReport);
+
+        // then
+        Assertions.assertThat(parallelReport.getStatus()).isEqualTo(Status.COMPLETED);
+        Assertions.assertThat(parallelReport.getReports()).hasSize(1);
+        Assertions.assertThat(work2.interrupted.await(1, TimeUnit.SECONDS)).isTrue();
+        executorService.shutdown();
+    }
+
+    @Test
+    public void testExecuteIsCancelledWithContext() {
+
+        // given
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+        BlockedWork work1 = new BlockedWork("work1", new CountDownLatch(1));
+        BlockedWork work2 = new BlockedWork("work2", new CountDownLatch(1));
+        Context context = new Context();
+        ParallelExecutor parallelExecutor = new ParallelExecutor(executorService);
+        ParallelReport parallelReport = new ParallelReport(ParallelPolicy.OR);
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        scheduler.schedule(context::cancel, 50, TimeUnit.MILLISECONDS);
+
+        // when
+        parallelExecutor.executeInParallel(Arrays.asList(work1, work2), context, parallelReport);
+
+        // then
+        Assertions.assertThat(parallelReport.getStatus()).isEqualTo(Status.CANCELLED);
+        Assertions.assertThat(parallelReport.getReports()).hasSize(2);
+        scheduler.shutdown();
+        executorService.shutdown();
+    }
+
+    @Test(timeout = 10_000)
+    public void testNestedParallelFlowsOnForkJoinPool() {
+
+        // given
+        ForkJoinPool pool = new ForkJoinPool(2);
+        Work[] innerFlows = new Work[4];
+        for (int i = 0; i < innerFlows.length; i++) {
+            innerFlows[i] = ParallelFlow.Builder.aNewParallelFlow()
+                    .named("inner" + i)
+                    .execute(new HelloWorldWork("work" + i + "a", Status.COMPLETED), new HelloWorldWork("work" + i + "b", Status.COMPLETED))
+                    .with(pool)
+                    .policy(ParallelPolicy.AND)
+                    .build();
+        }
+        ParallelExecutor parallelExecutor = new ParallelExecutor(pool);
+        ParallelReport parallelReport = new ParallelReport(ParallelPolicy.AND);
+
+        // when
+        parallelExecutor.executeInParallel(Arrays.asList(innerFlows), new Context(), parallelReport);
+        pool.shutdown();
+
+        // then
+        Assertions.assertThat(parallelReport.getStatus()).isEqualTo(Status.COMPLETED);
+        Assertions.assertThat(parallelReport.getReports()).hasSize(4);
+    }
+
+    @Test
+    public void testBranchesRunningOnForkJoinPoolAreInterruptedOnceDecided() throws InterruptedException {
+
+        // given
+        ForkJoinPool pool = new ForkJoinPool(2);
+        BlockedWork work2 = new BlockedWork("work2", new CountDownLatch(1));
+        BlockedWork work1 = new BlockedWork("work1", work2.started);
+        ParallelExecutor parallelExecutor = new ParallelExecutor(pool);
+        ParallelReport parallelReport = new ParallelReport(ParallelPolicy.OR);
+
+        // when
+        parallelExecutor.executeInParallel(Arrays.asList(work2, work1), new Context(), parallelReport);
+
+        // then
+        Assertions.assertThat(parallelReport.getStatus()).isEqualTo(Status.COMPLETED);
+        Assertions.assertThat(work2.interrupted.await(1, TimeUnit.SECONDS)).isTrue();
+        pool.shutdown();
+    }
+
+    static class BlockedWork implements Work, Executable {
+
+        private final String name;
+        private final CountDownLatch latch;
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch interrupted = new CountDownLatch(1);
+
+        BlockedWork(String name, CountDownLatch latch) {
+            this.name = name;
+            this.latch = latch;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public Report execute(Context context) {
+            started.countDown();
+            try {
+                latch.await();
+                return new DefaultReport(Status.COMPLETED, context);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                return new DefaultReport(Status.FAILED, context, e);
+            }
+        }
+    }
+
+    @Test
+    public void testDoneWorkUnitsAreAnsweredInline() {
+
+        // given
+        AtomicInteger submitted = new AtomicInteger();
+        ExecutorService executorService = Executors.newFixedThreadPool(2, runnable -> {
+            submitted.incrementAndGet();
+            return new Thread(runnable);
+        });
+        ResumableWork done = new ResumableWork("done");
+        ResumableWork waiting = new ResumableWork("waiting");
+        Context context = new Context();
+        context.setStatus("done", Status.COMPLETED);
+        context.setStatus("waiting", Status.WAITING);
+        ParallelExecutor parallelExecutor = new ParallelExecutor(executorService);
+        ParallelReport parallelReport = new ParallelReport(ParallelPolicy.AND);
+
+        // when
+        parallelExecutor.executeInParallel(Arrays.asList(done, waiting), context, parallelReport);
+        executorService.shutdown();
+
+        // then
+        Assertions.assertThat(parallelReport.getStatus()).isEqualTo(Status.COMPLETED);
+        Assertions.assertThat(done.executions.get()).isZero();
+        Assertions.assertThat(waiting.executions.get()).isEqualTo(1);
+        Assertions.assertThat(submitted.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void testDecidedByDoneWorkUnitsSubmitsNothing() {
+
+        // given
+        ExecutorService executorService = Mockito.mock(ExecutorService.class);
+        ResumableWork done = new ResumableWork("done");
+        ResumableWork pending = new ResumableWork("pending");
+        Context context = new Context();
+        context.setStatus("done", Status.FAILED);
+        ParallelExecutor parallelExecutor = new ParallelExecutor(executorService);
+        ParallelReport parallelReport = new ParallelReport(ParallelPolicy.AND);
+
+        // when
+        parallelExecutor.executeInParallel(Arrays.asList(done, pending), context, parallelReport);
+
+        // then
+        Assertions.assertThat(parallelReport.getStatus()).isEqualTo(Status.FAILED);
+        Mockito.verifyNoInteractions(executorService);
+    }
+
+    static class ResumableWork extends AbstractWork {
+
+        private final AtomicInteger executions = new AtomicInteger();
+
+        ResumableWork(String name) {
+            super(name);
+        }
+
+        @Override
+        protected Report executeInternal(Context context) {
+            executions.incrementAndGet();
+            return new DefaultReport(Status.COMPLETED, context);
+        }
+    }
+
     static class HelloWorldWork implements Work, Executable {
 
         private final String name;
@@ -49,7 +49,7 @@ public class ParallelFlowTest {
 
         // then
         Assertions.assertThat(parallelFlowReport).isNotNull();
-        Mockito.verify(parallelExecutor).executeInParallel(works, context);
+        Mockito.verify(parallelExecutor).executeInParallel(Mockito.eq(works), Mockito.eq(context), Mockito.any(ParallelReport.class));
     }
 
 }
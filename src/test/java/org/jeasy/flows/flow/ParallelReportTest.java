@@ -57,4 +57,57 @@ public class ParallelReportTest {
 	public void testGetReports() {
 		Assertions.assertThat(parallelReport.getReports()).hasSize(2);
 	}
+
+	@Test
+	public void testIsDecided() {
+		Context context = new Context();
+		ParallelReport and = new ParallelReport(ParallelPolicy.AND);
+		ParallelReport or = new ParallelReport(ParallelPolicy.OR);
+		and.add(new DefaultReport(Status.COMPLETED, context));
+		or.add(new DefaultReport(Status.FAILED, context));
+		Assertions.assertThat(and.isDecided()).isFalse();
+		Assertions.assertThat(or.isDecided()).isFalse();
+
+		and.add(new DefaultReport(Status.WAITING, context));
+		or.add(new DefaultReport(Status.COMPLETED, context));
+		Assertions.assertThat(and.isDecided()).isFalse();
+		Assertions.assertThat(and.getStatus()).isEqualTo(Status.WAITING);
+		Assertions.assertThat(or.isDecided()).isTrue();
+		Assertions.assertThat(or.getStatus()).isEqualTo(Status.COMPLETED);
+
+		and.add(new DefaultReport(Status.FAILED, context));
+		Assertions.assertThat(and.isDecided()).isTrue();
+		Assertions.assertThat(and.getStatus()).isEqualTo(Status.FAILED);
+	}
+
+	@Test
+	public void testAggregatesWithoutRetainingReports() {
+		Context context = new Context();
+		ParallelReport report = new ParallelReport(ParallelPolicy.AND, false);
+		report.add(new DefaultReport(Status.COMPLETED, context));
+		report.add(new DefaultReport(Status.FAILED, context, exception));
+		report.add(new DefaultReport(Status.FAILED, context, new Exception("second")));
+
+		Assertions.assertThat(report.getReports()).isEmpty();
+		Assertions.assertThat(report.getStatus()).isEqualTo(Status.FAILED);
+		Assertions.assertThat(report.getError()).isEqualTo(exception);
+		Assertions.assertThat(report.getContext()).isSameAs(context);
+	}
+
+	@Test
+	public void testMergesDistinctContextsWithoutRetainingReports() {
+		Context first = new Context();
+		first.setValue("a", 1);
+		Context second = new Context();
+		second.setValue("b", 2);
+		second.setStatus("work", Status.COMPLETED);
+		ParallelReport report = new ParallelReport(ParallelPolicy.AND, false);
+		report.add(new DefaultReport(Status.COMPLETED, first));
+		report.add(new DefaultReport(Status.COMPLETED, second));
+
+		Context context = report.getContext();
+		Assertions.assertThat(context.getValue("a")).isEqualTo(1);
+		Assertions.assertThat(context.getValue("b")).isEqualTo(2);
+		Assertions.assertThat(context.getStatus("work")).isEqualTo(Status.COMPLETED);
+	}
 }
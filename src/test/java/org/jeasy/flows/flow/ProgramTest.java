@@ -0,0 +1,312 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.flows.flow;
+
+import org.jeasy.flows.work.AbstractWork;
+import org.jeasy.flows.work.DefaultReport;
+import org.jeasy.flows.work.ExecutableWork;
+import org.jeasy.flows.work.HumanWork;
+import org.jeasy.flows.work.NoOpWork;
+import org.jeasy.flows.work.Report;
+import org.jeasy.flows.work.ReportPredicate;
+import org.jeasy.flows.work.Status;
+import org.jeasy.flows.work.Work;
+import org.jeasy.flows.work.WorkProbe;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.jeasy.flows.flow.ConditionalFlow.Builder.aNewConditionalFlow;
+import static org.jeasy.flows.flow.RepeatFlow.Builder.aNewRepeatFlow;
+import static org.jeasy.flows.flow.SequentialFlow.Builder.aNewSequentialFlow;
+
+public class ProgramTest {
+
+    @Test
+    public void compiledSequentialFlowStopsOnFailure() {
+        // given
+        CountingWork work1 = new CountingWork("work1", Status.COMPLETED);
+        CountingWork work2 = new CountingWork("work2", Status.FAILED);
+        CountingWork work3 = new CountingWork("work3", Status.COMPLETED);
+        SequentialFlow flow = aNewSequentialFlow().named("flow").execute(work1).then(work2).then(work3).build();
+        Context context = new Context();
+
+        // when
+        Report report = FlowCompiler.compile(flow).execute(context);
+
+        // then
+        assertThat(report.getStatus()).isEqualTo(Status.FAILED);
+        assertThat(work3.calls.get()).isZero();
+        assertThat(context.getStatus("work1")).isEqualTo(Status.COMPLETED);
+        assertThat(context.getStatus("work2")).isEqualTo(Status.FAILED);
+        assertThat(context.getStatus("flow")).isEqualTo(Status.FAILED);
+    }
+
+    @Test
+    public void flowKeepsItsCompiledProgram() {
+        // given
+        SequentialFlow flow = aNewSequentialFlow().named("flow").execute(new CountingWork("work", Status.COMPLETED)).build();
+
+        // when
+        Program first = FlowCompiler.compiled(flow);
+        Program second = FlowCompiler.compiled(flow);
+
+        // then
+        assertThat(second).isSameAs(first);
+        assertThat(FlowCompiler.compiled(aNewSequentialFlow().named("flow").execute(new CountingWork("work", Status.COMPLETED)).build()))
+                .isNotSameAs(first);
+    }
+
+    @Test
+    public void compiledConditionalFlowTakesTheSameBranchAsTheFlow() {
+        // given
+        CountingWork then = new CountingWork("then", Status.COMPLETED);
+        CountingWork otherwise = new CountingWork("otherwise", Status.FAILED);
+        ConditionalFlow flow = aNewConditionalFlow().named("flow")
+                .execute(new CountingWork("initial", Status.FAILED))
+                .when(ReportPredicate.COMPLETED)
+                .then(then)
+                .otherwise(otherwise)
+                .build();
+        Context interpreted = new Context();
+        Context compiled = new Context();
+
+        // when
+        Report expected = flow.execute(interpreted);
+        Report report = FlowCompiler.compile(flow).execute(compiled);
+
+        // then
+        assertThat(report.getStatus()).isEqualTo(expected.getStatus()).isEqualTo(Status.FAILED);
+        assertThat(then.calls.get()).isZero();
+        assertThat(otherwise.calls.get()).isEqualTo(2);
+        for (String name : interpreted.statusNames()) {
+            assertThat(compiled.getStatus(name)).isEqualTo(interpreted.getStatus(name));
+        }
+        assertThat(compiled.statusNames()).isEqualTo(interpreted.statusNames());
+    }
+
+    @Test
+    public void compiledRepeatFlowRepeatsUntilPredicate() {
+        // given
+        UntrackedWork work = new UntrackedWork();
+        RepeatFlow flow = aNewRepeatFlow().repeat(work).until(report -> work.calls.get() < 3).build();
+
+        // when
+        Report report = FlowCompiler.compile(flow).execute(new Context());
+
+        // then
+        assertThat(report.getStatus()).isEqualTo(Status.COMPLETED);
+        assertThat(work.calls.get()).isEqualTo(3);
+    }
+
+    @Test
+    public void compiledRepeatFlowRunsTheWorkTimesPerContext() {
+        // given
+        CountingWork work = new CountingWork("work", Status.COMPLETED);
+        Program program = FlowCompiler.compile(aNewRepeatFlow().named("loop").repeat(work).times(3).build());
+        Context first = new Context();
+        Context second = new Context();
+
+        // when
+        Report firstReport = program.execute(first);
+        Report secondReport = program.execute(second);
+
+        // then
+        assertThat(firstReport.getStatus()).isEqualTo(Status.COMPLETED);
+        assertThat(secondReport.getStatus()).isEqualTo(Status.COMPLETED);
+        assertThat(work.calls.get()).isEqualTo(6);
+        assertThat(first.getValue("loop.iterations")).isNull();
+    }
+
+    @Test
+    public void compiledFlowResumesAtWaitingStep() {
+        // given
+        CountingWork work1 = new CountingWork("work1", Status.COMPLETED);
+        CountingWork work2 = new CountingWork("work2", Status.COMPLETED);
+        SequentialFlow flow = aNewSequentialFlow().named("flow")
+                .execute(work1)
+                .then(aNewSequentialFlow().named("inner").execute(new NoOpWork()).then(new HumanWork("approval")).build())
+                .then(work2)
+                .build();
+        Program program = FlowCompiler.compile(flow);
+        Context context = new Context();
+
+        // when
+        Report waiting = program.execute(context);
+        Program.ResumePoint resumePoint = context.getResumePoint();
+        context.setStatus("approval", Status.COMPLETED);
+        Report report = program.execute(context);
+
+        // then
+        assertThat(waiting.getStatus()).isEqualTo(Status.WAITING);
+        assertThat(resumePoint).isNotNull();
+        assertThat(context.getResumePoint()).isNull();
+        assertThat(report.getStatus()).isEqualTo(Status.COMPLETED);
+        assertThat(work1.calls.get()).isEqualTo(1);
+        assertThat(work2.calls.get()).isEqualTo(1);
+        assertThat(context.getStatus("inner")).isEqualTo(Status.COMPLETED);
+        assertThat(context.getStatus("flow")).isEqualTo(Status.COMPLETED);
+    }
+
+    @Test
+    public void compiledFlowReturnsCachedStatus() {
+        // given
+        CountingWork work = new CountingWork("work", Status.COMPLETED);
+        SequentialFlow flow = aNewSequentialFlow().named("flow").execute(work).build();
+        Context context = new Context();
+        context.setStatus("flow", Status.FAILED);
+
+        // when
+        Report report = FlowCompiler.compile(flow).execute(context);
+
+        // then
+        assertThat(report.getStatus()).isEqualTo(Status.FAILED);
+        assertThat(work.calls.get()).isZero();
+    }
+
+    @Test
+    public void compiledFlowIsCancelled() {
+        // given
+        CountingWork work = new CountingWork("work", Status.COMPLETED);
+        SequentialFlow flow = aNewSequentialFlow().named("flow").execute(work).build();
+        Context context = new Context();
+        context.cancel();
+
+        // when
+        Report report = FlowCompiler.compile(flow).execute(context);
+
+        // then
+        assertThat(report.getStatus()).isEqualTo(Status.CANCELLED);
+        assertThat(work.calls.get()).isZero();
+        assertThat(context.getStatus("flow")).isEqualTo(Status.CANCELLED);
+    }
+
+    @Test
+    public void compiledFlowRunsTheTreeForAProbedContext() {
+        // given
+        SequentialFlow flow = aNewSequentialFlow().named("flow")
+                .execute(aNewSequentialFlow().named("inner").execute(new CountingWork("work1", Status.COMPLETED)).build())
+                .then(aNewRepeatFlow().named("loop").repeat(new CountingWork("work2", Status.COMPLETED)).times(2).build())
+                .build();
+        Context interpreted = new Context();
+        Context compiled = new Context();
+        List<String> treeProbe = new ArrayList<>();
+        List<String> programProbe = new ArrayList<>();
+        interpreted.setProbe(probe(treeProbe));
+        compiled.setProbe(probe(programProbe));
+
+        // when
+        flow.execute(interpreted);
+        Report report = FlowCompiler.compile(flow).execute(compiled);
+
+        // then
+        assertThat(report.getStatus()).isEqualTo(Status.COMPLETED);
+        assertThat(programProbe).containsExactly("flow", "inner", "work1", "loop", "work2", "work2");
+        assertThat(programProbe).isEqualTo(treeProbe);
+    }
+
+    @Test
+    public void compiledCountedLoopOnlyWritesItsIterationsWhenItParks() {
+        // given
+        CountingWork counting = new CountingWork("counting", Status.COMPLETED);
+        Program program = FlowCompiler.compile(aNewSequentialFlow().named("flow")
+                .execute(aNewRepeatFlow().named("fast").repeat(counting).times(5).build())
+                .then(aNewRepeatFlow().named("loop").repeat(new HumanWork("approval")).times(3).build())
+                .build());
+        Context context = new Context();
+        List<Object> journaled = new ArrayList<>();
+        context.setJournal(new ContextJournal() {
+            @Override
+            public void statusChanged(String name, Status status) {
+            }
+
+            @Override
+            public void valueChanged(String name, Object value) {
+                journaled.add(name + "=" + value);
+            }
+        });
+
+        // when
+        Report report = program.execute(context);
+        for (int run = 0; run < 3; run++) {
+            context.setStatus("approval", Status.COMPLETED);
+            report = program.execute(context);
+        }
+
+        // then
+        assertThat(report.getStatus()).isEqualTo(Status.COMPLETED);
+        assertThat(counting.calls.get()).isEqualTo(5);
+        assertThat(journaled).containsExactly("loop.iterations=1", "loop.iterations=2", "loop.iterations=null");
+    }
+
+    private static WorkProbe probe(List<String> executed) {
+        return new WorkProbe() {
+            @Override
+            public long before(Work work, Context context) {
+                executed.add(work.getName());
+                return 0;
+            }
+
+            @Override
+            public void after(Work work, Context context, long token, Report report, Throwable error) {
+            }
+        };
+    }
+
+    static class CountingWork extends AbstractWork {
+
+        private final Status status;
+        private final AtomicInteger calls = new AtomicInteger();
+
+        CountingWork(String name, Status status) {
+            super(name);
+            this.status = status;
+        }
+
+        @Override
+        protected Report executeInternal(Context context) {
+            calls.incrementAndGet();
+            return new DefaultReport(status, context);
+        }
+    }
+
+    static class UntrackedWork implements ExecutableWork {
+
+        private final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public String getName() {
+            return "untracked";
+        }
+
+        @Override
+        public Report execute(Context context) {
+            calls.incrementAndGet();
+            return new DefaultReport(Status.COMPLETED, context);
+        }
+    }
+}
@@ -23,12 +23,24 @@
  */
 package org.jeasy.flows.flow;
 
+import org.jeasy.flows.work.AbstractWork;
+import org.jeasy.flows.work.DefaultReport;
 import org.jeasy.flows.work.ExecutableWork;
+import org.jeasy.flows.work.Report;
+import org.jeasy.flows.work.Status;
 import org.jeasy.flows.work.Work;
 import org.jeasy.flows.work.ReportPredicate;
 import org.junit.Test;
 import org.mockito.Mockito;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
 public class RepeatFlowTest {
 
     @Test
@@ -66,4 +78,106 @@ public class RepeatFlowTest {
         Mockito.verify(work, Mockito.times(3)).execute(context);
     }
 
+    @Test
+    public void timesIsCountedPerRunWhenInstancesShareTheFlow() throws Exception {
+        // given
+        RepeatFlow repeatFlow = RepeatFlow.Builder.aNewRepeatFlow()
+                .repeat(new CountingWork("count"))
+                .times(3)
+                .build();
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        List<Future<Context>> runs = new ArrayList<>();
+
+        // when
+        for (int i = 0; i < 100; i++) {
+            runs.add(executorService.submit(() -> {
+                Context context = new Context();
+                repeatFlow.execute(context);
+                return context;
+            }));
+        }
+
+        // then
+        for (Future<Context> run : runs) {
+            Context context = run.get();
+            assertThat(context.getValue("count")).isEqualTo(3);
+            assertThat(context.getStatus(repeatFlow.getName())).isEqualTo(Status.COMPLETED);
+        }
+        executorService.shutdown();
+    }
+
+    @Test
+    public void waitingIterationResumesWithItsCount() {
+        // given
+        WaitingOnceWork work = new WaitingOnceWork("step", 2);
+        RepeatFlow repeatFlow = RepeatFlow.Builder.aNewRepeatFlow().named("loop")
+                .repeat(work)
+                .times(3)
+                .build();
+        Context context = new Context();
+
+        // when
+        Report waiting = repeatFlow.execute(context);
+        Object parkedIterations = context.getValue(repeatFlow.getIterationsKey());
+        Report report = repeatFlow.execute(context);
+
+        // then
+        assertThat(waiting.getStatus()).isEqualTo(Status.WAITING);
+        assertThat(parkedIterations).isEqualTo(1);
+        assertThat(report.getStatus()).isEqualTo(Status.COMPLETED);
+        // iterations 1, 2 (waiting then resumed) and 3
+        assertThat(work.calls).isEqualTo(4);
+        assertThat(context.getValue(repeatFlow.getIterationsKey())).isNull();
+    }
+
+    @Test
+    public void asyncRepeatRunsTheWorkOnEveryIteration() {
+        // given
+        CountingWork work = new CountingWork("count");
+        RepeatFlow repeatFlow = RepeatFlow.Builder.aNewRepeatFlow()
+                .repeat(work)
+                .until(report -> (Integer) report.getContext().getValue("count") < 4)
+                .build();
+        Context context = new Context();
+
+        // when
+        Report report = repeatFlow.executeAsync(context).toCompletableFuture().join();
+
+        // then
+        assertThat(report.getStatus()).isEqualTo(Status.COMPLETED);
+        assertThat(context.getValue("count")).isEqualTo(4);
+    }
+
+    static class CountingWork extends AbstractWork {
+
+        CountingWork(String name) {
+            super(name);
+        }
+
+        @Override
+        protected Report executeInternal(Context context) {
+            Object count = context.getValue(getName());
+            context.setValue(getName(), count == null ? 1 : (Integer) count + 1);
+            return new DefaultReport(Status.COMPLETED, context);
+        }
+    }
+
+    /**
+     * Waits on its n-th call, completes otherwise.
+     */
+    static class WaitingOnceWork extends AbstractWork {
+
+        private final int waitingCall;
+        private int calls;
+
+        WaitingOnceWork(String name, int waitingCall) {
+            super(name);
+            this.waitingCall = waitingCall;
+        }
+
+        @Override
+        protected Report executeInternal(Context context) {
+            return new DefaultReport(++calls == waitingCall ? Status.WAITING : Status.COMPLETED, context);
+        }
+    }
 }
@@ -0,0 +1,145 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.flows.flow;
+
+import org.jeasy.flows.work.AbstractWork;
+import org.jeasy.flows.work.DefaultReport;
+import org.jeasy.flows.work.Report;
+import org.jeasy.flows.work.Status;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.jeasy.flows.flow.RetryFlow.Builder.aNewRetryFlow;
+
+public class RetryFlowTest {
+
+    @Test
+    public void failedAttemptsWaitForTheirBackoffBeforeRunningAgain() {
+        // given
+        FlakyWork work = new FlakyWork("call", 2);
+        RetryFlow flow = aNewRetryFlow().named("retry").retry(work).attempts(5)
+                .backoff(1, TimeUnit.MINUTES).jitter(0)
+                .build();
+        Context context = new Context();
+
+        // when
+        Report first = flow.execute(context);
+        Report backingOff = flow.execute(context);
+        long retryAt = (Long) context.getValue(flow.getRetryAtKey());
+        // the backoff is over
+        context.setValue(flow.getRetryAtKey(), 0L);
+        Report second = flow.execute(context);
+        context.setValue(flow.getRetryAtKey(), 0L);
+        Report third = flow.execute(context);
+
+        // then
+        assertThat(first.getStatus()).isEqualTo(Status.WAITING);
+        assertThat(backingOff.getStatus()).isEqualTo(Status.WAITING);
+        assertThat(retryAt - System.currentTimeMillis()).isBetween(0L, TimeUnit.MINUTES.toMillis(1));
+        assertThat(context.getAwaitedTimers()).containsKey("retry");
+        assertThat(second.getStatus()).isEqualTo(Status.WAITING);
+        assertThat(third.getStatus()).isEqualTo(Status.COMPLETED);
+        assertThat(work.calls).isEqualTo(3);
+        assertThat(context.getValue(flow.getAttemptsKey())).isNull();
+        assertThat(context.getValue(flow.getRetryAtKey())).isNull();
+    }
+
+    @Test
+    public void lastFailureIsReportedOnceAttemptsAreExhausted() {
+        // given
+        FlakyWork work = new FlakyWork("call", Integer.MAX_VALUE);
+        RetryFlow flow = aNewRetryFlow().retry(work).attempts(3).build();
+        Context context = new Context();
+
+        // when
+        Report report = flow.execute(context);
+        while (report.getStatus() == Status.WAITING) {
+            context.setValue(flow.getRetryAtKey(), 0L);
+            report = flow.execute(context);
+        }
+
+        // then
+        assertThat(report.getStatus()).isEqualTo(Status.FAILED);
+        assertThat(work.calls).isEqualTo(3);
+        assertThat(context.getValue(flow.getAttemptsKey())).isNull();
+    }
+
+    @Test
+    public void asyncAttemptsAreScheduledWithoutHoldingAThread() {
+        // given
+        FlakyWork work = new FlakyWork("call", 2);
+        RetryFlow flow = aNewRetryFlow().retry(work).attempts(3)
+                .backoff(20, TimeUnit.MILLISECONDS).jitter(0)
+                .build();
+        long start = System.nanoTime();
+
+        // when
+        Report report = flow.executeAsync(new Context()).toCompletableFuture().join();
+
+        // then
+        assertThat(report.getStatus()).isEqualTo(Status.COMPLETED);
+        assertThat(work.calls).isEqualTo(3);
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isGreaterThanOrEqualTo(60);
+    }
+
+    @Test
+    public void backoffGrowsExponentiallyUpToTheMaxDelayMinusTheJitter() {
+        // given
+        RetryFlow exact = aNewRetryFlow().retry(new FlakyWork("call", 0)).attempts(10)
+                .backoff(100, TimeUnit.MILLISECONDS).multiplier(3).maxDelay(1, TimeUnit.SECONDS).jitter(0)
+                .build();
+        RetryFlow jittered = aNewRetryFlow().retry(new FlakyWork("call", 0)).attempts(10)
+                .backoff(100, TimeUnit.MILLISECONDS).jitter(0.5)
+                .build();
+
+        // when / then
+        assertThat(exact.delay(1)).isEqualTo(100);
+        assertThat(exact.delay(2)).isEqualTo(300);
+        assertThat(exact.delay(3)).isEqualTo(900);
+        assertThat(exact.delay(4)).isEqualTo(1000);
+        for (int i = 0; i < 100; i++) {
+            assertThat(jittered.delay(2)).isBetween(100L, 200L);
+        }
+    }
+
+    static class FlakyWork extends AbstractWork {
+
+        private final int failures;
+        private volatile int calls;
+
+        FlakyWork(String name, int failures) {
+            super(name);
+            this.failures = failures;
+        }
+
+        @Override
+        protected Report executeInternal(Context context) {
+            return ++calls > failures
+                    ? new DefaultReport(Status.COMPLETED, context)
+                    : new DefaultReport(Status.FAILED, context, new IllegalStateException("failure " + calls));
+        }
+    }
+}
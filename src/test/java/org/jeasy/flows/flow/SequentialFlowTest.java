@@ -26,8 +26,13 @@ package org.jeasy.flows.flow;
 import java.util.Arrays;
 import java.util.List;
 
+import org.assertj.core.api.Assertions;
+import org.jeasy.flows.work.DefaultReport;
 import org.jeasy.flows.work.Executable;
 import org.jeasy.flows.work.ExecutableWork;
+import org.jeasy.flows.work.HumanWork;
+import org.jeasy.flows.work.Report;
+import org.jeasy.flows.work.Status;
 import org.jeasy.flows.work.Work;
 import org.junit.Test;
 import org.mockito.InOrder;
@@ -86,4 +91,56 @@ public class SequentialFlowTest {
         inOrder.verify(work4, Mockito.times(1)).execute(context);
     }
 
+    @Test
+    public void testExecuteStopsWhenCancelled() {
+        // given
+        ExecutableWork work1 = Mockito.mock(ExecutableWork.class);
+        ExecutableWork work2 = Mockito.mock(ExecutableWork.class);
+        Context context = new Context();
+        Mockito.when(work1.execute(context)).then(invocation -> {
+            context.cancel();
+            return new DefaultReport(Status.COMPLETED, context);
+        });
+        SequentialFlow sequentialFlow = SequentialFlow.Builder.aNewSequentialFlow()
+                .named("testFlow")
+                .execute(work1)
+                .then(work2)
+                .build();
+
+        // when
+        Report report = sequentialFlow.execute(context);
+
+        // then
+        Assertions.assertThat(report.getStatus()).isEqualTo(Status.CANCELLED);
+        Assertions.assertThat(context.getStatus("testFlow")).isEqualTo(Status.CANCELLED);
+        Mockito.verify(work2, Mockito.never()).execute(context);
+    }
+
+    @Test
+    public void resumeStartsFromTheWaitingWork() {
+        // given
+        ExecutableWork work1 = Mockito.mock(ExecutableWork.class);
+        ExecutableWork work3 = Mockito.mock(ExecutableWork.class);
+        Context context = new Context();
+        Mockito.when(work1.execute(context)).thenReturn(new DefaultReport(Status.COMPLETED, context));
+        Mockito.when(work3.execute(context)).thenReturn(new DefaultReport(Status.COMPLETED, context));
+        SequentialFlow sequentialFlow = SequentialFlow.Builder.aNewSequentialFlow()
+                .named("testFlow")
+                .execute(work1)
+                .then(new HumanWork("approval"))
+                .then(work3)
+                .build();
+
+        // when
+        Report waiting = sequentialFlow.execute(context);
+        context.setStatus("approval", Status.COMPLETED);
+        Report report = sequentialFlow.execute(context);
+
+        // then
+        Assertions.assertThat(waiting.getStatus()).isEqualTo(Status.WAITING);
+        Assertions.assertThat(report.getStatus()).isEqualTo(Status.COMPLETED);
+        Mockito.verify(work1, Mockito.times(1)).execute(context);
+        Mockito.verify(work3, Mockito.times(1)).execute(context);
+    }
+
 }
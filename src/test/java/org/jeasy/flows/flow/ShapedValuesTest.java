@@ -0,0 +1,137 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.flows.flow;
+
+import org.jeasy.flows.work.NoOpWork;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.jeasy.flows.flow.SequentialFlow.Builder.aNewSequentialFlow;
+
+public class ShapedValuesTest {
+
+    @Test
+    public void valuesWithTheSameNamesShareTheirShape() {
+        // given
+        ShapedValues first = new ShapedValues();
+        ShapedValues second = new ShapedValues();
+
+        // when
+        first.put("ShapedValuesTest.a", 1);
+        first.put("ShapedValuesTest.b", "x");
+        second.put("ShapedValuesTest.a", 2);
+        second.put("ShapedValuesTest.b", "y");
+
+        // then
+        assertThat(first.getShape()).isNotNull().isSameAs(second.getShape());
+        assertThat(first.get("ShapedValuesTest.a")).isEqualTo(1);
+        assertThat(second.get("ShapedValuesTest.a")).isEqualTo(2);
+        assertThat(second.get("ShapedValuesTest.b")).isEqualTo("y");
+        assertThat(second.get("ShapedValuesTest.c")).isNull();
+    }
+
+    @Test
+    public void removedValuesKeepTheShape() {
+        // given
+        ShapedValues values = new ShapedValues();
+        values.put("ShapedValuesTest.removed", 1);
+        Shape shape = values.getShape();
+
+        // when
+        Object removed = values.remove("ShapedValuesTest.removed");
+
+        // then
+        assertThat(removed).isEqualTo(1);
+        assertThat(values.get("ShapedValuesTest.removed")).isNull();
+        assertThat(values.names()).isEmpty();
+        assertThat(values.getShape()).isSameAs(shape);
+    }
+
+    @Test
+    public void valuesSwitchToAMapPastTheShapeLimits() {
+        // given
+        ShapedValues values = new ShapedValues();
+
+        // when
+        for (int i = 0; i <= Shape.MAX_SIZE; i++) {
+            values.put("ShapedValuesTest.generated-" + i, i);
+        }
+
+        // then
+        assertThat(values.getShape()).isNull();
+        assertThat(values.names()).hasSize(Shape.MAX_SIZE + 1);
+        for (int i = 0; i <= Shape.MAX_SIZE; i++) {
+            assertThat(values.get("ShapedValuesTest.generated-" + i)).isEqualTo(i);
+        }
+    }
+
+    @Test
+    public void flowStillGetsShapesAfterAnotherFlowFilledItsRoot() {
+        // given
+        Shape first = layoutOf(aNewSequentialFlow().execute(new NoOpWork()).build()).getShapes();
+        Shape second = layoutOf(aNewSequentialFlow().execute(new NoOpWork()).build()).getShapes();
+        for (int i = 0; i <= Shape.MAX_TRANSITIONS; i++) {
+            ShapedValues values = new ShapedValues();
+            values.rebase(first);
+            values.put("ShapedValuesTest.first-" + i, i);
+        }
+        ShapedValues overflowing = new ShapedValues();
+        overflowing.rebase(first);
+        overflowing.put("ShapedValuesTest.first-overflow", 1);
+
+        // when
+        ShapedValues values = new ShapedValues();
+        values.put("ShapedValuesTest.before-run", 1);
+        values.rebase(second);
+        values.put("ShapedValuesTest.second", 2);
+
+        // then
+        assertThat(overflowing.getShape()).isNull();
+        assertThat(values.getShape()).isNotNull();
+        assertThat(values.get("ShapedValuesTest.before-run")).isEqualTo(1);
+        assertThat(values.get("ShapedValuesTest.second")).isEqualTo(2);
+    }
+
+    @Test
+    public void valuesKeptInAMapMoveBackToSlotsWhenRebased() {
+        // given
+        ShapedValues values = new ShapedValues();
+        for (int i = 0; i <= Shape.MAX_SIZE; i++) {
+            values.put("ShapedValuesTest.many-" + i, i);
+        }
+        values.remove("ShapedValuesTest.many-0");
+
+        // when
+        values.rebase(Shape.root());
+
+        // then
+        assertThat(values.getShape()).isNotNull();
+        assertThat(values.names()).hasSize(Shape.MAX_SIZE);
+        assertThat(values.get("ShapedValuesTest.many-" + Shape.MAX_SIZE)).isEqualTo(Shape.MAX_SIZE);
+    }
+
+    private static StatusLayout layoutOf(Flow flow) {
+        return ((AbstractFlow) flow).getLayout();
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.flows.jfr;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.jeasy.flows.engine.Engine;
+import org.jeasy.flows.flow.Context;
+import org.jeasy.flows.flow.Flow;
+import org.jeasy.flows.flow.Instance;
+import org.jeasy.flows.flow.ParallelPolicy;
+import org.jeasy.flows.work.AbstractWork;
+import org.jeasy.flows.work.DefaultReport;
+import org.jeasy.flows.work.HumanWork;
+import org.jeasy.flows.work.Report;
+import org.jeasy.flows.work.Status;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.jeasy.flows.engine.EngineBuilder.aNewEngine;
+import static org.jeasy.flows.flow.ParallelFlow.Builder.aNewParallelFlow;
+import static org.jeasy.flows.flow.SequentialFlow.Builder.aNewSequentialFlow;
+
+public class FlowEventsTest {
+
+    private static final String[] EVENTS = {
+            "org.jeasy.flows.WorkExecution", "org.jeasy.flows.BranchSubmit", "org.jeasy.flows.ParallelJoin",
+            "org.jeasy.flows.QueueWait", "org.jeasy.flows.InstanceWaiting", "org.jeasy.flows.InstanceResumed"
+    };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void executionsAreRecordedWhenTheEventsAreEnabled() throws Exception {
+        // given
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+        Flow parallel = aNewParallelFlow().named("checks")
+                .execute(new CompletedWork("stock"), new CompletedWork("credit"))
+                .with(executorService)
+                .policy(ParallelPolicy.AND)
+                .build();
+        Flow flow = aNewSequentialFlow().named("order")
+                .execute(parallel)
+                .then(new HumanWork("approve"))
+                .build();
+        Engine engine = aNewEngine().workers(1, 16).build();
+        Instance instance = new Instance("order-1", "order");
+        Path file = folder.newFile("flows.jfr").toPath();
+
+        // when
+        try (Recording recording = new Recording()) {
+            for (String event : EVENTS) {
+                recording.enable(event).withThreshold(Duration.ZERO);
+            }
+            recording.start();
+            engine.run(flow, instance);
+            instance.getContext().setStatus("approve", Status.COMPLETED);
+            engine.run(flow, instance);
+            engine.submit(flow, new Context()).get(5, TimeUnit.SECONDS);
+            recording.stop();
+            recording.dump(file);
+        } finally {
+            engine.shutdown();
+            executorService.shutdown();
+        }
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+
+        // then
+        assertThat(events.stream().map(event -> event.getEventType().getName()).distinct())
+                .containsExactlyInAnyOrder(EVENTS);
+        List<String> works = events.stream()
+                .filter(event -> event.getEventType().getName().equals("org.jeasy.flows.WorkExecution"))
+                .filter(event -> "order-1".equals(event.getString("instanceId")))
+                .map(event -> event.getString("workName") + " " + event.getString("status"))
+                .collect(Collectors.toList());
+        assertThat(works).contains("stock COMPLETED", "approve WAITING", "order WAITING", "order COMPLETED");
+        RecordedEvent waiting = events.stream()
+                .filter(event -> event.getEventType().getName().equals("org.jeasy.flows.InstanceWaiting"))
+                .findFirst().get();
+        assertThat(waiting.getString("flowName")).isEqualTo("order");
+        assertThat(waiting.getString("instanceId")).isEqualTo("order-1");
+        RecordedEvent resumed = events.stream()
+                .filter(event -> event.getEventType().getName().equals("org.jeasy.flows.InstanceResumed"))
+                .findFirst().get();
+        assertThat(resumed.getString("instanceId")).isEqualTo("order-1");
+        assertThat(resumed.hasField("status")).isFalse();
+        RecordedEvent join = events.stream()
+                .filter(event -> event.getEventType().getName().equals("org.jeasy.flows.ParallelJoin"))
+                .findFirst().get();
+        assertThat(join.getString("workName")).isEqualTo("checks");
+        assertThat(join.getInt("branches")).isEqualTo(2);
+    }
+
+    @Test
+    public void nothingIsRecordedWhenTheEventsAreDisabled() {
+        // when
+        Object handle = FlowEvents.beginWork();
+
+        // then
+        assertThat(handle).isNull();
+    }
+
+    static class CompletedWork extends AbstractWork {
+
+        CompletedWork(String name) {
+            super(name);
+        }
+
+        @Override
+        protected Report executeInternal(Context context) {
+            return new DefaultReport(Status.COMPLETED, context);
+        }
+    }
+}
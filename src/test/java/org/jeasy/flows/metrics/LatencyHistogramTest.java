@@ -0,0 +1,126 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.flows.metrics;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void percentilesAreWithinThePrecisionOfTheHistogram() {
+        // given
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 100_000; value++) {
+            histogram.record(value * 1000);
+        }
+
+        // when
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        // then
+        assertThat(snapshot.getCount()).isEqualTo(100_000);
+        assertThat(snapshot.getMaxNanos()).isEqualTo(100_000_000);
+        assertThat(snapshot.getMeanNanos()).isCloseTo(50_000_500, within(1.0));
+        assertThat((double) snapshot.getValueAtPercentile(50)).isCloseTo(50_000_000, within(50_000_000 / 32.0));
+        assertThat((double) snapshot.getValueAtPercentile(99)).isCloseTo(99_000_000, within(99_000_000 / 32.0));
+        assertThat(snapshot.getValueAtPercentile(100)).isEqualTo(100_000_000);
+        assertThat((double) snapshot.getCountAtOrBelow(10_000_000)).isCloseTo(10_000, within(10_000 / 32.0));
+    }
+
+    @Test
+    public void bucketsCoverEveryValue() {
+        for (long value = 0; value < 1 << 20; value++) {
+            int index = LatencyHistogram.indexOf(value);
+            assertThat(LatencyHistogram.lowestValueAt(index)).isLessThanOrEqualTo(value);
+            assertThat(LatencyHistogram.highestValueAt(index)).isGreaterThanOrEqualTo(value);
+        }
+    }
+
+    @Test
+    public void longLatenciesAreCountedInTheLastBucket() {
+        // given
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        // when
+        histogram.record(Long.MAX_VALUE);
+        histogram.record(-1);
+
+        // then
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertThat(snapshot.getCount()).isEqualTo(2);
+        assertThat(snapshot.getCountAtOrBelow(0)).isEqualTo(1);
+        assertThat(snapshot.getMaxNanos()).isEqualTo(Long.MAX_VALUE);
+        assertThat(snapshot.getValueAtPercentile(100)).isEqualTo(LatencyHistogram.HIGHEST_TRACKABLE);
+    }
+
+    @Test
+    public void minusKeepsTheLatenciesRecordedSinceTheOlderSnapshot() {
+        // given
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1_000);
+        LatencyHistogram.Snapshot before = histogram.snapshot();
+        histogram.record(2_000_000);
+
+        // when
+        LatencyHistogram.Snapshot interval = histogram.snapshot().minus(before);
+
+        // then
+        assertThat(interval.getCount()).isEqualTo(1);
+        assertThat(interval.getTotalNanos()).isEqualTo(2_000_000);
+        assertThat(interval.getCountAtOrBelow(1_000)).isZero();
+    }
+
+    @Test
+    public void latenciesRecordedConcurrentlyAreAllCounted() throws InterruptedException {
+        // given
+        LatencyHistogram histogram = new LatencyHistogram();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 100_000; i++) {
+                    histogram.record(i % 2 == 0 ? 1_000 : 2_000_000);
+                }
+            }));
+        }
+
+        // when
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        // then
+        assertThat(snapshot.getCount()).isEqualTo(800_000);
+        assertThat(snapshot.getCountAtOrBelow(1_000)).isEqualTo(400_000);
+        assertThat(snapshot.getTotalNanos()).isEqualTo(400_000L * 1_000 + 400_000L * 2_000_000);
+        assertThat(snapshot.getMaxNanos()).isEqualTo(2_000_000);
+    }
+}
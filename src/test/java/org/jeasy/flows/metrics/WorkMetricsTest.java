@@ -0,0 +1,155 @@
+/*
+ * The MIT License
+ *
+ *  Copyright (c) 2020, Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.flows.metrics;
+
+import org.jeasy.flows.engine.Engine;
+import org.jeasy.flows.flow.Context;
+import org.jeasy.flows.flow.Flow;
+import org.jeasy.flows.work.AbstractWork;
+import org.jeasy.flows.work.DefaultReport;
+import org.jeasy.flows.work.Report;
+import org.jeasy.flows.work.Status;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.jeasy.flows.engine.EngineBuilder.aNewEngine;
+import static org.jeasy.flows.flow.SequentialFlow.Builder.aNewSequentialFlow;
+
+public class WorkMetricsTest {
+
+    @Test
+    public void executionsAreCountedPerWorkAndFlow() {
+        // given
+        WorkMetrics metrics = new WorkMetrics();
+        Engine engine = aNewEngine().probe(metrics).build();
+        Flow flow = aNewSequentialFlow().named("order")
+                .execute(new StatusWork("check", Status.COMPLETED))
+                .then(new StatusWork("pay", Status.FAILED))
+                .build();
+
+        // when
+        for (int i = 0; i < 3; i++) {
+            engine.run(flow, new Context());
+        }
+        Map<String, WorkStats> stats = metrics.snapshot();
+
+        // then
+        assertThat(stats).containsOnlyKeys("order", "check", "pay");
+        assertThat(stats.get("order").isFlow()).isTrue();
+        assertThat(stats.get("order").getCount(Status.FAILED)).isEqualTo(3);
+        assertThat(stats.get("check").isFlow()).isFalse();
+        assertThat(stats.get("check").getCount(Status.COMPLETED)).isEqualTo(3);
+        assertThat(stats.get("pay").getCalls()).isEqualTo(3);
+        assertThat(stats.get("pay").getLatency().getCount()).isEqualTo(3);
+    }
+
+    @Test
+    public void skippedWorksAreNotCountedAndExceptionsAre() {
+        // given
+        WorkMetrics metrics = new WorkMetrics();
+        Context context = new Context();
+        context.setProbe(metrics);
+        context.setStatus("done", Status.COMPLETED);
+        StatusWork failing = new StatusWork("failing", null);
+
+        // when
+        new StatusWork("done", Status.COMPLETED).execute(context);
+
+        // then
+        assertThatThrownBy(() -> failing.execute(context)).isInstanceOf(IllegalStateException.class);
+        assertThat(metrics.snapshot()).containsOnlyKeys("failing");
+        assertThat(metrics.snapshot().get("failing").getErrors()).isEqualTo(1);
+        assertThat(metrics.snapshot().get("failing").getCalls()).isEqualTo(1);
+    }
+
+    @Test
+    public void exporterServesOpenMetrics() throws IOException {
+        // given
+        WorkMetrics metrics = new WorkMetrics();
+        Context context = new Context();
+        context.setProbe(metrics);
+        new StatusWork("say \"hi\"", Status.COMPLETED).execute(context);
+
+        // when
+        String body;
+        String contentType;
+        try (OpenMetricsExporter exporter = OpenMetricsExporter.start(metrics, new InetSocketAddress("127.0.0.1", 0))) {
+            URL url = new URL("http://127.0.0.1:" + exporter.getAddress().getPort() + "/metrics");
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            contentType = connection.getContentType();
+            try (InputStream in = connection.getInputStream()) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                byte[] buffer = new byte[4096];
+                for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+                    bytes.write(buffer, 0, read);
+                }
+                body = new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+            }
+        }
+
+        // then
+        assertThat(contentType).startsWith("application/openmetrics-text");
+        assertThat(body)
+                .contains("easyflows_work_calls_total{work=\"say \\\"hi\\\"\",kind=\"work\"} 1\n")
+                .contains("easyflows_work_status_total{work=\"say \\\"hi\\\"\",kind=\"work\",status=\"COMPLETED\"} 1\n")
+                .contains("easyflows_work_duration_seconds_bucket{work=\"say \\\"hi\\\"\",kind=\"work\",le=\"+Inf\"} 1\n")
+                .contains("easyflows_work_duration_seconds_count{work=\"say \\\"hi\\\"\",kind=\"work\"} 1\n")
+                .endsWith("# EOF\n");
+    }
+
+    @Test
+    public void formatOfNoMetricsIsOnlyTheMetadata() {
+        assertThat(OpenMetricsExporter.format(new WorkMetrics().snapshot()))
+                .doesNotContain("{")
+                .endsWith("# EOF\n");
+    }
+
+    static class StatusWork extends AbstractWork {
+
+        private final Status status;
+
+        StatusWork(String name, Status status) {
+            super(name);
+            this.status = status;
+        }
+
+        @Override
+        protected Report executeInternal(Context context) {
+            if (status == null) {
+                throw new IllegalStateException("boom");
+            }
+            return new DefaultReport(status, context);
+        }
+    }
+}